@@ -0,0 +1,119 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * AdwinBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import moa.classifiers.core.driftdetection.ADWIN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the ADWIN window, as used by the ensembles and adaptive trees.
+ * <ul>
+ *   <li>update: inputs per second, on an error stream without change, with
+ *   abrupt changes or with gradual changes every driftPeriod inputs</li>
+ *   <li>fill: detectors per second created and fed windowLength inputs
+ *   without change; the allocation rate per operation reported by the GC
+ *   profiler ("gc.alloc.rate.norm") is the memory a detector with that
+ *   window needs</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdwinBenchmark {
+
+  @Param({"stationary", "abrupt", "gradual"})
+  public String drift;
+
+  @Param({"100000"})
+  public int numInputs;
+
+  @Param({"10000"})
+  public int driftPeriod;
+
+  @Param({"1000"})
+  public int windowLength;
+
+  protected double[] inputs;
+
+  protected ADWIN adwin;
+
+  protected int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(1);
+    this.inputs = new double[this.numInputs];
+    for (int i = 0; i < this.inputs.length; i++) {
+      double errorRate;
+      int period = i / this.driftPeriod;
+      switch (this.drift) {
+	case "stationary":
+	  errorRate = 0.2;
+	  break;
+	case "abrupt":
+	  errorRate = period % 2 == 0 ? 0.2 : 0.4;
+	  break;
+	case "gradual":
+	  // the error rate moves linearly between 0.2 and 0.4 within a period
+	  double position = (double) (i % this.driftPeriod) / this.driftPeriod;
+	  errorRate = 0.2 + 0.2 * (period % 2 == 0 ? position : 1 - position);
+	  break;
+	default:
+	  throw new IllegalArgumentException("Unknown drift: " + this.drift);
+      }
+      this.inputs[i] = random.nextDouble() < errorRate ? 1.0 : 0.0;
+    }
+    this.adwin = new ADWIN();
+    this.next = 0;
+  }
+
+  @Benchmark
+  public boolean update() {
+    boolean result = this.adwin.setInput(this.inputs[this.next]);
+    this.next = (this.next + 1) % this.inputs.length;
+    return result;
+  }
+
+  @Benchmark
+  public ADWIN fill() {
+    ADWIN result = new ADWIN();
+    for (int i = 0; i < this.windowLength; i++)
+      result.setInput(this.inputs[i % this.inputs.length]);
+    return result;
+  }
+}
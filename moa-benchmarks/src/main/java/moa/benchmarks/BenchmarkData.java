@@ -0,0 +1,70 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BenchmarkData.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.core.Example;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.InstanceStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the objects and data the benchmarks run on, outside of the
+ * measured code.
+ */
+public class BenchmarkData {
+
+  /**
+   * Creates and prepares an object from its command-line.
+   *
+   * @param cliString	the command-line, e.g. "bayes.NaiveBayes"
+   * @param requiredType	the type of the object
+   * @return		the prepared object
+   */
+  public static <T> T create(String cliString, Class<T> requiredType) {
+    try {
+      Object result = ClassOption.cliStringToObject(cliString, requiredType, null);
+      if (result instanceof OptionHandler)
+	((OptionHandler) result).prepareForUse();
+      return requiredType.cast(result);
+    }
+    catch (Exception e) {
+      throw new IllegalArgumentException("Cannot create " + cliString, e);
+    }
+  }
+
+  /**
+   * Reads instances from a stream.
+   *
+   * @param stream		the stream to read from
+   * @param numInstances	the number of instances to read
+   * @return			the instances
+   */
+  public static List<Example<Instance>> read(InstanceStream stream, int numInstances) {
+    List<Example<Instance>> result = new ArrayList<>(numInstances);
+    while (result.size() < numInstances && stream.hasMoreInstances())
+      result.add(stream.nextInstance());
+    return result;
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ChangeDetectorBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import moa.classifiers.core.driftdetection.ADWIN;
+import moa.classifiers.core.driftdetection.ChangeDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many inputs per second the change detectors process, on an
+ * error stream of a classifier whose error rate changes every
+ * driftPeriod inputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChangeDetectorBenchmark {
+
+  @Param({"ADWINChangeDetector", "DDM"})
+  public String detector;
+
+  @Param({"100000"})
+  public int numInputs;
+
+  @Param({"10000"})
+  public int driftPeriod;
+
+  protected ChangeDetector changeDetector;
+
+  protected ADWIN adwin;
+
+  protected double[] inputs;
+
+  protected int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(1);
+    this.inputs = new double[this.numInputs];
+    for (int i = 0; i < this.inputs.length; i++) {
+      double errorRate = (i / this.driftPeriod) % 2 == 0 ? 0.2 : 0.4;
+      this.inputs[i] = random.nextDouble() < errorRate ? 1.0 : 0.0;
+    }
+    this.changeDetector = BenchmarkData.create(this.detector, ChangeDetector.class);
+    this.adwin = new ADWIN();
+    this.next = 0;
+  }
+
+  protected double nextInput() {
+    double result = this.inputs[this.next];
+    this.next = (this.next + 1) % this.inputs.length;
+    return result;
+  }
+
+  /**
+   * Resets the detector after a change, as the learners replace theirs.
+   */
+  @Benchmark
+  public boolean input() {
+    this.changeDetector.input(nextInput());
+    boolean result = this.changeDetector.getChange();
+    if (result)
+      this.changeDetector.resetLearning();
+    return result;
+  }
+
+  /**
+   * The ADWIN window used directly by the learners, independent of the
+   * detector parameter.
+   */
+  @Benchmark
+  public boolean adwin() {
+    return this.adwin.setInput(nextInput());
+  }
+}
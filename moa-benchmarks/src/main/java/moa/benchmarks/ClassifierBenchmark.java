@@ -0,0 +1,107 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ClassifierBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.core.Example;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many instances per second a classifier predicts, and tests
+ * then trains on. The classifier is first trained on a stream prefix, then
+ * cycles over a pool of further instances from the same stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassifierBenchmark {
+
+  @Param({
+    "bayes.NaiveBayes",
+    "trees.HoeffdingTree",
+    "meta.AdaptiveRandomForest -s 10",
+    "lazy.kNN"})
+  public String learner;
+
+  @Param({"generators.RandomRBFGenerator", "generators.RandomTreeGenerator"})
+  public String stream;
+
+  @Param({"10000"})
+  public int numTrainInstances;
+
+  @Param({"10000"})
+  public int numPoolInstances;
+
+  protected Classifier classifier;
+
+  protected List<Example<Instance>> pool;
+
+  protected int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    InstanceStream instances = BenchmarkData.create(this.stream, InstanceStream.class);
+    this.classifier = BenchmarkData.create(this.learner, Classifier.class);
+    this.classifier.setModelContext(instances.getHeader());
+    for (Example<Instance> example : BenchmarkData.read(instances, this.numTrainInstances))
+      this.classifier.trainOnInstance(example);
+    this.pool = BenchmarkData.read(instances, this.numPoolInstances);
+    this.next = 0;
+  }
+
+  protected Example<Instance> nextExample() {
+    Example<Instance> result = this.pool.get(this.next);
+    this.next = (this.next + 1) % this.pool.size();
+    return result;
+  }
+
+  @Benchmark
+  public double[] predict() {
+    return this.classifier.getVotesForInstance(nextExample());
+  }
+
+  @Benchmark
+  public double[] testThenTrain() {
+    Example<Instance> example = nextExample();
+    double[] votes = this.classifier.getVotesForInstance(example);
+    this.classifier.trainOnInstance(example);
+    return votes;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * CopyBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.classifiers.core.driftdetection.ADWIN;
+import moa.core.Example;
+import moa.core.SerializeUtils;
+import moa.core.StructuralCopier;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long copying a trained object takes, by a serialisation
+ * round trip (the former copy of MOA objects) or structurally. The objects
+ * are classifiers trained on numTrainInstances instances of the stream, or
+ * the ADWIN window of a classifier fed as many errors.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CopyBenchmark {
+
+  @Param({
+    "trees.HoeffdingTree",
+    "trees.ARFHoeffdingTree",
+    "meta.OzaBag",
+    "meta.AdaptiveRandomForest -s 10",
+    "rules.AMRulesRegressor",
+    "ADWIN"})
+  public String object;
+
+  @Param({"generators.RandomRBFGenerator"})
+  public String stream;
+
+  @Param({"10000"})
+  public int numTrainInstances;
+
+  protected Serializable copied;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if (this.object.equals("ADWIN")) {
+      // the errors of a classifier with an error rate of 0.2
+      Random random = new Random(1);
+      ADWIN adwin = new ADWIN();
+      for (int i = 0; i < this.numTrainInstances; i++)
+	adwin.setInput(random.nextDouble() < 0.2 ? 1.0 : 0.0);
+      this.copied = adwin;
+      return;
+    }
+
+    InstanceStream instances = BenchmarkData.create(this.stream, InstanceStream.class);
+    Classifier classifier = BenchmarkData.create(this.object, Classifier.class);
+    classifier.setModelContext(instances.getHeader());
+    for (Example<Instance> example : BenchmarkData.read(instances, this.numTrainInstances))
+      classifier.trainOnInstance(example);
+    this.copied = classifier;
+  }
+
+  @Benchmark
+  public Object serialization() throws Exception {
+    return SerializeUtils.copyObject(this.copied);
+  }
+
+  @Benchmark
+  public Object structural() throws Exception {
+    return StructuralCopier.copyObject(this.copied);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * EvaluatorBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.core.Example;
+import moa.evaluation.BasicClassificationPerformanceEvaluator;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many results per second the basic classification evaluator
+ * adds. The votes are computed beforehand by a naive Bayes classifier.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+  @Param({"generators.RandomRBFGenerator"})
+  public String stream;
+
+  @Param({"10000"})
+  public int numInstances;
+
+  protected BasicClassificationPerformanceEvaluator evaluator;
+
+  protected List<Example<Instance>> examples;
+
+  protected double[][] votes;
+
+  protected int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    InstanceStream instances = BenchmarkData.create(this.stream, InstanceStream.class);
+    Classifier classifier = BenchmarkData.create("bayes.NaiveBayes", Classifier.class);
+    classifier.setModelContext(instances.getHeader());
+    this.examples = BenchmarkData.read(instances, this.numInstances);
+    this.votes = new double[this.examples.size()][];
+    for (int i = 0; i < this.votes.length; i++) {
+      this.votes[i] = classifier.getVotesForInstance(this.examples.get(i));
+      classifier.trainOnInstance(this.examples.get(i));
+    }
+    this.evaluator = new BasicClassificationPerformanceEvaluator();
+    this.evaluator.prepareForUse();
+    this.next = 0;
+  }
+
+  @Benchmark
+  public void addResult() {
+    this.evaluator.addResult(this.examples.get(this.next), this.votes[this.next]);
+    this.next = (this.next + 1) % this.examples.size();
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * KafkaBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.core.Example;
+import moa.streams.InstanceDeserializer;
+import moa.streams.InstanceSerializer;
+import moa.streams.InstanceStream;
+import moa.streams.KafkaStream;
+import moa.streams.ObjectDeserializer;
+import moa.streams.ObjectSerializer;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many instances per second go through Kafka's
+ * serialisation, with Java's serialisation ("java", the former format)
+ * or the compact format ("compact"), and how many instances per second
+ * the Kafka stream delivers from a mock consumer, polled when needed
+ * (prefetch 0, the former behaviour) or on a background thread. The mock
+ * consumer deserialises the records when polled, like a Kafka consumer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KafkaBenchmark {
+
+  protected static final String TOPIC = "instances";
+
+  @Param({"generators.RandomRBFGenerator"})
+  public String generator;
+
+  @Param({"java", "compact"})
+  public String format;
+
+  @Param({"0", "10000"})
+  public int prefetch;
+
+  @Param({"1000"})
+  public int numInstances;
+
+  @Param({"500"})
+  public int recordsPerPoll;
+
+  protected Instance[] instances;
+
+  protected byte[][] records;
+
+  protected Serializer<Instance> serializer;
+
+  protected Deserializer<Instance> deserializer;
+
+  protected KafkaStream stream;
+
+  protected int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    InstanceStream source = BenchmarkData.create(this.generator, InstanceStream.class);
+    this.instances = new Instance[this.numInstances];
+    this.records = new byte[this.numInstances][];
+    Serializer<Instance> recordSerializer = createSerializer();
+    for (int i = 0; i < this.numInstances; i++) {
+      this.instances[i] = source.nextInstance().getData();
+      this.records[i] = recordSerializer.serialize(TOPIC, this.instances[i]);
+    }
+    this.serializer = createSerializer();
+    this.deserializer = createDeserializer();
+    this.stream = new MockKafkaStream();
+    this.stream.prefetchOption.setValue(this.prefetch);
+    this.stream.prepareForUse();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.stream.close();
+  }
+
+  protected Serializer<Instance> createSerializer() {
+    return this.format.equals("java") ? new ObjectSerializer<Instance>() : new InstanceSerializer();
+  }
+
+  protected Deserializer<Instance> createDeserializer() {
+    return this.format.equals("java") ? new ObjectDeserializer<Instance>() : new InstanceDeserializer();
+  }
+
+  @Benchmark
+  public Instance roundTrip() {
+    Instance instance = this.instances[this.next];
+    this.next = (this.next + 1) % this.numInstances;
+    return this.deserializer.deserialize(TOPIC, this.serializer.serialize(TOPIC, instance));
+  }
+
+  @Benchmark
+  public Example<Instance> stream() {
+    return this.stream.nextInstance();
+  }
+
+  /**
+   * Stream reading the serialised instances over and over from a mock
+   * consumer, which deserialises a batch of them on each poll.
+   */
+  protected class MockKafkaStream extends KafkaStream {
+
+    private static final long serialVersionUID = 1L;
+
+    public MockKafkaStream() {
+      topicOption.setValue(TOPIC);
+    }
+
+    @Override
+    protected Consumer<Long, Instance> createConsumer() {
+      final MockConsumer<Long, Instance> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+      final TopicPartition partition = new TopicPartition(TOPIC, 0);
+      final Deserializer<Instance> recordDeserializer = createDeserializer();
+      consumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+      consumer.schedulePollTask(new Runnable() {
+	protected long offset = 0;
+
+	@Override
+	public void run() {
+	  if (!consumer.assignment().contains(partition))
+	    consumer.rebalance(Collections.singletonList(partition));
+	  // Leave the partition as it is while the stream has no room for more
+	  if (consumer.paused().contains(partition)) {
+	    consumer.schedulePollTask(this);
+	    return;
+	  }
+	  for (int i = 0; i < recordsPerPoll; i++, offset++) {
+	    Instance instance = recordDeserializer.deserialize(TOPIC, records[(int) (offset % numInstances)]);
+	    consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset, offset, instance));
+	  }
+	  consumer.schedulePollTask(this);
+	}
+      });
+      return consumer;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * RecommenderBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import moa.recommender.rc.data.impl.MemRecommenderData;
+import moa.recommender.rc.predictor.impl.BRISMFPredictor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the in-memory recommender data and the BRISMF predictor on
+ * synthetic ratings, with a few very active users and popular items as in
+ * MovieLens.
+ * <ul>
+ *   <li>fill: ratings per second stored, without a predictor; the allocation
+ *   rate per operation reported by the GC profiler ("gc.alloc.rate.norm")
+ *   bounds the memory used per rating</li>
+ *   <li>replay: ratings per second predicted then inserted with an attached
+ *   predictor retraining users and items, as EvaluateOnlineRecommender does</li>
+ *   <li>train: batch trainings per second on numRatings ratings, with
+ *   numberOfJobs threads</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecommenderBenchmark {
+
+  @Param({"1000000"})
+  public int numRatings;
+
+  @Param({"1"})
+  public int numberOfJobs;
+
+  @Param({"10"})
+  public int features;
+
+  protected int[] users;
+
+  protected int[] items;
+
+  protected double[] ratings;
+
+  protected MemRecommenderData data;
+
+  protected BRISMFPredictor predictor;
+
+  protected BRISMFPredictor trainer;
+
+  protected int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(1);
+    int numUsers = this.numRatings / 150 + 10;
+    int numItems = this.numRatings / 500 + 10;
+    this.users = new int[this.numRatings];
+    this.items = new int[this.numRatings];
+    this.ratings = new double[this.numRatings];
+    for (int i = 0; i < this.numRatings; i++) {
+      this.users[i] = 1 + (int) (numUsers * Math.pow(random.nextDouble(), 1.5));
+      this.items[i] = 1 + (int) (numItems * Math.pow(random.nextDouble(), 2.5));
+      double rating = 3 + (this.users[i] % 3 - 1) + (this.items[i] % 5 - 2) * 0.5 + random.nextGaussian();
+      this.ratings[i] = Math.min(5, Math.max(1, Math.round(rating)));
+    }
+    this.data = new MemRecommenderData();
+    this.predictor = new BRISMFPredictor(this.features, this.data, 0.001, 0.01, false);
+    this.next = 0;
+    this.trainer = new BRISMFPredictor(this.features, fill(), 0.001, 0.01, false);
+    this.trainer.setNumberOfJobs(this.numberOfJobs);
+  }
+
+  @Benchmark
+  public MemRecommenderData fill() {
+    MemRecommenderData result = new MemRecommenderData();
+    result.disableUpdates(true);
+    for (int i = 0; i < this.numRatings; i++)
+      result.setRating(this.users[i], this.items[i], this.ratings[i]);
+    return result;
+  }
+
+  @Benchmark
+  public double replay() {
+    int i = this.next;
+    double prediction = this.predictor.predictRating(this.users[i], this.items[i]);
+    this.data.setRating(this.users[i], this.items[i], this.ratings[i]);
+    this.next = (i + 1) % this.numRatings;
+    return prediction;
+  }
+
+  @Benchmark
+  public BRISMFPredictor train() {
+    this.trainer.train();
+    return this.trainer;
+  }
+}
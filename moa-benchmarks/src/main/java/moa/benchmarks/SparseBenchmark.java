@@ -0,0 +1,147 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * SparseBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import moa.classifiers.Classifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many sparse instances per second a classifier tests then
+ * trains on, depending on the fraction of the attributes present in the
+ * instances. The instances resemble hashed text: term counts of a random
+ * subset of the attributes, labelled by a fixed linear concept.
+ * The options -x of NaiveBayes and HoeffdingTree make them iterate the
+ * values present only, SGD and Perceptron always do.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SparseBenchmark {
+
+  @Param({
+    "bayes.NaiveBayes",
+    "bayes.NaiveBayes -x",
+    "trees.HoeffdingTree",
+    "trees.HoeffdingTree -x",
+    "functions.SGD",
+    "functions.Perceptron"})
+  public String learner;
+
+  @Param({"100000"})
+  public int numAttributes;
+
+  @Param({"0.0001", "0.001", "0.01"})
+  public double density;
+
+  @Param({"1000"})
+  public int numPoolInstances;
+
+  protected Classifier classifier;
+
+  protected List<Instance> pool;
+
+  protected int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    List<String> classLabels = Arrays.asList("negative", "positive");
+    List<Attribute> attributes = new ArrayList<>();
+    for (int i = 0; i < this.numAttributes; i++)
+      attributes.add(new Attribute("term" + i));
+    attributes.add(new Attribute("class", classLabels));
+    InstancesHeader header = new InstancesHeader(new Instances("sparse", attributes, 0));
+    header.setClassIndex(this.numAttributes);
+
+    Random random = new Random(1);
+    double[] concept = new double[this.numAttributes];
+    for (int i = 0; i < concept.length; i++)
+      concept[i] = random.nextGaussian();
+    int numTerms = Math.max(1, (int) Math.round(this.density * this.numAttributes));
+    boolean[] present = new boolean[this.numAttributes];
+    this.pool = new ArrayList<>(this.numPoolInstances);
+    for (int n = 0; n < this.numPoolInstances; n++) {
+      int[] indices = new int[numTerms + 1];
+      for (int i = 0; i < numTerms; i++) {
+	int term;
+	do {
+	  term = random.nextInt(this.numAttributes);
+	}
+	while (present[term]);
+	present[term] = true;
+	indices[i] = term;
+      }
+      for (int i = 0; i < numTerms; i++)
+	present[indices[i]] = false;
+      Arrays.sort(indices, 0, numTerms);
+      indices[numTerms] = this.numAttributes;
+      double[] values = new double[numTerms + 1];
+      double sum = 0.0;
+      for (int i = 0; i < numTerms; i++) {
+	values[i] = 1 + random.nextInt(3);
+	sum += values[i] * concept[indices[i]];
+      }
+      values[numTerms] = sum > 0 ? 1 : 0;
+      Instance inst = new SparseInstance(1.0, values, indices, this.numAttributes + 1);
+      inst.setDataset(header);
+      this.pool.add(inst);
+    }
+
+    this.classifier = BenchmarkData.create(this.learner, Classifier.class);
+    this.classifier.setModelContext(header);
+    for (Instance inst : this.pool)
+      this.classifier.trainOnInstance(inst);
+    this.next = 0;
+  }
+
+  @Benchmark
+  public double[] testThenTrain() {
+    Instance inst = this.pool.get(this.next);
+    this.next = (this.next + 1) % this.pool.size();
+    double[] votes = this.classifier.getVotesForInstance(inst);
+    this.classifier.trainOnInstance(inst);
+    return votes;
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * StreamBenchmark.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.benchmarks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.core.Example;
+import moa.streams.ArffFileStream;
+import moa.streams.InstanceStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many instances per second the streams produce: a generator,
+ * and an ARFF file written from the same generator beforehand. The file
+ * stream is restarted when it reaches the end of the file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamBenchmark {
+
+  @Param({"generators.RandomRBFGenerator"})
+  public String generator;
+
+  @Param({"100000"})
+  public int numFileInstances;
+
+  protected InstanceStream generatorStream;
+
+  protected ArffFileStream fileStream;
+
+  protected File file;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    this.generatorStream = BenchmarkData.create(this.generator, InstanceStream.class);
+    this.file = File.createTempFile("moa-benchmark", ".arff");
+    this.file.deleteOnExit();
+    InstanceStream source = BenchmarkData.create(this.generator, InstanceStream.class);
+    try (PrintWriter writer = new PrintWriter(this.file)) {
+      writer.println(source.getHeader().toString());
+      for (int i = 0; i < this.numFileInstances; i++)
+	writer.println(source.nextInstance().getData().toString());
+    }
+    this.fileStream = new ArffFileStream(this.file.getAbsolutePath(), -1);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.file.delete();
+  }
+
+  @Benchmark
+  public Example<Instance> generator() {
+    return this.generatorStream.nextInstance();
+  }
+
+  @Benchmark
+  public Example<Instance> arffFile() {
+    if (!this.fileStream.hasMoreInstances())
+      this.fileStream.restart();
+    return this.fileStream.nextInstance();
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstanceDeserializer.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kafka deserialiser for instances written by {@link InstanceSerializer}.
+ * Records written by {@link ObjectSerializer} (recognised by the magic
+ * number of Java's serialisation) are deserialised as well.
+ *
+ * The headers received are kept by identifier. One deserialiser can be
+ * shared by the consumers of several partitions of a topic: a record
+ * whose header has not been received yet waits a while for another
+ * consumer to receive it.
+ *
+ * @see InstanceSerializer
+ */
+public class InstanceDeserializer
+  implements Deserializer<Instance> {
+
+  // Configuration key of the longest wait for a header, in milliseconds
+  public static final String HEADER_TIMEOUT_CONFIG = "moa.header.timeout.ms";
+
+  // The first bytes of Java's serialisation
+  protected static final byte JAVA_MAGIC_0 = (byte) 0xAC;
+  protected static final byte JAVA_MAGIC_1 = (byte) 0xED;
+
+  // The longest wait for a header not received yet, in milliseconds
+  protected long m_HeaderTimeout = 10000;
+
+  // The headers received, by identifier
+  protected final Map<Long, InstancesHeader> m_Headers = new ConcurrentHashMap<>();
+
+  // Deserialiser for records in Java's serialised form
+  protected final ObjectDeserializer<Instance> m_ObjectDeserializer = new ObjectDeserializer<>();
+
+  @Override
+  public void configure(Map<String, ?> configs, boolean isKey) {
+    Object timeout = configs.get(HEADER_TIMEOUT_CONFIG);
+    if (timeout != null)
+      m_HeaderTimeout = Long.parseLong(timeout.toString());
+  }
+
+  @Override
+  public Instance deserialize(String s, byte[] bytes) {
+    // Bytes can be null; deserialise to null
+    if (bytes == null)
+      return null;
+
+    // Instances serialised by Java
+    if (bytes.length >= 2 && bytes[0] == JAVA_MAGIC_0 && bytes[1] == JAVA_MAGIC_1)
+      return m_ObjectDeserializer.deserialize(s, bytes);
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    byte version = buffer.get();
+    if (version != InstanceSerializer.FORMAT_VERSION)
+      throw new RuntimeException("Failed to deserialise instance from Kafka: unknown format version " + version);
+    byte flags = buffer.get();
+    long headerID = buffer.getLong();
+
+    // Read the header if the record carries it
+    InstancesHeader header = null;
+    if ((flags & InstanceSerializer.HAS_HEADER) != 0) {
+      byte[] headerBytes = new byte[buffer.getInt()];
+      buffer.get(headerBytes);
+      header = m_Headers.get(headerID);
+      if (header == null)
+        header = addHeader(headerID, headerBytes);
+    }
+    else if (headerID != 0) {
+      header = waitForHeader(headerID);
+    }
+
+    // Read the instance
+    double weight = buffer.getDouble();
+    int numValues = buffer.getInt();
+    Instance instance;
+    if ((flags & InstanceSerializer.SPARSE) != 0) {
+      int numAttributes = buffer.getInt();
+      int[] indices = new int[numValues];
+      double[] values = new double[numValues];
+      buffer.asIntBuffer().get(indices);
+      buffer.position(buffer.position() + numValues * 4);
+      buffer.asDoubleBuffer().get(values);
+      instance = new SparseInstance(weight, values, indices, numAttributes);
+    }
+    else {
+      double[] values = new double[numValues];
+      buffer.asDoubleBuffer().get(values);
+      instance = new DenseInstance(weight, values);
+    }
+    if (header != null)
+      instance.setDataset(header);
+
+    return instance;
+  }
+
+  /**
+   * Deserialises a header and makes it available to the waiting records.
+   */
+  protected InstancesHeader addHeader(long headerID, byte[] headerBytes) {
+    InstancesHeader header;
+    try {
+      ObjectInputStream streamDeserialiser = new ObjectInputStream(new ByteArrayInputStream(headerBytes));
+      header = (InstancesHeader) streamDeserialiser.readObject();
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      throw new RuntimeException("Failed to deserialise instance header from Kafka", e);
+    }
+
+    synchronized (m_Headers) {
+      m_Headers.put(headerID, header);
+      m_Headers.notifyAll();
+    }
+
+    return header;
+  }
+
+  /**
+   * Gets a header, waiting for it if it hasn't been received yet.
+   */
+  protected InstancesHeader waitForHeader(long headerID) {
+    InstancesHeader header = m_Headers.get(headerID);
+    if (header != null)
+      return header;
+
+    long deadline = System.currentTimeMillis() + m_HeaderTimeout;
+    synchronized (m_Headers) {
+      while ((header = m_Headers.get(headerID)) == null) {
+        long wait = deadline - System.currentTimeMillis();
+        if (wait <= 0)
+          throw new RuntimeException("Failed to deserialise instance from Kafka: its header hasn't been received; "
+            + "the topic must be consumed from the beginning");
+        try {
+          m_Headers.wait(wait);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException("Interrupted while waiting for an instance header from Kafka", e);
+        }
+      }
+    }
+
+    return header;
+  }
+}
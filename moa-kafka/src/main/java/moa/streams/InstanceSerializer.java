@@ -0,0 +1,173 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * InstanceSerializer.java
+ * Copyright (C) 2019 University of Waikato, Hamilton, NZ
+ */
+
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Kafka serialiser for instances, in a compact binary form read by
+ * {@link InstanceDeserializer}.
+ *
+ * The header of the instances is sent (using Java's serialisation
+ * tools) with the first instance of each topic only, and again if it
+ * changes. Every record refers to its header by an identifier computed
+ * from the serialised header, followed by the weight and the values of
+ * the instance as packed doubles (with their indices, for sparse
+ * instances).
+ *
+ * Layout of a record, big-endian:
+ * <pre>
+ *   byte    format version
+ *   byte    flags (HAS_HEADER, SPARSE)
+ *   long    header identifier (0 for an instance without a dataset)
+ *   [int    length of the serialised header, if HAS_HEADER
+ *    byte[] serialised header]
+ *   double  weight
+ *   int     number of values
+ *   [int    number of attributes, if SPARSE
+ *    int[]  indices of the values]
+ *   double[] values
+ * </pre>
+ */
+public class InstanceSerializer
+  implements Serializer<Instance> {
+
+  // The version of the format, also telling it apart from Java serialisation
+  public static final byte FORMAT_VERSION = 1;
+
+  // Flag for records carrying the header
+  public static final byte HAS_HEADER = 1;
+
+  // Flag for records of sparse instances
+  public static final byte SPARSE = 2;
+
+  // The dataset the last header was computed for
+  protected Instances m_LastDataset = null;
+
+  // The serialised form of the last header
+  protected byte[] m_LastHeaderBytes = null;
+
+  // The identifier of the last header
+  protected long m_LastHeaderID = 0;
+
+  // The identifier of the last header sent to each topic
+  protected Map<String, Long> m_SentHeaders = new HashMap<>();
+
+  @Override
+  public byte[] serialize(String topic, Instance data) {
+    // Null serialises to null
+    if (data == null)
+      return null;
+
+    // Serialise the header again only if the dataset has changed
+    Instances dataset = data.dataset();
+    if (dataset != m_LastDataset)
+      cacheHeader(dataset);
+
+    // Send the header if this topic hasn't had it
+    Long sentID = m_SentHeaders.get(topic);
+    boolean sendHeader = m_LastHeaderBytes != null
+      && (sentID == null || sentID != m_LastHeaderID);
+    boolean sparse = data instanceof SparseInstance;
+    int numValues = data.numValues();
+
+    int size = 2 + 8 + 8 + 4 + numValues * 8;
+    if (sendHeader)
+      size += 4 + m_LastHeaderBytes.length;
+    if (sparse)
+      size += 4 + numValues * 4;
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.put(FORMAT_VERSION);
+    buffer.put((byte) ((sendHeader ? HAS_HEADER : 0) | (sparse ? SPARSE : 0)));
+    buffer.putLong(m_LastHeaderID);
+    if (sendHeader) {
+      buffer.putInt(m_LastHeaderBytes.length);
+      buffer.put(m_LastHeaderBytes);
+      m_SentHeaders.put(topic, m_LastHeaderID);
+    }
+    buffer.putDouble(data.weight());
+    buffer.putInt(numValues);
+    if (sparse) {
+      buffer.putInt(data.numAttributes());
+      for (int i = 0; i < numValues; i++)
+        buffer.putInt(data.index(i));
+      for (int i = 0; i < numValues; i++)
+        buffer.putDouble(data.valueSparse(i));
+    }
+    else {
+      for (int i = 0; i < numValues; i++)
+        buffer.putDouble(data.value(i));
+    }
+
+    return buffer.array();
+  }
+
+  /**
+   * Serialises the header of the dataset and computes its identifier.
+   */
+  protected void cacheHeader(Instances dataset) {
+    m_LastDataset = dataset;
+
+    if (dataset == null) {
+      m_LastHeaderBytes = null;
+      m_LastHeaderID = 0;
+      return;
+    }
+
+    try {
+      ByteArrayOutputStream streamSerialiser = new ByteArrayOutputStream();
+      ObjectOutputStream objectStream = new ObjectOutputStream(streamSerialiser);
+      objectStream.writeObject(new InstancesHeader(dataset));
+      objectStream.flush();
+      m_LastHeaderBytes = streamSerialiser.toByteArray();
+    } catch (IOException e) {
+      throw new RuntimeException("Failed to serialise instance header for Kafka", e);
+    }
+    m_LastHeaderID = headerID(m_LastHeaderBytes);
+  }
+
+  /**
+   * Computes the identifier of a serialised header (64-bit FNV-1a hash),
+   * so that identical headers get the same identifier in all producers.
+   * Never 0, which stands for no header.
+   */
+  public static long headerID(byte[] headerBytes) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : headerBytes) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+
+    return hash == 0 ? 1 : hash;
+  }
+}
@@ -20,7 +20,9 @@
 
 package moa.streams;
 
+import com.github.javacliparser.IntOption;
 import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.DenseInstance;
 import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
@@ -32,22 +34,31 @@ import moa.core.InstanceExample;
 import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import moa.tasks.TaskMonitor;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
 import org.apache.kafka.common.serialization.LongDeserializer;
 
 import java.io.Closeable;
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Instance stream which consumes instances from a Kafka topic.
@@ -58,8 +69,19 @@ import java.util.Queue;
  *     partition.
  *   - The stream is considered ended when a record with a null
  *     value is found.
- *   - The serialised form of the instances is using Java's own
+ *   - The serialised form of the instances is either the compact
+ *     form of {@link InstanceSerializer}, or using Java's own
  *     serialisation tools (i.e. {@link ObjectSerializer}).
+ *   - With several consumers, every partition ends with a record
+ *     with a null value, and the stream is considered ended when all
+ *     consumers have found one.
+ *
+ * Unless the prefetch option is 0, the records are polled on background
+ * threads, which fill a bounded queue of instances while the instances
+ * already retrieved are processed. With several consumers, each one is
+ * assigned its own share of the partitions of the topic, so that they
+ * are polled and deserialised in parallel; the instances of different
+ * partitions are then interleaved in no particular order.
  *
  * @author Corey Sterling (csterlin at waikato dot ac dot nz)
  */
@@ -72,6 +94,12 @@ public class KafkaStream extends AbstractOptionHandler implements
   // The longest wait time that can be specified to Kafka calls
   public static final Duration WAIT_AS_LONG_AS_POSSIBLE = Duration.ofMillis(Long.MAX_VALUE);
 
+  // The marker put in the prefetch queue by a consumer which has found the end of its partitions
+  protected static final Instance END_OF_PARTITIONS = new DenseInstance(0);
+
+  // How long a consumer waits for room in the prefetch queue before polling Kafka again
+  protected static final long QUEUE_WAIT_MILLIS = 100;
+
   // -- OPTIONS -- //
 
   // The topic to consume
@@ -86,10 +114,30 @@ public class KafkaStream extends AbstractOptionHandler implements
   public StringOption portOption = new StringOption("port", 'p',
     "The Kafka broker port", "");
 
+  // The number of instances retrieved ahead in the background
+  public IntOption prefetchOption = new IntOption("prefetch", 'b',
+    "Number of instances retrieved ahead on background threads (0 = poll when needed)", 10000, 0, Integer.MAX_VALUE);
+
+  // The number of consumers sharing the partitions of the topic
+  public IntOption consumersOption = new IntOption("consumers", 'c',
+    "Number of consumers polling their own share of the partitions in parallel", 1, 1, Integer.MAX_VALUE);
+
   // -- TRANSIENTS -- //
 
   // The consumer which will retrieve records from the Kafka stream
-  protected transient KafkaConsumer<Long, Instance> m_Consumer = null;
+  protected transient Consumer<Long, Instance> m_Consumer = null;
+
+  // The background threads polling Kafka, one per consumer
+  protected transient List<Fetcher> m_Fetchers = null;
+
+  // The instances retrieved ahead by the background threads
+  protected transient BlockingQueue<Instance> m_Prefetched = null;
+
+  // The number of consumers which haven't found the end of their partitions
+  protected transient int m_ActiveFetchers = 0;
+
+  // The deserialiser shared by the consumers
+  protected transient InstanceDeserializer m_Deserializer = null;
 
   // A buffer of instances retrieved from the Kafka stream
   protected transient Queue<Instance> m_InstanceBuffer = null;
@@ -134,7 +182,8 @@ public class KafkaStream extends AbstractOptionHandler implements
   public boolean hasMoreInstances() {
     fillBufferIfNecessary();
 
-    return !m_EndOfStreamReached;
+    // Instances may remain in the buffer after the end was found
+    return !bufferIsEmpty() || !m_EndOfStreamReached;
   }
 
   @Override
@@ -157,6 +206,9 @@ public class KafkaStream extends AbstractOptionHandler implements
 
   @Override
   public void restart() {
+    // Stop polling in the background
+    stopFetchers();
+
     // Get the consumer in a usable state and restart it
     restartConsumer();
 
@@ -189,11 +241,18 @@ public class KafkaStream extends AbstractOptionHandler implements
 
   @Override
   public void close() {
-    if (m_Consumer != null) {
+    stopFetchers();
+
+    if (m_Fetchers != null) {
+      for (Fetcher fetcher : m_Fetchers)
+        fetcher.m_Consumer.close();
+    }
+    else if (m_Consumer != null) {
       m_Consumer.unsubscribe();
       m_Consumer.close();
     }
 
+    m_Fetchers = null;
     m_Consumer = null;
   }
 
@@ -207,15 +266,48 @@ public class KafkaStream extends AbstractOptionHandler implements
       return;
 
     // Create the consumer
-    m_Consumer = new KafkaConsumer<>(createConsumerConfiguration());
+    m_Consumer = createConsumer();
 
-    // Subscribe to the given topic
-    m_Consumer.subscribe(Collections.singletonList(topicOption.getValue()));
+    int numConsumers = consumersOption.getValue();
+    if (numConsumers == 1) {
+      // Subscribe to the given topic
+      m_Consumer.subscribe(Collections.singletonList(topicOption.getValue()));
+    }
+    else {
+      // Share the partitions of the topic among the consumers
+      List<PartitionInfo> infos = m_Consumer.partitionsFor(topicOption.getValue());
+      List<List<TopicPartition>> assignments = new ArrayList<>();
+      for (int i = 0; i < numConsumers; i++)
+        assignments.add(new ArrayList<TopicPartition>());
+      for (int i = 0; i < infos.size(); i++)
+        assignments.get(i % numConsumers).add(new TopicPartition(infos.get(i).topic(), infos.get(i).partition()));
+
+      // Create the other consumers, leaving out those without partitions
+      m_Fetchers = new ArrayList<>();
+      for (int i = 0; i < numConsumers && !assignments.get(i).isEmpty(); i++) {
+        Consumer<Long, Instance> consumer = i == 0 ? m_Consumer : createConsumer();
+        consumer.assign(assignments.get(i));
+        m_Fetchers.add(new Fetcher(consumer));
+      }
+    }
 
     // Make sure the consumer starts from the beginning of the topic
     restartConsumer();
   }
 
+  /**
+   * Creates a Kafka consumer, using the deserialiser shared by all the
+   * consumers of this stream.
+   */
+  protected Consumer<Long, Instance> createConsumer() {
+    if (m_Deserializer == null) {
+      m_Deserializer = new InstanceDeserializer();
+      m_Deserializer.configure(createConsumerConfiguration(), false);
+    }
+
+    return new KafkaConsumer<>(createConsumerConfiguration(), new LongDeserializer(), m_Deserializer);
+  }
+
   /**
    * Creates the configuration for the Kafka consumer.
    */
@@ -223,7 +315,7 @@ public class KafkaStream extends AbstractOptionHandler implements
     Map<String, Object> config = new HashMap<>();
 
     config.put("key.deserializer", LongDeserializer.class);
-    config.put("value.deserializer", ObjectDeserializer.class);
+    config.put("value.deserializer", InstanceDeserializer.class);
     config.put("bootstrap.servers", broker());
     config.put("fetch.min.bytes", 1);
     config.put("group.id", uniqueGroupIDString());
@@ -262,7 +354,20 @@ public class KafkaStream extends AbstractOptionHandler implements
       return;
 
     // Seek all partitions back to the zero-record
-    m_Consumer.seekToBeginning(Collections.emptyList());
+    if (m_Fetchers == null) {
+      m_Consumer.seekToBeginning(Collections.emptyList());
+    }
+    else {
+      for (Fetcher fetcher : m_Fetchers)
+        fetcher.m_Consumer.seekToBeginning(Collections.emptyList());
+    }
+  }
+
+  /**
+   * Whether the records are polled on background threads.
+   */
+  protected boolean prefetches() {
+    return prefetchOption.getValue() > 0 || consumersOption.getValue() > 1;
   }
 
   /**
@@ -306,15 +411,27 @@ public class KafkaStream extends AbstractOptionHandler implements
 
     // If the buffer isn't there, create it
     if (m_InstanceBuffer == null)
-      m_InstanceBuffer = new LinkedList<>();
+      m_InstanceBuffer = new ArrayDeque<>();
+
+    // Get some instances from Kafka
+    if (prefetches())
+      takePrefetchedInstances();
+    else
+      pollInstances();
+
+    // Save the header if we can and need to
+    cacheHeaderIfNecessary();
+  }
 
+  /**
+   * Polls Kafka for more instances and places them in the buffer.
+   */
+  protected void pollInstances() {
     // Get some records from Kafka
     ConsumerRecords<Long, Instance> records = m_Consumer.poll(WAIT_AS_LONG_AS_POSSIBLE);
 
     // Add each instance to the buffer
     for (ConsumerRecord<Long, Instance> record : records) {
-      System.out.println(record.key());
-
       // Extract the instance from the record
       Instance instance = record.value();
 
@@ -328,9 +445,83 @@ public class KafkaStream extends AbstractOptionHandler implements
       // Add the instance to the buffer
       m_InstanceBuffer.add(record.value());
     }
+  }
 
-    // Save the header if we can and need to
-    cacheHeaderIfNecessary();
+  /**
+   * Moves the instances retrieved by the background threads to the
+   * buffer, waiting for at least one if there are none yet.
+   */
+  protected void takePrefetchedInstances() {
+    startFetchersIfNecessary();
+
+    // Wait for the first instance, then take all those available
+    List<Instance> batch = new ArrayList<>();
+    try {
+      batch.add(m_Prefetched.take());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    }
+    m_Prefetched.drainTo(batch);
+
+    for (Instance instance : batch) {
+      // A consumer has found the end of its partitions
+      if (instance == END_OF_PARTITIONS) {
+        m_ActiveFetchers--;
+        continue;
+      }
+
+      m_InstanceBuffer.add(instance);
+    }
+
+    // Report the failure of a consumer
+    for (Fetcher fetcher : m_Fetchers) {
+      if (fetcher.m_Failure != null) {
+        RuntimeException failure = fetcher.m_Failure;
+        close();
+        throw new RuntimeException("Failed to retrieve instances from Kafka", failure);
+      }
+    }
+
+    // The stream has ended when all consumers have, which leaves
+    // the instances in the buffer
+    if (m_ActiveFetchers == 0) {
+      m_EndOfStreamReached = true;
+      close();
+    }
+  }
+
+  /**
+   * Starts polling Kafka on background threads, if not already started.
+   */
+  protected void startFetchersIfNecessary() {
+    if (m_Prefetched != null)
+      return;
+
+    // A single consumer subscribed to the topic
+    if (m_Fetchers == null)
+      m_Fetchers = Collections.singletonList(new Fetcher(m_Consumer));
+
+    m_Prefetched = new ArrayBlockingQueue<>(Math.max(prefetchOption.getValue(), 1));
+    m_ActiveFetchers = m_Fetchers.size();
+    for (Fetcher fetcher : m_Fetchers)
+      fetcher.start();
+  }
+
+  /**
+   * Stops the background threads, and throws away the instances they
+   * retrieved.
+   */
+  protected void stopFetchers() {
+    if (m_Prefetched == null)
+      return;
+
+    for (Fetcher fetcher : m_Fetchers)
+      fetcher.stop();
+    for (Fetcher fetcher : m_Fetchers)
+      fetcher.join();
+
+    m_Prefetched = null;
   }
 
   /**
@@ -364,4 +555,176 @@ public class KafkaStream extends AbstractOptionHandler implements
   protected boolean bufferIsEmpty() {
     return m_InstanceBuffer == null || m_InstanceBuffer.peek() == null;
   }
+
+  /**
+   * Polls a consumer on a background thread, putting its instances in
+   * the prefetch queue until it finds the end of its partitions or is
+   * stopped. A consumer subscribed to the topic ends at the first record
+   * with a null value; one assigned partitions ends when it has found
+   * such a record in each of them. Only this thread uses the consumer
+   * while it runs.
+   */
+  protected class Fetcher implements Runnable {
+
+    // The consumer to poll
+    protected final Consumer<Long, Instance> m_Consumer;
+
+    // The thread polling the consumer
+    protected Thread m_Thread = null;
+
+    // Whether the thread has been asked to stop
+    protected volatile boolean m_Stopped = false;
+
+    // The exception which stopped the thread, if any
+    protected volatile RuntimeException m_Failure = null;
+
+    // The assigned partitions whose end has been found
+    protected final Set<TopicPartition> m_EndedPartitions = new HashSet<>();
+
+    public Fetcher(Consumer<Long, Instance> consumer) {
+      m_Consumer = consumer;
+    }
+
+    /**
+     * Starts polling on a new daemon thread, resuming the partitions
+     * paused when their end was found before a restart.
+     */
+    public void start() {
+      m_Stopped = false;
+      m_Failure = null;
+      m_Consumer.resume(m_Consumer.paused());
+      m_EndedPartitions.clear();
+      m_Thread = new Thread(this, "KafkaStream-" + topicOption.getValue());
+      m_Thread.setDaemon(true);
+      m_Thread.start();
+    }
+
+    /**
+     * Asks the thread to stop, waking it up if it is polling.
+     */
+    public void stop() {
+      m_Stopped = true;
+      m_Consumer.wakeup();
+    }
+
+    /**
+     * Waits for the thread to stop.
+     */
+    public void join() {
+      if (m_Thread == null)
+        return;
+
+      boolean interrupted = false;
+      while (m_Thread.isAlive()) {
+        try {
+          m_Thread.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted)
+        Thread.currentThread().interrupt();
+      m_Thread = null;
+    }
+
+    @Override
+    public void run() {
+      BlockingQueue<Instance> queue = m_Prefetched;
+      try {
+        while (!m_Stopped) {
+          ConsumerRecords<Long, Instance> records;
+          try {
+            records = m_Consumer.poll(WAIT_AS_LONG_AS_POSSIBLE);
+          } catch (WakeupException e) {
+            // Asked to stop, or left over from an earlier stop
+            continue;
+          }
+
+          for (ConsumerRecord<Long, Instance> record : records) {
+            Instance instance = record.value();
+            TopicPartition partition = new TopicPartition(record.topic(), record.partition());
+
+            // Skip what follows the end of a partition
+            if (m_EndedPartitions.contains(partition))
+              continue;
+
+            // The end of a partition, maybe of all those of this consumer
+            if (instance == null) {
+              if (endPartition(partition)) {
+                put(queue, END_OF_PARTITIONS);
+                return;
+              }
+              continue;
+            }
+
+            put(queue, instance);
+          }
+        }
+      } catch (InterruptedException e) {
+        // Stopped
+      } catch (RuntimeException e) {
+        if (m_Stopped)
+          return;
+
+        // Let the stream find out
+        m_Failure = e;
+        try {
+          put(queue, END_OF_PARTITIONS);
+        } catch (InterruptedException | RuntimeException e2) {
+          // Stopped
+        }
+      }
+    }
+
+    /**
+     * Records the end of a partition, and stops polling it.
+     *
+     * @return whether all the partitions of the consumer have ended
+     */
+    protected boolean endPartition(TopicPartition partition) {
+      if (!m_Consumer.subscription().isEmpty())
+        return true;
+
+      m_EndedPartitions.add(partition);
+      m_Consumer.pause(Collections.singletonList(partition));
+      return m_EndedPartitions.containsAll(m_Consumer.assignment());
+    }
+
+    /**
+     * The partitions still polled for instances.
+     */
+    protected Set<TopicPartition> activePartitions() {
+      Set<TopicPartition> result = new HashSet<>(m_Consumer.assignment());
+      result.removeAll(m_EndedPartitions);
+      return result;
+    }
+
+    /**
+     * Puts an instance in the queue. While the queue is full, the
+     * partitions are paused and polled, so that the consumer keeps
+     * its place in the consumer group.
+     *
+     * @throws InterruptedException if the thread is asked to stop
+     */
+    protected void put(BlockingQueue<Instance> queue, Instance instance) throws InterruptedException {
+      if (queue.offer(instance, QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS))
+        return;
+
+      Set<TopicPartition> active = activePartitions();
+      m_Consumer.pause(active);
+      try {
+        while (!queue.offer(instance, QUEUE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+          if (m_Stopped)
+            throw new InterruptedException();
+          try {
+            m_Consumer.poll(Duration.ZERO);
+          } catch (WakeupException e) {
+            // Checked above
+          }
+        }
+      } finally {
+        m_Consumer.resume(active);
+      }
+    }
+  }
 }
@@ -0,0 +1,263 @@
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the compact instance serialisation, and the Kafka stream
+ * consuming instances from mock consumers.
+ */
+public class KafkaStreamTest {
+
+  private static final String TOPIC = "instances";
+
+  private static InstancesHeader header() {
+    List<Attribute> attributes = new ArrayList<>();
+    attributes.add(new Attribute("x"));
+    attributes.add(new Attribute("y"));
+    attributes.add(new Attribute("class", Arrays.asList("neg", "pos")));
+    Instances dataset = new Instances("test", attributes, 0);
+    dataset.setClassIndex(2);
+    return new InstancesHeader(dataset);
+  }
+
+  private static Instance instance(InstancesHeader header, int i) {
+    Instance instance = new DenseInstance(1 + i % 3, new double[]{i, -0.5 * i, i % 2});
+    instance.setDataset(header);
+    return instance;
+  }
+
+  @Test
+  public void testSerialization() {
+    InstancesHeader header = header();
+    InstanceSerializer serializer = new InstanceSerializer();
+    InstanceDeserializer deserializer = new InstanceDeserializer();
+
+    // The header is only sent with the first instance
+    byte[] first = serializer.serialize(TOPIC, instance(header, 1));
+    byte[] second = serializer.serialize(TOPIC, instance(header, 2));
+    assertEquals(2 + 8 + 8 + 4 + 3 * 8, second.length);
+    assertTrue(first.length > second.length);
+    assertTrue(serializer.serialize("other", instance(header, 3)).length > second.length);
+
+    for (byte[] bytes : Arrays.asList(first, second)) {
+      Instance instance = deserializer.deserialize(TOPIC, bytes);
+      int i = bytes == first ? 1 : 2;
+      assertArrayEquals(instance(header, i).toDoubleArray(), instance.toDoubleArray(), 0);
+      assertEquals(1 + i % 3, instance.weight(), 0);
+      assertEquals(3, instance.numAttributes());
+      assertEquals(2, instance.classIndex());
+      assertEquals("pos", instance.classAttribute().value(1));
+    }
+
+    // Sparse instances keep their indices
+    Instance sparse = new SparseInstance(2, new double[]{4, 1}, new int[]{1, 2}, 3);
+    sparse.setDataset(header);
+    Instance copy = deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, sparse));
+    assertTrue(copy instanceof SparseInstance);
+    assertEquals(2, copy.numValues());
+    assertEquals(2, copy.index(1));
+    assertArrayEquals(new double[]{0, 4, 1}, copy.toDoubleArray(), 0);
+
+    // Instances serialised by Java are read too
+    byte[] java = new ObjectSerializer<Instance>().serialize(TOPIC, instance(header, 5));
+    assertArrayEquals(instance(header, 5).toDoubleArray(), deserializer.deserialize(TOPIC, java).toDoubleArray(), 0);
+
+    assertEquals(null, deserializer.deserialize(TOPIC, null));
+  }
+
+  @Test
+  public void testMissingHeader() {
+    InstancesHeader header = header();
+    InstanceSerializer serializer = new InstanceSerializer();
+    serializer.serialize(TOPIC, instance(header, 1));
+    byte[] withoutHeader = serializer.serialize(TOPIC, instance(header, 2));
+
+    InstanceDeserializer deserializer = new InstanceDeserializer();
+    deserializer.configure(Collections.singletonMap(InstanceDeserializer.HEADER_TIMEOUT_CONFIG, "10"), false);
+    try {
+      deserializer.deserialize(TOPIC, withoutHeader);
+      fail("The header hasn't been received");
+    } catch (RuntimeException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Stream reading from mock consumers, which are given instance i in
+   * partition i % numPartitions, and a null record at the end of each
+   * partition. The partitions are filled again whenever the consumer
+   * seeks back to their beginning.
+   */
+  protected static class MockKafkaStream extends KafkaStream {
+
+    private static final long serialVersionUID = 1L;
+
+    protected final int m_NumPartitions;
+
+    protected final int m_NumInstances;
+
+    protected final InstancesHeader m_TestHeader = header();
+
+    protected int m_ConsumersCreated = 0;
+
+    public MockKafkaStream(int numPartitions, int numInstances) {
+      m_NumPartitions = numPartitions;
+      m_NumInstances = numInstances;
+      topicOption.setValue(TOPIC);
+    }
+
+    @Override
+    protected Consumer<Long, Instance> createConsumer() {
+      m_ConsumersCreated++;
+      final List<TopicPartition> partitions = new ArrayList<>();
+      List<PartitionInfo> infos = new ArrayList<>();
+      Map<TopicPartition, Long> offsets = new HashMap<>();
+      for (int p = 0; p < m_NumPartitions; p++) {
+        partitions.add(new TopicPartition(TOPIC, p));
+        infos.add(new PartitionInfo(TOPIC, p, null, null, null));
+        offsets.put(partitions.get(p), 0L);
+      }
+      MockConsumer<Long, Instance> consumer = new MockConsumer<Long, Instance>(OffsetResetStrategy.EARLIEST) {
+        @Override
+        public synchronized void seekToBeginning(Collection<TopicPartition> seekPartitions) {
+          // No partitions stand for all of them, as with Kafka consumers
+          super.seekToBeginning(seekPartitions.isEmpty() ? assignment() : seekPartitions);
+
+          // Fill the partitions assigned to the consumer on its next poll
+          schedulePollTask(new Runnable() {
+            @Override
+            public void run() {
+              fill(partitions);
+            }
+          });
+        }
+
+        private void fill(List<TopicPartition> partitions) {
+          if (!subscription().isEmpty() && assignment().isEmpty())
+            rebalance(partitions);
+          long[] offsets = new long[m_NumPartitions];
+          for (int i = 0; i < m_NumInstances + m_NumPartitions; i++) {
+            int p = i % m_NumPartitions;
+            if (!assignment().contains(partitions.get(p)))
+              continue;
+            Instance value = i < m_NumInstances ? instance(m_TestHeader, i) : null;
+            addRecord(new ConsumerRecord<>(TOPIC, p, offsets[p]++, (long) i, value));
+          }
+        }
+      };
+      consumer.updatePartitions(TOPIC, infos);
+      consumer.updateBeginningOffsets(offsets);
+
+      return consumer;
+    }
+  }
+
+  private static List<Double> consume(KafkaStream stream) {
+    assertNotNull(stream.getHeader());
+    List<Double> result = new ArrayList<>();
+    while (stream.hasMoreInstances())
+      result.add(stream.nextInstance().getData().value(0));
+    return result;
+  }
+
+  private static List<Double> expected(int numInstances) {
+    List<Double> result = new ArrayList<>();
+    for (int i = 0; i < numInstances; i++)
+      result.add((double) i);
+    return result;
+  }
+
+  @Test
+  public void testPollOnCallingThread() {
+    MockKafkaStream stream = new MockKafkaStream(1, 50);
+    stream.prefetchOption.setValue(0);
+    stream.prepareForUse();
+    assertEquals(expected(50), consume(stream));
+    assertEquals(3, stream.getHeader().numAttributes());
+  }
+
+  @Test
+  public void testPrefetch() {
+    // A queue smaller than the stream makes the consumer wait for room
+    MockKafkaStream stream = new MockKafkaStream(1, 1000);
+    stream.prefetchOption.setValue(7);
+    stream.prepareForUse();
+    assertEquals(expected(1000), consume(stream));
+    assertEquals(0, stream.estimatedRemainingInstances());
+
+    // Starts again with a new consumer
+    stream.restart();
+    assertEquals(expected(1000), consume(stream));
+    assertEquals(2, stream.m_ConsumersCreated);
+
+    // Stopped half way through
+    stream.restart();
+    for (int i = 0; i < 100; i++)
+      assertEquals(i, stream.nextInstance().getData().value(0), 0);
+    stream.close();
+    assertNull(stream.m_Fetchers);
+  }
+
+  @Test
+  public void testPartitionsInParallel() {
+    MockKafkaStream stream = new MockKafkaStream(5, 1003);
+    stream.consumersOption.setValue(3);
+    stream.prefetchOption.setValue(10);
+    stream.prepareForUse();
+    List<Double> result = consume(stream);
+    assertEquals(3, stream.m_ConsumersCreated);
+    assertEquals(1003, result.size());
+    Set<Double> distinct = new HashSet<>(result);
+    assertEquals(new HashSet<>(expected(1003)), distinct);
+  }
+
+  @Test(timeout = 10000)
+  public void testRestartAfterEndOfPartitions() {
+    MockKafkaStream stream = new MockKafkaStream(5, 1003);
+    stream.consumersOption.setValue(3);
+    stream.prefetchOption.setValue(10);
+    stream.prepareForUse();
+
+    // With at most a few instances left in the queue, the consumers
+    // have found the end of some of their partitions
+    for (int i = 0; i < 900; i++)
+      assertNotNull(stream.nextInstance());
+
+    // The ended partitions are polled again from their beginning
+    stream.restart();
+    List<Double> result = consume(stream);
+    assertEquals(3, stream.m_ConsumersCreated);
+    assertEquals(1003, result.size());
+    assertEquals(new HashSet<>(expected(1003)), new HashSet<>(result));
+  }
+}
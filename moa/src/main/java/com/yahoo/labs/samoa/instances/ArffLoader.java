@@ -137,6 +137,38 @@ public class ArffLoader {
 
     }
 
+    /**
+     * Reads the next instance into the given dense instance, overwriting its
+     * weight and values, so that no instance is allocated for dense rows.
+     * Sparse rows are expanded into the dense instance.
+     *
+     * @param instance the dense instance to reuse
+     * @return true if an instance was read, false at the end of the file
+     */
+    public boolean readInstance(Instance instance) {
+        while (streamTokenizer.ttype == StreamTokenizer.TT_EOL) {
+            try {
+                streamTokenizer.nextToken();
+            } catch (IOException ex) {
+                Logger.getLogger(ArffLoader.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        int numAttributes = this.instanceInformation.numAttributes();
+        instance.setWeight(1.0);
+        if (streamTokenizer.ttype == '{') {
+            Instance sparse = readInstanceSparse();
+            for (int i = 0; i < numAttributes; i++) {
+                instance.setValue(i, sparse.value(i));
+            }
+            return true;
+        }
+        int numValues = readInstanceDense(instance);
+        for (int i = numValues; i < numAttributes; i++) {
+            instance.setValue(i, 0.0);
+        }
+        return numValues > 0;
+    }
+
     /**
      * Reads a dense instance from the file.
      *
@@ -144,6 +176,16 @@ public class ArffLoader {
      */
     public Instance readInstanceDense() {
         Instance instance = newDenseInstance(this.instanceInformation.numAttributes());
+        return (readInstanceDense(instance) > 0) ? instance : null;
+    }
+
+    /**
+     * Reads a dense instance from the file into the given instance.
+     *
+     * @param instance the instance to set the values of
+     * @return the number of values read, 0 at the end of the file
+     */
+    protected int readInstanceDense(Instance instance) {
         //System.out.println(this.instanceInformation.numAttributes());
         int numAttribute = 0;
         try {
@@ -182,7 +224,7 @@ public class ArffLoader {
         } catch (IOException ex) {
             Logger.getLogger(ArffLoader.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return (numAttribute > 0) ? instance : null;
+        return numAttribute;
     }
 
     protected void setValue(Instance instance, int numAttribute, double value, boolean isNumber) {
@@ -484,6 +484,17 @@ public class Instances implements Serializable {
         }
     }
 
+    /**
+     * Reads the next instance of the ARFF file into the given dense instance,
+     * instead of adding a new instance to this dataset.
+     *
+     * @param inst the dense instance to overwrite
+     * @return true if an instance was read, false at the end of the file
+     */
+    public boolean readInstanceInto(Instance inst) {
+        return arff.readInstance(inst);
+    }
+
     /**
      * Delete.
      */
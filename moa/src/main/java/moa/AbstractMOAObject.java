@@ -19,8 +19,8 @@
  */
 package moa;
 
-import moa.core.SerializeUtils;
 import moa.core.SizeOf;
+import moa.core.StructuralCopier;
 
 /**
  * Abstract MOA Object. All classes that are serializable, copiable,
@@ -54,26 +54,30 @@ public abstract class AbstractMOAObject implements MOAObject {
     }
 
     /**
-     * This method produces a copy of an object.
+     * This method produces a copy of an object, the same as a serialization
+     * round trip would give.
      *
      * @param obj object to copy
      * @return a copy of the object
+     * @see StructuralCopier
      */
     public static MOAObject copy(MOAObject obj) {
         try {
-            return (MOAObject) SerializeUtils.copyObject(obj);
+            return (MOAObject) StructuralCopier.copyObject(obj);
         } catch (Exception e) {
             throw new RuntimeException("Object copy failed.", e);
         }
     }
 
     /**
-     * Gets the memory size of an object.
+     * Gets the memory size of an object, estimated if it is
+     * {@link moa.core.MemoryAccountable} and measured by the SizeOf agent
+     * otherwise.
      *
      * @param obj object to measure the memory size
      * @return the memory size of this object
      */
     public static int measureByteSize(MOAObject obj) {
-        return (int) SizeOf.fullSizeOf(obj);
+        return (int) Math.min(SizeOf.measuredSizeOf(obj), Integer.MAX_VALUE);
     }
 }
@@ -434,6 +434,19 @@ public abstract class AbstractClassifier extends AbstractOptionHandler
         return insts.classIndex() > index ? index : index + 1;
     }
 
+    /**
+     * Gets the index of the attribute in the learner,
+     * given the index of the attribute in the instance.
+     *
+     * @param index the index of the attribute in the instance, not the class index
+     * @param inst the instance
+     * @return the index in the learner
+     */
+    protected static int instanceAttIndexToModelAttIndex(int index,
+            Instance inst) {
+        return inst.classIndex() > index ? index : index - 1;
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         // We are restricting classifiers based on view mode
@@ -30,7 +30,10 @@ import moa.classifiers.core.attributeclassobservers.NominalAttributeClassObserve
 import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.MemoryAccountable;
+import moa.core.SizeOf;
 import moa.core.StringUtils;
+import com.github.javacliparser.FlagOption;
 import com.yahoo.labs.samoa.instances.Instance;
 
 /**
@@ -43,13 +46,14 @@ import com.yahoo.labs.samoa.instances.Instance;
  * class C to which it belongs with high accuracy.</p>
  *
  * <p>Parameters:</p> <ul> <li>-r : Seed for random behaviour of the
- * classifier</li> </ul>
+ * classifier</li> <li>-x : Only observe the values present in sparse instances,
+ * treating the absent zeros as unobserved</li> </ul>
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
 public class NaiveBayes extends AbstractClassifier  implements MultiClassClassifier,
-                                                               CapabilitiesHandler {
+                                                               CapabilitiesHandler, MemoryAccountable {
 
     private static final long serialVersionUID = 1L;
 
@@ -57,6 +61,10 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
     public String getPurposeString() {
         return "Naive Bayes classifier: performs classic bayesian prediction while making naive assumption that all inputs are independent.";
     }
+
+    public FlagOption skipSparseZerosOption = new FlagOption("skipSparseZeros", 'x',
+            "Only observe the values present in sparse instances, treating the absent zeros as unobserved.");
+
     protected DoubleVector observedClassDistribution;
 
     protected AutoExpandVector<AttributeClassObserver> attributeObservers;
@@ -70,22 +78,37 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
     @Override
     public void trainOnInstanceImpl(Instance inst) {
         this.observedClassDistribution.addToValue((int) inst.classValue(), inst.weight());
-        for (int i = 0; i < inst.numAttributes() - 1; i++) {
-            int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
-            AttributeClassObserver obs = this.attributeObservers.get(i);
-            if (obs == null) {
-                obs = inst.attribute(instAttIndex).isNominal() ? newNominalClassObserver()
-                        : newNumericClassObserver();
-                this.attributeObservers.set(i, obs);
+        if (this.skipSparseZerosOption.isSet()) {
+            // only the values stored, without a binary search per attribute
+            for (int p = 0; p < inst.numValues(); p++) {
+                int instAttIndex = inst.index(p);
+                if (instAttIndex != inst.classIndex()) {
+                    observeAttribute(instanceAttIndexToModelAttIndex(instAttIndex, inst),
+                            instAttIndex, inst.valueSparse(p), inst);
+                }
+            }
+        } else {
+            for (int i = 0; i < inst.numAttributes() - 1; i++) {
+                int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
+                observeAttribute(i, instAttIndex, inst.value(instAttIndex), inst);
             }
-            obs.observeAttributeClass(inst.value(instAttIndex), (int) inst.classValue(), inst.weight());
         }
     }
 
+    protected void observeAttribute(int attIndex, int instAttIndex, double value, Instance inst) {
+        AttributeClassObserver obs = this.attributeObservers.get(attIndex);
+        if (obs == null) {
+            obs = inst.attribute(instAttIndex).isNominal() ? newNominalClassObserver()
+                    : newNumericClassObserver();
+            this.attributeObservers.set(attIndex, obs);
+        }
+        obs.observeAttributeClass(value, (int) inst.classValue(), inst.weight());
+    }
+
     @Override
     public double[] getVotesForInstance(Instance inst) {
         return doNaiveBayesPrediction(inst, this.observedClassDistribution,
-                this.attributeObservers);
+                this.attributeObservers, this.skipSparseZerosOption.isSet());
     }
 
     @Override
@@ -124,6 +147,11 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
         return false;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
     protected AttributeClassObserver newNominalClassObserver() {
         return new NominalAttributeClassObserver();
     }
@@ -153,6 +181,38 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
         return votes;
     }
 
+    /**
+     * Naive Bayes prediction that, if skipSparseZeros is set, only uses the
+     * values present in the instance, as learned with that option. For dense
+     * instances both predictions are the same.
+     */
+    public static double[] doNaiveBayesPrediction(Instance inst,
+            DoubleVector observedClassDistribution,
+            AutoExpandVector<AttributeClassObserver> attributeObservers,
+            boolean skipSparseZeros) {
+        if (!skipSparseZeros) {
+            return doNaiveBayesPrediction(inst, observedClassDistribution,
+                    attributeObservers);
+        }
+        double[] votes = new double[observedClassDistribution.numValues()];
+        double observedClassSum = observedClassDistribution.sumOfValues();
+        for (int classIndex = 0; classIndex < votes.length; classIndex++) {
+            votes[classIndex] = observedClassDistribution.getValue(classIndex)
+                    / observedClassSum;
+            for (int p = 0; p < inst.numValues(); p++) {
+                int instAttIndex = inst.index(p);
+                if (instAttIndex != inst.classIndex() && !inst.isMissingSparse(p)) {
+                    AttributeClassObserver obs = attributeObservers.get(
+                            instanceAttIndexToModelAttIndex(instAttIndex, inst));
+                    if (obs != null) {
+                        votes[classIndex] *= obs.probabilityOfAttributeValueGivenClass(inst.valueSparse(p), classIndex);
+                    }
+                }
+            }
+        }
+        return votes;
+    }
+
     // Naive Bayes Prediction using log10 for VFDR rules 
     public static double[] doNaiveBayesPredictionLog(Instance inst,
             DoubleVector observedClassDistribution,
@@ -193,4 +253,11 @@ public class NaiveBayes extends AbstractClassifier  implements MultiClassClassif
         else
             return new ImmutableCapabilities(Capability.VIEW_STANDARD);
     }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize()
+                + SizeOf.estimatedSizeOf(this.observedClassDistribution)
+                + SizeOf.estimatedSizeOf(this.attributeObservers);
+    }
 }
@@ -0,0 +1,284 @@
+/*
+ *    CompactBinaryTreeNumericAttributeClassObserver.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.util.Arrays;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.DoubleVector;
+import moa.core.MemoryAccountable;
+import moa.core.ObjectRepository;
+import moa.core.SizeOf;
+import moa.options.AbstractOptionHandler;
+import moa.options.OptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Class for observing the class data distribution for a numeric attribute
+ * using a binary tree, with the nodes of the tree stored in parallel arrays.
+ *
+ * <p>It computes the same split suggestions as
+ * {@link BinaryTreeNumericAttributeClassObserver}, but without an object and
+ * two vectors per observed value, so it needs a fraction of the memory.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class CompactBinaryTreeNumericAttributeClassObserver extends AbstractOptionHandler
+        implements NumericAttributeClassObserver, MemoryAccountable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int INITIAL_CAPACITY = 8;
+
+    protected int numNodes;
+
+    protected int numClasses;
+
+    protected double[] cutPoints = new double[0];
+
+    /** Index of the left child of each node, -1 if none. */
+    protected int[] left = new int[0];
+
+    /** Index of the right child of each node, -1 if none. */
+    protected int[] right = new int[0];
+
+    /** Class counts, numClasses left of the cut point then numClasses right of it, per node. */
+    protected double[] counts = new double[0];
+
+    /** Length of the left class counts of each node, as a DoubleVector would have. */
+    protected int[] leftLengths = new int[0];
+
+    /** Length of the right class counts of each node, as a DoubleVector would have. */
+    protected int[] rightLengths = new int[0];
+
+    @Override
+    public OptionHandler copy() {
+        CompactBinaryTreeNumericAttributeClassObserver copy = new CompactBinaryTreeNumericAttributeClassObserver();
+        copy.numNodes = this.numNodes;
+        copy.numClasses = this.numClasses;
+        copy.cutPoints = Arrays.copyOf(this.cutPoints, this.numNodes);
+        copy.left = Arrays.copyOf(this.left, this.numNodes);
+        copy.right = Arrays.copyOf(this.right, this.numNodes);
+        copy.counts = Arrays.copyOf(this.counts, this.numNodes * 2 * this.numClasses);
+        copy.leftLengths = Arrays.copyOf(this.leftLengths, this.numNodes);
+        copy.rightLengths = Arrays.copyOf(this.rightLengths, this.numNodes);
+        return copy;
+    }
+
+    public int numNodes() {
+        return this.numNodes;
+    }
+
+    @Override
+    public void observeAttributeClass(double attVal, int classVal, double weight) {
+        if (Double.isNaN(attVal)) { //Instance.isMissingValue(attVal)
+        } else {
+            if (classVal >= this.numClasses) {
+                growClasses(classVal + 1);
+            }
+            if (this.numNodes == 0) {
+                newNode(attVal, classVal, weight);
+                return;
+            }
+            int node = 0;
+            while (true) {
+                if (attVal == this.cutPoints[node]) {
+                    addToLeft(node, classVal, weight);
+                    return;
+                } else if (attVal <= this.cutPoints[node]) {
+                    addToLeft(node, classVal, weight);
+                    if (this.left[node] < 0) {
+                        int child = newNode(attVal, classVal, weight);
+                        this.left[node] = child;
+                        return;
+                    }
+                    node = this.left[node];
+                } else { // val > cut_point
+                    addToRight(node, classVal, weight);
+                    if (this.right[node] < 0) {
+                        int child = newNode(attVal, classVal, weight);
+                        this.right[node] = child;
+                        return;
+                    }
+                    node = this.right[node];
+                }
+            }
+        }
+    }
+
+    protected void addToLeft(int node, int classVal, double weight) {
+        this.counts[node * 2 * this.numClasses + classVal] += weight;
+        if (classVal >= this.leftLengths[node]) {
+            this.leftLengths[node] = classVal + 1;
+        }
+    }
+
+    protected void addToRight(int node, int classVal, double weight) {
+        this.counts[(node * 2 + 1) * this.numClasses + classVal] += weight;
+        if (classVal >= this.rightLengths[node]) {
+            this.rightLengths[node] = classVal + 1;
+        }
+    }
+
+    protected int newNode(double val, int label, double weight) {
+        if (this.numNodes == this.cutPoints.length) {
+            int capacity = Math.max(INITIAL_CAPACITY, this.numNodes + (this.numNodes >> 1));
+            this.cutPoints = Arrays.copyOf(this.cutPoints, capacity);
+            this.left = Arrays.copyOf(this.left, capacity);
+            this.right = Arrays.copyOf(this.right, capacity);
+            this.counts = Arrays.copyOf(this.counts, capacity * 2 * this.numClasses);
+            this.leftLengths = Arrays.copyOf(this.leftLengths, capacity);
+            this.rightLengths = Arrays.copyOf(this.rightLengths, capacity);
+        }
+        int node = this.numNodes++;
+        this.cutPoints[node] = val;
+        this.left[node] = -1;
+        this.right[node] = -1;
+        addToLeft(node, label, weight);
+        return node;
+    }
+
+    protected void growClasses(int newNumClasses) {
+        double[] newCounts = new double[this.cutPoints.length * 2 * newNumClasses];
+        for (int i = 0; i < this.numNodes * 2; i++) {
+            System.arraycopy(this.counts, i * this.numClasses, newCounts,
+                    i * newNumClasses, this.numClasses);
+        }
+        this.counts = newCounts;
+        this.numClasses = newNumClasses;
+    }
+
+    protected double[] classCountsLeft(int node) {
+        int offset = node * 2 * this.numClasses;
+        return Arrays.copyOfRange(this.counts, offset, offset + this.leftLengths[node]);
+    }
+
+    protected double[] classCountsRight(int node) {
+        int offset = (node * 2 + 1) * this.numClasses;
+        return Arrays.copyOfRange(this.counts, offset, offset + this.rightLengths[node]);
+    }
+
+    /**
+     * Returns 0, like {@link BinaryTreeNumericAttributeClassObserver}, so that
+     * naive Bayes leaves predict the same with either observer.
+     */
+    @Override
+    public double probabilityOfAttributeValueGivenClass(double attVal,
+            int classVal) {
+        return 0.0;
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly) {
+        return searchForBestSplitOption(this.numNodes > 0 ? 0 : -1, null, null, null, null, false,
+                criterion, preSplitDist, attIndex);
+    }
+
+    protected AttributeSplitSuggestion searchForBestSplitOption(
+            int currentNode, AttributeSplitSuggestion currentBestOption,
+            double[] actualParentLeft,
+            double[] parentLeft, double[] parentRight, boolean leftChild,
+            SplitCriterion criterion, double[] preSplitDist, int attIndex) {
+        if (currentNode < 0) {
+            return currentBestOption;
+        }
+        double[] classCountsLeft = classCountsLeft(currentNode);
+        double[] classCountsRight = classCountsRight(currentNode);
+        DoubleVector leftDist = new DoubleVector();
+        DoubleVector rightDist = new DoubleVector();
+        if (parentLeft == null) {
+            leftDist.addValues(classCountsLeft);
+            rightDist.addValues(classCountsRight);
+        } else {
+            leftDist.addValues(parentLeft);
+            rightDist.addValues(parentRight);
+            if (leftChild) {
+                //get the exact statistics of the parent value
+                DoubleVector exactParentDist = new DoubleVector();
+                exactParentDist.addValues(actualParentLeft);
+                exactParentDist.subtractValues(classCountsLeft);
+                exactParentDist.subtractValues(classCountsRight);
+
+                // move the subtrees
+                leftDist.subtractValues(classCountsRight);
+                rightDist.addValues(classCountsRight);
+
+                // move the exact value from the parent
+                rightDist.addValues(exactParentDist);
+                leftDist.subtractValues(exactParentDist);
+
+            } else {
+                leftDist.addValues(classCountsLeft);
+                rightDist.subtractValues(classCountsLeft);
+            }
+        }
+        double[][] postSplitDists = new double[][]{leftDist.getArrayRef(),
+            rightDist.getArrayRef()};
+        double merit = criterion.getMeritOfSplit(preSplitDist, postSplitDists);
+        if ((currentBestOption == null) || (merit > currentBestOption.merit)) {
+            currentBestOption = new AttributeSplitSuggestion(
+                    new NumericAttributeBinaryTest(attIndex,
+                    this.cutPoints[currentNode], true), postSplitDists, merit);
+
+        }
+        currentBestOption = searchForBestSplitOption(this.left[currentNode],
+                currentBestOption, classCountsLeft, postSplitDists[0], postSplitDists[1], true,
+                criterion, preSplitDist, attIndex);
+        currentBestOption = searchForBestSplitOption(this.right[currentNode],
+                currentBestOption, classCountsLeft, postSplitDists[0], postSplitDists[1], false,
+                criterion, preSplitDist, attIndex);
+        return currentBestOption;
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        sb.append("Binary tree of ");
+        sb.append(this.numNodes);
+        sb.append(" cut points, ");
+        sb.append(this.numClasses);
+        sb.append(" classes");
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+        // no options to prepare
+    }
+
+    /**
+     * Not supported: this observer keeps class distributions. Regression
+     * targets are observed by {@link BinaryTreeNumericAttributeClassObserverRegression}.
+     */
+    @Override
+    public void observeAttributeTarget(double attVal, double target) {
+        throw new UnsupportedOperationException(getClass().getSimpleName()
+                + " observes class labels, not regression targets.");
+    }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize() + SizeOf.sizeOfArray(this.cutPoints)
+                + SizeOf.sizeOfArray(this.left) + SizeOf.sizeOfArray(this.right)
+                + SizeOf.sizeOfArray(this.counts) + SizeOf.sizeOfArray(this.leftLengths)
+                + SizeOf.sizeOfArray(this.rightLengths);
+    }
+}
@@ -0,0 +1,450 @@
+/*
+ *    CompactFIMTDDNumericAttributeClassObserver.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.util.Arrays;
+
+import com.github.javacliparser.FlagOption;
+import com.github.javacliparser.IntOption;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.Measurement;
+import moa.core.MemoryAccountable;
+import moa.core.SizeOf;
+import moa.core.StringUtils;
+
+/**
+ * Class for observing the target values for a numeric attribute as FIMTDD
+ * does, with the statistics kept in sorted arrays instead of an extended
+ * binary search tree (E-BST).
+ *
+ * <p>Each bin holds the count, sum and sum of squares of the targets of all
+ * the values observed from its least value up to its greatest value, which
+ * is its cut point. Without a bin limit there is a bin per distinct value,
+ * and the split suggestions are those of
+ * {@link FIMTDDNumericAttributeClassObserver}. With a limit, adjacent bins
+ * with small counts are merged and later values falling in a bin are added
+ * to it: fewer cut points are evaluated, but the statistics on either side
+ * of them stay exact.</p>
+ *
+ * <p>New values are buffered and merged into the bins in bulk. When
+ * comparing is enabled, an E-BST observes the same values, and
+ * {@link #getExactnessMeasurements()} reports how the suggestions differ
+ * from its own.</p>
+ */
+public class CompactFIMTDDNumericAttributeClassObserver extends FIMTDDNumericAttributeClassObserver
+        implements MemoryAccountable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int INITIAL_CAPACITY = 8;
+
+    protected static final int MIN_BUFFER_SIZE = 32;
+
+    public IntOption maxBinsOption = new IntOption("maxBins", 'b',
+            "Maximum number of bins, 0 to keep a bin per distinct value.",
+            0, 0, Integer.MAX_VALUE);
+
+    public FlagOption compareToEBSTOption = new FlagOption("compareToEBST", 'c',
+            "Keep an E-BST alongside to report the accuracy of the split suggestions.");
+
+    public FlagOption pruneBadSplitsOption = new FlagOption("pruneBadSplits", 'p',
+            "Remove the bad split points when asked to, which the E-BST does not do.");
+
+    protected int numBins;
+
+    /** Least value of each bin, increasing. */
+    protected double[] lows = new double[0];
+
+    /** Greatest value of each bin, below the least value of the next one. */
+    protected double[] cutPoints = new double[0];
+
+    protected double[] counts = new double[0];
+
+    protected double[] sums = new double[0];
+
+    protected double[] sumSqs = new double[0];
+
+    protected int bufferSize;
+
+    protected double[] bufferValues = new double[0];
+
+    protected double[] bufferTargets = new double[0];
+
+    /** E-BST observing the same values, null if not compared to. */
+    protected FIMTDDNumericAttributeClassObserver reference;
+
+    protected int numComparisons;
+
+    protected int numSameSplits;
+
+    protected double maxMeritDifference;
+
+    public int numBins() {
+        flush();
+        return this.numBins;
+    }
+
+    /**
+     * Observes a value as the E-BST does, counting it once whatever its
+     * weight.
+     */
+    @Override
+    public void observeAttributeClass(double attVal, double classVal, double weight) {
+        if (Double.isNaN(attVal)) { //Instance.isMissingValue(attVal)
+        } else {
+            if (this.compareToEBSTOption.isSet()) {
+                if ((this.reference == null) && (this.numBins == 0) && (this.bufferSize == 0)) {
+                    this.reference = new FIMTDDNumericAttributeClassObserver();
+                }
+                if (this.reference != null) {
+                    this.reference.observeAttributeClass(attVal, classVal, weight);
+                }
+            }
+            if (this.bufferSize == this.bufferValues.length) {
+                int limit = Math.max(MIN_BUFFER_SIZE, this.numBins >> 3);
+                if (this.bufferSize >= limit) {
+                    flush();
+                } else {
+                    int capacity = Math.min(limit, Math.max(INITIAL_CAPACITY, 2 * this.bufferSize));
+                    this.bufferValues = Arrays.copyOf(this.bufferValues, capacity);
+                    this.bufferTargets = Arrays.copyOf(this.bufferTargets, capacity);
+                }
+            }
+            // Adding 0.0 turns -0.0 into 0.0, which the E-BST does not tell apart
+            this.bufferValues[this.bufferSize] = attVal + 0.0;
+            this.bufferTargets[this.bufferSize] = classVal;
+            this.bufferSize++;
+        }
+    }
+
+    /**
+     * Merges the buffered values into the bins.
+     */
+    protected void flush() {
+        if (this.bufferSize == 0) {
+            return;
+        }
+        double[] values = Arrays.copyOf(this.bufferValues, this.bufferSize);
+        Arrays.sort(values);
+        int numValues = 0;
+        for (int i = 0; i < values.length; i++) {
+            if ((numValues == 0) || (values[i] != values[numValues - 1])) {
+                values[numValues++] = values[i];
+            }
+        }
+        double[] valueCounts = new double[numValues];
+        double[] valueSums = new double[numValues];
+        double[] valueSumSqs = new double[numValues];
+        for (int i = 0; i < this.bufferSize; i++) {
+            int j = Arrays.binarySearch(values, 0, numValues, this.bufferValues[i]);
+            double target = this.bufferTargets[i];
+            valueCounts[j] += 1;
+            valueSums[j] += target;
+            valueSumSqs[j] += target * target;
+        }
+        this.bufferSize = 0;
+        mergeBins(values, values, valueCounts, valueSums, valueSumSqs, numValues);
+    }
+
+    /**
+     * Merges sorted bins into the bins. Bins whose values overlap are
+     * combined, so that each bin still holds all the values observed
+     * between its least and greatest value. Adjacent bins are then merged
+     * down to the bin limit.
+     */
+    protected void mergeBins(double[] otherLows, double[] otherCutPoints, double[] otherCounts,
+            double[] otherSums, double[] otherSumSqs, int length) {
+        int capacity = this.cutPoints.length;
+        if (this.numBins + length > capacity) {
+            capacity = Math.max(this.numBins + length, Math.max(INITIAL_CAPACITY, capacity + (capacity >> 1)));
+        }
+        double[] mergedLows = new double[capacity];
+        double[] mergedCutPoints = new double[capacity];
+        double[] mergedCounts = new double[capacity];
+        double[] mergedSums = new double[capacity];
+        double[] mergedSumSqs = new double[capacity];
+        int numMerged = 0;
+        for (int i = 0, j = 0; (i < this.numBins) || (j < length);) {
+            double low;
+            double cutPoint;
+            double count;
+            double sum;
+            double sumSq;
+            if ((j == length) || ((i < this.numBins) && (this.lows[i] <= otherLows[j]))) {
+                low = this.lows[i];
+                cutPoint = this.cutPoints[i];
+                count = this.counts[i];
+                sum = this.sums[i];
+                sumSq = this.sumSqs[i];
+                i++;
+            } else {
+                low = otherLows[j];
+                cutPoint = otherCutPoints[j];
+                count = otherCounts[j];
+                sum = otherSums[j];
+                sumSq = otherSumSqs[j];
+                j++;
+            }
+            int last = numMerged - 1;
+            if ((last >= 0) && (low <= mergedCutPoints[last])) {
+                mergedCutPoints[last] = Math.max(mergedCutPoints[last], cutPoint);
+                mergedCounts[last] += count;
+                mergedSums[last] += sum;
+                mergedSumSqs[last] += sumSq;
+            } else {
+                mergedLows[numMerged] = low;
+                mergedCutPoints[numMerged] = cutPoint;
+                mergedCounts[numMerged] = count;
+                mergedSums[numMerged] = sum;
+                mergedSumSqs[numMerged] = sumSq;
+                numMerged++;
+            }
+        }
+        this.numBins = numMerged;
+        this.lows = mergedLows;
+        this.cutPoints = mergedCutPoints;
+        this.counts = mergedCounts;
+        this.sums = mergedSums;
+        this.sumSqs = mergedSumSqs;
+        int maxBins = this.maxBinsOption.getValue();
+        if ((maxBins > 0) && (this.numBins > maxBins)) {
+            compress(maxBins);
+        }
+    }
+
+    /**
+     * Merges adjacent bins, as long as their counts together stay below a
+     * limit, until at most the given number of bins remain. Bins are only
+     * ever merged, so the limit grows with the total count, and bins that
+     * already hold many values are not merged further.
+     */
+    protected void compress(int maxBins) {
+        double total = 0;
+        for (int i = 0; i < this.numBins; i++) {
+            total += this.counts[i];
+        }
+        double maxCount = 2 * total / maxBins;
+        while (this.numBins > maxBins) {
+            int numCompressed = 0;
+            for (int i = 0; i < this.numBins; i++) {
+                int last = numCompressed - 1;
+                if ((last >= 0) && (this.counts[last] + this.counts[i] <= maxCount)) {
+                    setBin(last, this.lows[last], this.cutPoints[i], this.counts[last] + this.counts[i],
+                            this.sums[last] + this.sums[i], this.sumSqs[last] + this.sumSqs[i]);
+                } else {
+                    setBin(numCompressed++, this.lows[i], this.cutPoints[i], this.counts[i],
+                            this.sums[i], this.sumSqs[i]);
+                }
+            }
+            this.numBins = numCompressed;
+            maxCount *= 1.5;
+        }
+    }
+
+    protected void setBin(int bin, double low, double cutPoint, double count, double sum, double sumSq) {
+        this.lows[bin] = low;
+        this.cutPoints[bin] = cutPoint;
+        this.counts[bin] = count;
+        this.sums[bin] = sum;
+        this.sumSqs[bin] = sumSq;
+    }
+
+    /**
+     * Adds the statistics of another observer of the same attribute, e.g.
+     * one that observed another part of the stream. The E-BST cannot merge,
+     * so the comparison to it stops.
+     *
+     * @param other the observer to add
+     */
+    public void merge(CompactFIMTDDNumericAttributeClassObserver other) {
+        flush();
+        other.flush();
+        mergeBins(other.lows, other.cutPoints, other.counts, other.sums, other.sumSqs, other.numBins);
+        this.reference = null;
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(SplitCriterion criterion,
+            double[] preSplitDist, int attIndex, boolean binaryOnly) {
+        flush();
+        AttributeSplitSuggestion bestOption = searchForBestSplitOption(criterion, preSplitDist, attIndex);
+        if (this.reference != null) {
+            compare(bestOption, this.reference.getBestEvaluatedSplitSuggestion(criterion,
+                    preSplitDist, attIndex, binaryOnly));
+        }
+        return bestOption;
+    }
+
+    /**
+     * Evaluates the cut points in increasing order, as the FindBestSplit
+     * algorithm traverses the E-BST.
+     */
+    protected AttributeSplitSuggestion searchForBestSplitOption(SplitCriterion criterion,
+            double[] preSplitDist, int attIndex) {
+        AttributeSplitSuggestion bestOption = null;
+        double countLeft = 0;
+        double sumLeft = 0;
+        double sumSqLeft = 0;
+        double countRight = preSplitDist[0];
+        double sumRight = preSplitDist[1];
+        double sumSqRight = preSplitDist[2];
+        for (int i = 0; (i < this.numBins) && (countRight != 0.0); i++) {
+            countLeft += this.counts[i];
+            countRight -= this.counts[i];
+            sumLeft += this.sums[i];
+            sumRight -= this.sums[i];
+            sumSqLeft += this.sumSqs[i];
+            sumSqRight -= this.sumSqs[i];
+
+            double[][] postSplitDists = new double[][]{{countLeft, sumLeft, sumSqLeft}, {countRight, sumRight, sumSqRight}};
+            double[] totalDist = new double[]{(countLeft + countRight), (sumLeft + sumRight), (sumSqLeft + sumSqRight)};
+            double merit = criterion.getMeritOfSplit(totalDist, postSplitDists);
+
+            if ((bestOption == null) || (merit > bestOption.merit)) {
+                bestOption = new AttributeSplitSuggestion(
+                        new NumericAttributeBinaryTest(attIndex, this.cutPoints[i], true),
+                        postSplitDists, merit);
+            }
+        }
+        return bestOption;
+    }
+
+    protected void compare(AttributeSplitSuggestion suggestion, AttributeSplitSuggestion referenceSuggestion) {
+        this.numComparisons++;
+        if ((suggestion == null) || (referenceSuggestion == null)) {
+            if (suggestion == referenceSuggestion) {
+                this.numSameSplits++;
+            }
+            return;
+        }
+        if (((NumericAttributeBinaryTest) suggestion.splitTest).getSplitValue()
+                == ((NumericAttributeBinaryTest) referenceSuggestion.splitTest).getSplitValue()) {
+            this.numSameSplits++;
+        }
+        this.maxMeritDifference = Math.max(this.maxMeritDifference,
+                Math.abs(referenceSuggestion.merit - suggestion.merit));
+    }
+
+    /**
+     * Prunes the bad split points if enabled. The E-BST leaves its nodes in
+     * place, so by default the split points are kept as well.
+     */
+    @Override
+    public void removeBadSplits(SplitCriterion criterion, double lastCheckRatio, double lastCheckSDR, double lastCheckE) {
+        if (this.pruneBadSplitsOption.isSet()) {
+            prune(criterion, lastCheckRatio, lastCheckSDR, lastCheckE);
+        }
+    }
+
+    /**
+     * Merges the bins whose cut points are 'bad' split points into the next
+     * bin, which removes them as candidates without changing the statistics
+     * of the other cut points.
+     *
+     * @param criterion the split criterion
+     * @param lastCheckRatio the ratio of the second best merit to the best one
+     * @param lastCheckSDR the best merit
+     * @param lastCheckE the Hoeffding bound
+     */
+    public void prune(SplitCriterion criterion, double lastCheckRatio, double lastCheckSDR, double lastCheckE) {
+        flush();
+        double countTotal = 0;
+        double sumTotal = 0;
+        double sumSqTotal = 0;
+        for (int i = 0; i < this.numBins; i++) {
+            countTotal += this.counts[i];
+            sumTotal += this.sums[i];
+            sumSqTotal += this.sumSqs[i];
+        }
+        double[] preSplitDist = new double[]{countTotal, sumTotal, sumSqTotal};
+        double countLeft = 0;
+        double sumLeft = 0;
+        double sumSqLeft = 0;
+        int numKept = 0;
+        double low = 0;
+        double count = 0;
+        double sum = 0;
+        double sumSq = 0;
+        for (int i = 0; i < this.numBins; i++) {
+            countLeft += this.counts[i];
+            sumLeft += this.sums[i];
+            sumSqLeft += this.sumSqs[i];
+            if (count == 0) {
+                low = this.lows[i];
+            }
+            count += this.counts[i];
+            sum += this.sums[i];
+            sumSq += this.sumSqs[i];
+            boolean isBad = false;
+            if (i < this.numBins - 1) {
+                double[][] postSplitDists = new double[][]{{countLeft, sumLeft, sumSqLeft},
+                    {countTotal - countLeft, sumTotal - sumLeft, sumSqTotal - sumSqLeft}};
+                double merit = criterion.getMeritOfSplit(preSplitDist, postSplitDists);
+                isBad = (merit / lastCheckSDR) < (lastCheckRatio - (2 * lastCheckE));
+            }
+            if (!isBad) {
+                setBin(numKept++, low, this.cutPoints[i], count, sum, sumSq);
+                count = 0;
+                sum = 0;
+                sumSq = 0;
+            }
+        }
+        this.numBins = numKept;
+    }
+
+    /**
+     * Gets how the split suggestions compared to those of the E-BST, when
+     * comparing is enabled.
+     *
+     * @return the measurements
+     */
+    public Measurement[] getExactnessMeasurements() {
+        return new Measurement[]{
+            new Measurement("bins", numBins()),
+            new Measurement("E-BST nodes", countNodes(this.reference == null ? null : this.reference.root)),
+            new Measurement("split searches compared", this.numComparisons),
+            new Measurement("same split as E-BST", this.numSameSplits),
+            new Measurement("max merit difference to E-BST", this.maxMeritDifference)};
+    }
+
+    protected static int countNodes(Node node) {
+        return node == null ? 0 : 1 + countNodes(node.left) + countNodes(node.right);
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        if (this.reference == null) {
+            StringUtils.appendIndented(sb, indent, numBins() + " bins");
+        } else {
+            Measurement.getMeasurementsDescription(getExactnessMeasurements(), sb, indent);
+        }
+    }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize() + SizeOf.sizeOfArray(this.lows)
+                + SizeOf.sizeOfArray(this.cutPoints)
+                + SizeOf.sizeOfArray(this.counts) + SizeOf.sizeOfArray(this.sums)
+                + SizeOf.sizeOfArray(this.sumSqs) + SizeOf.sizeOfArray(this.bufferValues)
+                + SizeOf.sizeOfArray(this.bufferTargets) + SizeOf.estimatedSizeOf(this.reference);
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ *    CompactGaussianNumericAttributeClassObserver.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.util.Arrays;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.DoubleVector;
+import moa.core.GaussianEstimator;
+import moa.core.MemoryAccountable;
+import moa.core.ObjectRepository;
+import moa.core.SizeOf;
+import moa.core.Statistics;
+import moa.core.Utils;
+import moa.options.AbstractOptionHandler;
+import moa.options.OptionHandler;
+import moa.tasks.TaskMonitor;
+import com.github.javacliparser.IntOption;
+
+/**
+ * Class for observing the class data distribution for a numeric attribute
+ * using gaussian estimators, with the statistics of all classes stored in a
+ * single array.
+ *
+ * <p>It computes the same split suggestions and probabilities as
+ * {@link GaussianNumericAttributeClassObserver}, but needs a fraction of its
+ * memory, so a tree with a memory limit can keep more leaves active. The
+ * copies, as created for every leaf of a tree, only keep the number of bins
+ * and not the options.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class CompactGaussianNumericAttributeClassObserver extends AbstractOptionHandler
+        implements NumericAttributeClassObserver, MemoryAccountable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected static final int WEIGHT_SUM = 0;
+
+    protected static final int MEAN = 1;
+
+    protected static final int VARIANCE_SUM = 2;
+
+    protected static final int MIN = 3;
+
+    protected static final int MAX = 4;
+
+    /** Number of statistics stored per class. */
+    protected static final int STRIDE = 5;
+
+    public IntOption numBinsOption;
+
+    protected int numBins;
+
+    /** Statistics of the classes, NaN as minimum for the classes not observed. */
+    protected double[] stats = new double[0];
+
+    public CompactGaussianNumericAttributeClassObserver() {
+        this.numBinsOption = new IntOption("numBins", 'n',
+                "The number of bins.", 10, 1, Integer.MAX_VALUE);
+        this.numBins = this.numBinsOption.getValue();
+    }
+
+    protected CompactGaussianNumericAttributeClassObserver(int numBins, double[] stats) {
+        this.numBins = numBins;
+        this.stats = stats;
+    }
+
+    @Override
+    public OptionHandler copy() {
+        return new CompactGaussianNumericAttributeClassObserver(this.numBins, this.stats.clone());
+    }
+
+    protected int numClasses() {
+        return this.stats.length / STRIDE;
+    }
+
+    protected boolean isObserved(int classVal) {
+        return !Double.isNaN(this.stats[classVal * STRIDE + MIN]);
+    }
+
+    @Override
+    public void observeAttributeClass(double attVal, int classVal, double weight) {
+        if (Utils.isMissingValue(attVal)) {
+        } else {
+            if (classVal >= numClasses()) {
+                int oldLength = this.stats.length;
+                this.stats = Arrays.copyOf(this.stats, (classVal + 1) * STRIDE);
+                for (int i = oldLength + MIN; i < this.stats.length; i += STRIDE) {
+                    this.stats[i] = Double.NaN;
+                }
+            }
+            int offset = classVal * STRIDE;
+            if (Double.isNaN(this.stats[offset + MIN])) {
+                this.stats[offset + MIN] = attVal;
+                this.stats[offset + MAX] = attVal;
+            } else {
+                if (attVal < this.stats[offset + MIN]) {
+                    this.stats[offset + MIN] = attVal;
+                }
+                if (attVal > this.stats[offset + MAX]) {
+                    this.stats[offset + MAX] = attVal;
+                }
+            }
+            // same update as GaussianEstimator.addObservation
+            if (Double.isInfinite(attVal)) {
+                return;
+            }
+            if (this.stats[offset + WEIGHT_SUM] > 0.0) {
+                this.stats[offset + WEIGHT_SUM] += weight;
+                double lastMean = this.stats[offset + MEAN];
+                this.stats[offset + MEAN] += weight * (attVal - lastMean) / this.stats[offset + WEIGHT_SUM];
+                this.stats[offset + VARIANCE_SUM] += weight * (attVal - lastMean) * (attVal - this.stats[offset + MEAN]);
+            } else {
+                this.stats[offset + MEAN] = attVal;
+                this.stats[offset + WEIGHT_SUM] = weight;
+            }
+        }
+    }
+
+    protected double getStdDev(int offset) {
+        double weightSum = this.stats[offset + WEIGHT_SUM];
+        return Math.sqrt(weightSum > 1.0 ? this.stats[offset + VARIANCE_SUM] / (weightSum - 1.0) : 0.0);
+    }
+
+    protected double probabilityDensity(int offset, double value) {
+        if (this.stats[offset + WEIGHT_SUM] > 0.0) {
+            double stdDev = getStdDev(offset);
+            double mean = this.stats[offset + MEAN];
+            if (stdDev > 0.0) {
+                double diff = value - mean;
+                return (1.0 / (GaussianEstimator.NORMAL_CONSTANT * stdDev))
+                        * Math.exp(-(diff * diff / (2.0 * stdDev * stdDev)));
+            }
+            return value == mean ? 1.0 : 0.0;
+        }
+        return 0.0;
+    }
+
+    @Override
+    public double probabilityOfAttributeValueGivenClass(double attVal,
+            int classVal) {
+        return classVal < numClasses() && isObserved(classVal)
+                ? probabilityDensity(classVal * STRIDE, attVal) : 0.0;
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly) {
+        AttributeSplitSuggestion bestSuggestion = null;
+        double[] suggestedSplitValues = getSplitPointSuggestions();
+        for (double splitValue : suggestedSplitValues) {
+            double[][] postSplitDists = getClassDistsResultingFromBinarySplit(splitValue);
+            double merit = criterion.getMeritOfSplit(preSplitDist,
+                    postSplitDists);
+            if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
+                bestSuggestion = new AttributeSplitSuggestion(
+                        new NumericAttributeBinaryTest(attIndex, splitValue,
+                        true), postSplitDists, merit);
+            }
+        }
+        return bestSuggestion;
+    }
+
+    public double[] getSplitPointSuggestions() {
+        double minValue = Double.POSITIVE_INFINITY;
+        double maxValue = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numClasses(); i++) {
+            if (isObserved(i)) {
+                if (this.stats[i * STRIDE + MIN] < minValue) {
+                    minValue = this.stats[i * STRIDE + MIN];
+                }
+                if (this.stats[i * STRIDE + MAX] > maxValue) {
+                    maxValue = this.stats[i * STRIDE + MAX];
+                }
+            }
+        }
+        if (!(minValue < Double.POSITIVE_INFINITY)) {
+            return new double[0];
+        }
+        double range = maxValue - minValue;
+        double[] suggestions = new double[this.numBins];
+        int numSuggestions = 0;
+        for (int i = 0; i < this.numBins; i++) {
+            double splitValue = range / (this.numBins + 1.0) * (i + 1)
+                    + minValue;
+            if ((splitValue > minValue) && (splitValue < maxValue)) {
+                suggestions[numSuggestions++] = splitValue;
+            }
+        }
+        // sorted and without duplicates, as a TreeSet would
+        Arrays.sort(suggestions, 0, numSuggestions);
+        int numDistinct = 0;
+        for (int i = 0; i < numSuggestions; i++) {
+            if (numDistinct == 0 || Double.compare(suggestions[numDistinct - 1], suggestions[i]) != 0) {
+                suggestions[numDistinct++] = suggestions[i];
+            }
+        }
+        return Arrays.copyOf(suggestions, numDistinct);
+    }
+
+    // assume all values equal to splitValue go to lhs
+    public double[][] getClassDistsResultingFromBinarySplit(double splitValue) {
+        DoubleVector lhsDist = new DoubleVector();
+        DoubleVector rhsDist = new DoubleVector();
+        for (int i = 0; i < numClasses(); i++) {
+            if (isObserved(i)) {
+                int offset = i * STRIDE;
+                double weightSum = this.stats[offset + WEIGHT_SUM];
+                if (splitValue < this.stats[offset + MIN]) {
+                    rhsDist.addToValue(i, weightSum);
+                } else if (splitValue >= this.stats[offset + MAX]) {
+                    lhsDist.addToValue(i, weightSum);
+                } else {
+                    // same estimate as GaussianEstimator.estimatedWeight_LessThan_EqualTo_GreaterThan_Value
+                    double equalToWeight = probabilityDensity(offset, splitValue) * weightSum;
+                    double stdDev = getStdDev(offset);
+                    double mean = this.stats[offset + MEAN];
+                    double lessThanWeight = stdDev > 0.0 ? Statistics.normalProbability((splitValue - mean) / stdDev)
+                            * weightSum - equalToWeight
+                            : (splitValue < mean ? weightSum - equalToWeight : 0.0);
+                    double greaterThanWeight = weightSum - equalToWeight
+                            - lessThanWeight;
+                    if (greaterThanWeight < 0.0) {
+                        greaterThanWeight = 0.0;
+                    }
+                    lhsDist.addToValue(i, lessThanWeight + equalToWeight);
+                    rhsDist.addToValue(i, greaterThanWeight);
+                }
+            }
+        }
+        return new double[][]{lhsDist.getArrayRef(), rhsDist.getArrayRef()};
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        int observed = 0;
+        for (int i = 0; i < numClasses(); i++) {
+            if (isObserved(i)) {
+                observed++;
+            }
+        }
+        sb.append("Normal distributions of ");
+        sb.append(observed);
+        sb.append(" classes, ");
+        sb.append(this.numBins);
+        sb.append(" split points each");
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+        if (this.numBinsOption != null) {
+            this.numBins = this.numBinsOption.getValue();
+        }
+    }
+
+    /**
+     * Not supported: this observer keeps class distributions. Regression
+     * targets are observed by {@link FIMTDDNumericAttributeClassObserver}.
+     */
+    @Override
+    public void observeAttributeTarget(double attVal, double target) {
+        throw new UnsupportedOperationException(getClass().getSimpleName()
+                + " observes class labels, not regression targets.");
+    }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize() + SizeOf.sizeOfArray(this.stats);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ *    CompactNominalAttributeClassObserver.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.core.attributeclassobservers;
+
+import java.util.Arrays;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
+import moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.DoubleVector;
+import moa.core.MemoryAccountable;
+import moa.core.ObjectRepository;
+import moa.core.SizeOf;
+import moa.core.Utils;
+import moa.options.AbstractOptionHandler;
+import moa.options.OptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Class for observing the class data distribution for a nominal attribute,
+ * with the counts of all classes and values stored in a single array.
+ *
+ * <p>It computes the same split suggestions and probabilities as
+ * {@link NominalAttributeClassObserver}, but needs a fraction of its memory,
+ * so a tree with a memory limit can keep more leaves active.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class CompactNominalAttributeClassObserver extends AbstractOptionHandler implements
+        DiscreteAttributeClassObserver, MemoryAccountable {
+
+    private static final long serialVersionUID = 1L;
+
+    protected double totalWeightObserved = 0.0;
+
+    protected double missingWeightObserved = 0.0;
+
+    /** Counts of the values, row per class, maxNumValues columns per row. */
+    protected double[] counts = new double[0];
+
+    protected int maxNumValues;
+
+    /** Number of values observed for each class, 0 for the classes not observed. */
+    protected int[] numValuesPerClass = new int[0];
+
+    public CompactNominalAttributeClassObserver() {
+    }
+
+    @Override
+    public OptionHandler copy() {
+        CompactNominalAttributeClassObserver copy = new CompactNominalAttributeClassObserver();
+        copy.totalWeightObserved = this.totalWeightObserved;
+        copy.missingWeightObserved = this.missingWeightObserved;
+        copy.counts = this.counts.clone();
+        copy.maxNumValues = this.maxNumValues;
+        copy.numValuesPerClass = this.numValuesPerClass.clone();
+        return copy;
+    }
+
+    @Override
+    public void observeAttributeClass(double attVal, int classVal, double weight) {
+        if (Utils.isMissingValue(attVal)) {
+            this.missingWeightObserved += weight;
+        } else {
+            int attValInt = (int) attVal;
+            int numClasses = this.numValuesPerClass.length;
+            if (classVal >= numClasses || attValInt >= this.maxNumValues) {
+                int newNumClasses = Math.max(numClasses, classVal + 1);
+                int newMaxNumValues = Math.max(this.maxNumValues, attValInt + 1);
+                double[] newCounts = new double[newNumClasses * newMaxNumValues];
+                for (int i = 0; i < numClasses; i++) {
+                    System.arraycopy(this.counts, i * this.maxNumValues, newCounts,
+                            i * newMaxNumValues, this.numValuesPerClass[i]);
+                }
+                this.counts = newCounts;
+                this.maxNumValues = newMaxNumValues;
+                this.numValuesPerClass = Arrays.copyOf(this.numValuesPerClass, newNumClasses);
+            }
+            if (attValInt >= this.numValuesPerClass[classVal]) {
+                this.numValuesPerClass[classVal] = attValInt + 1;
+            }
+            this.counts[classVal * this.maxNumValues + attValInt] += weight;
+        }
+        this.totalWeightObserved += weight;
+    }
+
+    @Override
+    public double probabilityOfAttributeValueGivenClass(double attVal,
+            int classVal) {
+        if (classVal >= this.numValuesPerClass.length || this.numValuesPerClass[classVal] == 0) {
+            return 0.0;
+        }
+        int numValues = this.numValuesPerClass[classVal];
+        int attValInt = (int) attVal;
+        double sum = 0.0;
+        for (int j = 0; j < numValues; j++) {
+            sum += this.counts[classVal * this.maxNumValues + j];
+        }
+        double count = attValInt >= 0 && attValInt < numValues
+                ? this.counts[classVal * this.maxNumValues + attValInt] : 0.0;
+        return (count + 1.0) / (sum + numValues);
+    }
+
+    public double totalWeightOfClassObservations() {
+        return this.totalWeightObserved;
+    }
+
+    public double weightOfObservedMissingValues() {
+        return this.missingWeightObserved;
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(
+            SplitCriterion criterion, double[] preSplitDist, int attIndex,
+            boolean binaryOnly) {
+        AttributeSplitSuggestion bestSuggestion = null;
+        int maxAttValsObserved = getMaxAttValsObserved();
+        if (!binaryOnly) {
+            double[][] postSplitDists = getClassDistsResultingFromMultiwaySplit(maxAttValsObserved);
+            double merit = criterion.getMeritOfSplit(preSplitDist,
+                    postSplitDists);
+            bestSuggestion = new AttributeSplitSuggestion(
+                    new NominalAttributeMultiwayTest(attIndex), postSplitDists,
+                    merit);
+        }
+        for (int valIndex = 0; valIndex < maxAttValsObserved; valIndex++) {
+            double[][] postSplitDists = getClassDistsResultingFromBinarySplit(valIndex);
+            double merit = criterion.getMeritOfSplit(preSplitDist,
+                    postSplitDists);
+            if ((bestSuggestion == null) || (merit > bestSuggestion.merit)) {
+                bestSuggestion = new AttributeSplitSuggestion(
+                        new NominalAttributeBinaryTest(attIndex, valIndex),
+                        postSplitDists, merit);
+            }
+        }
+        return bestSuggestion;
+    }
+
+    public int getMaxAttValsObserved() {
+        int maxAttValsObserved = 0;
+        for (int numValues : this.numValuesPerClass) {
+            if (numValues > maxAttValsObserved) {
+                maxAttValsObserved = numValues;
+            }
+        }
+        return maxAttValsObserved;
+    }
+
+    public double[][] getClassDistsResultingFromMultiwaySplit(
+            int maxAttValsObserved) {
+        DoubleVector[] resultingDists = new DoubleVector[maxAttValsObserved];
+        for (int i = 0; i < resultingDists.length; i++) {
+            resultingDists[i] = new DoubleVector();
+        }
+        for (int i = 0; i < this.numValuesPerClass.length; i++) {
+            for (int j = 0; j < this.numValuesPerClass[i]; j++) {
+                resultingDists[j].addToValue(i, this.counts[i * this.maxNumValues + j]);
+            }
+        }
+        double[][] distributions = new double[maxAttValsObserved][];
+        for (int i = 0; i < distributions.length; i++) {
+            distributions[i] = resultingDists[i].getArrayRef();
+        }
+        return distributions;
+    }
+
+    public double[][] getClassDistsResultingFromBinarySplit(int valIndex) {
+        DoubleVector equalsDist = new DoubleVector();
+        DoubleVector notEqualDist = new DoubleVector();
+        for (int i = 0; i < this.numValuesPerClass.length; i++) {
+            for (int j = 0; j < this.numValuesPerClass[i]; j++) {
+                if (j == valIndex) {
+                    equalsDist.addToValue(i, this.counts[i * this.maxNumValues + j]);
+                } else {
+                    notEqualDist.addToValue(i, this.counts[i * this.maxNumValues + j]);
+                }
+            }
+        }
+        return new double[][]{equalsDist.getArrayRef(),
+                    notEqualDist.getArrayRef()};
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        sb.append("Counts of ");
+        sb.append(getMaxAttValsObserved());
+        sb.append(" values for ");
+        sb.append(this.numValuesPerClass.length);
+        sb.append(" classes, total weight ");
+        sb.append(this.totalWeightObserved);
+        sb.append(", missing ");
+        sb.append(this.missingWeightObserved);
+    }
+
+    @Override
+    protected void prepareForUseImpl(TaskMonitor monitor, ObjectRepository repository) {
+        // no options to prepare
+    }
+
+    /**
+     * Not supported: this observer keeps counts per class and value, not
+     * statistics of a regression target.
+     */
+    @Override
+    public void observeAttributeTarget(double attVal, double target) {
+        throw new UnsupportedOperationException(getClass().getSimpleName()
+                + " observes class labels, not regression targets.");
+    }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize() + SizeOf.sizeOfArray(this.counts)
+                + SizeOf.sizeOfArray(this.numValuesPerClass);
+    }
+}
@@ -19,8 +19,10 @@
  */
 package moa.classifiers.core.attributeclassobservers;
 
+import moa.core.MemoryAccountable;
 import moa.core.ObjectRepository;
 import moa.tasks.TaskMonitor;
+import moa.core.SizeOf;
 import moa.core.Utils;
 
 import java.util.Set;
@@ -44,7 +46,7 @@ import com.github.javacliparser.IntOption;
  * @version $Revision: 7 $
  */
 public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
-        implements NumericAttributeClassObserver {
+        implements NumericAttributeClassObserver, MemoryAccountable {
 
     private static final long serialVersionUID = 1L;
 
@@ -173,4 +175,12 @@ public class GaussianNumericAttributeClassObserver extends AbstractOptionHandler
     public void observeAttributeTarget(double attVal, double target) {
         throw new UnsupportedOperationException("Not supported yet.");
     }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize()
+                + this.minValueObservedPerClass.estimatedByteSize()
+                + this.maxValueObservedPerClass.estimatedByteSize()
+                + this.attValDistPerClass.estimatedByteSize();
+    }
 }
@@ -23,8 +23,10 @@ import moa.classifiers.core.AttributeSplitSuggestion;
 import moa.classifiers.core.conditionaltests.NominalAttributeBinaryTest;
 import moa.classifiers.core.conditionaltests.NominalAttributeMultiwayTest;
 import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.MemoryAccountable;
 import moa.core.ObjectRepository;
 import moa.tasks.TaskMonitor;
+import moa.core.SizeOf;
 import moa.core.Utils;
 
 import moa.core.AutoExpandVector;
@@ -40,7 +42,7 @@ import moa.options.AbstractOptionHandler;
  * @version $Revision: 7 $
  */
 public class NominalAttributeClassObserver extends AbstractOptionHandler implements
-        DiscreteAttributeClassObserver {
+        DiscreteAttributeClassObserver, MemoryAccountable {
 
     private static final long serialVersionUID = 1L;
 
@@ -175,4 +177,9 @@ public class NominalAttributeClassObserver extends AbstractOptionHandler impleme
         throw new UnsupportedOperationException("Not supported yet.");
     }
 
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize()
+                + this.attValDistPerClass.estimatedByteSize();
+    }
 }
@@ -19,7 +19,9 @@
 package moa.classifiers.core.driftdetection;
 
 import com.github.javacliparser.FloatOption;
+import moa.core.MemoryAccountable;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -33,7 +35,7 @@ import moa.tasks.TaskMonitor;
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
  */
-public class ADWINChangeDetector extends AbstractChangeDetector {
+public class ADWINChangeDetector extends AbstractChangeDetector implements MemoryAccountable {
 
     protected ADWIN adwin;
 
@@ -72,4 +74,9 @@ public class ADWINChangeDetector extends AbstractChangeDetector {
             ObjectRepository repository) {
         // TODO Auto-generated method stub
     }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize() + SizeOf.estimatedSizeOf(this.adwin);
+    }
 }
@@ -20,7 +20,9 @@ package moa.classifiers.core.driftdetection;
 
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.FloatOption;
+import moa.core.MemoryAccountable;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -32,7 +34,7 @@ import moa.tasks.TaskMonitor;
  *  @author Manuel Baena (mbaena@lcc.uma.es)
  *  @version $Revision: 7 $
  */
-public class DDM extends AbstractChangeDetector {
+public class DDM extends AbstractChangeDetector implements MemoryAccountable {
 
     private static final long serialVersionUID = -3518369648142099719L;
 
@@ -138,4 +140,9 @@ public class DDM extends AbstractChangeDetector {
             ObjectRepository repository) {
         // TODO Auto-generated method stub
     }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize();
+    }
 }
\ No newline at end of file
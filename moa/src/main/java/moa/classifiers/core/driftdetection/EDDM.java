@@ -18,7 +18,9 @@
  */
 package moa.classifiers.core.driftdetection;
 
+import moa.core.MemoryAccountable;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -31,7 +33,7 @@ import moa.tasks.TaskMonitor;
  * @author Manuel Baena (mbaena@lcc.uma.es)
  * @version $Revision: 7 $
  */
-public class EDDM extends AbstractChangeDetector {
+public class EDDM extends AbstractChangeDetector implements MemoryAccountable {
 
     /**
      *
@@ -156,4 +158,9 @@ public class EDDM extends AbstractChangeDetector {
             ObjectRepository repository) {
         // TODO Auto-generated method stub
     }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize();
+    }
 }
\ No newline at end of file
@@ -20,7 +20,9 @@ package moa.classifiers.core.driftdetection;
 
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
+import moa.core.MemoryAccountable;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -30,7 +32,7 @@ import moa.tasks.TaskMonitor;
  * @author Manuel Baena (mbaena@lcc.uma.es)
  * @version $Revision: 7 $
  */
-public class PageHinkleyDM extends AbstractChangeDetector {
+public class PageHinkleyDM extends AbstractChangeDetector implements MemoryAccountable {
 
     private static final long serialVersionUID = -3518369648142099719L;
 
@@ -113,4 +115,9 @@ public class PageHinkleyDM extends AbstractChangeDetector {
             ObjectRepository repository) {
         // TODO Auto-generated method stub
     }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize();
+    }
 }
\ No newline at end of file
@@ -84,6 +84,11 @@ public class MajorityClass extends AbstractClassifier implements MultiClassClass
         return false;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         if (this.getClass() == MajorityClass.class)
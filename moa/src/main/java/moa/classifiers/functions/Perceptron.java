@@ -88,8 +88,12 @@ public class Perceptron extends AbstractClassifier  implements MultiClassClassif
         for (int i = 0; i < inst.numClasses(); i++) {
             double actual = (i == actualClass) ? 1.0 : 0.0;
             double delta = (actual - preds[i]) * preds[i] * (1 - preds[i]);
-            for (int j = 0; j < inst.numAttributes() - 1; j++) {
-                this.weightAttribute[i][j] += learningRatio * delta * inst.valueInputAttribute(j);
+            // the zeros of sparse instances leave the weights unchanged
+            for (int p = 0; p < inst.numValues(); p++) {
+                int instAttIndex = inst.index(p);
+                if (instAttIndex != inst.classIndex()) {
+                    this.weightAttribute[i][instanceAttIndexToModelAttIndex(instAttIndex, inst)] += learningRatio * delta * inst.valueSparse(p);
+                }
             }
             this.weightAttribute[i][inst.numAttributes() - 1] += learningRatio * delta;
         }
@@ -117,8 +121,11 @@ public class Perceptron extends AbstractClassifier  implements MultiClassClassif
 
     public double prediction(Instance inst, int classVal) {
         double sum = 0.0;
-        for (int i = 0; i < inst.numAttributes() - 1; i++) {
-            sum += weightAttribute[classVal][i] * inst.valueInputAttribute(i);
+        for (int p = 0; p < inst.numValues(); p++) {
+            int instAttIndex = inst.index(p);
+            if (instAttIndex != inst.classIndex()) {
+                sum += weightAttribute[classVal][instanceAttIndexToModelAttIndex(instAttIndex, inst)] * inst.valueSparse(p);
+            }
         }
         sum += weightAttribute[classVal][inst.numAttributes() - 1];
         return 1.0 / (1.0 + Math.exp(-sum));
@@ -153,4 +160,9 @@ public class Perceptron extends AbstractClassifier  implements MultiClassClassif
     public boolean isRandomizable() {
         return true;
     }
+
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
 }
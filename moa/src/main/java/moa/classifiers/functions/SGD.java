@@ -71,6 +71,9 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
 
     /** Stores the weights (+ bias in the last element) */
     protected DoubleVector m_weights;
+
+    /** The scale of the stored weights, so that weight decay does not touch every weight */
+    protected double m_wScale = 1.0;
     
     protected double m_bias;
 
@@ -156,6 +159,7 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
     public void reset() {
         m_t = 1;
         m_weights = null;
+        m_wScale = 1.0;
         m_bias = 0.0;
     }
 
@@ -184,19 +188,14 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
         int n1 = inst1.numValues();
         int n2 = weights.numValues();
 
-        for (int p1 = 0, p2 = 0; p1 < n1 && p2 < n2;) {
+        // the weights are indexed directly, only the values of the instance are visited
+        for (int p1 = 0; p1 < n1; p1++) {
             int ind1 = inst1.index(p1);
-            int ind2 = p2;
-            if (ind1 == ind2) {
-                if (ind1 != classIndex && !inst1.isMissingSparse(p1)) {
-                    result += inst1.valueSparse(p1) * weights.getValue(p2);
-                }
-                p1++;
-                p2++;
-            } else if (ind1 > ind2) {
-                p2++;
-            } else {
-                p1++;
+            if (ind1 >= n2) {
+                break;
+            }
+            if (ind1 != classIndex && !inst1.isMissingSparse(p1)) {
+                result += inst1.valueSparse(p1) * weights.getValue(ind1);
             }
         }
         return (result);
@@ -220,12 +219,13 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
 
         if (m_weights == null) {
             m_weights = new DoubleVector(); 
+            m_wScale = 1.0;
             m_bias = 0.0;
         }
 
         if (!instance.classIsMissing()) {
 
-            double wx = dotProd(instance, m_weights, instance.classIndex());
+            double wx = dotProd(instance, m_weights, instance.classIndex()) * m_wScale;
 
             double y;
             double z;
@@ -245,8 +245,13 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
             } else {
                 multiplier = 1.0 - (m_learningRate * m_lambda) / m_numInstances;
             }
-            for (int i = 0; i < m_weights.numValues(); i++) {
-                m_weights.setValue(i,m_weights.getValue (i) * multiplier);
+            // decay all weights through their scale, applying it only when it gets small
+            m_wScale *= multiplier;
+            if (Math.abs(m_wScale) < 1e-9) {
+                for (int i = 0; i < m_weights.numValues(); i++) {
+                    m_weights.setValue(i, m_weights.getValue(i) * m_wScale);
+                }
+                m_wScale = 1.0;
             }
 
             // Only need to do the following if the loss is non-zero
@@ -260,7 +265,7 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
                 for (int p1 = 0; p1 < n1; p1++) {
                     int indS = instance.index(p1);
                     if (indS != instance.classIndex() && !instance.isMissingSparse(p1)) {
-                        m_weights.addToValue(indS, factor * instance.valueSparse(p1));
+                        m_weights.addToValue(indS, factor * instance.valueSparse(p1) / m_wScale);
                     }
                 }
 
@@ -289,7 +294,7 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
                 : new double[1];
 
 
-        double wx = dotProd(inst, m_weights, inst.classIndex());// * m_wScale;
+        double wx = dotProd(inst, m_weights, inst.classIndex()) * m_wScale;
         double z = (wx + m_bias);
 
         if (inst.classAttribute().isNumeric()) {
@@ -356,7 +361,7 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
                 buff.append("   ");
             }
 
-            buff.append(Utils.doubleToString(m_weights.getValue(i), 12, 4) + " "
+            buff.append(Utils.doubleToString(m_weights.getValue(i) * m_wScale, 12, 4) + " "
                     // + m_data.attribute(i).name()
                     + "\n");
 
@@ -382,4 +387,9 @@ public class SGD extends AbstractClassifier implements MultiClassClassifier, Reg
     public boolean isRandomizable() {
         return false;
     }
+
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
 }
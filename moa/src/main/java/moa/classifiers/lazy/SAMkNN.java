@@ -238,6 +238,12 @@ public class SAMkNN extends AbstractClassifier implements MultiClassClassifier,
         return false;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        // the short-term and long-term memories keep the instances
+        return true;
+    }
+
 
 	private int historySum(List<Integer> history){
 		int sum = 0;
@@ -27,9 +27,7 @@ import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.MultiClassClassifier;
-import moa.classifiers.lazy.neighboursearch.KDTree;
-import moa.classifiers.lazy.neighboursearch.LinearNNSearch;
-import moa.classifiers.lazy.neighboursearch.NearestNeighbourSearch;
+import moa.classifiers.lazy.neighboursearch.SlidingWindowNNSearch;
 import moa.core.Measurement;
 
 /**
@@ -54,7 +52,7 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier {
             "nearestNeighbourSearch", 'n', "Nearest Neighbour Search to use", new String[]{
                 "LinearNN", "KDTree"},
             new String[]{"Brute force search algorithm for nearest neighbour search. ",
-                "KDTree search algorithm for nearest neighbour search"
+                "KDTree search algorithm for nearest neighbour search, updated incrementally as the window slides"
             }, 0);
 
 
@@ -65,13 +63,12 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier {
         return "kNN: special.";
     }
 
-    protected Instances window; 
+    protected SlidingWindowNNSearch window; 
 
 	@Override
 	public void setModelContext(InstancesHeader context) {
 		try {
-			this.window = new Instances(context,0); //new StringReader(context.toString())
-			this.window.setClassIndex(context.classIndex());
+			this.window = newWindow(context);
 		} catch(Exception e) {
 			System.err.println("Error: no Model Context available.");
 			e.printStackTrace();
@@ -89,29 +86,35 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier {
 		if (inst.classValue() > C)
 			C = (int)inst.classValue();
 		if (this.window == null) {
-			this.window = new Instances(inst.dataset());
+			this.window = newWindow(inst.dataset());
 		}
-		if (this.limitOption.getValue() <= this.window.numInstances()) {
-			this.window.delete(0);
+		if (this.limitOption.getValue() <= this.window.size()) {
+			this.window.removeOldest();
 		}
 		this.window.add(inst);
     }
 
+	/**
+	 * Creates the window of instances, searched with the nearest neighbour
+	 * search chosen in the options.
+	 *
+	 * @param header the header of the instances
+	 * @return the empty window
+	 */
+	protected SlidingWindowNNSearch newWindow(Instances header) {
+		SlidingWindowNNSearch window = new SlidingWindowNNSearch(header);
+		window.setUseTree(this.nearestNeighbourSearchOption.getChosenIndex() == 1);
+		return window;
+	}
+
 	@Override
     public double[] getVotesForInstance(Instance inst) {
 		double v[] = new double[C+1];
 		try {
-			NearestNeighbourSearch search;
-			if (this.nearestNeighbourSearchOption.getChosenIndex()== 0) {
-				search = new LinearNNSearch(this.window);  
-			} else {
-				search = new KDTree();
-				search.setInstances(this.window);
-			}
-			if (this.window.numInstances()>0) {	
-				Instances neighbours = search.kNearestNeighbours(inst,Math.min(kOption.getValue(),this.window.numInstances()));
-				for(int i = 0; i < neighbours.numInstances(); i++) {
-					v[(int)neighbours.instance(i).classValue()]++;
+			if (this.window.size()>0) {	
+				int[] neighbours = this.window.kNearestNeighbours(inst,Math.min(kOption.getValue(),this.window.size()));
+				for(int i = 0; i < neighbours.length; i++) {
+					v[(int)this.window.classValue(neighbours[i])]++;
 				}
 			}
 		} catch(Exception e) {
@@ -136,6 +139,12 @@ public class kNN extends AbstractClassifier implements MultiClassClassifier {
         return false;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        // the sliding window keeps a copy of the values
+        return false;
+    }
+
 	@Override
 	public ImmutableCapabilities defineImmutableCapabilities() {
 		if (this.getClass() == kNN.class)
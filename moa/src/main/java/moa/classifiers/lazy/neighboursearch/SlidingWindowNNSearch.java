@@ -0,0 +1,833 @@
+/*
+ *    SlidingWindowNNSearch.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.lazy.neighboursearch;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Nearest neighbour search over a window of instances that is updated one
+ * instance at a time.
+ *
+ * <p>The values of the instances are kept in primitive arrays, one slot per
+ * instance, and the order of arrival is kept in a ring buffer, so the oldest
+ * instance is evicted in constant time. Instances can also be removed at any
+ * position, as done by probabilistic approximate windows. The identifier of
+ * a stored instance is its slot, it remains valid until the instance is
+ * removed.</p>
+ *
+ * <p>The distance is the normalized Euclidean distance of
+ * {@link EuclideanDistance}, with the ranges of the attributes over the
+ * window maintained incrementally, and the neighbours are the same as the ones
+ * returned by {@link LinearNNSearch}, including the ties with the k-th
+ * nearest neighbour. Optionally, the instances are indexed by a k-d tree that
+ * is updated on every insertion and removal instead of being rebuilt for every
+ * query. The bounding boxes of its nodes are stored in the original space, so
+ * they remain valid when the ranges of the attributes change, and only grow
+ * when instances are removed. The tree is rebuilt after as many modifications
+ * as there are instances in the window, to keep it balanced.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class SlidingWindowNNSearch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of instances in a leaf above which it is split. */
+    protected static final int LEAF_SIZE = 16;
+
+    protected int numAttributes;
+
+    protected int classIndex;
+
+    protected boolean[] isNominal;
+
+    protected boolean useTree;
+
+    /** Values of the attributes, numAttributes values per slot. */
+    protected double[] values;
+
+    protected double[] weights;
+
+    /** Order of arrival of the instance of each slot. */
+    protected long[] timestamps;
+
+    protected int[] freeSlots;
+
+    protected int numFreeSlots;
+
+    /** Ring buffer of the used slots, in order of arrival. */
+    protected int[] order;
+
+    protected int first;
+
+    protected int size;
+
+    protected long numAdded;
+
+    /** Ranges of the attributes over the window. */
+    protected double[] min;
+
+    protected double[] max;
+
+    protected boolean[] rangeOutdated;
+
+    protected boolean rangesOutdated;
+
+    protected Node root;
+
+    protected Node[] leafOf;
+
+    protected int[] positionInLeaf;
+
+    protected int modificationsSinceBuild;
+
+    // State of the current query
+    protected transient double[] query;
+
+    protected transient double[] heap;
+
+    protected transient int heapSize;
+
+    protected transient int[] candidates;
+
+    protected transient double[] candidateDistances;
+
+    protected transient int numCandidates;
+
+    /**
+     * Node of the k-d tree. Leaves hold the slots of their instances.
+     */
+    protected static class Node implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected double[] lo;
+
+        protected double[] hi;
+
+        protected boolean[] hasMissing;
+
+        protected int splitAttribute = -1;
+
+        protected double splitValue;
+
+        protected Node left;
+
+        protected Node right;
+
+        protected int[] slots;
+
+        protected int count;
+
+        protected int maxCount = LEAF_SIZE;
+
+        protected Node(int numAttributes) {
+            this.lo = new double[numAttributes];
+            this.hi = new double[numAttributes];
+            this.hasMissing = new boolean[numAttributes];
+            Arrays.fill(this.lo, Double.POSITIVE_INFINITY);
+            Arrays.fill(this.hi, Double.NEGATIVE_INFINITY);
+            this.slots = new int[LEAF_SIZE + 1];
+        }
+
+        protected boolean isLeaf() {
+            return this.splitAttribute < 0;
+        }
+
+        protected void include(double[] values, int offset) {
+            for (int j = 0; j < this.lo.length; j++) {
+                double value = values[offset + j];
+                if (Double.isNaN(value)) {
+                    this.hasMissing[j] = true;
+                } else {
+                    if (value < this.lo[j]) {
+                        this.lo[j] = value;
+                    }
+                    if (value > this.hi[j]) {
+                        this.hi[j] = value;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an empty window.
+     *
+     * @param header the header of the instances
+     */
+    public SlidingWindowNNSearch(Instances header) {
+        this.numAttributes = header.numAttributes();
+        this.classIndex = header.classIndex();
+        this.isNominal = new boolean[this.numAttributes];
+        for (int j = 0; j < this.numAttributes; j++) {
+            this.isNominal[j] = header.attribute(j).isNominal();
+        }
+        this.min = new double[this.numAttributes];
+        this.max = new double[this.numAttributes];
+        Arrays.fill(this.min, Double.POSITIVE_INFINITY);
+        Arrays.fill(this.max, Double.NEGATIVE_INFINITY);
+        this.rangeOutdated = new boolean[this.numAttributes];
+        ensureCapacity(LEAF_SIZE);
+    }
+
+    /**
+     * Sets whether the instances are indexed by a k-d tree, or searched
+     * linearly.
+     *
+     * @param useTree true to use the k-d tree
+     */
+    public void setUseTree(boolean useTree) {
+        this.useTree = useTree;
+        this.root = null;
+        if (useTree) {
+            build();
+        }
+    }
+
+    public boolean getUseTree() {
+        return this.useTree;
+    }
+
+    /**
+     * Returns the number of instances in the window.
+     *
+     * @return the number of instances
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the identifier of the instance at the given position, the
+     * oldest instance being at position 0.
+     *
+     * @param position the position in the window
+     * @return the identifier of the instance
+     */
+    public int idAt(int position) {
+        return this.order[(this.first + position) % this.order.length];
+    }
+
+    public double classValue(int id) {
+        return this.values[id * this.numAttributes + this.classIndex];
+    }
+
+    public double value(int id, int attributeIndex) {
+        return this.values[id * this.numAttributes + attributeIndex];
+    }
+
+    /**
+     * Returns the number of instances added to the window before the given
+     * one.
+     *
+     * @param id the identifier of the instance
+     * @return the order of arrival of the instance
+     */
+    public long timestamp(int id) {
+        return this.timestamps[id];
+    }
+
+    /**
+     * Returns a copy of a stored instance.
+     *
+     * @param id the identifier of the instance
+     * @param dataset the dataset of the returned instance
+     * @return the instance
+     */
+    public Instance instance(int id, Instances dataset) {
+        double[] instanceValues = new double[this.numAttributes];
+        System.arraycopy(this.values, id * this.numAttributes, instanceValues, 0, this.numAttributes);
+        Instance inst = new DenseInstance(this.weights[id], instanceValues);
+        inst.setDataset(dataset);
+        return inst;
+    }
+
+    /**
+     * Adds an instance after the newest one. Its values are copied.
+     *
+     * @param inst the instance to add
+     * @return the identifier of the instance
+     */
+    public int add(Instance inst) {
+        if (this.size == this.order.length) {
+            ensureCapacity(2 * this.order.length);
+        }
+        int slot = this.freeSlots[--this.numFreeSlots];
+        int offset = slot * this.numAttributes;
+        for (int j = 0; j < this.numAttributes; j++) {
+            double value = inst.value(j);
+            this.values[offset + j] = value;
+            if (!Double.isNaN(value)) {
+                if (value < this.min[j]) {
+                    this.min[j] = value;
+                }
+                if (value > this.max[j]) {
+                    this.max[j] = value;
+                }
+            }
+        }
+        this.weights[slot] = inst.weight();
+        this.timestamps[slot] = this.numAdded++;
+        this.order[(this.first + this.size) % this.order.length] = slot;
+        this.size++;
+        if (this.useTree) {
+            insert(slot);
+            modified();
+        }
+        return slot;
+    }
+
+    /**
+     * Removes the oldest instance.
+     */
+    public void removeOldest() {
+        int slot = this.order[this.first];
+        this.first = (this.first + 1) % this.order.length;
+        this.size--;
+        release(slot);
+    }
+
+    /**
+     * Removes the instance at the given position, the oldest instance being
+     * at position 0.
+     *
+     * @param position the position in the window
+     */
+    public void removeAt(int position) {
+        int length = this.order.length;
+        int slot = idAt(position);
+        if (position < this.size / 2) {
+            for (int i = position; i > 0; i--) {
+                this.order[(this.first + i) % length] = this.order[(this.first + i - 1) % length];
+            }
+            this.first = (this.first + 1) % length;
+        } else {
+            for (int i = position; i < this.size - 1; i++) {
+                this.order[(this.first + i) % length] = this.order[(this.first + i + 1) % length];
+            }
+        }
+        this.size--;
+        release(slot);
+    }
+
+    /**
+     * Removes all instances.
+     */
+    public void clear() {
+        while (this.size > 0) {
+            removeOldest();
+        }
+    }
+
+    protected void release(int slot) {
+        int offset = slot * this.numAttributes;
+        for (int j = 0; j < this.numAttributes; j++) {
+            double value = this.values[offset + j];
+            if (value == this.min[j] || value == this.max[j]) {
+                this.rangeOutdated[j] = true;
+                this.rangesOutdated = true;
+            }
+        }
+        if (this.useTree) {
+            Node leaf = this.leafOf[slot];
+            int last = leaf.slots[--leaf.count];
+            leaf.slots[this.positionInLeaf[slot]] = last;
+            this.positionInLeaf[last] = this.positionInLeaf[slot];
+            this.leafOf[slot] = null;
+            modified();
+        }
+        this.freeSlots[this.numFreeSlots++] = slot;
+    }
+
+    protected void ensureCapacity(int capacity) {
+        int oldCapacity = this.order == null ? 0 : this.order.length;
+        if (capacity <= oldCapacity) {
+            return;
+        }
+        int[] newOrder = new int[capacity];
+        for (int i = 0; i < this.size; i++) {
+            newOrder[i] = idAt(i);
+        }
+        this.order = newOrder;
+        this.first = 0;
+        this.values = this.values == null ? new double[capacity * this.numAttributes]
+                : Arrays.copyOf(this.values, capacity * this.numAttributes);
+        this.weights = this.weights == null ? new double[capacity] : Arrays.copyOf(this.weights, capacity);
+        this.timestamps = this.timestamps == null ? new long[capacity] : Arrays.copyOf(this.timestamps, capacity);
+        this.leafOf = this.leafOf == null ? new Node[capacity] : Arrays.copyOf(this.leafOf, capacity);
+        this.positionInLeaf = this.positionInLeaf == null ? new int[capacity] : Arrays.copyOf(this.positionInLeaf, capacity);
+        int[] newFreeSlots = new int[capacity];
+        if (this.freeSlots != null) {
+            System.arraycopy(this.freeSlots, 0, newFreeSlots, 0, this.numFreeSlots);
+        }
+        // the new slots are handed out in increasing order
+        for (int slot = capacity - 1; slot >= oldCapacity; slot--) {
+            newFreeSlots[this.numFreeSlots++] = slot;
+        }
+        this.freeSlots = newFreeSlots;
+    }
+
+    /**
+     * Returns the k nearest neighbours of an instance, along with the
+     * instances at the same distance as the k-th nearest neighbour.
+     *
+     * @param target the instance to find the neighbours of
+     * @param k the number of neighbours
+     * @return the identifiers of the neighbours, in no particular order
+     */
+    public int[] kNearestNeighbours(Instance target, int k) {
+        k = Math.min(k, this.size);
+        if (k <= 0) {
+            return new int[0];
+        }
+        prepareQuery(target);
+        if (this.heap == null || this.heap.length < k) {
+            this.heap = new double[k];
+        }
+        if (this.candidates == null) {
+            this.candidates = new int[4 * k];
+            this.candidateDistances = new double[4 * k];
+        }
+        this.heapSize = 0;
+        this.numCandidates = 0;
+        if (this.useTree) {
+            search(this.root, k);
+        } else {
+            for (int i = 0; i < this.size; i++) {
+                consider(idAt(i), k);
+            }
+        }
+        double kthDistance = this.heap[0];
+        int numNeighbours = 0;
+        for (int i = 0; i < this.numCandidates; i++) {
+            if (this.candidateDistances[i] <= kthDistance) {
+                numNeighbours++;
+            }
+        }
+        int[] neighbours = new int[numNeighbours];
+        numNeighbours = 0;
+        for (int i = 0; i < this.numCandidates; i++) {
+            if (this.candidateDistances[i] <= kthDistance) {
+                neighbours[numNeighbours++] = this.candidates[i];
+            }
+        }
+        return neighbours;
+    }
+
+    /**
+     * Returns the distance between an instance and a stored instance.
+     *
+     * @param target the instance
+     * @param id the identifier of the stored instance
+     * @return the distance
+     */
+    public double distance(Instance target, int id) {
+        prepareQuery(target);
+        return Math.sqrt(squaredDistance(id, Double.POSITIVE_INFINITY));
+    }
+
+    /**
+     * Returns the distances between an instance and every stored instance.
+     *
+     * @param target the instance
+     * @return the distances, in the order of the window
+     */
+    public double[] distances(Instance target) {
+        prepareQuery(target);
+        double[] distances = new double[this.size];
+        for (int i = 0; i < this.size; i++) {
+            distances[i] = Math.sqrt(squaredDistance(idAt(i), Double.POSITIVE_INFINITY));
+        }
+        return distances;
+    }
+
+    protected void prepareQuery(Instance target) {
+        if (this.rangesOutdated) {
+            updateRanges();
+        }
+        if (this.query == null) {
+            this.query = new double[this.numAttributes];
+        }
+        for (int j = 0; j < this.numAttributes; j++) {
+            this.query[j] = target.value(j);
+        }
+    }
+
+    protected void search(Node node, int k) {
+        if (this.heapSize == k && lowerBound(node, this.heap[0]) > this.heap[0]) {
+            return;
+        }
+        if (node.isLeaf()) {
+            for (int i = 0; i < node.count; i++) {
+                consider(node.slots[i], k);
+            }
+        } else if (this.query[node.splitAttribute] > node.splitValue) {
+            search(node.right, k);
+            search(node.left, k);
+        } else {
+            search(node.left, k);
+            search(node.right, k);
+        }
+    }
+
+    protected void consider(int slot, int k) {
+        double bound = this.heapSize == k ? this.heap[0] : Double.POSITIVE_INFINITY;
+        double distance = squaredDistance(slot, bound);
+        if (distance > bound) {
+            return;
+        }
+        if (this.heapSize < k) {
+            heapPush(distance);
+        } else if (distance < this.heap[0]) {
+            this.heap[0] = distance;
+            heapSiftDown(0);
+            if (this.numCandidates >= 4 * k) {
+                // drop the candidates that are now too far
+                int kept = 0;
+                for (int i = 0; i < this.numCandidates; i++) {
+                    if (this.candidateDistances[i] <= this.heap[0]) {
+                        this.candidates[kept] = this.candidates[i];
+                        this.candidateDistances[kept] = this.candidateDistances[i];
+                        kept++;
+                    }
+                }
+                this.numCandidates = kept;
+            }
+        }
+        if (this.numCandidates == this.candidates.length) {
+            this.candidates = Arrays.copyOf(this.candidates, 2 * this.numCandidates);
+            this.candidateDistances = Arrays.copyOf(this.candidateDistances, 2 * this.numCandidates);
+        }
+        this.candidates[this.numCandidates] = slot;
+        this.candidateDistances[this.numCandidates] = distance;
+        this.numCandidates++;
+    }
+
+    protected void heapPush(double distance) {
+        int i = this.heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (this.heap[parent] >= distance) {
+                break;
+            }
+            this.heap[i] = this.heap[parent];
+            i = parent;
+        }
+        this.heap[i] = distance;
+    }
+
+    protected void heapSiftDown(int i) {
+        double distance = this.heap[i];
+        while (2 * i + 1 < this.heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < this.heapSize && this.heap[child + 1] > this.heap[child]) {
+                child++;
+            }
+            if (this.heap[child] <= distance) {
+                break;
+            }
+            this.heap[i] = this.heap[child];
+            i = child;
+        }
+        this.heap[i] = distance;
+    }
+
+    /**
+     * Computes the squared distance between the query and a stored instance,
+     * the same way as {@link NormalizableDistance}.
+     */
+    protected double squaredDistance(int slot, double cutOffValue) {
+        int offset = slot * this.numAttributes;
+        double distance = 0;
+        for (int j = 0; j < this.numAttributes; j++) {
+            if (j == this.classIndex) {
+                continue;
+            }
+            double diff = difference(j, this.query[j], this.values[offset + j]);
+            distance += diff * diff;
+            if (distance > cutOffValue) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * Computes a lower bound of the squared distance between the query and
+     * the instances of a node. Since the normalization is monotonic, every
+     * term is at most the corresponding term of the distance.
+     */
+    protected double lowerBound(Node node, double cutOffValue) {
+        double bound = 0;
+        for (int j = 0; j < this.numAttributes; j++) {
+            if (j == this.classIndex) {
+                continue;
+            }
+            double value = this.query[j];
+            double diff = 0;
+            if (this.isNominal[j]) {
+                if (Double.isNaN(value) || value < node.lo[j] || value > node.hi[j]) {
+                    diff = 1;
+                }
+            } else if (!Double.isNaN(value) && !node.hasMissing[j]) {
+                if (value < node.lo[j]) {
+                    diff = norm(node.lo[j], j) - norm(value, j);
+                } else if (value > node.hi[j]) {
+                    diff = norm(value, j) - norm(node.hi[j], j);
+                }
+            }
+            bound += diff * diff;
+            if (bound > cutOffValue) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return bound;
+    }
+
+    protected double norm(double x, int i) {
+        if (Double.isNaN(this.min[i]) || (this.max[i] == this.min[i])) {
+            return 0;
+        } else {
+            return (x - this.min[i]) / (this.max[i] - this.min[i]);
+        }
+    }
+
+    protected double difference(int index, double val1, double val2) {
+        if (this.isNominal[index]) {
+            if (Double.isNaN(val1) || Double.isNaN(val2) || ((int) val1 != (int) val2)) {
+                return 1;
+            } else {
+                return 0;
+            }
+        } else {
+            if (Double.isNaN(val1) || Double.isNaN(val2)) {
+                if (Double.isNaN(val1) && Double.isNaN(val2)) {
+                    return 1;
+                } else {
+                    double diff = Double.isNaN(val2) ? norm(val1, index) : norm(val2, index);
+                    if (diff < 0.5) {
+                        diff = 1.0 - diff;
+                    }
+                    return diff;
+                }
+            } else {
+                return norm(val1, index) - norm(val2, index);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the ranges of the attributes whose minimum or maximum was
+     * removed.
+     */
+    protected void updateRanges() {
+        for (int j = 0; j < this.numAttributes; j++) {
+            if (this.rangeOutdated[j]) {
+                this.min[j] = Double.POSITIVE_INFINITY;
+                this.max[j] = Double.NEGATIVE_INFINITY;
+                if (this.useTree) {
+                    updateRange(this.root, j);
+                } else {
+                    for (int i = 0; i < this.size; i++) {
+                        updateRange(idAt(i), j);
+                    }
+                }
+                this.rangeOutdated[j] = false;
+            }
+        }
+        this.rangesOutdated = false;
+    }
+
+    protected void updateRange(int slot, int attributeIndex) {
+        double value = this.values[slot * this.numAttributes + attributeIndex];
+        if (value < this.min[attributeIndex]) {
+            this.min[attributeIndex] = value;
+        }
+        if (value > this.max[attributeIndex]) {
+            this.max[attributeIndex] = value;
+        }
+    }
+
+    protected void updateRange(Node node, int attributeIndex) {
+        // the boxes contain the values of their instances, skip the ones
+        // that cannot change the range found so far
+        if (node.lo[attributeIndex] >= this.min[attributeIndex]
+                && node.hi[attributeIndex] <= this.max[attributeIndex]) {
+            return;
+        }
+        if (node.isLeaf()) {
+            for (int i = 0; i < node.count; i++) {
+                updateRange(node.slots[i], attributeIndex);
+            }
+        } else {
+            updateRange(node.left, attributeIndex);
+            updateRange(node.right, attributeIndex);
+        }
+    }
+
+    protected void modified() {
+        this.modificationsSinceBuild++;
+        if (this.modificationsSinceBuild > 2 * Math.max(this.size, LEAF_SIZE)) {
+            build();
+        }
+    }
+
+    /**
+     * Rebuilds the k-d tree from the instances of the window.
+     */
+    protected void build() {
+        int[] slots = new int[this.size];
+        for (int i = 0; i < this.size; i++) {
+            slots[i] = idAt(i);
+        }
+        this.root = build(slots, 0, slots.length);
+        this.modificationsSinceBuild = 0;
+    }
+
+    protected Node build(int[] slots, int from, int to) {
+        Node node = new Node(this.numAttributes);
+        for (int i = from; i < to; i++) {
+            node.include(this.values, slots[i] * this.numAttributes);
+        }
+        int middle = to - from > LEAF_SIZE ? partition(node, slots, from, to) : -1;
+        if (middle < 0) {
+            node.slots = Arrays.copyOfRange(slots, from, Math.max(to, from + LEAF_SIZE + 1));
+            node.count = to - from;
+            node.maxCount = Math.max(LEAF_SIZE, node.count);
+            for (int i = 0; i < node.count; i++) {
+                this.leafOf[node.slots[i]] = node;
+                this.positionInLeaf[node.slots[i]] = i;
+            }
+        } else {
+            node.left = build(slots, from, middle);
+            node.right = build(slots, middle, to);
+            node.slots = null;
+        }
+        return node;
+    }
+
+    protected void insert(int slot) {
+        int offset = slot * this.numAttributes;
+        if (this.root == null) {
+            this.root = new Node(this.numAttributes);
+        }
+        Node node = this.root;
+        while (true) {
+            node.include(this.values, offset);
+            if (node.isLeaf()) {
+                break;
+            }
+            node = this.values[offset + node.splitAttribute] > node.splitValue ? node.right : node.left;
+        }
+        if (node.count == node.slots.length) {
+            node.slots = Arrays.copyOf(node.slots, 2 * node.count);
+        }
+        this.leafOf[slot] = node;
+        this.positionInLeaf[slot] = node.count;
+        node.slots[node.count++] = slot;
+        if (node.count > node.maxCount) {
+            split(node);
+        }
+    }
+
+    protected void split(Node leaf) {
+        int[] slots = Arrays.copyOf(leaf.slots, leaf.count);
+        // the box of the leaf may be larger than its instances
+        Node box = new Node(this.numAttributes);
+        for (int slot : slots) {
+            box.include(this.values, slot * this.numAttributes);
+        }
+        int middle = partition(box, slots, 0, slots.length);
+        if (middle < 0) {
+            // all the instances are identical, try again when the leaf doubled
+            leaf.maxCount *= 2;
+            return;
+        }
+        leaf.splitAttribute = box.splitAttribute;
+        leaf.splitValue = box.splitValue;
+        leaf.left = build(slots, 0, middle);
+        leaf.right = build(slots, middle, slots.length);
+        leaf.slots = null;
+        leaf.count = 0;
+    }
+
+    /**
+     * Chooses the split of a node, along the attribute of largest normalized
+     * spread at the median value, and partitions the slots accordingly.
+     *
+     * @return the start of the right part, or -1 if the node cannot be split
+     */
+    protected int partition(Node node, int[] slots, int from, int to) {
+        int splitAttribute = -1;
+        double bestSpread = 0;
+        for (int j = 0; j < this.numAttributes; j++) {
+            if (j == this.classIndex || !(node.hi[j] > node.lo[j])) {
+                continue;
+            }
+            double spread = node.hi[j] - node.lo[j];
+            double width = this.max[j] - this.min[j];
+            if (width > 0 && !Double.isInfinite(width)) {
+                spread /= width;
+            }
+            if (spread > bestSpread) {
+                bestSpread = spread;
+                splitAttribute = j;
+            }
+        }
+        if (splitAttribute < 0) {
+            return -1;
+        }
+        double[] attributeValues = new double[to - from];
+        for (int i = from; i < to; i++) {
+            attributeValues[i - from] = this.values[slots[i] * this.numAttributes + splitAttribute];
+        }
+        Arrays.sort(attributeValues);
+        double splitValue = attributeValues[(attributeValues.length - 1) / 2];
+        if (!(splitValue < node.hi[splitAttribute])) {
+            // take the largest value below the maximum, so both parts are non-empty
+            splitValue = node.lo[splitAttribute];
+            for (double value : attributeValues) {
+                if (value < node.hi[splitAttribute] && value > splitValue) {
+                    splitValue = value;
+                }
+            }
+        }
+        node.splitAttribute = splitAttribute;
+        node.splitValue = splitValue;
+        int i = from;
+        int j = to - 1;
+        while (i <= j) {
+            if (this.values[slots[i] * this.numAttributes + splitAttribute] > splitValue) {
+                int slot = slots[i];
+                slots[i] = slots[j];
+                slots[j] = slot;
+                j--;
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+}
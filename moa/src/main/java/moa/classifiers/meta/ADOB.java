@@ -71,6 +71,9 @@ public class ADOB extends AbstractClassifier implements MultiClassClassifier {
     public FlagOption pureBoostOption = new FlagOption("pureBoost", 'p',
             "Boost with weights only; no poisson.");
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     protected Classifier[] ensemble;
     
     protected int[] orderPosition;
@@ -79,6 +82,8 @@ public class ADOB extends AbstractClassifier implements MultiClassClassifier {
 
     protected double[] swms;
 
+    protected EnsembleExecutor executor;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
@@ -91,6 +96,14 @@ public class ADOB extends AbstractClassifier implements MultiClassClassifier {
         }
         this.scms = new double[this.ensemble.length];
         this.swms = new double[this.ensemble.length];
+        this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+    }
+
+    protected EnsembleExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        }
+        return this.executor;
     }
 
     @Override
@@ -167,21 +180,35 @@ public class ADOB extends AbstractClassifier implements MultiClassClassifier {
         return 0.0;
     }
 
-    public double[] getVotesForInstance(Instance inst) {
-        DoubleVector combinedVote = new DoubleVector();
+    public double[] getVotesForInstance(final Instance inst) {
+        // only the experts before the first one without weight vote
+        final double[] memberWeights = new double[this.ensemble.length];
+        int numberOfVoters = 0;
         for (int i = 0; i < this.ensemble.length; i++) {
             double memberWeight = getEnsembleMemberWeight(i);
             if (memberWeight > 0.0) {
-                DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(inst));
-                if (vote.sumOfValues() > 0.0) {
-                    vote.normalize();
-                    vote.scaleValues(memberWeight);
-                    combinedVote.addValues(vote);
-                }
+                memberWeights[i] = memberWeight;
+                numberOfVoters++;
             } else {
                 break;
             }
         }
+        final double[][] votes = new double[numberOfVoters][];
+        getExecutor().forEachMember(numberOfVoters, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int i) {
+                votes[i] = ensemble[i].getVotesForInstance(inst);
+            }
+        });
+        DoubleVector combinedVote = new DoubleVector();
+        for (int i = 0; i < numberOfVoters; i++) {
+            DoubleVector vote = new DoubleVector(votes[i]);
+            if (vote.sumOfValues() > 0.0) {
+                vote.normalize();
+                vote.scaleValues(memberWeights[i]);
+                combinedVote.addValues(vote);
+            }
+        }
         
         return combinedVote.getArrayRef();
     }
@@ -24,26 +24,25 @@ import moa.capabilities.CapabilitiesHandler;
 import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.AbstractClassifier;
+import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.DoubleVector;
 import moa.core.InstanceExample;
 import moa.core.Measurement;
+import moa.core.MemoryAccountable;
 import moa.core.MiscUtils;
+import moa.core.SizeOf;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.concurrent.Callable;
+import java.util.Arrays;
 
 import moa.classifiers.trees.ARFHoeffdingTree;
 import moa.evaluation.BasicClassificationPerformanceEvaluator;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import moa.AbstractMOAObject;
 import moa.classifiers.core.driftdetection.ChangeDetector;
 
@@ -73,6 +72,7 @@ import moa.classifiers.core.driftdetection.ChangeDetector;
  * values corresponds to M - m</li>
  * <li>-a : The lambda value for bagging (lambda=6 corresponds to levBag)</li>
  * <li>-j : Number of threads to be used for training</li>
+ * <li>-b : Number of instances buffered before training the trees</li>
  * <li>-x : Change detector for drifts and its parameters</li>
  * <li>-p : Change detector for warnings (start training bkg learner)</li>
  * <li>-w : Should use weighted voting?</li>
@@ -84,7 +84,7 @@ import moa.classifiers.core.driftdetection.ChangeDetector;
  * @version $Revision: 1 $
  */
 public class AdaptiveRandomForest extends AbstractClassifier implements MultiClassClassifier,
-                                                                        CapabilitiesHandler {
+                                                                        CapabilitiesHandler, MemoryAccountable {
 
     @Override
     public String getPurposeString() {
@@ -115,6 +115,9 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
     public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
         "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
     
+    public IntOption batchSizeOption = new IntOption("batchSize", 'b',
+        "Number of instances buffered before training the trees, each job training its own subset of trees on the whole batch (1 = train on every instance)", 1, 1, Integer.MAX_VALUE);
+    
     public ClassOption driftDetectionMethodOption = new ClassOption("driftDetectionMethod", 'x',
         "Change detector for drifts and its parameters", ChangeDetector.class, "ADWINChangeDetector -a 1.0E-5");
 
@@ -142,7 +145,12 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
     protected int subspaceSize;
     protected BasicClassificationPerformanceEvaluator evaluator;
 
-    private ExecutorService executor;
+    // Instances waiting to be trained on when batchSize > 1
+    protected Instance[] batch;
+    protected int batchCount;
+
+    // Runs the members on the fork/join pool shared by the ensembles
+    protected EnsembleExecutor executor;
     
     @Override
     public void resetLearningImpl() {
@@ -151,48 +159,114 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         this.subspaceSize = 0;
         this.instancesSeen = 0;
         this.evaluator = new BasicClassificationPerformanceEvaluator();
+        this.batch = null;
+        this.batchCount = 0;
         
         // Multi-threading
-        int numberOfJobs;
-        if(this.numberOfJobsOption.getValue() == -1) 
-            numberOfJobs = Runtime.getRuntime().availableProcessors();
-        else 
-            numberOfJobs = this.numberOfJobsOption.getValue();
-        // SINGLE_THREAD and requesting for only 1 thread are equivalent. 
-        // this.executor will be null and not used...
-        if(numberOfJobs != AdaptiveRandomForest.SINGLE_THREAD && numberOfJobs != 1)
-            this.executor = Executors.newFixedThreadPool(numberOfJobs);
+        this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+    }
+
+    protected EnsembleExecutor getExecutor() {
+        if(this.executor == null)
+            this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        return this.executor;
     }
 
     @Override
-    public void trainOnInstanceImpl(Instance instance) {
+    public void trainOnInstanceImpl(final Instance instance) {
         ++this.instancesSeen;
         if(this.ensemble == null) 
             initEnsemble(instance);
         
-        Collection<TrainingRunnable> trainers = new ArrayList<TrainingRunnable>();
+        if(this.batchSizeOption.getValue() > 1) {
+            if(this.batch == null)
+                this.batch = new Instance[this.batchSizeOption.getValue()];
+            this.batch[this.batchCount++] = instance;
+            if(this.batchCount == this.batch.length)
+                trainOnBatch();
+            return;
+        }
+        
+        double[][] votes = getVotesOfMembers(instance);
+        final int[] k = new int[this.ensemble.length];
         for (int i = 0 ; i < this.ensemble.length ; i++) {
-            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(instance));
+            DoubleVector vote = new DoubleVector(votes[i]);
             InstanceExample example = new InstanceExample(instance);
             this.ensemble[i].evaluator.addResult(example, vote.getArrayRef());
-            int k = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
-            if (k > 0) {
-                if(this.executor != null) {
-                    TrainingRunnable trainer = new TrainingRunnable(this.ensemble[i], 
-                        instance, k, this.instancesSeen);
-                    trainers.add(trainer);
-                }
-                else { // SINGLE_THREAD is in-place... 
-                    this.ensemble[i].trainOnInstance(instance, k, this.instancesSeen);
-                }
-            }
+            k[i] = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
         }
-        if(this.executor != null) {
-            try {
-                this.executor.invokeAll(trainers);
-            } catch (InterruptedException ex) {
-                throw new RuntimeException("Could not call invokeAll() on training threads.");
+        final long instancesSeen = this.instancesSeen;
+        getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int i) {
+                if (k[i] > 0)
+                    ensemble[i].trainOnInstance(instance, k[i], instancesSeen);
+            }
+        });
+    }
+
+    /**
+     * Trains the ensemble on the buffered instances. Every task trains a range
+     * of the trees on the whole batch, so the threads synchronize once
+     * per batch instead of once per instance. The Poisson weights are drawn
+     * beforehand in the same order as when training on every instance, and
+     * each tree sees the instances in order, so at the end of a batch the trees
+     * and their drift detectors are in the same state as without batching. 
+     * Only the votes obtained in between lag behind by up to batchSize - 1 
+     * instances.
+     */
+    protected void trainOnBatch() {
+        final int[][] weights = new int[this.batchCount][this.ensemble.length];
+        for (int t = 0 ; t < this.batchCount ; t++)
+            for (int i = 0 ; i < this.ensemble.length ; i++)
+                weights[t][i] = MiscUtils.poisson(this.lambdaOption.getValue(), this.classifierRandom);
+        final long firstInstanceSeen = this.instancesSeen - this.batchCount + 1;
+        getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int i) {
+                trainMemberOnBatch(i, weights, firstInstanceSeen);
             }
+        });
+        Arrays.fill(this.batch, 0, this.batchCount, null);
+        this.batchCount = 0;
+    }
+
+    /**
+     * Trains the ensemble on the incomplete batch, if any, so that no
+     * buffered instance is left out when the stream ends.
+     */
+    @Override
+    public void trainOnPendingInstances() {
+        if(this.batchCount > 0)
+            trainOnBatch();
+    }
+
+    /**
+     * Copies the forest, the copy being trained on the incomplete batch. The
+     * copy therefore reflects every instance seen so far, while this forest
+     * keeps buffering, so taking copies does not change its batches.
+     */
+    @Override
+    public Classifier copy() {
+        AdaptiveRandomForest copy = (AdaptiveRandomForest) super.copy();
+        copy.trainOnPendingInstances();
+        return copy;
+    }
+
+    /**
+     * Tests then trains one member of the ensemble on the buffered instances. 
+     *
+     * @param index the index of the member in the ensemble
+     * @param weights the Poisson weights of every instance and member
+     * @param firstInstanceSeen the number of instances seen at the first instance of the batch
+     */
+    protected void trainMemberOnBatch(int index, int[][] weights, long firstInstanceSeen) {
+        ARFBaseLearner learner = this.ensemble[index];
+        for (int t = 0 ; t < this.batchCount ; t++) {
+            Instance instance = this.batch[t];
+            learner.evaluator.addResult(new InstanceExample(instance), learner.getVotesForInstance(instance));
+            if (weights[t][index] > 0)
+                learner.trainOnInstance(instance, weights[t][index], firstInstanceSeen + t);
         }
     }
 
@@ -202,9 +276,10 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         if(this.ensemble == null) 
             initEnsemble(testInstance);
         DoubleVector combinedVote = new DoubleVector();
+        double[][] votes = getVotesOfMembers(testInstance);
 
         for(int i = 0 ; i < this.ensemble.length ; ++i) {
-            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(testInstance));
+            DoubleVector vote = new DoubleVector(votes[i]);
             if (vote.sumOfValues() > 0.0) {
                 vote.normalize();
                 double acc = this.ensemble[i].evaluator.getPerformanceMeasurements()[1].getValue();
@@ -219,11 +294,37 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         return combinedVote.getArrayRef();
     }
 
+    /**
+     * Gets the votes of every member of the ensemble. The members are queried
+     * concurrently if multithreading is enabled, the votes being combined in
+     * the order of the ensemble afterwards, so the result does not depend on
+     * the number of jobs.
+     *
+     * @param instance the instance to predict, read but not modified
+     * @return the votes of each member, in the order of the ensemble
+     */
+    protected double[][] getVotesOfMembers(final Instance instance) {
+        final double[][] votes = new double[this.ensemble.length][];
+        getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int i) {
+                votes[i] = ensemble[i].getVotesForInstance(instance);
+            }
+        });
+        return votes;
+    }
+
     @Override
     public boolean isRandomizable() {
         return true;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        // instances are buffered until the batch is full
+        return this.batchSizeOption.getValue() > 1;
+    }
+
     @Override
     public void getModelDescription(StringBuilder arg0, int arg1) {
     }
@@ -297,6 +398,18 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         }
     }
 
+    @Override
+    public long estimatedByteSize() {
+        long byteSize = SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize()
+                + SizeOf.sizeOfArray(this.ensemble) + SizeOf.sizeOfArray(this.batch) + SizeOf.estimatedSizeOf(this.evaluator);
+        if (this.ensemble != null) {
+            for (ARFBaseLearner member : this.ensemble) {
+                byteSize += member.estimatedByteSize();
+            }
+        }
+        return byteSize;
+    }
+
     @Override
     public ImmutableCapabilities defineImmutableCapabilities() {
         if (this.getClass() == AdaptiveRandomForest.class)
@@ -309,7 +422,7 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
      * Inner class that represents a single tree member of the forest. 
      * It contains some analysis information, such as the numberOfDriftsDetected, 
      */
-    protected final class ARFBaseLearner extends AbstractMOAObject {
+    protected final class ARFBaseLearner extends AbstractMOAObject implements MemoryAccountable {
         public int indexOriginal;
         public long createdOn;
         public long lastDriftOn;
@@ -445,34 +558,15 @@ public class AdaptiveRandomForest extends AbstractClassifier implements MultiCla
         @Override
         public void getDescription(StringBuilder sb, int indent) {
         }
-    }
-    
-    /***
-     * Inner class to assist with the multi-thread execution. 
-     */
-    protected class TrainingRunnable implements Runnable, Callable<Integer> {
-        final private ARFBaseLearner learner;
-        final private Instance instance;
-        final private double weight;
-        final private long instancesSeen;
-
-        public TrainingRunnable(ARFBaseLearner learner, Instance instance, 
-                double weight, long instancesSeen) {
-            this.learner = learner;
-            this.instance = instance;
-            this.weight = weight;
-            this.instancesSeen = instancesSeen;
-        }
-
-        @Override
-        public void run() {
-            learner.trainOnInstance(this.instance, this.weight, this.instancesSeen);
-        }
 
         @Override
-        public Integer call() throws Exception {
-            run();
-            return 0;
+        public long estimatedByteSize() {
+            return SizeOf.shallowSizeOfInstance(getClass())
+                    + SizeOf.estimatedSizeOf(this.classifier)
+                    + SizeOf.estimatedSizeOf(this.driftDetectionMethod)
+                    + SizeOf.estimatedSizeOf(this.warningDetectionMethod)
+                    + SizeOf.estimatedSizeOf(this.evaluator)
+                    + SizeOf.estimatedSizeOf(this.bkgLearner);
         }
     }
 }
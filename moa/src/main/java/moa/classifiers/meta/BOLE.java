@@ -74,6 +74,9 @@ public class BOLE extends AbstractClassifier implements MultiClassClassifier {
     public FloatOption weightShiftOption = new FloatOption("weightShift", 
             'w', "Weight shift associated with the error bound.",
             0.0, 0.0, 5.0);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
     
     private double memberWeight;
     private double key_acc; 
@@ -87,6 +90,7 @@ public class BOLE extends AbstractClassifier implements MultiClassClassifier {
     protected int[] orderPosition;
     protected double[] scms;
     protected double[] swms;
+    protected EnsembleExecutor executor;
 
     @Override
     public String getPurposeString() {
@@ -105,6 +109,14 @@ public class BOLE extends AbstractClassifier implements MultiClassClassifier {
         }
         this.scms = new double[this.ensemble.length];
         this.swms = new double[this.ensemble.length];
+        this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+    }
+
+    protected EnsembleExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        }
+        return this.executor;
     }
 
     @Override
@@ -183,22 +195,38 @@ public class BOLE extends AbstractClassifier implements MultiClassClassifier {
         return 0.0;
     }
 
-    public double[] getVotesForInstance(Instance inst) {
-        DoubleVector combinedVote = new DoubleVector(); 
+    public double[] getVotesForInstance(final Instance inst) {
+        // the experts allowed to vote are chosen first, then queried together
+        final int[] voters = new int[this.ensemble.length];
+        final double[] memberWeights = new double[this.ensemble.length];
+        int numberOfVoters = 0;
         for (i = 0; i < this.ensemble.length; i++) {
             memberWeight = getEnsembleMemberWeight(i) + this.weightShiftOption.getValue(); 
             if (okay) {
-                DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(inst));
-                if (vote.sumOfValues() > 0.0) {
-                    vote.normalize();
-                    vote.scaleValues(memberWeight);
-                    combinedVote.addValues(vote);
-                } 
+                voters[numberOfVoters] = i;
+                memberWeights[numberOfVoters] = memberWeight;
+                numberOfVoters++;
             } 
             else if (this.breakVotesOption.isSet()) {
                 break;
             }
         }
+        final double[][] votes = new double[numberOfVoters][];
+        getExecutor().forEachMember(numberOfVoters, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int index) {
+                votes[index] = ensemble[voters[index]].getVotesForInstance(inst);
+            }
+        });
+        DoubleVector combinedVote = new DoubleVector(); 
+        for (int v = 0; v < numberOfVoters; v++) {
+            DoubleVector vote = new DoubleVector(votes[v]);
+            if (vote.sumOfValues() > 0.0) {
+                vote.normalize();
+                vote.scaleValues(memberWeights[v]);
+                combinedVote.addValues(vote);
+            } 
+        }
         return combinedVote.getArrayRef();
     }
 
@@ -21,6 +21,7 @@
 package moa.classifiers.meta;
 
 import com.github.javacliparser.FloatOption;
+import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
 import com.yahoo.labs.samoa.instances.Instance;
 import moa.classifiers.AbstractClassifier;
@@ -81,6 +82,11 @@ public class DACC extends AbstractClassifier implements MultiClassClassifier {
     public MultiChoiceOption combinationOption= new MultiChoiceOption("cmb", 'c', "The combination function.",
             new String[]{"MAX","WVD"} , new String[] {"Maximum","Weighted Vote of the best"},
             0);
+    /**
+     * Number of threads training and querying the classifiers
+     */
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
     /**
      * Ensemble of classifiers
      */
@@ -101,6 +107,10 @@ public class DACC extends AbstractClassifier implements MultiClassClassifier {
      * Number of instances from the stream 
      */
     protected int nbInstances = 0;
+    /**
+     * Runs the classifiers, concurrently if several jobs are used
+     */
+    protected EnsembleExecutor executor;
     
 
     /**
@@ -129,16 +139,24 @@ public class DACC extends AbstractClassifier implements MultiClassClassifier {
             this.ensembleWeights[i] = new Pair(0.0,i);
             this.ensembleWindows[i] = new int[(int)this.evaluationSizeOption.getValue()];
         }
+        this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
        
     }
 
+    protected EnsembleExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        }
+        return this.executor;
+    }
+
     @Override
     public void trainOnInstanceImpl(Instance inst) {
     	trainAndClassify(inst);
     }
 
     @Override 
-    public double[] getVotesForInstance(Instance inst) {
+    public double[] getVotesForInstance(final Instance inst) {
 
         DoubleVector combinedVote = new DoubleVector();
         ArrayList<Integer> arr;
@@ -153,16 +171,28 @@ public class DACC extends AbstractClassifier implements MultiClassClassifier {
      
         if (this.trainingWeightSeenByModel > 0.0) {
 
+            // the classifiers with a positive weight are queried together
+            final int[] voters = new int[arr.size()];
+            int nbVoters = 0;
             for (int i = 0; i < arr.size(); i++) {
-                if (this.ensembleWeights[arr.get(i)].val > 0.0) {
+                if (this.ensembleWeights[arr.get(i)].val > 0.0)
+                    voters[nbVoters++] = arr.get(i);
+            }
+            final double[][] votes = new double[nbVoters][];
+            getExecutor().forEachMember(nbVoters, new EnsembleExecutor.MemberTask() {
+                @Override
+                public void run(int i) {
+                    votes[i] = ensemble[voters[i]].getVotesForInstance(inst);
+                }
+            });
 
-                    DoubleVector vote = new DoubleVector(this.ensemble[arr.get(i)].getVotesForInstance(inst));
+            for (int i = 0; i < nbVoters; i++) {
+                DoubleVector vote = new DoubleVector(votes[i]);
 
-                    if (vote.sumOfValues() > 0.0) {
-                        vote.normalize();
-                        vote.scaleValues(this.ensembleWeights[arr.get(i)].val);
-                        combinedVote.addValues(vote);
-                    }
+                if (vote.sumOfValues() > 0.0) {
+                    vote.normalize();
+                    vote.scaleValues(this.ensembleWeights[voters[i]].val);
+                    combinedVote.addValues(vote);
                 }
             }
         }
@@ -175,38 +205,45 @@ public class DACC extends AbstractClassifier implements MultiClassClassifier {
      * updates the adaptive classifiers accordingly
      * @param inst the instance from the stream
      */
-    protected void trainAndClassify(Instance inst){
+    protected void trainAndClassify(final Instance inst){
     	
         nbInstances++;
     	
         boolean mature = true;
         boolean unmature = true;
         
-    	for (int i = 0; i < getNbActiveClassifiers(); i++) {
+    	for (int i = 0; i < getNbAdaptiveClassifiers(); i++) {
         	
     		// check if all adaptive learners are mature
-    		if (this.ensembleAges[i] < this.maturityOption.getValue() && i<getNbAdaptiveClassifiers())
+    		if (this.ensembleAges[i] < this.maturityOption.getValue())
             	mature = false;
         	
     		// check if all adaptive learners are not mature 
-        	if (this.ensembleAges[i] >= this.maturityOption.getValue() && i<getNbAdaptiveClassifiers())
+        	if (this.ensembleAges[i] >= this.maturityOption.getValue())
             	unmature = false;
         	
-        	if (this.nbInstances >= this.ensembleWeights[i].index + 1){
-        
-        		// train adaptive learners
-        		if (i < getNbAdaptiveClassifiers())
-        			this.ensemble[i].trainOnInstance(inst);
-        
-        		int val = this.ensemble[i].correctlyClassifies(inst)?1:0;
-            	double sum = updateEvaluationWindow(i, val);  
-            	this.ensembleWeights[i].val = sum;
-        		this.ensembleAges[i] = this.ensembleAges[i]+1;
-        		
-        	}
-        	
         }
     	
+    	// every classifier only updates its own age, window and weight
+    	final int nbAdaptive = getNbAdaptiveClassifiers();
+    	getExecutor().forEachMember(getNbActiveClassifiers(), new EnsembleExecutor.MemberTask() {
+    		@Override
+    		public void run(int i) {
+    			if (nbInstances >= ensembleWeights[i].index + 1){
+    				
+    				// train adaptive learners
+    				if (i < nbAdaptive)
+    					ensemble[i].trainOnInstance(inst);
+    				
+    				int val = ensemble[i].correctlyClassifies(inst)?1:0;
+    				double sum = updateEvaluationWindow(i, val);  
+    				ensembleWeights[i].val = sum;
+    				ensembleAges[i] = ensembleAges[i]+1;
+    				
+    			}
+    		}
+    	});
+    	
     	// if all adaptive learners are not mature --> set weights to one 
     	if (unmature)
         	for (int i = 0; i < getNbAdaptiveClassifiers(); i++)
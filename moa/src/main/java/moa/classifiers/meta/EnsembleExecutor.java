@@ -0,0 +1,158 @@
+/*
+ *    EnsembleExecutor.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.meta;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import moa.classifiers.Classifier;
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Runs a task on every member of an ensemble, concurrently when more than
+ * one job is requested, and returns once all members are done.
+ *
+ * <p>The members are split in contiguous ranges, a few per thread, run on a
+ * fork/join pool shared by all ensembles using the same number of threads.
+ * Its threads are daemons, and an ensemble running inside another one helps
+ * with the work instead of blocking a thread.</p>
+ *
+ * <p>A task may only change the state of its own member. The ensembles draw
+ * the random numbers of all members on the calling thread, in the order of
+ * the members, before running the tasks, and combine the results in that
+ * order afterwards. So every member gets the same random stream as when
+ * training serially, and the results do not depend on the number of jobs.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class EnsembleExecutor implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Number of ranges of members per thread, to balance members of different cost. */
+    protected static final int RANGES_PER_THREAD = 4;
+
+    /** Pools shared by all ensembles, by number of threads. */
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+    /** Task run on one member of an ensemble. */
+    public interface MemberTask {
+
+        void run(int index);
+    }
+
+    protected int numberOfThreads;
+
+    /**
+     * Creates an executor.
+     *
+     * @param numberOfJobs the number of threads, -1 for as many as processors,
+     * 0 or 1 to run the members one after the other on the calling thread
+     */
+    public EnsembleExecutor(int numberOfJobs) {
+        this.numberOfThreads = numberOfJobs == -1
+                ? Runtime.getRuntime().availableProcessors() : Math.max(1, numberOfJobs);
+    }
+
+    public int getNumberOfThreads() {
+        return this.numberOfThreads;
+    }
+
+    /**
+     * Runs the task on the members 0 to numberOfMembers - 1.
+     *
+     * @param numberOfMembers the number of members
+     * @param task the task to run on every member
+     */
+    public void forEachMember(int numberOfMembers, MemberTask task) {
+        int numberOfRanges = Math.min(numberOfMembers, this.numberOfThreads * RANGES_PER_THREAD);
+        if (this.numberOfThreads == 1 || numberOfRanges <= 1) {
+            for (int i = 0; i < numberOfMembers; i++) {
+                task.run(i);
+            }
+            return;
+        }
+        ForkJoinPool pool = POOLS.get(this.numberOfThreads);
+        if (pool == null) {
+            POOLS.putIfAbsent(this.numberOfThreads, new ForkJoinPool(this.numberOfThreads));
+            pool = POOLS.get(this.numberOfThreads);
+        }
+        pool.invoke(new MemberRanges(task, numberOfMembers, 0, numberOfRanges, numberOfRanges));
+    }
+
+    /**
+     * Gets the votes of every member for an instance.
+     *
+     * @param ensemble the members
+     * @param inst the instance, only read
+     * @return the votes of the members, in their order
+     */
+    public double[][] getVotesOfMembers(final Classifier[] ensemble, final Instance inst) {
+        final double[][] votes = new double[ensemble.length][];
+        forEachMember(ensemble.length, new MemberTask() {
+            @Override
+            public void run(int index) {
+                votes[index] = ensemble[index].getVotesForInstance(inst);
+            }
+        });
+        return votes;
+    }
+
+    /** Runs the ranges from to to, splitting them in halves. */
+    protected static class MemberRanges extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final MemberTask task;
+
+        protected final int numberOfMembers;
+
+        protected final int from;
+
+        protected final int to;
+
+        protected final int numberOfRanges;
+
+        public MemberRanges(MemberTask task, int numberOfMembers, int from, int to, int numberOfRanges) {
+            this.task = task;
+            this.numberOfMembers = numberOfMembers;
+            this.from = from;
+            this.to = to;
+            this.numberOfRanges = numberOfRanges;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > 1) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new MemberRanges(this.task, this.numberOfMembers, this.from, middle, this.numberOfRanges),
+                        new MemberRanges(this.task, this.numberOfMembers, middle, this.to, this.numberOfRanges));
+                return;
+            }
+            int first = (int) ((long) this.from * this.numberOfMembers / this.numberOfRanges);
+            int last = (int) ((long) this.to * this.numberOfMembers / this.numberOfRanges);
+            for (int i = first; i < last; i++) {
+                this.task.run(i);
+            }
+        }
+    }
+}
@@ -61,6 +61,7 @@ import moa.tasks.TaskMonitor;
  * <li>-b : Comma-separated string of classifiers</li>
  * <li>-g : Grace period (1 = optimal)</li>
  * <li>-k : Number of active classifiers</li>
+ * <li>-j : Total number of concurrent jobs used for processing</li>
  * </ul>
  *
  * @author Jan N. van Rijn (j.n.van.rijn@liacs.leidenuniv.nl)
@@ -96,8 +97,14 @@ public abstract class HeterogeneousEnsembleAbstract extends AbstractClassifier i
 			"weightClassifiers", 'p',
 			"Uses online performance estimation to weight the classifiers");
 
+	public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+			"Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)",
+			1, -1, Integer.MAX_VALUE);
+
 	protected Classifier[] ensemble;
 
+	protected EnsembleExecutor executor;
+
 	protected double[] historyTotal;
 
 	protected Integer instancesSeen;
@@ -121,13 +128,27 @@ public abstract class HeterogeneousEnsembleAbstract extends AbstractClassifier i
 		return this.ensemble[idx].getCLICreationString(Classifier.class);
 	}
 
+	protected EnsembleExecutor getExecutor() {
+		if (this.executor == null) {
+			this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+		}
+		return this.executor;
+	}
+
 	@Override
-	public double[] getVotesForInstance(Instance inst) {
+	public double[] getVotesForInstance(final Instance inst) {
 		double[] votes = new double[inst.classAttribute().numValues()];
 
+		final double[][] topKVotes = new double[topK.size()][];
+		getExecutor().forEachMember(topK.size(), new EnsembleExecutor.MemberTask() {
+			@Override
+			public void run(int i) {
+				topKVotes[i] = ensemble[topK.get(i)].getVotesForInstance(inst);
+			}
+		});
+
 		for (int i = 0; i < topK.size(); ++i) {
-			double[] memberVotes = normalize(
-					ensemble[topK.get(i)].getVotesForInstance(inst));
+			double[] memberVotes = normalize(topKVotes[i]);
 			double weight = 1.0;
 
 			if (weightClassifiersOption.isSet()) {
@@ -187,6 +208,7 @@ public abstract class HeterogeneousEnsembleAbstract extends AbstractClassifier i
 				return;
 			}
 		}
+		this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
 		super.prepareForUseImpl(monitor, repository);
 
 		topK = topK(historyTotal, activeClassifiersOption.getValue());
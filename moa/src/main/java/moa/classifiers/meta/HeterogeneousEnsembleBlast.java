@@ -47,6 +47,7 @@ import moa.classifiers.MultiClassClassifier;
  * <li>-b : Comma-separated string of classifiers</li>
  * <li>-g : Grace period (1 = optimal)</li>
  * <li>-k : Number of active classifiers</li>
+ * <li>-j : Total number of concurrent jobs used for processing</li>
  * </ul>
  *
  * @author Jan N. van Rijn (j.n.van.rijn@liacs.leidenuniv.nl)
@@ -75,13 +76,23 @@ public class HeterogeneousEnsembleBlast extends HeterogeneousEnsembleAbstract im
 	}
 
 	@Override
-	public void trainOnInstanceImpl(Instance inst) {
+	public void trainOnInstanceImpl(final Instance inst) {
 		int wValue = windowSizeOption.getValue();
 
+		// every member predicts, and is then trained, in parallel
+		final double[][] memberVotes = new double[this.ensemble.length][];
+		getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+			@Override
+			public void run(int i) {
+				memberVotes[i] = ensemble[i].getVotesForInstance(inst);
+				ensemble[i].trainOnInstance(inst);
+			}
+		});
+
 		for (int i = 0; i < this.ensemble.length; i++) {
 
 			// Online Performance estimation
-			double[] votes = ensemble[i].getVotesForInstance(inst);
+			double[] votes = memberVotes[i];
 			boolean correct = (maxIndex(votes) * 1.0 == inst.classValue());
 
 			if (correct && !onlineHistory[i][instancesSeen % wValue]) {
@@ -95,8 +106,6 @@ public class HeterogeneousEnsembleBlast extends HeterogeneousEnsembleAbstract im
 			} else {
 				// nothing happens
 			}
-
-			this.ensemble[i].trainOnInstance(inst);
 		}
 
 		instancesSeen += 1;
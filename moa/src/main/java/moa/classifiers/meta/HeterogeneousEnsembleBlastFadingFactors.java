@@ -47,6 +47,7 @@ import moa.classifiers.MultiClassClassifier;
  * <li>-b : Comma-separated string of classifiers</li>
  * <li>-g : Grace period (1 = optimal)</li>
  * <li>-k : Number of active classifiers</li>
+ * <li>-j : Total number of concurrent jobs used for processing</li>
  * </ul>
  *
  * @author Jan N. van Rijn (j.n.van.rijn@liacs.leidenuniv.nl)
@@ -83,26 +84,39 @@ public class HeterogeneousEnsembleBlastFadingFactors
 	}
 
 	@Override
-	public void trainOnInstanceImpl(Instance inst) {
+	public void trainOnInstanceImpl(final Instance inst) {
+
+		// every member predicts, and is then trained, in parallel
+		final double[][] memberVotes = new double[this.ensemble.length][];
+		final RuntimeException[] errors = new RuntimeException[this.ensemble.length];
+		getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+			@Override
+			public void run(int i) {
+				memberVotes[i] = ensemble[i].getVotesForInstance(inst);
+				try {
+					ensemble[i].trainOnInstance(inst);
+				} catch (RuntimeException e) {
+					errors[i] = e;
+				}
+			}
+		});
 
 		for (int i = 0; i < this.ensemble.length; i++) {
 
 			// Online Performance estimation
-			double[] votes = ensemble[i].getVotesForInstance(inst);
+			double[] votes = memberVotes[i];
 			boolean correct = (maxIndex(votes) * 1.0 == inst.classValue());
 
 			historyTotal[i] = historyTotal[i] * alphaOption.getValue();
 			if (correct) {
 				historyTotal[i] += 1 - alphaOption.getValue();
 			}
-			try {
-				this.ensemble[i].trainOnInstance(inst);
-			} catch (RuntimeException e) {
+			if (errors[i] != null) {
 				this.trainingErrors += 1;
 
 				if (trainingErrors > MAX_TOLLERATED_TRAINING_ERRROS) {
 					throw new RuntimeException(
-							"Too much training errors! Latest: " + e.getMessage());
+							"Too much training errors! Latest: " + errors[i].getMessage());
 				}
 			}
 		}
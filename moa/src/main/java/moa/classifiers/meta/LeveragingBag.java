@@ -36,6 +36,7 @@ import com.yahoo.labs.samoa.instances.Instance;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
 import moa.core.MiscUtils;
+import moa.core.Utils;
 
 /**
  * Leveraging Bagging for evolving data streams using ADWIN. Leveraging Bagging
@@ -84,6 +85,9 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
                 "Leveraging Subagging using resampling without replacement."
             }, 0);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     protected Classifier[] ensemble;
 
     protected ADWIN[] ADError;
@@ -94,6 +98,8 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
 
     protected boolean initMatrixCodes = false;
 
+    protected EnsembleExecutor executor;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
@@ -110,10 +116,18 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
         if (this.outputCodesOption.isSet()) {
             this.initMatrixCodes = true;
         }
+        this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+    }
+
+    protected EnsembleExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        }
+        return this.executor;
     }
 
     @Override
-    public void trainOnInstanceImpl(Instance inst) {
+    public void trainOnInstanceImpl(final Instance inst) {
         int numClasses = inst.numClasses();
         //Output Codes
         if (this.initMatrixCodes == true) {
@@ -146,49 +160,84 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
         }
 
 
-        boolean Change = false;
-        Instance weightedInst = (Instance) inst.copy();
-        double w = this.weightShrinkOption.getValue();
+        // LeveragingBagME needs the prediction of every model before training it
+        final int[] predictions = new int[this.ensemble.length];
+        if (this.leveraginBagAlgorithmOption.getChosenIndex() == 1) {
+            getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+                @Override
+                public void run(int i) {
+                    predictions[i] = Utils.maxIndex(ensemble[i].getVotesForInstance(inst));
+                }
+            });
+        }
 
-        //Train ensemble of classifiers
+        // The weights are drawn in the order of the models, as when training
+        // them one by one on a single copy of the instance: each model sees
+        // the class and weight left by the last model trained before it.
+        final double[] k = new double[this.ensemble.length];
+        final double[] classValues = new double[this.ensemble.length];
+        final double[] weights = new double[this.ensemble.length];
+        double classValue = inst.classValue();
+        double weight = inst.weight();
+        double w = this.weightShrinkOption.getValue();
         for (int i = 0; i < this.ensemble.length; i++) {
-            double k = 0.0;
             switch (this.leveraginBagAlgorithmOption.getChosenIndex()) {
                 case 0: //LeveragingBag
-                    k = MiscUtils.poisson(w, this.classifierRandom);
+                    k[i] = MiscUtils.poisson(w, this.classifierRandom);
                     break;
                 case 1: //LeveragingBagME
                     double error = this.ADError[i].getEstimation();
-                    k = !this.ensemble[i].correctlyClassifies(weightedInst) ? 1.0 : (this.classifierRandom.nextDouble() < (error / (1.0 - error)) ? 1.0 : 0.0);
+                    k[i] = predictions[i] != (int) classValue ? 1.0 : (this.classifierRandom.nextDouble() < (error / (1.0 - error)) ? 1.0 : 0.0);
                     break;
                 case 2: //LeveragingBagHalf
                     w = 1.0;
-                    k = this.classifierRandom.nextBoolean() ? 0.0 : w;
+                    k[i] = this.classifierRandom.nextBoolean() ? 0.0 : w;
                     break;
                 case 3: //LeveragingBagWT
                     w = 1.0;
-                    k = 1.0 + MiscUtils.poisson(w, this.classifierRandom);
+                    k[i] = 1.0 + MiscUtils.poisson(w, this.classifierRandom);
                     break;
                 case 4: //LeveragingSubag
                     w = 1.0;
-                    k = MiscUtils.poisson(1, this.classifierRandom);
-                    k = (k > 0) ? w : 0;
+                    k[i] = MiscUtils.poisson(1, this.classifierRandom);
+                    k[i] = (k[i] > 0) ? w : 0;
                     break;
             }
-            if (k > 0) {
+            if (k[i] > 0) {
                 if (this.outputCodesOption.isSet()) {
-                    weightedInst.setClassValue((double) this.matrixCodes[i][(int) inst.classValue()]);
+                    classValue = (double) this.matrixCodes[i][(int) inst.classValue()];
                 }
-                weightedInst.setWeight(inst.weight() * k);
-                this.ensemble[i].trainOnInstance(weightedInst);
+                weight = inst.weight() * k[i];
             }
-            boolean correctlyClassifies = this.ensemble[i].correctlyClassifies(weightedInst);
-            double ErrEstim = this.ADError[i].getEstimation();
-            if (this.ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
-                if (this.ADError[i].getEstimation() > ErrEstim) {
-                    Change = true;
+            classValues[i] = classValue;
+            weights[i] = weight;
+        }
+
+        //Train ensemble of classifiers
+        final boolean[] changes = new boolean[this.ensemble.length];
+        getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int i) {
+                Instance weightedInst = (Instance) inst.copy();
+                if (outputCodesOption.isSet()) {
+                    weightedInst.setClassValue(classValues[i]);
+                }
+                weightedInst.setWeight(weights[i]);
+                if (k[i] > 0) {
+                    ensemble[i].trainOnInstance(weightedInst);
+                }
+                boolean correctlyClassifies = ensemble[i].correctlyClassifies(weightedInst);
+                double ErrEstim = ADError[i].getEstimation();
+                if (ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
+                    if (ADError[i].getEstimation() > ErrEstim) {
+                        changes[i] = true;
+                    }
                 }
             }
+        });
+        boolean Change = false;
+        for (int i = 0; i < changes.length; i++) {
+            Change |= changes[i];
         }
         if (Change) {
             numberOfChangesDetected++;
@@ -213,9 +262,10 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
         if (this.outputCodesOption.isSet()) {
             return getVotesForInstanceBinary(inst);
         }
+        double[][] votes = getExecutor().getVotesOfMembers(this.ensemble, inst);
         DoubleVector combinedVote = new DoubleVector();
         for (int i = 0; i < this.ensemble.length; i++) {
-            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(inst));
+            DoubleVector vote = new DoubleVector(votes[i]);
             if (vote.sumOfValues() > 0.0) {
                 vote.normalize();
                 combinedVote.addValues(vote);
@@ -226,14 +276,11 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
 
     public double[] getVotesForInstanceBinary(Instance inst) {
         double combinedVote[] = new double[(int) inst.numClasses()];
-        Instance weightedInst = (Instance) inst.copy();
         if (this.initMatrixCodes == false) {
+            // the votes of the binary models do not depend on the class value
+            double[][] votes = getExecutor().getVotesOfMembers(this.ensemble, inst);
             for (int i = 0; i < this.ensemble.length; i++) {
-                //Replace class by OC
-                weightedInst.setClassValue((double) this.matrixCodes[i][(int) inst.classValue()]);
-
-                double vote[];
-                vote = this.ensemble[i].getVotesForInstance(weightedInst);
+                double vote[] = votes[i];
                 //Binary Case
                 int voteClass = 0;
                 if (vote.length == 2) {
@@ -255,6 +302,11 @@ public class LeveragingBag extends AbstractClassifier implements MultiClassClass
         return true;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
     @Override
     public void getModelDescription(StringBuilder out, int indent) {
         // TODO Auto-generated method stub
@@ -29,7 +29,9 @@ import com.yahoo.labs.samoa.instances.Instance;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.MemoryAccountable;
 import moa.core.MiscUtils;
+import moa.core.SizeOf;
 import moa.options.ClassOption;
 import com.github.javacliparser.IntOption;
 
@@ -48,13 +50,14 @@ import com.github.javacliparser.IntOption;
  *
  * <p>Parameters:</p> <ul>
  * <li>-l : Classiﬁer to train</li>
- * <li>-s : The number of models in the bag</li> </ul>
+ * <li>-s : The number of models in the bag</li>
+ * <li>-j : Total number of concurrent jobs used for processing</li> </ul>
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
 public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
-                                                          CapabilitiesHandler {
+                                                          CapabilitiesHandler, MemoryAccountable {
 
     @Override
     public String getPurposeString() {
@@ -69,8 +72,13 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
     public IntOption ensembleSizeOption = new IntOption("ensembleSize", 's',
             "The number of models in the bag.", 10, 1, Integer.MAX_VALUE);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     protected Classifier[] ensemble;
 
+    protected EnsembleExecutor executor;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
@@ -79,25 +87,41 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         for (int i = 0; i < this.ensemble.length; i++) {
             this.ensemble[i] = baseLearner.copy();
         }
+        this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+    }
+
+    protected EnsembleExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        }
+        return this.executor;
     }
 
     @Override
-    public void trainOnInstanceImpl(Instance inst) {
+    public void trainOnInstanceImpl(final Instance inst) {
+        // the weights are drawn in the order of the models, as when training them one by one
+        final int[] k = new int[this.ensemble.length];
         for (int i = 0; i < this.ensemble.length; i++) {
-            int k = MiscUtils.poisson(1.0, this.classifierRandom);
-            if (k > 0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * k);
-                this.ensemble[i].trainOnInstance(weightedInst);
-            }
+            k[i] = MiscUtils.poisson(1.0, this.classifierRandom);
         }
+        getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int i) {
+                if (k[i] > 0) {
+                    Instance weightedInst = (Instance) inst.copy();
+                    weightedInst.setWeight(inst.weight() * k[i]);
+                    ensemble[i].trainOnInstance(weightedInst);
+                }
+            }
+        });
     }
 
     @Override
     public double[] getVotesForInstance(Instance inst) {
+        double[][] votes = getExecutor().getVotesOfMembers(this.ensemble, inst);
         DoubleVector combinedVote = new DoubleVector();
         for (int i = 0; i < this.ensemble.length; i++) {
-            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(inst));
+            DoubleVector vote = new DoubleVector(votes[i]);
             if (vote.sumOfValues() > 0.0) {
                 vote.normalize();
                 combinedVote.addValues(vote);
@@ -111,6 +135,11 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         return true;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
     @Override
     public void getModelDescription(StringBuilder out, int indent) {
         // TODO Auto-generated method stub
@@ -134,4 +163,16 @@ public class OzaBag extends AbstractClassifier implements MultiClassClassifier,
         else
             return new ImmutableCapabilities(Capability.VIEW_STANDARD);
     }
+
+    @Override
+    public long estimatedByteSize() {
+        long byteSize = SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize()
+                + SizeOf.sizeOfArray(this.ensemble);
+        if (this.ensemble != null) {
+            for (Classifier member : this.ensemble) {
+                byteSize += SizeOf.estimatedSizeOf(member);
+            }
+        }
+        return byteSize;
+    }
 }
@@ -78,7 +78,8 @@ import com.github.javacliparser.IntOption;
  * <code>OzaBagAdwin -l HoeffdingTreeNBAdaptive -s 10</code>
  * <p>Parameters:</p> <ul>
  * <li>-l : Classiﬁer to train</li>
- * <li>-s : The number of models in the bag</li> </ul>
+ * <li>-s : The number of models in the bag</li>
+ * <li>-j : Total number of concurrent jobs used for processing</li> </ul>
  *
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
@@ -99,10 +100,15 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
     public IntOption ensembleSizeOption = new IntOption("ensembleSize", 's',
             "The number of models in the bag.", 10, 1, Integer.MAX_VALUE);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     protected Classifier[] ensemble;
 
     protected ADWIN[] ADError;
 
+    protected EnsembleExecutor executor;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
@@ -115,25 +121,44 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
         for (int i = 0; i < this.ensemble.length; i++) {
             this.ADError[i] = new ADWIN();
         }
+        this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+    }
+
+    protected EnsembleExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        }
+        return this.executor;
     }
 
     @Override
-    public void trainOnInstanceImpl(Instance inst) {
-        boolean Change = false;
+    public void trainOnInstanceImpl(final Instance inst) {
+        // the weights are drawn in the order of the models, as when training them one by one
+        final int[] k = new int[this.ensemble.length];
         for (int i = 0; i < this.ensemble.length; i++) {
-            int k = MiscUtils.poisson(1.0, this.classifierRandom);
-            if (k > 0) {
-                Instance weightedInst = (Instance) inst.copy();
-                weightedInst.setWeight(inst.weight() * k);
-                this.ensemble[i].trainOnInstance(weightedInst);
-            }
-            boolean correctlyClassifies = this.ensemble[i].correctlyClassifies(inst);
-            double ErrEstim = this.ADError[i].getEstimation();
-            if (this.ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
-                if (this.ADError[i].getEstimation() > ErrEstim) {
-                    Change = true;
+            k[i] = MiscUtils.poisson(1.0, this.classifierRandom);
+        }
+        final boolean[] changes = new boolean[this.ensemble.length];
+        getExecutor().forEachMember(this.ensemble.length, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int i) {
+                if (k[i] > 0) {
+                    Instance weightedInst = (Instance) inst.copy();
+                    weightedInst.setWeight(inst.weight() * k[i]);
+                    ensemble[i].trainOnInstance(weightedInst);
+                }
+                boolean correctlyClassifies = ensemble[i].correctlyClassifies(inst);
+                double ErrEstim = ADError[i].getEstimation();
+                if (ADError[i].setInput(correctlyClassifies ? 0 : 1)) {
+                    if (ADError[i].getEstimation() > ErrEstim) {
+                        changes[i] = true;
+                    }
                 }
             }
+        });
+        boolean Change = false;
+        for (int i = 0; i < changes.length; i++) {
+            Change |= changes[i];
         }
         if (Change) {
             double max = 0.0;
@@ -154,9 +179,10 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
 
     @Override
     public double[] getVotesForInstance(Instance inst) {
+        double[][] votes = getExecutor().getVotesOfMembers(this.ensemble, inst);
         DoubleVector combinedVote = new DoubleVector();
         for (int i = 0; i < this.ensemble.length; i++) {
-            DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(inst));
+            DoubleVector vote = new DoubleVector(votes[i]);
             if (vote.sumOfValues() > 0.0) {
                 vote.normalize();
                 combinedVote.addValues(vote);
@@ -170,6 +196,11 @@ public class OzaBagAdwin extends AbstractClassifier implements MultiClassClassif
         return true;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
     @Override
     public void getModelDescription(StringBuilder out, int indent) {
         // TODO Auto-generated method stub
@@ -47,7 +47,8 @@ import com.github.javacliparser.IntOption;
  *
  * <p>Parameters:</p> <ul> <li>-l : Classiﬁer to train</li> <li>-s : The number
  * of models to boost</li> <li>-p : Boost with weights only; no poisson</li>
- * </ul>
+ * <li>-j : Total number of concurrent jobs used for predicting; the models
+ * are trained in sequence</li> </ul>
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
@@ -70,12 +71,17 @@ public class OzaBoost extends AbstractClassifier implements MultiClassClassifier
     public FlagOption pureBoostOption = new FlagOption("pureBoost", 'p',
             "Boost with weights only; no poisson.");
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     protected Classifier[] ensemble;
 
     protected double[] scms;
 
     protected double[] swms;
 
+    protected EnsembleExecutor executor;
+
     @Override
     public void resetLearningImpl() {
         this.ensemble = new Classifier[this.ensembleSizeOption.getValue()];
@@ -86,6 +92,14 @@ public class OzaBoost extends AbstractClassifier implements MultiClassClassifier
         }
         this.scms = new double[this.ensemble.length];
         this.swms = new double[this.ensemble.length];
+        this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+    }
+
+    protected EnsembleExecutor getExecutor() {
+        if (this.executor == null) {
+            this.executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        }
+        return this.executor;
     }
 
     @Override
@@ -117,21 +131,35 @@ public class OzaBoost extends AbstractClassifier implements MultiClassClassifier
         return Math.log(1.0 / Bm);
     }
 
-    public double[] getVotesForInstance(Instance inst) {
-        DoubleVector combinedVote = new DoubleVector();
+    public double[] getVotesForInstance(final Instance inst) {
+        // only the models before the first one without weight vote
+        final double[] memberWeights = new double[this.ensemble.length];
+        int numberOfVoters = 0;
         for (int i = 0; i < this.ensemble.length; i++) {
             double memberWeight = getEnsembleMemberWeight(i);
             if (memberWeight > 0.0) {
-                DoubleVector vote = new DoubleVector(this.ensemble[i].getVotesForInstance(inst));
-                if (vote.sumOfValues() > 0.0) {
-                    vote.normalize();
-                    vote.scaleValues(memberWeight);
-                    combinedVote.addValues(vote);
-                }
+                memberWeights[i] = memberWeight;
+                numberOfVoters++;
             } else {
                 break;
             }
         }
+        final double[][] votes = new double[numberOfVoters][];
+        getExecutor().forEachMember(numberOfVoters, new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int i) {
+                votes[i] = ensemble[i].getVotesForInstance(inst);
+            }
+        });
+        DoubleVector combinedVote = new DoubleVector();
+        for (int i = 0; i < numberOfVoters; i++) {
+            DoubleVector vote = new DoubleVector(votes[i]);
+            if (vote.sumOfValues() > 0.0) {
+                vote.normalize();
+                vote.scaleValues(memberWeights[i]);
+                combinedVote.addValues(vote);
+            }
+        }
         return combinedVote.getArrayRef();
     }
 
@@ -139,6 +167,11 @@ public class OzaBoost extends AbstractClassifier implements MultiClassClassifier
         return true;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
     @Override
     public void getModelDescription(StringBuilder out, int indent) {
         // TODO Auto-generated method stub
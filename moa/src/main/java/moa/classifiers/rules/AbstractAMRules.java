@@ -32,13 +32,13 @@ package moa.classifiers.rules;
  **/
 
 import java.util.Arrays;
-import java.util.Iterator;
 
 import moa.classifiers.AbstractClassifier;
 import moa.classifiers.rules.core.Rule;
 import moa.classifiers.rules.core.Rule.Builder;
 import moa.classifiers.rules.core.RuleActiveLearningNode;
 import moa.classifiers.rules.core.RuleSet;
+import moa.classifiers.rules.core.RuleSetIndex;
 import moa.classifiers.rules.core.attributeclassobservers.FIMTDDNumericAttributeClassLimitObserver;
 import moa.classifiers.rules.core.voting.ErrorWeightedVote;
 import moa.classifiers.rules.core.voting.Vote;
@@ -56,6 +56,7 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 
 	private static final long serialVersionUID = 1L;
 	protected RuleSet ruleSet = new RuleSet();
+	protected RuleSetIndex<Rule> ruleSetIndex = new RuleSetIndex<Rule>();
 	protected Rule defaultRule;
 	protected int ruleNumberID;
 	protected double[] statistics;
@@ -198,9 +199,7 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 		debug("Train",3);
 		debug("Nº instance "+numInstances + " - " + instance.toString(),3);
 		boolean rulesCoveringInstance = false;
-		Iterator<Rule> ruleIterator= this.ruleSet.iterator();
-		while (ruleIterator.hasNext()) { 
-			Rule rule = ruleIterator.next();
+		for (Rule rule : this.ruleSetIndex.getCandidates(instance)) {
 			if (rule.isCovering(instance) == true) {
 				rulesCoveringInstance = true;
 				if (isAnomaly(instance, rule) == false) {
@@ -210,7 +209,8 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 					if (changeDetected == true) {
 						debug("I) Drift Detected. Exa. : " +  this.numInstances + " (" + rule.getInstancesSeen() +") Remove Rule: " +rule.getRuleNumberID(),1);
 
-						ruleIterator.remove();
+						this.ruleSet.remove(rule);
+						this.ruleSetIndex.remove(rule);
 						this.numChangesDetected+=instance.weight();  //Just for statistics 
 					} else {
 						rule.updateStatistics(instance);
@@ -218,6 +218,7 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 							if (rule.tryToExpand(this.splitConfidenceOption.getValue(), this.tieThresholdOption.getValue()) ) 
 							{
 								rule.split();
+								this.ruleSetIndex.update(rule, rule.getPredicates());
 								debug("Rule Expanded:",2);
 								debug(rule.printRule(),2);
 							}	
@@ -243,6 +244,7 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 					defaultRule.split();
 					defaultRule.setRuleNumberID(++ruleNumberID);
 					this.ruleSet.add(this.defaultRule);
+					this.ruleSetIndex.add(this.defaultRule, this.defaultRule.getPredicates());
 
 					debug("Default rule expanded! New Rule:",2);
 					debug(defaultRule.printRule(),2);
@@ -407,7 +409,7 @@ public abstract class AbstractAMRules extends AbstractClassifier {
 		int numberOfRulesCovering = 0;
 
 		VerboseToConsole(instance); // Verbose to console Dataset name.
-		for (Rule rule : ruleSet) {
+		for (Rule rule : ruleSetIndex.getCandidates(instance)) {
 			if (rule.isCovering(instance) == true){
 				numberOfRulesCovering++;
 				//DoubleVector vote = new DoubleVector(rule.getPrediction(instance));
@@ -0,0 +1,63 @@
+/*
+ *    IntervalPredicate.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.rules.core;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Predicate that, while {@link #isInterval()}, only holds for the instances
+ * whose value of its attribute lies in the interval
+ * (lower bound, upper bound], so that {@link RuleSetIndex} can find the rules
+ * an instance may satisfy without evaluating all of them. Missing values are
+ * taken to satisfy the predicates without upper bound, as tests like
+ * "not &lt;=" hold for them.
+ */
+public interface IntervalPredicate extends Predicate {
+
+	/**
+	 * Gets whether the predicate currently tests an interval, e.g. not a
+	 * negated equality.
+	 *
+	 * @return whether the predicate is an interval test
+	 */
+	public boolean isInterval();
+
+	/**
+	 * Gets the exclusive lower bound of the interval.
+	 *
+	 * @return the lower bound, negative infinity if none
+	 */
+	public double getLowerBound();
+
+	/**
+	 * Gets the inclusive upper bound of the interval.
+	 *
+	 * @return the upper bound, positive infinity if none
+	 */
+	public double getUpperBound();
+
+	/**
+	 * Gets the value of the attribute of the predicate.
+	 *
+	 * @param instance the instance
+	 * @return the value, NaN if missing
+	 */
+	public double getInputValue(Instance instance);
+
+}
@@ -31,7 +31,7 @@ import com.yahoo.labs.samoa.instances.MultiLabelInstance;
  * Class that contains the literal information for a nominal variable
  */
 
-public class NominalRulePredicate extends AbstractMOAObject implements Predicate {
+public class NominalRulePredicate extends AbstractMOAObject implements IntervalPredicate {
 
 	/**
 	 * 
@@ -108,5 +108,29 @@ public class NominalRulePredicate extends AbstractMOAObject implements Predicate
 		return isEqual;
 	}
 
+	@Override
+	public boolean isInterval() {
+		return isEqual;
+	}
+
+	@Override
+	public double getLowerBound() {
+		return Math.nextDown(attributeValue);
+	}
+
+	@Override
+	public double getUpperBound() {
+		return attributeValue;
+	}
+
+	@Override
+	public double getInputValue(Instance instance) {
+		MultiLabelInstance multiLabelInstance = (MultiLabelInstance) instance;
+		if (multiLabelInstance.isMissing(inputAttributeIndex)) {
+			return Double.NaN;
+		}
+		return multiLabelInstance.valueInputAttribute(inputAttributeIndex);
+	}
+
 
 }
@@ -31,7 +31,7 @@ import com.yahoo.labs.samoa.instances.MultiLabelInstance;
  */
 
 
-public class NumericRulePredicate extends AbstractMOAObject implements Predicate {
+public class NumericRulePredicate extends AbstractMOAObject implements IntervalPredicate {
 
 	/**
 	 * 
@@ -109,5 +109,29 @@ public class NumericRulePredicate extends AbstractMOAObject implements Predicate
 		return isEqualOrLower;
 	}
 
+	@Override
+	public boolean isInterval() {
+		return true;
+	}
+
+	@Override
+	public double getLowerBound() {
+		return isEqualOrLower ? Double.NEGATIVE_INFINITY : attributeValue;
+	}
+
+	@Override
+	public double getUpperBound() {
+		return isEqualOrLower ? attributeValue : Double.POSITIVE_INFINITY;
+	}
+
+	@Override
+	public double getInputValue(Instance instance) {
+		MultiLabelInstance multiLabelInstance = (MultiLabelInstance) instance;
+		if (multiLabelInstance.isMissing(inputAttributeIndex)) {
+			return Double.NaN;
+		}
+		return multiLabelInstance.valueInputAttribute(inputAttributeIndex);
+	}
+
 
 }
@@ -33,6 +33,7 @@ package moa.classifiers.rules.core;
  *
  */
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -98,6 +99,19 @@ public class Rule extends AbstractMOAObject {
 		this.nodeList = nodeList;
 	}
 
+	/**
+	 * Gets the predicates of the rule, to index it by.
+	 *
+	 * @return the predicates
+	 */
+	public List<Predicate> getPredicates() {
+		List<Predicate> predicates = new ArrayList<Predicate>(nodeList.size());
+		for (RuleSplitNode node : nodeList) {
+			predicates.add((Predicate) node.getSplitTest());
+		}
+		return predicates;
+	}
+
 	public Rule(Builder builder) {
 		builder.setOwner(this);
 		this.setBuilder(builder);
@@ -0,0 +1,468 @@
+/*
+ *    RuleSetIndex.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.rules.core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import moa.core.AutoExpandVector;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Index over the predicates of the rules of a rule set, that finds the rules
+ * that may cover an instance without evaluating all of them.
+ *
+ * Each rule is indexed by the interval its {@link IntervalPredicate}s allow
+ * for one attribute, preferably one bounded on both sides. For each
+ * attribute, the intervals are kept in an interval tree: a treap ordered by
+ * lower bound, where each node also holds the largest upper bound below it.
+ * A lookup only descends into the subtrees that may hold an interval
+ * containing the value, so it takes about log(n) steps per candidate instead
+ * of visiting all the intervals of the attribute. Rules without interval
+ * predicates are candidates for all instances.
+ *
+ * The candidates still have to be evaluated. The index has to be told when
+ * rules are added, removed or changed, and keeps them in the order of the
+ * rule set with sparse order keys, so that adding or removing a rule does not
+ * renumber the others.
+ *
+ * @param <R> the type of the rules
+ */
+public class RuleSetIndex<R> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Distance between the order keys of rules added at the end. */
+	protected static final long ORDER_KEY_GAP = 1L << 32;
+
+	/** Rule with its place in the rule set and its node in the interval tree. */
+	protected static class Entry<R> implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final R rule;
+
+		/** Increases along the rule set. */
+		protected long orderKey;
+
+		/** Neighbours in the rule set, restored after deserialization. */
+		protected transient Entry<R> previous;
+
+		protected transient Entry<R> next;
+
+		/** Attribute of the interval, -1 if not indexed. */
+		protected int attIndex = -1;
+
+		protected double lowerBound;
+
+		protected double upperBound;
+
+		/** Predicate to read the values of the attribute with. */
+		protected IntervalPredicate predicate;
+
+		/** Breaks the ties between equal lower bounds in the tree. */
+		protected long sequence;
+
+		/** Heap priority of the node in the treap. */
+		protected int priority;
+
+		protected Entry<R> left;
+
+		protected Entry<R> right;
+
+		/** Largest upper bound in the subtree of the node. */
+		protected double maxUpperBound;
+
+		protected Entry(R rule) {
+			this.rule = rule;
+		}
+
+		protected boolean isAboveLowerBound(double value) {
+			return (this.lowerBound == Double.NEGATIVE_INFINITY) || (value > this.lowerBound);
+		}
+
+		protected boolean isBefore(Entry<R> other) {
+			int cmp = Double.compare(this.lowerBound, other.lowerBound);
+			return (cmp < 0) || ((cmp == 0) && (this.sequence < other.sequence));
+		}
+
+		protected void updateMaxUpperBound() {
+			this.maxUpperBound = this.upperBound;
+			if ((this.left != null) && (this.left.maxUpperBound > this.maxUpperBound)) {
+				this.maxUpperBound = this.left.maxUpperBound;
+			}
+			if ((this.right != null) && (this.right.maxUpperBound > this.maxUpperBound)) {
+				this.maxUpperBound = this.right.maxUpperBound;
+			}
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	protected static final Comparator<Entry> RULE_SET_ORDER = new Comparator<Entry>() {
+		@Override
+		public int compare(Entry a, Entry b) {
+			return Long.compare(a.orderKey, b.orderKey);
+		}
+	};
+
+	/** Entries in the order of the rules. */
+	protected transient Entry<R> first;
+
+	protected transient Entry<R> last;
+
+	protected int size;
+
+	protected Map<R, Entry<R>> entries = new IdentityHashMap<R, Entry<R>>();
+
+	/** Roots of the interval trees of the attributes. */
+	protected AutoExpandVector<Entry<R>> attributeTrees = new AutoExpandVector<Entry<R>>();
+
+	/** Entries not indexed by any attribute. */
+	protected Set<Entry<R>> unindexed = new HashSet<Entry<R>>();
+
+	protected long nextSequence;
+
+	protected transient Entry<R>[] candidateEntries;
+
+	protected transient List<R> candidates;
+
+	/**
+	 * Adds a rule after the rules already indexed.
+	 *
+	 * @param rule the rule
+	 * @param predicates the predicates of the rule
+	 */
+	public void add(R rule, List<? extends Predicate> predicates) {
+		insertAfter(this.last, rule, predicates);
+	}
+
+	/**
+	 * Adds a rule right after another one.
+	 *
+	 * @param previous the indexed rule to add after
+	 * @param rule the rule
+	 * @param predicates the predicates of the rule
+	 */
+	public void addAfter(R previous, R rule, List<? extends Predicate> predicates) {
+		insertAfter(this.entries.get(previous), rule, predicates);
+	}
+
+	protected void insertAfter(Entry<R> previous, R rule, List<? extends Predicate> predicates) {
+		Entry<R> entry = new Entry<R>(rule);
+		Entry<R> next = (previous == null) ? this.first : previous.next;
+		entry.previous = previous;
+		entry.next = next;
+		if (previous == null) {
+			this.first = entry;
+		} else {
+			previous.next = entry;
+		}
+		if (next == null) {
+			this.last = entry;
+		} else {
+			next.previous = entry;
+		}
+		this.size++;
+		long lowerKey = (previous == null) ? 0 : previous.orderKey;
+		if (next == null) {
+			if (lowerKey > Long.MAX_VALUE - ORDER_KEY_GAP) {
+				relabel();
+			} else {
+				entry.orderKey = lowerKey + ORDER_KEY_GAP;
+			}
+		} else if (next.orderKey - lowerKey > 1) {
+			entry.orderKey = lowerKey + ((next.orderKey - lowerKey) >>> 1);
+		} else {
+			relabel();
+		}
+		this.entries.put(rule, entry);
+		index(entry, predicates);
+	}
+
+	/**
+	 * Spreads the order keys evenly again, once there is no room left between
+	 * two of them.
+	 */
+	protected void relabel() {
+		long key = 0;
+		for (Entry<R> entry = this.first; entry != null; entry = entry.next) {
+			key += ORDER_KEY_GAP;
+			entry.orderKey = key;
+		}
+	}
+
+	/**
+	 * Writes the entries in the order of the rules as an array, so that
+	 * serialization does not recurse along the whole list.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		Object[] order = new Object[this.size];
+		int i = 0;
+		for (Entry<R> entry = this.first; entry != null; entry = entry.next) {
+			order[i++] = entry;
+		}
+		out.writeObject(order);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		for (Object object : (Object[]) in.readObject()) {
+			Entry<R> entry = (Entry<R>) object;
+			entry.previous = this.last;
+			if (this.last == null) {
+				this.first = entry;
+			} else {
+				this.last.next = entry;
+			}
+			this.last = entry;
+		}
+	}
+
+	/**
+	 * Updates the index after the predicates of a rule changed.
+	 *
+	 * @param rule the indexed rule
+	 * @param predicates the predicates of the rule
+	 */
+	public void update(R rule, List<? extends Predicate> predicates) {
+		Entry<R> entry = this.entries.get(rule);
+		unindex(entry);
+		index(entry, predicates);
+	}
+
+	/**
+	 * Removes a rule.
+	 *
+	 * @param rule the indexed rule
+	 */
+	public void remove(R rule) {
+		Entry<R> entry = this.entries.remove(rule);
+		unindex(entry);
+		if (entry.previous == null) {
+			this.first = entry.next;
+		} else {
+			entry.previous.next = entry.next;
+		}
+		if (entry.next == null) {
+			this.last = entry.previous;
+		} else {
+			entry.next.previous = entry.previous;
+		}
+		this.size--;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the rules that may cover an instance, in the order of the rule
+	 * set. The rules that cover it are among them. The list is reused by the
+	 * next call, but not changed by adding, updating or removing rules.
+	 *
+	 * @param instance the instance
+	 * @return the candidate rules
+	 */
+	@SuppressWarnings("unchecked")
+	public List<R> getCandidates(Instance instance) {
+		if (this.candidates == null) {
+			this.candidateEntries = new Entry[16];
+			this.candidates = new ArrayList<R>();
+		}
+		int numCandidates = 0;
+		for (Entry<R> entry : this.unindexed) {
+			numCandidates = addCandidate(numCandidates, entry);
+		}
+		for (int i = 0; i < this.attributeTrees.size(); i++) {
+			Entry<R> root = this.attributeTrees.get(i);
+			if (root == null) {
+				continue;
+			}
+			double value = root.predicate.getInputValue(instance);
+			// missing values only satisfy the intervals without upper bound
+			numCandidates = addContaining(numCandidates, root,
+					Double.isNaN(value) ? Double.POSITIVE_INFINITY : value);
+		}
+		Arrays.sort(this.candidateEntries, 0, numCandidates, RULE_SET_ORDER);
+		this.candidates.clear();
+		for (int i = 0; i < numCandidates; i++) {
+			this.candidates.add(this.candidateEntries[i].rule);
+			this.candidateEntries[i] = null;
+		}
+		return this.candidates;
+	}
+
+	/**
+	 * Adds the entries of a subtree whose interval contains a value, skipping
+	 * the subtrees whose upper bounds are all below it and those whose lower
+	 * bounds are all above it.
+	 */
+	protected int addContaining(int numCandidates, Entry<R> node, double value) {
+		while ((node != null) && (node.maxUpperBound >= value)) {
+			numCandidates = addContaining(numCandidates, node.left, value);
+			if (!node.isAboveLowerBound(value)) {
+				break;
+			}
+			if (node.upperBound >= value) {
+				numCandidates = addCandidate(numCandidates, node);
+			}
+			node = node.right;
+		}
+		return numCandidates;
+	}
+
+	protected int addCandidate(int numCandidates, Entry<R> entry) {
+		if (numCandidates == this.candidateEntries.length) {
+			this.candidateEntries = Arrays.copyOf(this.candidateEntries, 2 * numCandidates);
+		}
+		this.candidateEntries[numCandidates] = entry;
+		return numCandidates + 1;
+	}
+
+	/**
+	 * Indexes a rule by the interval of the first attribute bounded on both
+	 * sides by its predicates, or else of the attribute of its first interval
+	 * predicate.
+	 */
+	protected void index(Entry<R> entry, List<? extends Predicate> predicates) {
+		entry.attIndex = -1;
+		entry.predicate = null;
+		for (Predicate predicate : predicates) {
+			if (!(predicate instanceof IntervalPredicate) || !((IntervalPredicate) predicate).isInterval()) {
+				continue;
+			}
+			int attIndex = predicate.getAttributeIndex();
+			double lowerBound = Double.NEGATIVE_INFINITY;
+			double upperBound = Double.POSITIVE_INFINITY;
+			for (Predicate other : predicates) {
+				if ((other instanceof IntervalPredicate) && ((IntervalPredicate) other).isInterval()
+						&& (other.getAttributeIndex() == attIndex)) {
+					lowerBound = Math.max(lowerBound, ((IntervalPredicate) other).getLowerBound());
+					upperBound = Math.min(upperBound, ((IntervalPredicate) other).getUpperBound());
+				}
+			}
+			boolean isBounded = (lowerBound != Double.NEGATIVE_INFINITY)
+					&& (upperBound != Double.POSITIVE_INFINITY);
+			if ((entry.predicate == null) || isBounded) {
+				entry.attIndex = attIndex;
+				entry.lowerBound = lowerBound;
+				entry.upperBound = upperBound;
+				entry.predicate = (IntervalPredicate) predicate;
+				if (isBounded) {
+					break;
+				}
+			}
+		}
+		if (entry.attIndex < 0) {
+			this.unindexed.add(entry);
+			return;
+		}
+		entry.sequence = this.nextSequence++;
+		// deterministic pseudo-random priority, so that copies build the same trees
+		entry.priority = (int) ((entry.sequence * 0x9E3779B97F4A7C15L) >>> 32);
+		entry.left = null;
+		entry.right = null;
+		entry.maxUpperBound = entry.upperBound;
+		this.attributeTrees.set(entry.attIndex, insert(this.attributeTrees.get(entry.attIndex), entry));
+	}
+
+	protected void unindex(Entry<R> entry) {
+		if (entry.attIndex < 0) {
+			this.unindexed.remove(entry);
+		} else {
+			this.attributeTrees.set(entry.attIndex, delete(this.attributeTrees.get(entry.attIndex), entry));
+		}
+	}
+
+	protected static <R> Entry<R> insert(Entry<R> node, Entry<R> entry) {
+		if (node == null) {
+			return entry;
+		}
+		if (entry.isBefore(node)) {
+			node.left = insert(node.left, entry);
+			if (node.left.priority > node.priority) {
+				Entry<R> left = node.left;
+				node.left = left.right;
+				left.right = node;
+				node.updateMaxUpperBound();
+				left.updateMaxUpperBound();
+				return left;
+			}
+		} else {
+			node.right = insert(node.right, entry);
+			if (node.right.priority > node.priority) {
+				Entry<R> right = node.right;
+				node.right = right.left;
+				right.left = node;
+				node.updateMaxUpperBound();
+				right.updateMaxUpperBound();
+				return right;
+			}
+		}
+		node.updateMaxUpperBound();
+		return node;
+	}
+
+	protected static <R> Entry<R> delete(Entry<R> node, Entry<R> entry) {
+		if (node == entry) {
+			Entry<R> merged = merge(node.left, node.right);
+			entry.left = null;
+			entry.right = null;
+			return merged;
+		}
+		if (entry.isBefore(node)) {
+			node.left = delete(node.left, entry);
+		} else {
+			node.right = delete(node.right, entry);
+		}
+		node.updateMaxUpperBound();
+		return node;
+	}
+
+	/** Merges two treaps, the entries of the first being before those of the second. */
+	protected static <R> Entry<R> merge(Entry<R> left, Entry<R> right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			left.updateMaxUpperBound();
+			return left;
+		}
+		right.left = merge(left, right.left);
+		right.updateMaxUpperBound();
+		return right;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ *    CompactFIMTDDNumericAttributeClassLimitObserver.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.classifiers.rules.core.attributeclassobservers;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.attributeclassobservers.CompactFIMTDDNumericAttributeClassObserver;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.MemoryAccountable;
+import moa.core.SizeOf;
+
+/**
+ * Limited numeric observer for the AMRules learners that keeps its statistics
+ * in the sorted arrays of {@link CompactFIMTDDNumericAttributeClassObserver}
+ * instead of an E-BST.
+ *
+ * <p>It is a {@link FIMTDDNumericAttributeClassLimitObserver}, so that the
+ * numericObserver option of the learners selects it by its short name. The
+ * E-BST stops adding nodes once it has maxNodes of them besides the root,
+ * and counts the later values in the nodes on their path. Here at most
+ * maxNodes + 1 bins are kept, adjacent bins with small counts being merged,
+ * so the statistics on either side of every cut point stay exact.</p>
+ */
+public class CompactFIMTDDNumericAttributeClassLimitObserver extends FIMTDDNumericAttributeClassLimitObserver
+        implements MemoryAccountable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Bins of the values, null until a value is observed. */
+    protected CompactFIMTDDNumericAttributeClassObserver bins;
+
+    @Override
+    public void observeAttributeClass(double attVal, double classVal, double weight) {
+        if (this.bins == null) {
+            this.bins = new CompactFIMTDDNumericAttributeClassObserver();
+            this.bins.maxBinsOption.setValue(this.maxNodesOption.getValue() + 1);
+        }
+        this.bins.observeAttributeClass(attVal, classVal, weight);
+    }
+
+    @Override
+    public AttributeSplitSuggestion getBestEvaluatedSplitSuggestion(SplitCriterion criterion,
+            double[] preSplitDist, int attIndex, boolean binaryOnly) {
+        return this.bins == null ? null
+                : this.bins.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, attIndex, binaryOnly);
+    }
+
+    @Override
+    public void removeBadSplits(SplitCriterion criterion, double lastCheckRatio, double lastCheckSDR, double lastCheckE) {
+        if (this.bins != null) {
+            this.bins.removeBadSplits(criterion, lastCheckRatio, lastCheckSDR, lastCheckE);
+        }
+    }
+
+    public int numBins() {
+        return this.bins == null ? 0 : this.bins.numBins();
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        if (this.bins != null) {
+            this.bins.getDescription(sb, indent);
+        }
+    }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize()
+                + SizeOf.estimatedSizeOf(this.bins);
+    }
+}
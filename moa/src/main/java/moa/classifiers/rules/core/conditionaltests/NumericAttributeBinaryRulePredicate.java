@@ -20,7 +20,7 @@
 package moa.classifiers.rules.core.conditionaltests;
 
 import moa.classifiers.core.conditionaltests.InstanceConditionalBinaryTest;
-import moa.classifiers.rules.core.Predicate;
+import moa.classifiers.rules.core.IntervalPredicate;
 import moa.core.StringUtils;
 
 import com.yahoo.labs.samoa.instances.Instance;
@@ -35,7 +35,7 @@ import com.yahoo.labs.samoa.instances.InstancesHeader;
  *
  * @version $Revision: 1 $
  */
-public class NumericAttributeBinaryRulePredicate extends InstanceConditionalBinaryTest implements Predicate {
+public class NumericAttributeBinaryRulePredicate extends InstanceConditionalBinaryTest implements IntervalPredicate {
 
 	private static final long serialVersionUID = 1L;
 
@@ -177,4 +177,33 @@ public class NumericAttributeBinaryRulePredicate extends InstanceConditionalBina
 		 return state;
 	 }
 
+	 @Override
+	 public boolean isInterval() {
+		 return state; // negated tests also hold for missing values
+	 }
+
+	 @Override
+	 public double getLowerBound() {
+		 switch (this.operator) {
+		 case 0:
+			 return Math.nextDown(this.attValue);
+		 case 2:
+			 return this.attValue;
+		 default:
+			 return Double.NEGATIVE_INFINITY;
+		 }
+	 }
+
+	 @Override
+	 public double getUpperBound() {
+		 return (this.operator == 2) ? Double.POSITIVE_INFINITY : this.attValue;
+	 }
+
+	 @Override
+	 public double getInputValue(Instance inst) {
+		 int instAttIndex = this.attIndex < inst.classIndex() ? this.attIndex
+				 : this.attIndex + 1;
+		 return inst.isMissing(instAttIndex) ? Double.NaN : inst.value(instAttIndex);
+	 }
+
 }
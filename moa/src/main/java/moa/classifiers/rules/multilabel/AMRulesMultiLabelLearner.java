@@ -20,11 +20,10 @@
 
 package moa.classifiers.rules.multilabel;
 
-import java.util.ListIterator;
-
 import moa.classifiers.AbstractMultiLabelLearner;
 import moa.classifiers.MultiLabelLearner;
 import moa.classifiers.core.driftdetection.ChangeDetector;
+import moa.classifiers.rules.core.RuleSetIndex;
 import moa.classifiers.rules.core.anomalydetection.AnomalyDetector;
 import moa.classifiers.rules.core.anomalydetection.OddsRatioScore;
 import moa.classifiers.rules.featureranking.FeatureRanking;
@@ -72,6 +71,7 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 
 	private static final long serialVersionUID = 1L;
 	protected MultiLabelRuleSet ruleSet;
+	protected RuleSetIndex<MultiLabelRule> ruleSetIndex;
 	protected MultiLabelRule defaultRule;
 	protected int ruleNumberID=1;
 	protected double[] statistics;
@@ -202,7 +202,7 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 		//int numberOfRulesCovering = 0;
 
 		VerboseToConsole(instance); // Verbose to console Dataset name.
-		for (MultiLabelRule rule : ruleSet) {
+		for (MultiLabelRule rule : ruleSetIndex.getCandidates(instance)) {
 			if (rule.isCovering(instance) == true){
 				//numberOfRulesCovering++;
 				Prediction vote=rule.getPredictionForInstance(instance);
@@ -306,15 +306,14 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 		debug("Train",3);
 		debug("Nº instance "+numInstances + " - " + instance.toString(),3);
 		boolean rulesCoveringInstance = false;
-		ListIterator<MultiLabelRule> ruleIterator= this.ruleSet.listIterator();
-		while (ruleIterator.hasNext()) { 
-			MultiLabelRule rule = ruleIterator.next();
+		for (MultiLabelRule rule : this.ruleSetIndex.getCandidates(instance)) {
 			if (rule.isCovering(instance) == true) {
 				rulesCoveringInstance = true;
 				if (!rule.updateAnomalyDetection(instance)) {
 					if (rule.updateChangeDetection(instance)) {
 						debug("I) Drift Detected. Exa. : " +  this.numInstances + " (" + rule.getWeightSeenSinceExpansion() +") Remove Rule: " +rule.getRuleNumberID(),1);
-						ruleIterator.remove();
+						ruleSet.remove(rule);
+						ruleSetIndex.remove(rule);
 
 						//Rule expansion event
 						rule.notifyAll(new ChangeDetectedMessage());
@@ -331,11 +330,13 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 									rule.clearOtherOutputs();
 									otherMultiLabelRule.setRuleNumberID(++ruleNumberID);
 									setRuleOptions(otherMultiLabelRule);
-									ruleIterator.add(otherMultiLabelRule);
+									ruleSet.add(ruleSet.indexOf(rule) + 1, otherMultiLabelRule);
+									ruleSetIndex.addAfter(rule, otherMultiLabelRule, otherMultiLabelRule.getPredicates());
 									if(observer!=null)
 										otherMultiLabelRule.addObserver(observer);
 								}
 								setRuleOptions(rule);
+								ruleSetIndex.update(rule, rule.getPredicates());
 								debug("Rule Expanded:",2);
 								debug(rule.toString(),2);
 							}	
@@ -366,6 +367,7 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 					//Add expanded rule to ruleset
 					setRuleOptions(defaultRule);
 					ruleSet.add(this.defaultRule);
+					ruleSetIndex.add(this.defaultRule, this.defaultRule.getPredicates());
 
 
 					debug("Default rule expanded! New Rule:",2);
@@ -525,6 +527,7 @@ public abstract class AMRulesMultiLabelLearner extends AbstractMultiLabelLearner
 		defaultRule.setInstanceTransformer(new NoInstanceTransformation());
 		setRuleOptions(defaultRule);
 		ruleSet = new MultiLabelRuleSet();
+		ruleSetIndex = new RuleSetIndex<MultiLabelRule>();
 		ruleNumberID=1;
 		statistics=null;
 		this.featureRanking=(FeatureRanking) getPreparedClassOption(this.featureRankingOption);
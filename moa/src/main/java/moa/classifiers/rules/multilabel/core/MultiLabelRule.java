@@ -1,5 +1,6 @@
 package moa.classifiers.rules.multilabel.core;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -7,6 +8,7 @@ import java.util.Random;
 
 import moa.classifiers.MultiLabelLearner;
 import moa.classifiers.core.driftdetection.ChangeDetector;
+import moa.classifiers.rules.core.Predicate;
 import moa.classifiers.rules.core.anomalydetection.AnomalyDetector;
 import moa.classifiers.rules.featureranking.messages.MeritCheckMessage;
 import moa.classifiers.rules.featureranking.messages.RuleExpandedMessage;
@@ -79,6 +81,19 @@ public class MultiLabelRule extends ObservableMOAObject {
 		return isCovering;
 	}
 
+	/**
+	 * Gets the predicates of the rule, to index it by.
+	 *
+	 * @return the predicates
+	 */
+	public List<Predicate> getPredicates() {
+		List<Predicate> predicates = new ArrayList<Predicate>(literalList.size());
+		for (Literal l : literalList) {
+			predicates.add(l.predicate);
+		}
+		return predicates;
+	}
+
 	public int[] getOutputsCovered() {
 		return learningLiteral.getOutputsToLearn();
 	}
@@ -123,6 +123,10 @@ public class ARFFIMTDD extends AbstractClassifier implements Regressor {
     public FlagOption learningRatioConstOption = new FlagOption(
             "learningRatioConst", 'p', "Keep learning rate constant instead of decaying.");
 
+    public ClassOption numericObserverOption = new ClassOption(
+            "numericObserver", 'n', "Numeric observer to use.",
+            FIMTDDNumericAttributeClassObserver.class, "FIMTDDNumericAttributeClassObserver");
+
     //endregion ================ OPTIONS ================
 
     //region ================ CLASSES ================
@@ -875,7 +879,7 @@ public class ARFFIMTDD extends AbstractClassifier implements Regressor {
     // region --- Object instatiation methods
 
     protected FIMTDDNumericAttributeClassObserver newNumericClassObserver() {
-        return new FIMTDDNumericAttributeClassObserver();
+        return (FIMTDDNumericAttributeClassObserver) ((FIMTDDNumericAttributeClassObserver) getPreparedClassOption(this.numericObserverOption)).copy();
     }
 
     protected SplitNode newSplitNode(InstanceConditionalTest splitTest) {
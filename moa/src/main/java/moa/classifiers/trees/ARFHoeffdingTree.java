@@ -22,6 +22,7 @@ package moa.classifiers.trees;
 import com.github.javacliparser.IntOption;
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.core.SizeOf;
 import moa.core.Utils;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -69,6 +70,11 @@ public class ARFHoeffdingTree extends HoeffdingTree {
             this.numAttributes = subspaceSize;
         }
 
+        @Override
+        public long estimateByteSize() {
+            return super.estimateByteSize() + SizeOf.sizeOfArray(this.listAttributes);
+        }
+
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {            
             this.observedClassDistribution.addToValue((int) inst.classValue(),
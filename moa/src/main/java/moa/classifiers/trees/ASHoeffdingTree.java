@@ -100,6 +100,12 @@ public class ASHoeffdingTree extends HoeffdingTree {
         this.growthAllowed = true;
     }
 
+    @Override
+    protected boolean tracksLearningNodes() {
+        // the tree is reset or replaced by a subtree when too large
+        return false;
+    }
+
     @Override
     public void trainOnInstanceImpl(Instance inst) {
         if (this.treeRoot == null) {
@@ -118,6 +118,10 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 	public FlagOption learningRatioConstOption = new FlagOption(
 			"learningRatioConst", 'p', "Keep learning rate constant instead of decaying.");
 
+	public ClassOption numericObserverOption = new ClassOption(
+			"numericObserver", 'n', "Numeric observer to use.",
+			FIMTDDNumericAttributeClassObserver.class, "FIMTDDNumericAttributeClassObserver");
+
 	//endregion ================ OPTIONS ================
 
 	//region ================ CLASSES ================
@@ -833,7 +837,7 @@ public class FIMTDD extends AbstractClassifier implements Regressor {
 	// region --- Object instatiation methods
 
 	protected FIMTDDNumericAttributeClassObserver newNumericClassObserver() {
-		return new FIMTDDNumericAttributeClassObserver();
+		return (FIMTDDNumericAttributeClassObserver) ((FIMTDDNumericAttributeClassObserver) getPreparedClassOption(this.numericObserverOption)).copy();
 	}
 
 	protected SplitNode newSplitNode(InstanceConditionalTest splitTest) {
@@ -30,6 +30,7 @@ import moa.classifiers.core.conditionaltests.InstanceConditionalTest;
 import moa.classifiers.core.driftdetection.ADWIN;
 import moa.core.DoubleVector;
 import moa.core.MiscUtils;
+import moa.core.SizeOf;
 import moa.core.Utils;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -122,6 +123,21 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
             }
             return byteSize;
         }
+
+        @Override
+        public long estimateByteSize() {
+            return super.estimateByteSize()
+                    + SizeOf.estimatedSizeOf(this.estimationErrorWeight);
+        }
+
+        @Override
+        public long estimateByteSizeIncludingSubtree() {
+            long byteSize = super.estimateByteSizeIncludingSubtree();
+            if (alternateTree != null) {
+                byteSize += alternateTree.estimateByteSizeIncludingSubtree();
+            }
+            return byteSize;
+        }
         
         public AdaSplitNode(InstanceConditionalTest splitTest,
                 double[] classObservations, int size) {
@@ -322,6 +338,12 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
             return byteSize;
         }
 
+        @Override
+        public long estimateByteSize() {
+            return super.estimateByteSize()
+                    + SizeOf.estimatedSizeOf(this.estimationErrorWeight);
+        }
+
         public AdaLearningNode(double[] initialClassObservations) {
             super(initialClassObservations);
             this.classifierRandom = new Random(this.randomSeed);
@@ -469,6 +491,12 @@ public class HoeffdingAdaptiveTree extends HoeffdingTree {
         ((NewNode) this.treeRoot).learnFromInstance(inst, this, null, -1);
     }
 
+    @Override
+    protected boolean tracksLearningNodes() {
+        // the nodes learn and replace subtrees themselves
+        return false;
+    }
+
     //New for options vote
     public FoundNode[] filterInstanceToLeaves(Instance inst,
             SplitNode parent, int parentBranch, boolean updateSplitterCounts) {
@@ -19,12 +19,19 @@
  */
 package moa.classifiers.trees;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
@@ -46,6 +53,7 @@ import moa.classifiers.core.splitcriteria.SplitCriterion;
 import moa.core.AutoExpandVector;
 import moa.core.DoubleVector;
 import moa.core.Measurement;
+import moa.core.MemoryAccountable;
 import moa.core.SizeOf;
 import moa.core.StringUtils;
 import moa.core.Utils;
@@ -91,13 +99,15 @@ import com.yahoo.labs.samoa.instances.Instance;
  * adaptive (NBAdaptive).</li>
  *  <li> -q : The number of instances a leaf should observe before
  * permitting Naive Bayes</li>
+ *  <li> -f : Minimum number of attributes for evaluating the splits of a
+ * leaf in parallel, 0 to always evaluate them serially</li>
  * </ul>
  *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
 public class HoeffdingTree extends AbstractClassifier implements MultiClassClassifier,
-                                                                 CapabilitiesHandler {
+                                                                 CapabilitiesHandler, MemoryAccountable {
 
     private static final long serialVersionUID = 1L;
 
@@ -167,6 +177,14 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
     public FlagOption noPrePruneOption = new FlagOption("noPrePrune", 'p',
             "Disable pre-pruning.");
 
+    public IntOption parallelSplitThresholdOption = new IntOption(
+            "parallelSplitThreshold", 'f',
+            "Minimum number of attributes for evaluating the splits of a leaf in parallel, 0 to always evaluate them serially.",
+            0, 0, Integer.MAX_VALUE);
+
+    public FlagOption skipSparseZerosOption = new FlagOption("skipSparseZeros", 'x',
+            "Only observe the values present in sparse instances, treating the absent zeros as unobserved.");
+
     public static class FoundNode {
 
         public Node node;
@@ -200,6 +218,21 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             return calcByteSize();
         }
 
+        /**
+         * Estimates the size of this node, without its children, from the
+         * sizes of the structures it grew.
+         *
+         * @return the estimated size in bytes
+         */
+        public long estimateByteSize() {
+            return SizeOf.shallowSizeOfInstance(getClass())
+                    + this.observedClassDistribution.estimatedByteSize();
+        }
+
+        public long estimateByteSizeIncludingSubtree() {
+            return estimateByteSize();
+        }
+
         public boolean isLeaf() {
             return true;
         }
@@ -274,6 +307,25 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             return byteSize;
         }
 
+        @Override
+        public long estimateByteSize() {
+            return super.estimateByteSize()
+                    + SizeOf.shallowSizeOfInstance(this.children.getClass())
+                    + SizeOf.sizeOfArray(this.children.size(), SizeOf.REFERENCE_BYTES)
+                    + SizeOf.shallowSizeOfInstance(this.splitTest.getClass());
+        }
+
+        @Override
+        public long estimateByteSizeIncludingSubtree() {
+            long byteSize = estimateByteSize();
+            for (Node child : this.children) {
+                if (child != null) {
+                    byteSize += child.estimateByteSizeIncludingSubtree();
+                }
+            }
+            return byteSize;
+        }
+
         public SplitNode(InstanceConditionalTest splitTest,
                 double[] classObservations, int size) {
             super(classObservations);
@@ -407,25 +459,48 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     + (int) (SizeOf.fullSizeOf(this.attributeObservers));
         }
 
+        @Override
+        public long estimateByteSize() {
+            return super.estimateByteSize()
+                    + this.attributeObservers.estimatedByteSize();
+        }
+
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {
+            boolean skipSparseZeros = ht.skipSparseZerosOption.isSet();
             if (this.isInitialized == false) {
-                this.attributeObservers = new AutoExpandVector<AttributeClassObserver>(inst.numAttributes());
+                // sparse instances may have far more attributes than values
+                this.attributeObservers = skipSparseZeros ? new AutoExpandVector<AttributeClassObserver>()
+                        : new AutoExpandVector<AttributeClassObserver>(inst.numAttributes());
                 this.isInitialized = true;
             }
             this.observedClassDistribution.addToValue((int) inst.classValue(),
                     inst.weight());
-            for (int i = 0; i < inst.numAttributes() - 1; i++) {
-                int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
-                AttributeClassObserver obs = this.attributeObservers.get(i);
-                if (obs == null) {
-                    obs = inst.attribute(instAttIndex).isNominal() ? ht.newNominalClassObserver() : ht.newNumericClassObserver();
-                    this.attributeObservers.set(i, obs);
+            if (skipSparseZeros) {
+                for (int p = 0; p < inst.numValues(); p++) {
+                    int instAttIndex = inst.index(p);
+                    if (instAttIndex != inst.classIndex()) {
+                        observeAttribute(instanceAttIndexToModelAttIndex(instAttIndex, inst),
+                                instAttIndex, inst.valueSparse(p), inst, ht);
+                    }
+                }
+            } else {
+                for (int i = 0; i < inst.numAttributes() - 1; i++) {
+                    int instAttIndex = modelAttIndexToInstanceAttIndex(i, inst);
+                    observeAttribute(i, instAttIndex, inst.value(instAttIndex), inst, ht);
                 }
-                obs.observeAttributeClass(inst.value(instAttIndex), (int) inst.classValue(), inst.weight());
             }
         }
 
+        protected void observeAttribute(int attIndex, int instAttIndex, double value, Instance inst, HoeffdingTree ht) {
+            AttributeClassObserver obs = this.attributeObservers.get(attIndex);
+            if (obs == null) {
+                obs = inst.attribute(instAttIndex).isNominal() ? ht.newNominalClassObserver() : ht.newNumericClassObserver();
+                this.attributeObservers.set(attIndex, obs);
+            }
+            obs.observeAttributeClass(value, (int) inst.classValue(), inst.weight());
+        }
+
         public double getWeightSeen() {
             return this.observedClassDistribution.sumOfValues();
         }
@@ -449,15 +524,30 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                         preSplitDist,
                         new double[][]{preSplitDist})));
             }
-            for (int i = 0; i < this.attributeObservers.size(); i++) {
-                AttributeClassObserver obs = this.attributeObservers.get(i);
-                if (obs != null) {
-                    AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
-                            preSplitDist, i, ht.binarySplitsOption.isSet());
+            int threshold = ht.parallelSplitThresholdOption.getValue();
+            if (threshold > 0 && this.attributeObservers.size() >= threshold) {
+                // evaluated in parallel, collected in attribute order as when serial
+                AttributeSplitSuggestion[] attributeSuggestions = new AttributeSplitSuggestion[this.attributeObservers.size()];
+                ForkJoinPool.commonPool().invoke(new SplitEvaluationTask(this.attributeObservers,
+                        criterion, preSplitDist, ht.binarySplitsOption.isSet(),
+                        attributeSuggestions, 0, attributeSuggestions.length,
+                        Math.max(1, attributeSuggestions.length / (4 * ForkJoinPool.getCommonPoolParallelism()))));
+                for (AttributeSplitSuggestion bestSuggestion : attributeSuggestions) {
                     if (bestSuggestion != null) {
                         bestSuggestions.add(bestSuggestion);
                     }
                 }
+            } else {
+                for (int i = 0; i < this.attributeObservers.size(); i++) {
+                    AttributeClassObserver obs = this.attributeObservers.get(i);
+                    if (obs != null) {
+                        AttributeSplitSuggestion bestSuggestion = obs.getBestEvaluatedSplitSuggestion(criterion,
+                                preSplitDist, i, ht.binarySplitsOption.isSet());
+                        if (bestSuggestion != null) {
+                            bestSuggestions.add(bestSuggestion);
+                        }
+                    }
+                }
             }
             return bestSuggestions.toArray(new AttributeSplitSuggestion[bestSuggestions.size()]);
         }
@@ -468,8 +558,345 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         }
     }
 
+    /**
+     * Task evaluating the split suggestions of a range of attribute
+     * observers, each stored at the index of its attribute.
+     */
+    protected static class SplitEvaluationTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final AutoExpandVector<AttributeClassObserver> observers;
+
+        protected final SplitCriterion criterion;
+
+        protected final double[] preSplitDist;
+
+        protected final boolean binaryOnly;
+
+        protected final AttributeSplitSuggestion[] suggestions;
+
+        protected final int from;
+
+        protected final int to;
+
+        protected final int grainSize;
+
+        public SplitEvaluationTask(AutoExpandVector<AttributeClassObserver> observers,
+                SplitCriterion criterion, double[] preSplitDist, boolean binaryOnly,
+                AttributeSplitSuggestion[] suggestions, int from, int to, int grainSize) {
+            this.observers = observers;
+            this.criterion = criterion;
+            this.preSplitDist = preSplitDist;
+            this.binaryOnly = binaryOnly;
+            this.suggestions = suggestions;
+            this.from = from;
+            this.to = to;
+            this.grainSize = grainSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.grainSize) {
+                for (int i = this.from; i < this.to; i++) {
+                    AttributeClassObserver obs = this.observers.get(i);
+                    if (obs != null) {
+                        this.suggestions[i] = obs.getBestEvaluatedSplitSuggestion(this.criterion,
+                                this.preSplitDist, i, this.binaryOnly);
+                    }
+                }
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new SplitEvaluationTask(this.observers, this.criterion,
+                        this.preSplitDist, this.binaryOnly, this.suggestions, this.from, middle, this.grainSize),
+                        new SplitEvaluationTask(this.observers, this.criterion,
+                        this.preSplitDist, this.binaryOnly, this.suggestions, middle, this.to, this.grainSize));
+            }
+        }
+    }
+
+    /**
+     * Keeps the learning nodes of a tree ordered by promise, so that memory
+     * management does not need to find and sort all of them. Promises and
+     * estimated byte sizes are only recomputed for the nodes that learned
+     * since they were last needed, and ties of promise are ordered by the position of the
+     * nodes in the tree, as a stable sort of the nodes in tree order would.
+     */
+    protected static class LearningNodeTracker {
+
+        protected static class Entry {
+
+            protected Node node;
+
+            protected SplitNode parent;
+
+            protected int parentBranch;
+
+            /** Branches from the root to the node. */
+            protected int[] path;
+
+            protected double promise;
+
+            protected long byteSize;
+
+            protected boolean promiseOutdated;
+
+            protected boolean byteSizeOutdated;
+
+            protected boolean removed;
+
+            public Entry(Node node, SplitNode parent, int parentBranch, int[] path) {
+                this.node = node;
+                this.parent = parent;
+                this.parentBranch = parentBranch;
+                this.path = path;
+                this.promise = node.calculatePromise();
+            }
+
+            public FoundNode toFoundNode() {
+                return new FoundNode(this.node, this.parent, this.parentBranch);
+            }
+        }
+
+        protected static final Comparator<Entry> PROMISE_ORDER = new Comparator<Entry>() {
+
+            @Override
+            public int compare(Entry e1, Entry e2) {
+                int cmp = Double.compare(e1.promise, e2.promise);
+                for (int i = 0; cmp == 0 && i < Math.min(e1.path.length, e2.path.length); i++) {
+                    cmp = Integer.compare(e1.path[i], e2.path[i]);
+                }
+                return cmp != 0 ? cmp : Integer.compare(e1.path.length, e2.path.length);
+            }
+        };
+
+        protected IdentityHashMap<Node, Entry> entries = new IdentityHashMap<Node, Entry>();
+
+        protected IdentityHashMap<SplitNode, int[]> splitNodePaths = new IdentityHashMap<SplitNode, int[]>();
+
+        protected TreeSet<Entry> activeNodes = new TreeSet<Entry>(PROMISE_ORDER);
+
+        protected TreeSet<Entry> inactiveNodes = new TreeSet<Entry>(PROMISE_ORDER);
+
+        protected List<Entry> outdatedPromises = new ArrayList<Entry>();
+
+        protected List<Entry> outdatedByteSizes = new ArrayList<Entry>();
+
+        /** Estimated size of the active learning nodes. */
+        protected long activeByteSize;
+
+        /** Estimated size of the inactive learning nodes. */
+        protected long inactiveByteSize;
+
+        /** Estimated size of all the nodes. */
+        protected long byteSize;
+
+        /**
+         * Estimated size of the entries and paths kept by the tracker,
+         * including the removed entries still in the outdated lists.
+         */
+        protected long trackingByteSize;
+
+        /** Estimated size of an entry in the tree sets of nodes. */
+        protected static final long TREE_SET_ENTRY_BYTES = SizeOf.alignObjectSize(
+                SizeOf.OBJECT_HEADER_BYTES + 5 * SizeOf.REFERENCE_BYTES + 1);
+
+        public int numLearningNodes() {
+            return this.entries.size();
+        }
+
+        protected TreeSet<Entry> nodesOf(Entry entry) {
+            return entry.node instanceof ActiveLearningNode ? this.activeNodes : this.inactiveNodes;
+        }
+
+        public void addSubtree(Node node, SplitNode parent, int parentBranch, int[] path) {
+            if (node instanceof LearningNode) {
+                Entry entry = new Entry(node, parent, parentBranch, path);
+                this.trackingByteSize += entryByteSize(entry);
+                this.entries.put(node, entry);
+                nodesOf(entry).add(entry);
+                entry.byteSizeOutdated = true;
+                this.outdatedByteSizes.add(entry);
+            } else if (node instanceof SplitNode) {
+                SplitNode splitNode = (SplitNode) node;
+                this.splitNodePaths.put(splitNode, path);
+                this.trackingByteSize += SizeOf.sizeOfArray(path);
+                this.byteSize += splitNode.estimateByteSize();
+                for (int i = 0; i < splitNode.numChildren(); i++) {
+                    Node child = splitNode.getChild(i);
+                    if (child != null) {
+                        addSubtree(child, splitNode, i, childPath(path, i));
+                    }
+                }
+            }
+        }
+
+        protected static int[] childPath(int[] path, int branch) {
+            int[] childPath = Arrays.copyOf(path, path.length + 1);
+            childPath[path.length] = branch;
+            return childPath;
+        }
+
+        /** Adds a learning node created below an existing split node. */
+        public void addLearningNode(Node node, SplitNode parent, int parentBranch) {
+            addSubtree(node, parent, parentBranch, childPath(this.splitNodePaths.get(parent), parentBranch));
+        }
+
+        protected Entry remove(Node node) {
+            Entry entry = this.entries.remove(node);
+            nodesOf(entry).remove(entry);
+            if (entry.node instanceof ActiveLearningNode) {
+                this.activeByteSize -= entry.byteSize;
+            } else {
+                this.inactiveByteSize -= entry.byteSize;
+            }
+            this.byteSize -= entry.byteSize;
+            if (!entry.promiseOutdated) {
+                this.trackingByteSize -= entryByteSize(entry);
+            }
+            entry.removed = true;
+            // the lists of outdated entries must not keep the node alive
+            entry.node = null;
+            return entry;
+        }
+
+        /** Replaces a learning node by its split. */
+        public void split(Node node, SplitNode splitNode) {
+            Entry entry = remove(node);
+            addSubtree(splitNode, entry.parent, entry.parentBranch, entry.path);
+        }
+
+        /** Replaces a learning node by its (de)activated copy. */
+        public void replace(Node node, Node newNode) {
+            Entry entry = remove(node);
+            addSubtree(newNode, entry.parent, entry.parentBranch, entry.path);
+        }
+
+        public void learned(Node node) {
+            Entry entry = this.entries.get(node);
+            if (entry != null) {
+                if (!entry.promiseOutdated) {
+                    entry.promiseOutdated = true;
+                    this.outdatedPromises.add(entry);
+                }
+                if (!entry.byteSizeOutdated) {
+                    entry.byteSizeOutdated = true;
+                    this.outdatedByteSizes.add(entry);
+                }
+            }
+        }
+
+        protected void updatePromises() {
+            for (Entry entry : this.outdatedPromises) {
+                if (!entry.removed) {
+                    TreeSet<Entry> nodes = nodesOf(entry);
+                    nodes.remove(entry);
+                    entry.promise = entry.node.calculatePromise();
+                    nodes.add(entry);
+                } else {
+                    this.trackingByteSize -= entryByteSize(entry);
+                }
+                entry.promiseOutdated = false;
+            }
+            this.outdatedPromises.clear();
+        }
+
+        public void updateByteSizes() {
+            for (Entry entry : this.outdatedByteSizes) {
+                if (!entry.removed) {
+                    long byteSize = entry.node.estimateByteSize();
+                    if (entry.node instanceof ActiveLearningNode) {
+                        this.activeByteSize += byteSize - entry.byteSize;
+                    } else {
+                        this.inactiveByteSize += byteSize - entry.byteSize;
+                    }
+                    this.byteSize += byteSize - entry.byteSize;
+                    entry.byteSize = byteSize;
+                }
+                entry.byteSizeOutdated = false;
+            }
+            this.outdatedByteSizes.clear();
+        }
+
+        protected static long entryByteSize(Entry entry) {
+            return SizeOf.shallowSizeOfInstance(Entry.class) + SizeOf.sizeOfArray(entry.path);
+        }
+
+        /**
+         * Estimates the size of an identity hash map, of which the table holds
+         * the keys and values and is doubled to stay at most a third full.
+         */
+        protected static long identityMapByteSize(int size) {
+            long length = 64;
+            while (3L * size > length) {
+                length *= 2;
+            }
+            return SizeOf.shallowSizeOfInstance(IdentityHashMap.class)
+                    + SizeOf.sizeOfArray((int) length, SizeOf.REFERENCE_BYTES);
+        }
+
+        /**
+         * Estimates the size of the tracker itself, without the nodes.
+         *
+         * @return the estimated size in bytes
+         */
+        public long estimatedTrackingByteSize() {
+            return SizeOf.shallowSizeOfInstance(getClass()) + this.trackingByteSize
+                    + identityMapByteSize(this.entries.size())
+                    + identityMapByteSize(this.splitNodePaths.size())
+                    + 2 * (SizeOf.shallowSizeOfInstance(TreeSet.class) + SizeOf.shallowSizeOfInstance(TreeMap.class))
+                    + this.entries.size() * TREE_SET_ENTRY_BYTES
+                    + 2 * SizeOf.shallowSizeOfInstance(ArrayList.class)
+                    + SizeOf.sizeOfArray(this.outdatedPromises.size(), SizeOf.REFERENCE_BYTES)
+                    + SizeOf.sizeOfArray(this.outdatedByteSizes.size(), SizeOf.REFERENCE_BYTES);
+        }
+
+        /**
+         * Finds the nodes to deactivate and to activate so that exactly the
+         * cutoff nodes of least promise are inactive, both in order of
+         * promise.
+         */
+        public void findChanges(int cutoff, List<FoundNode> toDeactivate,
+                List<FoundNode> toActivate) {
+            updatePromises();
+            Iterator<Entry> active = this.activeNodes.iterator();
+            Iterator<Entry> inactive = this.inactiveNodes.descendingIterator();
+            List<FoundNode> activated = new ArrayList<FoundNode>();
+            for (int i = this.inactiveNodes.size(); i < cutoff; i++) {
+                toDeactivate.add(active.next().toFoundNode());
+            }
+            for (int i = cutoff; i < this.inactiveNodes.size(); i++) {
+                activated.add(inactive.next().toFoundNode());
+            }
+            // swap while an inactive node has more promise than an active one
+            Entry leastActive = active.hasNext() ? active.next() : null;
+            Entry mostInactive = inactive.hasNext() ? inactive.next() : null;
+            while (leastActive != null && mostInactive != null
+                    && PROMISE_ORDER.compare(mostInactive, leastActive) > 0) {
+                toDeactivate.add(leastActive.toFoundNode());
+                activated.add(mostInactive.toFoundNode());
+                leastActive = active.hasNext() ? active.next() : null;
+                mostInactive = inactive.hasNext() ? inactive.next() : null;
+            }
+            for (int i = activated.size() - 1; i >= 0; i--) {
+                toActivate.add(activated.get(i));
+            }
+        }
+
+        public List<FoundNode> activeLearningNodes() {
+            List<FoundNode> found = new ArrayList<FoundNode>(this.activeNodes.size());
+            for (Entry entry : this.activeNodes) {
+                found.add(entry.toFoundNode());
+            }
+            return found;
+        }
+    }
+
     protected Node treeRoot;
 
+    /** Learning nodes of the tree, null until needed or if not tracked. */
+    protected transient LearningNodeTracker learningNodeTracker;
+
     protected int decisionNodeCount;
 
     protected int activeLeafNodeCount;
@@ -494,7 +921,48 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     @Override
     public int measureByteSize() {
-        return calcByteSize();
+        return SizeOf.isVerifying() ? calcByteSize()
+                : (int) Math.min(estimatedByteSize(), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimates the size of the tree. Only the learning nodes that learned
+     * since the last estimate are estimated again, unless the learning nodes
+     * are not tracked.
+     *
+     * @return the estimated size in bytes
+     */
+    @Override
+    public long estimatedByteSize() {
+        long byteSize = SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize();
+        LearningNodeTracker tracker = getLearningNodeTracker();
+        if (tracker != null) {
+            tracker.updateByteSizes();
+            byteSize += tracker.byteSize + tracker.estimatedTrackingByteSize();
+        } else if (this.treeRoot != null) {
+            byteSize += this.treeRoot.estimateByteSizeIncludingSubtree();
+        }
+        return byteSize;
+    }
+
+    /**
+     * Whether the learning nodes are tracked as the tree changes, so that
+     * memory management does not need to scan the tree. Subclasses that change
+     * the tree other than through the training, splitting and (de)activation
+     * methods of this class, or that measure it differently, return false.
+     *
+     * @return true if the learning nodes are tracked
+     */
+    protected boolean tracksLearningNodes() {
+        return true;
+    }
+
+    protected LearningNodeTracker getLearningNodeTracker() {
+        if ((this.learningNodeTracker == null) && tracksLearningNodes()) {
+            this.learningNodeTracker = new LearningNodeTracker();
+            this.learningNodeTracker.addSubtree(this.treeRoot, null, -1, new int[0]);
+        }
+        return this.learningNodeTracker;
     }
 
     @Override
@@ -507,6 +975,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         this.activeLeafByteSizeEstimate = 0.0;
         this.byteSizeEstimateOverheadFraction = 1.0;
         this.growthAllowed = true;
+        this.learningNodeTracker = null;
         if (this.leafpredictionOption.getChosenIndex()>0) { 
             this.removePoorAttsOption = null;
         }
@@ -514,9 +983,13 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
 
     @Override
     public void trainOnInstanceImpl(Instance inst) {
+        LearningNodeTracker tracker = getLearningNodeTracker();
         if (this.treeRoot == null) {
             this.treeRoot = newLearningNode();
             this.activeLeafNodeCount = 1;
+            if (tracker != null) {
+                tracker.addSubtree(this.treeRoot, null, -1, new int[0]);
+            }
         }
         FoundNode foundNode = this.treeRoot.filterInstanceToLeaf(inst, null, -1);
         Node leafNode = foundNode.node;
@@ -524,10 +997,16 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             leafNode = newLearningNode();
             foundNode.parent.setChild(foundNode.parentBranch, leafNode);
             this.activeLeafNodeCount++;
+            if (tracker != null) {
+                tracker.addLearningNode(leafNode, foundNode.parent, foundNode.parentBranch);
+            }
         }
         if (leafNode instanceof LearningNode) {
             LearningNode learningNode = (LearningNode) leafNode;
             learningNode.learnFromInstance(inst, this);
+            if (tracker != null) {
+                tracker.learned(learningNode);
+            }
             if (this.growthAllowed
                     && (learningNode instanceof ActiveLearningNode)) {
                 ActiveLearningNode activeLearningNode = (ActiveLearningNode) learningNode;
@@ -597,6 +1076,11 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         return false;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        return false;
+    }
+
     public static double computeHoeffdingBound(double range, double confidence,
             double n) {
         return Math.sqrt(((range * range) * Math.log(1.0 / confidence))
@@ -696,6 +1180,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                     } else {
                         parent.setChild(parentIndex, newSplit);
                     }
+                    if (this.learningNodeTracker != null) {
+                        this.learningNodeTracker.split(node, newSplit);
+                    }
                 }
                 // manage memory
                 enforceTrackerLimit();
@@ -712,25 +1199,50 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 this.growthAllowed = false;
                 return;
             }
-            FoundNode[] learningNodes = findLearningNodes();
-            Arrays.sort(learningNodes, new Comparator<FoundNode>() {
+            LearningNodeTracker tracker = getLearningNodeTracker();
+            FoundNode[] learningNodes = null;
+            int numLearningNodes;
+            if (tracker != null) {
+                numLearningNodes = tracker.numLearningNodes();
+            } else {
+                learningNodes = findLearningNodes();
+                Arrays.sort(learningNodes, new Comparator<FoundNode>() {
 
-                @Override
-                public int compare(FoundNode fn1, FoundNode fn2) {
-                    return Double.compare(fn1.node.calculatePromise(), fn2.node.calculatePromise());
-                }
-            });
+                    @Override
+                    public int compare(FoundNode fn1, FoundNode fn2) {
+                        return Double.compare(fn1.node.calculatePromise(), fn2.node.calculatePromise());
+                    }
+                });
+                numLearningNodes = learningNodes.length;
+            }
             int maxActive = 0;
-            while (maxActive < learningNodes.length) {
+            while (maxActive < numLearningNodes) {
                 maxActive++;
-                if ((maxActive * this.activeLeafByteSizeEstimate + (learningNodes.length - maxActive)
+                if ((maxActive * this.activeLeafByteSizeEstimate + (numLearningNodes - maxActive)
                         * this.inactiveLeafByteSizeEstimate)
                         * this.byteSizeEstimateOverheadFraction > this.maxByteSizeOption.getValue()) {
                     maxActive--;
                     break;
                 }
             }
-            int cutoff = learningNodes.length - maxActive;
+            int cutoff = numLearningNodes - maxActive;
+            if (tracker != null) {
+                // only the nodes changing state are visited
+                List<FoundNode> toDeactivate = new ArrayList<FoundNode>();
+                List<FoundNode> toActivate = new ArrayList<FoundNode>();
+                tracker.findChanges(cutoff, toDeactivate, toActivate);
+                for (FoundNode foundNode : toDeactivate) {
+                    deactivateLearningNode((ActiveLearningNode) foundNode.node,
+                            foundNode.parent, foundNode.parentBranch);
+                }
+                for (FoundNode foundNode : toActivate) {
+                    if (foundNode.node instanceof InactiveLearningNode) {
+                        activateLearningNode((InactiveLearningNode) foundNode.node,
+                                foundNode.parent, foundNode.parentBranch);
+                    }
+                }
+                return;
+            }
             for (int i = 0; i < cutoff; i++) {
                 if (learningNodes[i].node instanceof ActiveLearningNode) {
                     deactivateLearningNode(
@@ -751,15 +1263,28 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
     }
 
     public void estimateModelByteSizes() {
-        FoundNode[] learningNodes = findLearningNodes();
+        LearningNodeTracker tracker = getLearningNodeTracker();
         long totalActiveSize = 0;
         long totalInactiveSize = 0;
-        for (FoundNode foundNode : learningNodes) {
-            if (foundNode.node instanceof ActiveLearningNode) {
-                totalActiveSize += SizeOf.fullSizeOf(foundNode.node);
-            } else {
-                totalInactiveSize += SizeOf.fullSizeOf(foundNode.node);
+        long actualModelSize;
+        if ((tracker != null) && !SizeOf.isVerifying()) {
+            // only the nodes that learned since the last estimate are estimated
+            tracker.updateByteSizes();
+            totalActiveSize = tracker.activeByteSize;
+            totalInactiveSize = tracker.inactiveByteSize;
+            actualModelSize = estimatedByteSize();
+        } else {
+            FoundNode[] learningNodes = findLearningNodes();
+            for (FoundNode foundNode : learningNodes) {
+                long byteSize = SizeOf.isVerifying() ? SizeOf.fullSizeOf(foundNode.node)
+                        : foundNode.node.estimateByteSize();
+                if (foundNode.node instanceof ActiveLearningNode) {
+                    totalActiveSize += byteSize;
+                } else {
+                    totalInactiveSize += byteSize;
+                }
             }
+            actualModelSize = this.measureByteSize();
         }
         if (totalActiveSize > 0) {
             this.activeLeafByteSizeEstimate = (double) totalActiveSize
@@ -769,7 +1294,6 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             this.inactiveLeafByteSizeEstimate = (double) totalInactiveSize
                     / this.inactiveLeafNodeCount;
         }
-        int actualModelSize = this.measureByteSize();
         double estimatedModelSize = (this.activeLeafNodeCount
                 * this.activeLeafByteSizeEstimate + this.inactiveLeafNodeCount
                 * this.inactiveLeafByteSizeEstimate);
@@ -781,7 +1305,14 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
     }
 
     public void deactivateAllLeaves() {
-        FoundNode[] learningNodes = findLearningNodes();
+        LearningNodeTracker tracker = getLearningNodeTracker();
+        FoundNode[] learningNodes;
+        if (tracker != null) {
+            List<FoundNode> activeLearningNodes = tracker.activeLearningNodes();
+            learningNodes = activeLearningNodes.toArray(new FoundNode[activeLearningNodes.size()]);
+        } else {
+            learningNodes = findLearningNodes();
+        }
         for (int i = 0; i < learningNodes.length; i++) {
             if (learningNodes[i].node instanceof ActiveLearningNode) {
                 deactivateLearningNode(
@@ -799,6 +1330,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         } else {
             parent.setChild(parentBranch, newLeaf);
         }
+        if (this.learningNodeTracker != null) {
+            this.learningNodeTracker.replace(toDeactivate, newLeaf);
+        }
         this.activeLeafNodeCount--;
         this.inactiveLeafNodeCount++;
     }
@@ -811,6 +1345,9 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
         } else {
             parent.setChild(parentBranch, newLeaf);
         }
+        if (this.learningNodeTracker != null) {
+            this.learningNodeTracker.replace(toActivate, newLeaf);
+        }
         this.activeLeafNodeCount++;
         this.inactiveLeafNodeCount--;
     }
@@ -863,7 +1400,7 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
             if (getWeightSeen() >= ht.nbThresholdOption.getValue()) {
                 return NaiveBayes.doNaiveBayesPrediction(inst,
                         this.observedClassDistribution,
-                        this.attributeObservers);
+                        this.attributeObservers, ht.skipSparseZerosOption.isSet());
             }
             return super.getClassVotes(inst, ht);
         }
@@ -893,7 +1430,8 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 this.mcCorrectWeight += inst.weight();
             }
             if (Utils.maxIndex(NaiveBayes.doNaiveBayesPrediction(inst,
-                    this.observedClassDistribution, this.attributeObservers)) == trueClass) {
+                    this.observedClassDistribution, this.attributeObservers,
+                    ht.skipSparseZerosOption.isSet())) == trueClass) {
                 this.nbCorrectWeight += inst.weight();
             }
             super.learnFromInstance(inst, ht);
@@ -905,7 +1443,8 @@ public FlagOption binarySplitsOption = new FlagOption("binarySplits", 'b',
                 return this.observedClassDistribution.getArrayCopy();
             }
             return NaiveBayes.doNaiveBayesPrediction(inst,
-                    this.observedClassDistribution, this.attributeObservers);
+                    this.observedClassDistribution, this.attributeObservers,
+                    ht.skipSparseZerosOption.isSet());
         }
     }
 
@@ -94,6 +94,12 @@ public class HoeffdingTreeClassifLeaves extends HoeffdingTree {
         this.removePoorAttsOption = null;
     }
 
+    @Override
+    public boolean retainsInstances() {
+        // the leaf classifiers may keep the instances
+        return true;
+    }
+
     @Override
     protected LearningNode newLearningNode(double[] initialClassObservations) {
         return new LearningNodeClassifier(initialClassObservations, null, this);
@@ -104,6 +110,12 @@ public class HoeffdingTreeClassifLeaves extends HoeffdingTree {
         return new LearningNodeClassifier(initialClassObservations, cl, this);
     }
 
+    @Override
+    protected boolean tracksLearningNodes() {
+        // splits are made by attemptToSplit below
+        return false;
+    }
+
     @Override
     protected void attemptToSplit(ActiveLearningNode node, SplitNode parent,
             int parentIndex) {
@@ -21,6 +21,7 @@ package moa.classifiers.trees;
 
 import moa.classifiers.bayes.NaiveBayes;
 import moa.classifiers.core.attributeclassobservers.AttributeClassObserver;
+import moa.core.SizeOf;
 import moa.core.Utils;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -51,6 +52,11 @@ public class RandomHoeffdingTree extends HoeffdingTree {
             super(initialClassObservations);
         }
 
+        @Override
+        public long estimateByteSize() {
+            return super.estimateByteSize() + SizeOf.sizeOfArray(this.listAttributes);
+        }
+
         @Override
         public void learnFromInstance(Instance inst, HoeffdingTree ht) {
             this.observedClassDistribution.addToValue((int) inst.classValue(),
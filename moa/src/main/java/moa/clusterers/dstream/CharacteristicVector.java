@@ -222,6 +222,19 @@ public class CharacteristicVector {
 		this.setGridDensity(densityOfG, currTime);
 	}
 	
+	/**
+	 * Decays the density of the grid to the given time, if it was last updated before,
+	 * as if the density of all grids had been updated at that time.
+	 *
+	 * @param time the time of the last update of the density of all grids
+	 * @param decayFactor the value of lambda
+	 */
+	public void decayGridDensity(int time, double decayFactor)
+	{
+		if (this.getDensityTimeStamp() < time)
+			this.setGridDensity(Math.pow(decayFactor, (time-this.getDensityTimeStamp())) * this.getGridDensity(), time);
+	}
+
 	/**
 	 * Implements the update the density of all grids step given at line 2 of 
 	 * both Fig 3 and Fig 4 of Chen and Tu 2007.
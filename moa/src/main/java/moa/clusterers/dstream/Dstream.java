@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import com.github.javacliparser.FloatOption;
@@ -119,16 +120,23 @@ public class Dstream extends AbstractClusterer {
 	
 	/**
 	 * A list of all density grids which are being monitored;
-	 * given in figure 1 of Chen and Tu 2007
+	 * given in figure 1 of Chen and Tu 2007. Also records tm -
+	 * the last time when a grid is removed from grid list as a
+	 * sporadic grid (if ever) - as long as it matters.
 	 */
-	private HashMap<DensityGrid,CharacteristicVector> grid_list;
+	private GridStore grid_list;
 	
 	/**
-	 * A list of all density grids which have been deleted;
-	 * allows the recording of tm - the last time when the 
-	 * grid is removed from grid list as a sporadic grid (if ever).
+	 * The last time at which the density of the grids was updated. The density
+	 * of the grids which were not due then is decayed to this time on access.
 	 */
-	private HashMap<DensityGrid,Integer> deleted_grids;
+	private int lastSweepTime;
+	
+	/**
+	 * True if every grid must be updated the next time the density of the grids
+	 * is updated, because the thresholds or the gap have changed
+	 */
+	private boolean fullSweep;
 	
 	
 	/**
@@ -203,8 +211,9 @@ public class Dstream extends AbstractClusterer {
 		//System.out.println("Option values set...");
 
 		this.initialized = false;
-		this.grid_list = new HashMap<DensityGrid, CharacteristicVector>();
-		this.deleted_grids = new HashMap<DensityGrid, Integer>();
+		this.grid_list = new GridStore();
+		this.lastSweepTime = 0;
+		this.fullSweep = true;
 		this.cluster_list = new ArrayList<GridCluster>();
 		//System.out.println("Data structures initialized...");
 
@@ -316,6 +325,9 @@ public class Dstream extends AbstractClusterer {
 			{
 				gap = 1;
 			}
+			// The thresholds have changed, so every grid must be inspected at the next update
+			this.grid_list.setResolution(gap);
+			this.fullSweep = true;
 			//System.out.println(" A is "+optionA+", B is "+optionB+" and gap = "+gap);
 		}
 
@@ -328,11 +340,11 @@ public class Dstream extends AbstractClusterer {
 		if(!this.grid_list.containsKey(dg))
 		{
 			//System.out.print("3 - dg wasn't in grid_list!");
-			if(this.deleted_grids.containsKey(dg))
+			int removeTime = this.grid_list.getRemoveTime(dg);
+			if(removeTime != -1)
 			{
 				//System.out.print(" but it was in deleted_grids!");
-				cv = new CharacteristicVector(this.getCurrTime(), this.deleted_grids.get(dg).intValue(), 1.0, -1, false, this.getDL(), this.getDM());
-				this.deleted_grids.remove(dg);
+				cv = new CharacteristicVector(this.getCurrTime(), removeTime, 1.0, -1, false, this.getDL(), this.getDM());
 			}
 			else
 				cv = new CharacteristicVector(this.getCurrTime(), -1, 1.0, -1, false, this.getDL(), this.getDM());
@@ -346,6 +358,7 @@ public class Dstream extends AbstractClusterer {
 		{
 			//System.out.print("4 - dg was in grid_list!");
 			cv = this.grid_list.get(dg);
+			cv.decayGridDensity(this.lastSweepTime, this.getDecayFactor());
 				
 			cv.densityWithNew(this.getCurrTime(), this.getDecayFactor());
 				
@@ -353,7 +366,7 @@ public class Dstream extends AbstractClusterer {
 		
 			//System.out.println(" "+dg.toString()+" "+cv.toString());
 		
-			grid_list.put(dg, cv);
+			this.grid_list.setDirty(dg);
 		}
 
 		// 5. If tc == gap, then initial clustering
@@ -364,16 +377,17 @@ public class Dstream extends AbstractClusterer {
 		//System.out.println("\nCurrent Time is " + this.getCurrTime() + " and gap is " + this.gap);
 		if (this.getCurrTime() != 0 && this.getCurrTime() % gap == 0)
 		{
+			List<DensityGrid> dueGrids = this.pollDueGrids();
 			if (this.getCurrTime() == gap)
 			{
 				//System.out.print(" & Step 5 x6x");
-				this.initialClustering();
+				this.initialClustering(dueGrids);
 			}
 			else
 			{
 				//System.out.print(" & Step x5x 6");
-				this.removeSporadic();
-				this.adjustClustering();
+				dueGrids = this.removeSporadic(dueGrids);
+				this.adjustClustering(dueGrids);
 			}
 		}
 
@@ -399,28 +413,46 @@ public class Dstream extends AbstractClusterer {
 		throw new UnsupportedOperationException("Not supported yet.");
 	}
 
+	/**
+	 * Returns the grids of grid_list whose characteristic vector may change at this time:
+	 * the grids updated since the last call and those whose density or status may have
+	 * crossed a threshold since, or all grids if the thresholds or the gap have changed.
+	 * 
+	 * @return the list of due density grids
+	 */
+	private List<DensityGrid> pollDueGrids()
+	{
+		List<DensityGrid> dueGrids = this.grid_list.pollDue(this.getCurrTime());
+		
+		if (this.fullSweep || this.getCurrTime() == gap)
+		{
+			dueGrids = this.grid_list.getGrids();
+			this.fullSweep = false;
+		}
+		
+		return dueGrids;
+	}
+
 	/**
 	 * Implements the procedure given in Figure 3 of Chen and Tu 2007
+	 * 
+	 * @param dueGrids all the grids of grid_list
 	 */
-	private void initialClustering() {
+	private void initialClustering(List<DensityGrid> dueGrids) {
 		//System.out.println("INITIAL CLUSTERING CALLED");
 		//printDStreamState();
 		// 1. Update the density of all grids in grid_list
 
-		updateGridListDensity();
+		updateGridListDensity(dueGrids);
 		//printGridList();
 				
 		// 2. Assign each dense grid to a distinct cluster
 		// and
 		// 3. Label all other grids as NO_CLASS	
-		Iterator<Map.Entry<DensityGrid, CharacteristicVector>> glIter = this.grid_list.entrySet().iterator();
-		HashMap<DensityGrid, CharacteristicVector> newGL = new HashMap<DensityGrid, CharacteristicVector>();
-		
-		while(glIter.hasNext())
+		for (int i = 0 ; i < this.grid_list.size() ; i++)
 		{
-			Map.Entry<DensityGrid, CharacteristicVector> grid = glIter.next();
-			DensityGrid dg = grid.getKey();
-			CharacteristicVector cvOfG = grid.getValue();
+			DensityGrid dg = this.grid_list.getGrid(i);
+			CharacteristicVector cvOfG = this.grid_list.getVector(i);
 
 			//System.out.print(dg.toString());
 			if(cvOfG.getAttribute() == DENSE)
@@ -436,10 +468,8 @@ public class Dstream extends AbstractClusterer {
 				cvOfG.setLabel(NO_CLASS);
 
 			//System.out.println();
-			newGL.put(dg, cvOfG);
 		}
 
-		this.grid_list = newGL;
 		//printGridClusters();
 		
 		// 4. Make changes to grid labels by doing:
@@ -533,7 +563,6 @@ public class Dstream extends AbstractClusterer {
 									cv2.setLabel(class1);
 									c.addGrid(dgprime);
 									this.cluster_list.set(class1, c);
-									this.grid_list.put(dg, cv2);
 									return true;
 								}
 							}
@@ -549,16 +578,18 @@ public class Dstream extends AbstractClusterer {
 	 * Performs the periodic adjustment of clusters every 'gap' timesteps.
 	 * Implements the procedure given in Figure 4 of Chen and Tu 2007
 	 * 
+	 * @param dueGrids the grids of grid_list which may have changed since the last call
+	 * 
 	 * @see moa.clusterers.dstream.Dstream.gap
 	 */
-	private void adjustClustering() {
+	private void adjustClustering(List<DensityGrid> dueGrids) {
 		//System.out.println("ADJUST CLUSTERING CALLED (time"+this.getCurrTime()+")");
 		//printDStreamState();
 		//printDStreamState();
 		//printGridClusters();
 		// 1. Update the density of all grids in grid_list
 
-		updateGridListDensity();
+		updateGridListDensity(dueGrids);
 		//printGridList();
 		
 		// 2. For each grid dg whose attribute is changed since last call
@@ -568,7 +599,7 @@ public class Dstream extends AbstractClusterer {
 		boolean changesMade = false;
 		
 		do{
-			changesMade=inspectChangedGrids();
+			changesMade=inspectChangedGrids(dueGrids);
 		}while(changesMade);
 
 		//printGridList();
@@ -588,18 +619,20 @@ public class Dstream extends AbstractClusterer {
 	 * call to adjustClustering. Implements lines 3/4/7/19 of the procedure given in Figure 
 	 * 4 of Chen and Tu 2007.
 	 * 
+	 * @param dueGrids the grids of grid_list whose density was updated, the only ones
+	 * whose attribute can have changed
+	 * 
 	 * @return TRUE if any grids are updated; FALSE otherwise.
 	 */
-	private boolean inspectChangedGrids()
+	private boolean inspectChangedGrids(List<DensityGrid> dueGrids)
 	{
 		HashMap<DensityGrid, CharacteristicVector> glNew = new HashMap<DensityGrid, CharacteristicVector>();
-		Iterator<Map.Entry<DensityGrid, CharacteristicVector>> gridIter = this.grid_list.entrySet().iterator();
+		Iterator<DensityGrid> gridIter = dueGrids.iterator();
 		
 		while (gridIter.hasNext() && glNew.isEmpty())
 		{
-			Map.Entry<DensityGrid, CharacteristicVector> grid = gridIter.next();
-			DensityGrid dg = grid.getKey();
-			CharacteristicVector cv = grid.getValue();
+			DensityGrid dg = gridIter.next();
+			CharacteristicVector cv = this.grid_list.get(dg);
 			int dgClass = cv.getLabel();
 			
 			if(cv.isAttChanged() && !dg.isVisited())
@@ -616,11 +649,10 @@ public class Dstream extends AbstractClusterer {
 			}
 		}
 		
-		// If there are grids in glNew, update the corresponding grids in grid_list and clean up the cluster list
+		// If there are grids in glNew, their characteristic vectors in grid_list are updated, so clean up the cluster list
 		if (!glNew.isEmpty())
 		{
 			//System.out.println("There are "+glNew.size()+" entries to update from glNew to grid_list.");
-			this.grid_list.putAll(glNew);
 			cleanClusters();
 			return true;
 		}
@@ -1089,7 +1121,6 @@ public class Dstream extends AbstractClusterer {
 				}
 				//System.out.println("Cluster "+index+": "+dg.toString()+" is here.");
 				cv.setLabel(index);
-				this.grid_list.put(dg, cv);
 			}
 		}
 	}
@@ -1145,8 +1176,12 @@ public class Dstream extends AbstractClusterer {
 	
 	/**
 	 * Implements the procedure described in section 4.2 of Chen and Tu 2007
+	 * 
+	 * @param dueGrids the grids of grid_list which may have changed since the last call
+	 * 
+	 * @return the grids of dueGrids which are still in grid_list
 	 */
-	private void removeSporadic() {
+	private List<DensityGrid> removeSporadic(List<DensityGrid> dueGrids) {
 		//System.out.println("REMOVE SPORADIC CALLED");
 		// 1. For each grid g in grid_list
 		//    a. If g is sporadic
@@ -1156,16 +1191,15 @@ public class Dstream extends AbstractClusterer {
 		//    b. Else
 		//       i. If (S1 && S2), mark as sporadic
 		
-		// For each grid g in grid_list
-		Iterator<Map.Entry<DensityGrid, CharacteristicVector>> glIter = this.grid_list.entrySet().iterator();
-		HashMap<DensityGrid, CharacteristicVector> newGL = new HashMap<DensityGrid, CharacteristicVector>();
+		// For each grid g in grid_list which may have changed (the others are not sporadic
+		// and can't be found sporadic)
+		ArrayList<DensityGrid> newGL = new ArrayList<DensityGrid>(dueGrids.size());
 		ArrayList<DensityGrid> remGL = new ArrayList<DensityGrid>();
 				
-		while(glIter.hasNext())
+		for (DensityGrid dg : dueGrids)
 		{
-			Map.Entry<DensityGrid, CharacteristicVector> grid = glIter.next();
-			DensityGrid dg = grid.getKey();
-			CharacteristicVector cv = grid.getValue();
+			CharacteristicVector cv = this.grid_list.get(dg);
+			cv.decayGridDensity(this.lastSweepTime, this.getDecayFactor());
 			
 			// If g is sporadic
 			if (cv.isSporadic())
@@ -1186,7 +1220,7 @@ public class Dstream extends AbstractClusterer {
 				{
 					cv.setSporadic(checkIfSporadic(cv));
 					//System.out.println("within gap" + dg.toString() + " sporadicity assessed "+cv.isSporadic());
-					newGL.put(dg, cv);
+					newGL.add(dg);
 				}
 				
 			}
@@ -1195,12 +1229,11 @@ public class Dstream extends AbstractClusterer {
 			{
 				cv.setSporadic(checkIfSporadic(cv));
 				//System.out.println(dg.toString() + " sporadicity assessed "+cv.isSporadic());
-				newGL.put(dg, cv);
+				newGL.add(dg);
 			}
 		}
 		
-		this.grid_list.putAll(newGL);
-		
+
 		//System.out.println(" - Removed "+remGL.size()+" grids from grid_list.");
 		Iterator<DensityGrid> remIter = remGL.iterator();
 		
@@ -1208,10 +1241,11 @@ public class Dstream extends AbstractClusterer {
 		{
 			DensityGrid sporadicDG = remIter.next();
 			//System.out.println("Removing sporadic grid "+sporadicDG.toString()+" at time "+this.getCurrTime()+".");
-			this.deleted_grids.put(sporadicDG, new Integer(this.getCurrTime()));
-			this.grid_list.remove(sporadicDG);
+			// The time of removal matters to S2 until currTime >= (1 + beta) * tm
+			this.grid_list.remove(sporadicDG, this.getCurrTime(), (int) Math.ceil((1 + this.beta) * this.getCurrTime()));
 		}
 		
+		return newGL;
 	}
 
 	/**
@@ -1256,16 +1290,14 @@ public class Dstream extends AbstractClusterer {
 	{		
 		//System.out.println("Merge clusters "+smallClus+" and "+bigClus+".");
 		// Iterate through the density grids in grid_list to find those which are in highClass
-		for (Map.Entry<DensityGrid, CharacteristicVector> grid : grid_list.entrySet())
+		for (int i = 0 ; i < this.grid_list.size() ; i++)
 		{
-			DensityGrid dg = grid.getKey();
-			CharacteristicVector cv = grid.getValue();
+			CharacteristicVector cv = this.grid_list.getVector(i);
 
 			// Assign density grids in smallClus to bigClus
 			if(cv.getLabel() == smallClus)
 			{
 				cv.setLabel(bigClus);
-				this.grid_list.put(dg, cv);
 			}
 		}
 		//System.out.println("Density grids assigned to cluster "+bigClus+".");
@@ -1280,21 +1312,66 @@ public class Dstream extends AbstractClusterer {
 	}
 
 	/**
-	 * Iterates through grid_list and updates the density for each density grid therein.
-	 * Also marks each density grid as unvisited for this call to adjustClustering.
+	 * Iterates through the due grids of grid_list and updates the density for each density grid therein.
+	 * Also marks each density grid as unvisited for this call to adjustClustering, and schedules its
+	 * next inspection. The density of the other grids is updated when they are next accessed.
+	 * 
+	 * @param dueGrids the grids of grid_list which may have changed since the last call
 	 */
-	private void updateGridListDensity()
+	private void updateGridListDensity(List<DensityGrid> dueGrids)
 	{
-		for (Map.Entry<DensityGrid, CharacteristicVector> grid : grid_list.entrySet())
+		for (DensityGrid dg : dueGrids)
 		{
-			DensityGrid dg = grid.getKey();
-			CharacteristicVector cvOfG = grid.getValue();
+			CharacteristicVector cvOfG = this.grid_list.get(dg);
 
 			dg.setVisited(false);
 			cvOfG.updateGridDensity(this.getCurrTime(), this.getDecayFactor(), this.getDL(), this.getDM());
 
-			this.grid_list.put(dg, cvOfG);
+			this.grid_list.schedule(dg, nextInspectionTime(cvOfG));
 		}
+		
+		this.lastSweepTime = this.getCurrTime();
+	}
+	
+	/**
+	 * Determines a time before which the characteristic vector of a density grid which is not
+	 * updated can't change when the density of the grids is updated: its attribute can't change
+	 * before its decayed density reaches dm or dl, and it can't be found sporadic before S1 and
+	 * S2 hold. Until the gap changes, which causes all grids to be inspected, the density threshold
+	 * function of S1 is evaluated gap + 1 time steps after the previous update of the density.
+	 * Grids whose attribute just changed or which are sporadic are inspected at the next update.
+	 * 
+	 * @param cv - the CharacteristicVector of the density grid, whose density was just updated
+	 * 
+	 * @return the time of the next inspection of the density grid
+	 */
+	private int nextInspectionTime(CharacteristicVector cv)
+	{
+		int t = this.getCurrTime();
+		
+		if (cv.isAttChanged() || cv.isSporadic())
+			return t + 1;
+		
+		double logDecay = Math.log(this.getDecayFactor());
+		double density = cv.getGridDensity();
+		double next = Double.POSITIVE_INFINITY;
+		
+		if (cv.getAttribute() == DENSE)
+			next = t + Math.log(this.getDM() / density) / logDecay;
+		else if (cv.getAttribute() == TRANSITIONAL)
+			next = t + Math.log(this.getDL() / density) / logDecay;
+		
+		// At an update at time t' >= t + gap, S1 holds if the density at t' - gap, decayed from
+		// t' - tg, is below the density threshold function
+		double threshold = densityThresholdFunction(t - this.gap, this.cl, this.getDecayFactor(), this.N);
+		double sporadic = (cv.getUpdateTime() + t + this.gap + Math.log(threshold / density) / logDecay) / 2.0;
+		if (cv.getRemoveTime() != -1)
+			sporadic = Math.max(sporadic, (1 + this.beta) * cv.getRemoveTime());
+		
+		// Inspect one time step early in case of rounding errors
+		next = Math.floor(Math.min(next, sporadic)) - 1.0;
+		
+		return (int) Math.max(t + 1, Math.min(next, Integer.MAX_VALUE));
 	}
 
 	/**
@@ -1379,10 +1456,10 @@ public class Dstream extends AbstractClusterer {
 	public void printGridList()
 	{
 		System.out.println("Grid List. Size "+this.grid_list.size()+".");
-		for (Map.Entry<DensityGrid, CharacteristicVector> grid : grid_list.entrySet())
+		for (int i = 0 ; i < this.grid_list.size() ; i++)
 		{
-			DensityGrid dg = grid.getKey();
-			CharacteristicVector cv = grid.getValue();
+			DensityGrid dg = this.grid_list.getGrid(i);
+			CharacteristicVector cv = this.grid_list.getVector(i);
 			
 			if (cv.getAttribute() != SPARSE)
 			{
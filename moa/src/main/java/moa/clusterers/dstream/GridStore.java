@@ -0,0 +1,566 @@
+/*
+ *    GridStore.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package moa.clusterers.dstream;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores the density grids monitored by D-Stream with their characteristic vectors,
+ * and the grids removed from grid_list as sporadic with the time of their removal.
+ *
+ * The grids are found by their coordinates, which are packed one grid after the other
+ * in a primitive array and hashed into an open addressing table, so that looking up a
+ * grid does not depend on the hash code of DensityGrid objects.
+ *
+ * Each grid can be scheduled at a time on a timer wheel, whose buckets cover the gap
+ * between calls to the offline component. pollDue returns the grids updated since the
+ * last call and the grids whose time has come, so that each call only touches the grids
+ * whose characteristic vector may have changed. A removed grid is scheduled at the time
+ * after which its removal time no longer matters, when it is forgotten.
+ */
+public class GridStore implements Serializable
+{
+	private static final long serialVersionUID = 3516296390436429125L;
+
+	private static final int EMPTY = -1;
+
+	private static final byte FREE = 0;
+	private static final byte LIVE = 1;
+	private static final byte REMOVED = 2;
+
+	/**
+	 * The number of buckets of the timer wheel; a power of two.
+	 */
+	private static final int WHEEL_SIZE = 256;
+
+	/**
+	 * The number of dimensions of the grids, or -1 until a grid is stored.
+	 */
+	private int dimensions = -1;
+
+	/**
+	 * The coordinates of the grid of each slot, the coordinates of slot i starting at
+	 * i * dimensions.
+	 */
+	private int[] coordinates;
+
+	private int[] hashes;
+
+	private byte[] states;
+
+	private DensityGrid[] grids;
+
+	private CharacteristicVector[] vectors;
+
+	/**
+	 * The time at which the grid of a removed slot was removed from grid_list.
+	 */
+	private int[] removeTimes;
+
+	/**
+	 * The number of slots ever used; the slots above are unused.
+	 */
+	private int numSlots;
+
+	/**
+	 * The first free slot below numSlots, the free slots being linked by wheelNext.
+	 */
+	private int freeSlot = EMPTY;
+
+	private int numRemoved;
+
+	/**
+	 * The open addressing table of the live and removed slots, with linear probing.
+	 */
+	private int[] table;
+
+	/**
+	 * The live slots, in no particular order, and the position of each slot in live.
+	 */
+	private int[] live;
+
+	private int[] livePositions;
+
+	private int numLive;
+
+	/**
+	 * The live slots updated since the last call to pollDue.
+	 */
+	private int[] dirty;
+
+	private boolean[] isDirty;
+
+	private int numDirty;
+
+	/**
+	 * The first slot of each bucket of the timer wheel; the slots of a bucket are linked
+	 * by wheelNext and wheelPrev.
+	 */
+	private int[] wheel;
+
+	private int[] wheelNext;
+
+	private int[] wheelPrev;
+
+	private int[] dueTimes;
+
+	private boolean[] isScheduled;
+
+	/**
+	 * The time span covered by each bucket of the timer wheel.
+	 */
+	private int resolution = 1;
+
+	/**
+	 * The bucket of the time of the last call to pollDue.
+	 */
+	private long polledBucket;
+
+	public GridStore()
+	{
+		this.table = new int[16];
+		Arrays.fill(this.table, EMPTY);
+		this.wheel = new int[WHEEL_SIZE];
+		Arrays.fill(this.wheel, EMPTY);
+		allocate(8);
+	}
+
+	private void allocate(int capacity)
+	{
+		int dims = Math.max(this.dimensions, 0);
+		this.coordinates = this.coordinates == null ? new int[capacity * dims] : Arrays.copyOf(this.coordinates, capacity * dims);
+		this.hashes = this.hashes == null ? new int[capacity] : Arrays.copyOf(this.hashes, capacity);
+		this.states = this.states == null ? new byte[capacity] : Arrays.copyOf(this.states, capacity);
+		this.grids = this.grids == null ? new DensityGrid[capacity] : Arrays.copyOf(this.grids, capacity);
+		this.vectors = this.vectors == null ? new CharacteristicVector[capacity] : Arrays.copyOf(this.vectors, capacity);
+		this.removeTimes = this.removeTimes == null ? new int[capacity] : Arrays.copyOf(this.removeTimes, capacity);
+		this.live = this.live == null ? new int[capacity] : Arrays.copyOf(this.live, capacity);
+		this.livePositions = this.livePositions == null ? new int[capacity] : Arrays.copyOf(this.livePositions, capacity);
+		this.dirty = this.dirty == null ? new int[capacity] : Arrays.copyOf(this.dirty, capacity);
+		this.isDirty = this.isDirty == null ? new boolean[capacity] : Arrays.copyOf(this.isDirty, capacity);
+		this.wheelNext = this.wheelNext == null ? new int[capacity] : Arrays.copyOf(this.wheelNext, capacity);
+		this.wheelPrev = this.wheelPrev == null ? new int[capacity] : Arrays.copyOf(this.wheelPrev, capacity);
+		this.dueTimes = this.dueTimes == null ? new int[capacity] : Arrays.copyOf(this.dueTimes, capacity);
+		this.isScheduled = this.isScheduled == null ? new boolean[capacity] : Arrays.copyOf(this.isScheduled, capacity);
+	}
+
+	/**
+	 * @return the number of density grids in grid_list
+	 */
+	public int size()
+	{
+		return this.numLive;
+	}
+
+	/**
+	 * @param i the index of a density grid, between 0 and size() - 1
+	 * @return the i-th density grid of grid_list
+	 */
+	public DensityGrid getGrid(int i)
+	{
+		return this.grids[this.live[i]];
+	}
+
+	/**
+	 * @param i the index of a density grid, between 0 and size() - 1
+	 * @return the characteristic vector of the i-th density grid of grid_list
+	 */
+	public CharacteristicVector getVector(int i)
+	{
+		return this.vectors[this.live[i]];
+	}
+
+	/**
+	 * @return a list of the density grids in grid_list
+	 */
+	public List<DensityGrid> getGrids()
+	{
+		List<DensityGrid> list = new ArrayList<DensityGrid>(this.numLive);
+		for (int i = 0 ; i < this.numLive ; i++)
+		{
+			list.add(this.grids[this.live[i]]);
+		}
+		return list;
+	}
+
+	/**
+	 * @param dg a density grid
+	 * @return TRUE if dg is in grid_list, FALSE otherwise
+	 */
+	public boolean containsKey(DensityGrid dg)
+	{
+		int slot = find(dg.getCoordinates());
+		return slot != EMPTY && this.states[slot] == LIVE;
+	}
+
+	/**
+	 * @param dg a density grid
+	 * @return the characteristic vector of dg, or null if dg is not in grid_list
+	 */
+	public CharacteristicVector get(DensityGrid dg)
+	{
+		int slot = find(dg.getCoordinates());
+		return slot != EMPTY && this.states[slot] == LIVE ? this.vectors[slot] : null;
+	}
+
+	/**
+	 * @param dg a density grid which is not in grid_list
+	 * @return the last time at which dg was removed from grid_list as a sporadic grid,
+	 * or -1 if it never was or has been forgotten
+	 */
+	public int getRemoveTime(DensityGrid dg)
+	{
+		int slot = find(dg.getCoordinates());
+		return slot != EMPTY && this.states[slot] == REMOVED ? this.removeTimes[slot] : -1;
+	}
+
+	/**
+	 * Inserts a density grid in grid_list, or replaces its characteristic vector, and
+	 * marks it as updated.
+	 *
+	 * @param dg the density grid
+	 * @param cv the characteristic vector of dg
+	 */
+	public void put(DensityGrid dg, CharacteristicVector cv)
+	{
+		if (this.dimensions < 0)
+		{
+			this.dimensions = dg.getDimensions();
+			this.coordinates = new int[this.states.length * this.dimensions];
+		}
+		else if (dg.getDimensions() != this.dimensions)
+		{
+			throw new IllegalArgumentException("Density grid of "+dg.getDimensions()+" dimensions in a grid list of "+this.dimensions+".");
+		}
+
+		int[] c = dg.getCoordinates();
+		int slot = find(c);
+		if (slot == EMPTY)
+		{
+			slot = newSlot(c);
+		}
+		else if (this.states[slot] == REMOVED)
+		{
+			unschedule(slot);
+			this.numRemoved--;
+		}
+
+		if (this.states[slot] != LIVE)
+		{
+			this.states[slot] = LIVE;
+			this.grids[slot] = dg;
+			this.livePositions[slot] = this.numLive;
+			this.live[this.numLive++] = slot;
+		}
+		this.vectors[slot] = cv;
+		setDirty(slot);
+	}
+
+	/**
+	 * Removes a density grid from grid_list as a sporadic grid, remembering the time of
+	 * its removal until it is forgotten.
+	 *
+	 * @param dg the density grid, which must be in grid_list
+	 * @param removeTime the time at which dg is removed
+	 * @param forgetTime the time from which the time of removal of dg is not needed
+	 */
+	public void remove(DensityGrid dg, int removeTime, int forgetTime)
+	{
+		int slot = find(dg.getCoordinates());
+		if (slot == EMPTY || this.states[slot] != LIVE)
+			throw new IllegalArgumentException(dg.toString()+" is not in the grid list.");
+
+		int position = this.livePositions[slot];
+		int lastSlot = this.live[--this.numLive];
+		this.live[position] = lastSlot;
+		this.livePositions[lastSlot] = position;
+
+		this.states[slot] = REMOVED;
+		this.vectors[slot] = null;
+		this.removeTimes[slot] = removeTime;
+		this.isDirty[slot] = false;
+		this.numRemoved++;
+		schedule(slot, forgetTime);
+	}
+
+	/**
+	 * Marks a density grid of grid_list as updated, so that it is returned by the next call
+	 * to pollDue.
+	 *
+	 * @param dg the density grid
+	 */
+	public void setDirty(DensityGrid dg)
+	{
+		int slot = find(dg.getCoordinates());
+		if (slot != EMPTY && this.states[slot] == LIVE)
+			setDirty(slot);
+	}
+
+	/**
+	 * Schedules a density grid of grid_list so that it is returned by the first call to
+	 * pollDue at or after the given time.
+	 *
+	 * @param dg the density grid
+	 * @param time the time
+	 */
+	public void schedule(DensityGrid dg, int time)
+	{
+		int slot = find(dg.getCoordinates());
+		if (slot != EMPTY && this.states[slot] == LIVE && !this.isDirty[slot])
+			schedule(slot, time);
+	}
+
+	/**
+	 * Sets the time span covered by each bucket of the timer wheel, which should be the
+	 * time gap between calls to pollDue.
+	 *
+	 * @param resolution the time span
+	 */
+	public void setResolution(int resolution)
+	{
+		if (resolution == this.resolution)
+			return;
+
+		List<Integer> scheduled = new ArrayList<Integer>();
+		for (int b = 0 ; b < WHEEL_SIZE ; b++)
+		{
+			for (int slot = this.wheel[b] ; slot != EMPTY ; slot = this.wheelNext[slot])
+				scheduled.add(slot);
+			this.wheel[b] = EMPTY;
+		}
+		long polledTime = this.polledBucket * this.resolution;
+		this.resolution = Math.max(1, resolution);
+		this.polledBucket = polledTime / this.resolution;
+		for (int slot : scheduled)
+		{
+			this.isScheduled[slot] = false;
+			schedule(slot, this.dueTimes[slot]);
+		}
+	}
+
+	/**
+	 * Returns the density grids of grid_list updated since the last call, and those whose
+	 * scheduled time is at or before the given time. The returned grids are no longer
+	 * scheduled. The removed grids whose time has come are forgotten.
+	 *
+	 * @param time the current time
+	 * @return the list of due density grids
+	 */
+	public List<DensityGrid> pollDue(int time)
+	{
+		List<DensityGrid> due = new ArrayList<DensityGrid>(this.numDirty);
+
+		for (int i = 0 ; i < this.numDirty ; i++)
+		{
+			int slot = this.dirty[i];
+			if (this.isDirty[slot])
+			{
+				this.isDirty[slot] = false;
+				due.add(this.grids[slot]);
+			}
+		}
+		this.numDirty = 0;
+
+		long lastBucket = time / this.resolution;
+		for (long b = Math.max(this.polledBucket, lastBucket - WHEEL_SIZE + 1) ; b <= lastBucket ; b++)
+		{
+			int slot = this.wheel[(int) (b & (WHEEL_SIZE - 1))];
+			while (slot != EMPTY)
+			{
+				int next = this.wheelNext[slot];
+				if (this.dueTimes[slot] <= time)
+				{
+					unschedule(slot);
+					if (this.states[slot] == LIVE)
+						due.add(this.grids[slot]);
+					else
+						forget(slot);
+				}
+				slot = next;
+			}
+		}
+		this.polledBucket = Math.max(this.polledBucket, lastBucket);
+
+		return due;
+	}
+
+	private void setDirty(int slot)
+	{
+		unschedule(slot);
+		if (!this.isDirty[slot])
+		{
+			this.isDirty[slot] = true;
+			if (this.numDirty == this.dirty.length)
+				this.dirty = Arrays.copyOf(this.dirty, 2 * this.dirty.length);
+			this.dirty[this.numDirty++] = slot;
+		}
+	}
+
+	private void schedule(int slot, int time)
+	{
+		unschedule(slot);
+		long polledTime = this.polledBucket * this.resolution;
+		if (time <= polledTime)
+			time = (int) Math.min(polledTime + 1, Integer.MAX_VALUE);
+		int bucket = (int) ((time / this.resolution) & (WHEEL_SIZE - 1));
+		this.dueTimes[slot] = time;
+		this.wheelPrev[slot] = EMPTY;
+		this.wheelNext[slot] = this.wheel[bucket];
+		if (this.wheel[bucket] != EMPTY)
+			this.wheelPrev[this.wheel[bucket]] = slot;
+		this.wheel[bucket] = slot;
+		this.isScheduled[slot] = true;
+	}
+
+	private void unschedule(int slot)
+	{
+		if (!this.isScheduled[slot])
+			return;
+
+		int next = this.wheelNext[slot];
+		int prev = this.wheelPrev[slot];
+		if (prev == EMPTY)
+			this.wheel[(int) ((this.dueTimes[slot] / this.resolution) & (WHEEL_SIZE - 1))] = next;
+		else
+			this.wheelNext[prev] = next;
+		if (next != EMPTY)
+			this.wheelPrev[next] = prev;
+		this.isScheduled[slot] = false;
+	}
+
+	/**
+	 * Frees the slot of a removed density grid.
+	 */
+	private void forget(int slot)
+	{
+		int mask = this.table.length - 1;
+		int index = this.hashes[slot] & mask;
+		while (this.table[index] != slot)
+			index = (index + 1) & mask;
+
+		// Shift back the following slots which can't be found after the hole
+		int hole = index;
+		for (int i = (index + 1) & mask ; this.table[i] != EMPTY ; i = (i + 1) & mask)
+		{
+			int home = this.hashes[this.table[i]] & mask;
+			if (((i - home) & mask) >= ((i - hole) & mask))
+			{
+				this.table[hole] = this.table[i];
+				hole = i;
+			}
+		}
+		this.table[hole] = EMPTY;
+
+		this.states[slot] = FREE;
+		this.grids[slot] = null;
+		this.numRemoved--;
+		this.wheelNext[slot] = this.freeSlot;
+		this.freeSlot = slot;
+	}
+
+	private int newSlot(int[] c)
+	{
+		int slot;
+		if (this.freeSlot != EMPTY)
+		{
+			slot = this.freeSlot;
+			this.freeSlot = this.wheelNext[slot];
+		}
+		else
+		{
+			if (this.numSlots == this.states.length)
+				allocate(2 * this.states.length);
+			slot = this.numSlots++;
+		}
+
+		System.arraycopy(c, 0, this.coordinates, slot * this.dimensions, this.dimensions);
+		this.hashes[slot] = hash(c);
+		this.isDirty[slot] = false;
+		this.isScheduled[slot] = false;
+
+		if (2 * (this.numLive + this.numRemoved + 1) > this.table.length)
+			rehash(2 * this.table.length);
+		insert(slot);
+		return slot;
+	}
+
+	private void insert(int slot)
+	{
+		int mask = this.table.length - 1;
+		int index = this.hashes[slot] & mask;
+		while (this.table[index] != EMPTY)
+			index = (index + 1) & mask;
+		this.table[index] = slot;
+	}
+
+	private void rehash(int capacity)
+	{
+		int[] oldTable = this.table;
+		this.table = new int[capacity];
+		Arrays.fill(this.table, EMPTY);
+		for (int slot : oldTable)
+		{
+			if (slot != EMPTY)
+				insert(slot);
+		}
+	}
+
+	/**
+	 * @return the live or removed slot of the grid with the given coordinates, or EMPTY
+	 */
+	private int find(int[] c)
+	{
+		if (c.length != this.dimensions)
+			return EMPTY;
+
+		int h = hash(c);
+		int mask = this.table.length - 1;
+		for (int index = h & mask ; ; index = (index + 1) & mask)
+		{
+			int slot = this.table[index];
+			if (slot == EMPTY)
+				return EMPTY;
+			if (this.hashes[slot] == h && hasCoordinates(slot, c))
+				return slot;
+		}
+	}
+
+	private boolean hasCoordinates(int slot, int[] c)
+	{
+		int offset = slot * this.dimensions;
+		for (int i = 0 ; i < this.dimensions ; i++)
+		{
+			if (this.coordinates[offset + i] != c[i])
+				return false;
+		}
+		return true;
+	}
+
+	private static int hash(int[] c)
+	{
+		long h = 0;
+		for (int i = 0 ; i < c.length ; i++)
+		{
+			h = (h + c[i]) * 0x9E3779B97F4A7C15L;
+			h ^= h >>> 29;
+		}
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -55,13 +55,18 @@ public class ISBIndex {
         }
     }
     
+    // number of expired stream objects deleted from mtree at once
+    static final int EXPIRED_BATCH_SIZE = 64;
+    
     MyMTree mtree;
+    Set<StreamObj> expiredObjs;
     Map<Integer, Set<ISBNode>> mapNodes;
     double m_radius;
     double m_Fraction;
     
     public ISBIndex(double radius, double fra) {
         mtree = new MyMTree();
+        expiredObjs = new HashSet<StreamObj>();
         mapNodes = new HashMap<Integer, Set<ISBNode>>();
         m_radius = radius;
         m_Fraction = fra;
@@ -97,6 +102,10 @@ public class ISBIndex {
     }
     
     public void Insert(ISBNode node) {
+        // an equal expired stream object has to leave mtree first
+        if (expiredObjs.contains(node.obj)) {
+            DeleteExpiredObjs();
+        }
         // insert object of node at mtree
         mtree.add(node.obj);
         // insert node at map
@@ -108,11 +117,20 @@ public class ISBIndex {
         MapDelete(node);
         // check if stream object at mtree is still being referenced
         if (MapCountObjRefs(node.obj) <= 0) {
-            // delete stream object from mtree
-            mtree.remove(node.obj);
+            // delete stream object from mtree along with other expired ones,
+            // range searches find no node referencing it meanwhile
+            expiredObjs.add(node.obj);
+            if (expiredObjs.size() >= EXPIRED_BATCH_SIZE) {
+                DeleteExpiredObjs();
+            }
         }
     }
     
+    void DeleteExpiredObjs() {
+        mtree.removeAll(expiredObjs);
+        expiredObjs.clear();
+    }
+    
     Vector<ISBNode> MapGetNodes(StreamObj obj) {
         int h = obj.hashCode();
         Vector<ISBNode> v = new Vector<ISBNode>();
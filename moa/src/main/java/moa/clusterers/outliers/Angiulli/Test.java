@@ -56,6 +56,8 @@ public class Test {
             }
         }        
         // myOutlierDetector.PrintOutliers();
-        System.out.println("Total time = " + (System.currentTimeMillis() - tmStart) + " ms");
+        long tmTotal = System.currentTimeMillis() - tmStart;
+        System.out.println("Total time = " + tmTotal + " ms");
+        System.out.println("Throughput = " + (tmTotal > 0 ? 1000L * numberSamples / tmTotal : numberSamples) + " objects/s");
     }
 }
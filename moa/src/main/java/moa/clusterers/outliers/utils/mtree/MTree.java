@@ -18,11 +18,13 @@ package moa.clusterers.outliers.utils.mtree;
 
 import moa.clusterers.outliers.utils.mtree.SplitFunction.SplitResult;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.PriorityQueue;
 import java.util.Set;
@@ -31,9 +33,19 @@ import java.util.Set;
 
 /**
  * The main class that implements the M-Tree.
+ * 
+ * <p>The entries of every node are kept in arrays: their data objects, their
+ * child nodes, their distances to the data object of the node and their
+ * covering radii, so that queries scan them without following references.
+ * Insertions and removals report the split and the underflow of a node to
+ * its parent through their return values.
+ * 
+ * <p>Several data objects can be added at once with {@link #addAll}, which
+ * bulk loads them when the tree is empty, and removed at once with
+ * {@link #removeAll}, e.g. when a window slides.
  *
  * @param <DATA> The type of data that will be indexed by the M-Tree. Objects of
- *        this type are stored in HashMaps and HashSets, so their
+ *        this type are stored in HashSets when nodes are split, so their
  *        {@code hashCode()} and {@code equals()} methods must be consistent.
  */
 public class MTree<DATA> {
@@ -58,33 +70,19 @@ public class MTree<DATA> {
 	}
 	
 	
-	// Exception classes
-	private static class SplitNodeReplacement extends Exception {
-		// A subclass of Throwable cannot be generic.  :-(
-		// So, we have newNodes declared as Object[] instead of Node[].
-		private Object newNodes[];
-		
-		private SplitNodeReplacement(Object... newNodes) {
-			this.newNodes = newNodes;
-		}
-	}
-	
-	private static class RootNodeReplacement extends Exception {
-		// A subclass of Throwable cannot be generic.  :-(
-		// So, we have newRoot declared as Object instead of Node.
-		private Object newRoot;
-		
-		private RootNodeReplacement(Object newRoot) {
-			this.newRoot = newRoot;
-		}
+	/** Results of the removal of a data object from a subtree. */
+	private static final int NOT_FOUND = 0;
+	private static final int REMOVED = 1;
+	private static final int UNDER_CAPACITY = 2;
+
+	/** Whether the invariants are checked by {@link #_check()}. */
+	private static final boolean CHECK_ENABLED;
+	static {
+		boolean enabled = false;
+		assert enabled = true;
+		CHECK_ENABLED = enabled;
 	}
 
-	
-	private static class NodeUnderCapacity extends Exception { }
-	
-
-	private static class DataNotFound extends Exception { }
-
 	/**
 	 * An {@link Iterable} class which can be iterated to fetch the results of a
 	 * nearest-neighbors query.
@@ -104,19 +102,21 @@ public class MTree<DATA> {
 
 		private class ResultsIterator implements Iterator<ResultItem> {
 			
-			private class ItemWithDistances <U> implements Comparable<ItemWithDistances<U>> {
-				private U item;
+			private class ItemWithDistances implements Comparable<ItemWithDistances> {
+				private Node node;
+				private DATA data;
 				private double distance;
 				private double minDistance;
 
-				public ItemWithDistances(U item, double distance, double minDistance) {
-					this.item = item;
+				public ItemWithDistances(Node node, DATA data, double distance, double minDistance) {
+					this.node = node;
+					this.data = data;
 					this.distance = distance;
 					this.minDistance = minDistance;
 				}
 
 				@Override
-				public int compareTo(ItemWithDistances<U> that) {
+				public int compareTo(ItemWithDistances that) {
 					if(this.minDistance < that.minDistance) {
 						return -1;
 					} else if(this.minDistance > that.minDistance) {
@@ -130,9 +130,9 @@ public class MTree<DATA> {
 			
 			private ResultItem nextResultItem = null;
 			private boolean finished = false;
-			private PriorityQueue<ItemWithDistances<Node>> pendingQueue = new PriorityQueue<ItemWithDistances<Node>>();
+			private PriorityQueue<ItemWithDistances> pendingQueue = new PriorityQueue<ItemWithDistances>();
 			private double nextPendingMinDistance;
-			private PriorityQueue<ItemWithDistances<Entry>> nearestQueue = new PriorityQueue<ItemWithDistances<Entry>>();
+			private PriorityQueue<ItemWithDistances> nearestQueue = new PriorityQueue<ItemWithDistances>();
 			private int yieldedCount;
 			
 			private ResultsIterator() {
@@ -144,7 +144,7 @@ public class MTree<DATA> {
 				double distance = MTree.this.distanceFunction.calculate(Query.this.data, MTree.this.root.data);
 				double minDistance = Math.max(distance - MTree.this.root.radius, 0.0);
 				
-				pendingQueue.add(new ItemWithDistances<Node>(MTree.this.root, distance, minDistance));
+				pendingQueue.add(new ItemWithDistances(MTree.this.root, null, distance, minDistance));
 				nextPendingMinDistance = minDistance;
 			}
 			
@@ -199,22 +199,20 @@ public class MTree<DATA> {
 					
 					assert !pendingQueue.isEmpty();
 					
-					ItemWithDistances<Node> pending = pendingQueue.poll();
-					Node node = pending.item;
+					ItemWithDistances pending = pendingQueue.poll();
+					Node node = pending.node;
 					
-					for(IndexItem child : node.children.values()) {
-						if(Math.abs(pending.distance - child.distanceToParent) - child.radius <= Query.this.range) {
-							double childDistance = MTree.this.distanceFunction.calculate(Query.this.data, child.data);
-							double childMinDistance = Math.max(childDistance - child.radius, 0.0);
+					for(int i = 0; i < node.numEntries; i++) {
+						if(Math.abs(pending.distance - node.entryDistance[i]) - node.entryRadius[i] <= Query.this.range) {
+							@SuppressWarnings("unchecked")
+							DATA childData = (DATA) node.entryData[i];
+							double childDistance = MTree.this.distanceFunction.calculate(Query.this.data, childData);
+							double childMinDistance = Math.max(childDistance - node.entryRadius[i], 0.0);
 							if(childMinDistance <= Query.this.range) {
-								if(child instanceof MTree.Entry) {
-									@SuppressWarnings("unchecked")
-									Entry entry = (Entry)child;
-									nearestQueue.add(new ItemWithDistances<Entry>(entry, childDistance, childMinDistance));
+								if(node.isLeaf) {
+									nearestQueue.add(new ItemWithDistances(null, childData, childDistance, childMinDistance));
 								} else {
-									@SuppressWarnings("unchecked")
-									Node childNode = (Node)child;
-									pendingQueue.add(new ItemWithDistances<Node>(childNode, childDistance, childMinDistance));
+									pendingQueue.add(new ItemWithDistances(node.entryNode[i], null, childDistance, childMinDistance));
 								}
 							}
 						}
@@ -233,10 +231,10 @@ public class MTree<DATA> {
 			
 			private boolean prepareNextNearest() {
 				if(!nearestQueue.isEmpty()) {
-					ItemWithDistances<Entry> nextNearest = nearestQueue.peek();
+					ItemWithDistances nextNearest = nearestQueue.peek();
 					if(nextNearest.distance <= nextPendingMinDistance) {
 						nearestQueue.poll();
-						nextResultItem = new ResultItem(nextNearest.item.data, nextNearest.distance);
+						nextResultItem = new ResultItem(nextNearest.data, nextNearest.distance);
 						++yieldedCount;
 						return true;
 					}
@@ -259,14 +257,14 @@ public class MTree<DATA> {
 		public Iterator<ResultItem> iterator() {
 			return new ResultsIterator();
 		}
-
+		
 		
 		private DATA data;
 		private double range;
 		private int limit;
 	}
-
-
+	
+	
 	
 	/**
 	 * The default minimum capacity of nodes in an M-Tree, when not specified in
@@ -281,6 +279,9 @@ public class MTree<DATA> {
 	protected SplitFunction<DATA> splitFunction;
 	protected Node root;
 	
+	/** The number of data objects indexed. */
+	protected int size;
+	
 	
 	/**
 	 * Constructs an M-Tree with the specified distance function.
@@ -351,27 +352,44 @@ public class MTree<DATA> {
 	 */
 	public void add(DATA data) {
 		if(root == null) {
-			root = new RootLeafNode(data);
-			try {
-				root.addData(data, 0);
-			} catch (SplitNodeReplacement e) {
-				throw new RuntimeException("Should never happen!");
-			}
+			root = new Node(data, true);
+			root.addEntry(data, null, 0, 0);
 		} else {
 			double distance = distanceFunction.calculate(data, root.data);
-			try {
-				root.addData(data, distance);
-			} catch(SplitNodeReplacement e) {
-				Node newRoot = new RootNode(data);
-				root = newRoot;
-				for(int i = 0; i < e.newNodes.length; i++) {
-					@SuppressWarnings("unchecked")
-					Node newNode = (Node) e.newNodes[i];
+			Node[] newNodes = insert(root, data, distance);
+			if(newNodes != null) {
+				// The root was split, so a new root gets the two new nodes
+				root = new Node(data, false);
+				for(Node newNode : newNodes) {
 					distance = distanceFunction.calculate(root.data, newNode.data);
-					root.addChild(newNode, distance);
+					root.addEntry(newNode.data, newNode, distance, newNode.radius);
 				}
 			}
 		}
+		size++;
+	}
+	
+	
+	/**
+	 * Adds and indexes several data objects. When the M-Tree is empty, or
+	 * holds fewer data objects than are added, the M-Tree is rebuilt from
+	 * all the data objects at once instead of adding them one by one.
+	 * 
+	 * @param data The data objects to index, which should not be indexed yet.
+	 */
+	public void addAll(Collection<? extends DATA> data) {
+		if(data.size() > 1  &&  data.size() >= size) {
+			List<DATA> all = new ArrayList<DATA>(size + data.size());
+			if(root != null) {
+				collect(root, all);
+			}
+			all.addAll(data);
+			bulkLoad(all);
+		} else {
+			for(DATA d : data) {
+				add(d);
+			}
+		}
 	}
 
 
@@ -386,19 +404,77 @@ public class MTree<DATA> {
 		}
 		
 		double distanceToRoot = distanceFunction.calculate(data, root.data);
-		try {
-			root.removeData(data, distanceToRoot);
-		} catch(RootNodeReplacement e) {
-			@SuppressWarnings("unchecked")
-			Node newRoot = (Node) e.newRoot;
-			root = newRoot;
-		} catch(DataNotFound e) {
+		if(remove(root, data, distanceToRoot) == NOT_FOUND) {
 			return false;
-		} catch (NodeUnderCapacity e) {
-			throw new RuntimeException("Should have never happened", e);
+		}
+		size--;
+		if(root.isLeaf) {
+			if(root.numEntries == 0) {
+				root = null;
+			}
+		} else if(root.numEntries < 2) {
+			// Promote the only child to root
+			root = root.entryNode[0];
+			root.updateRadius();
 		}
 		return true;
 	}
+	
+	
+	/**
+	 * Removes several data objects from the M-Tree.
+	 * 
+	 * <p>The M-Tree is walked once, each node looking for all the data objects
+	 * its entries may cover. Instead of being balanced with their siblings,
+	 * nodes left under their minimum capacity are dropped and their remaining
+	 * data objects are added again at the end.
+	 * 
+	 * @param data The data objects to be removed.
+	 * @return The number of data objects that were found and removed.
+	 */
+	public int removeAll(Collection<? extends DATA> data) {
+		if(root == null  ||  data.isEmpty()) {
+			return 0;
+		}
+		
+		List<DATA> batch = new ArrayList<DATA>(data);
+		int[] items = new int[batch.size()];
+		double[] distances = new double[batch.size()];
+		for(int i = 0; i < items.length; i++) {
+			items[i] = i;
+			distances[i] = distanceFunction.calculate(batch.get(i), root.data);
+		}
+		boolean[] found = new boolean[batch.size()];
+		List<DATA> orphans = new ArrayList<DATA>();
+		removeAll(root, batch, items, distances, items.length, found, orphans);
+		
+		int removed = 0;
+		for(boolean f : found) {
+			if(f) {
+				removed++;
+			}
+		}
+		size -= removed + orphans.size();
+		// Promote the only child to root, as long as there is one
+		while(!root.isLeaf  &&  root.numEntries == 1) {
+			root = root.entryNode[0];
+			root.updateRadius();
+		}
+		if(root.numEntries == 0) {
+			root = null;
+		}
+		addAll(orphans);
+		return removed;
+	}
+	
+	
+	/**
+	 * Gets the number of data objects indexed by the M-Tree.
+	 * @return The number of data objects.
+	 */
+	public int size() {
+		return size;
+	}
 
 	/**
 	 * Performs a nearest-neighbors query on the M-Tree, constrained by distance.
@@ -446,589 +522,595 @@ public class MTree<DATA> {
 	}
 	
 	
+	/**
+	 * Checks the invariants of the M-Tree. As the checks are assertions, the
+	 * M-Tree is only walked when assertions are enabled.
+	 */
 	protected void _check() {
-		if(root != null) {
-			root._check();
-		}
-	}
-	
-
-	private class IndexItem {
-		DATA data;
-		protected double radius;
-		double distanceToParent;
-
-		private IndexItem(DATA data) {
-			this.data = data;
-			this.radius = 0;
-			this.distanceToParent = -1;
-		}
-
-		int _check() {
-			_checkRadius();
-			_checkDistanceToParent();
-			return 1;
-		}
-
-		private void _checkRadius() {
-			assert radius >= 0;
-		}
-
-		protected void _checkDistanceToParent() {
-			assert !(this instanceof MTree.RootLeafNode);
-			assert !(this instanceof MTree.RootNode);
-			assert distanceToParent >= 0;
+		if(CHECK_ENABLED  &&  root != null) {
+			int count = root._check(true);
+			assert count >= 0;
 		}
 	}
-
 	
 	
-	private abstract class Node extends IndexItem {
-
-		protected Map<DATA, IndexItem> children = new HashMap<DATA, IndexItem>();
-		protected Rootness       rootness;
-		protected Leafness<DATA> leafness;
-		
-		private
-		<R extends NodeTrait & Rootness, L extends NodeTrait & Leafness<DATA>>
-		Node(DATA data, R rootness, L leafness) {
-			super(data);
-			
-			rootness.thisNode = this;
-			this.rootness = rootness;
-			
-			leafness.thisNode = this;
-			this.leafness = leafness;
-		}
-
-		private final void addData(DATA data, double distance) throws SplitNodeReplacement {
-			doAddData(data, distance);
-			checkMaxCapacity();
-		}
-
-		int _check() {
-			super._check();
-			_checkMinCapacity();
-			_checkMaxCapacity();
-
-			int childHeight = -1;
-			for(Map.Entry<DATA, IndexItem> e : children.entrySet()) {
-				DATA data = e.getKey();
-				IndexItem child = e.getValue();
-				assert child.data.equals(data);
-
-				_checkChildClass(child);
-				_checkChildMetrics(child);
-
-				int height = child._check();
-				if(childHeight < 0) {
-					childHeight = height;
-				} else {
-					assert childHeight == height;
-				}
+	/**
+	 * Inserts a data object in a subtree.
+	 * @param node The root of the subtree.
+	 * @param data The data object.
+	 * @param distance The distance from the data object to the data object of
+	 *        the node.
+	 * @return {@code null}, or the two nodes replacing the node if it was split.
+	 */
+	private Node[] insert(Node node, DATA data, double distance) {
+		if(node.isLeaf) {
+			int index = node.indexOf(data);
+			if(index >= 0) {
+				// Equal data objects are indexed once
+				node.removeEntry(index);
 			}
-
-			return childHeight + 1;
-		}
-
-		protected void doAddData(DATA data, double distance) {
-			leafness.doAddData(data, distance);
-		}
-
-		protected void doRemoveData(DATA data, double distance) throws DataNotFound {
-			leafness.doRemoveData(data, distance);
-		}
-
-		private final void checkMaxCapacity() throws SplitNodeReplacement {
-			if(children.size() > MTree.this.maxNodeCapacity) {
-				DistanceFunction<? super DATA> cachedDistanceFunction = DistanceFunctions.cached(MTree.this.distanceFunction);
-				SplitResult<DATA> splitResult = MTree.this.splitFunction.process(children.keySet(), cachedDistanceFunction);
-				
-				Node newNode0 = null;
-				Node newNode1 = null;
-				for(int i = 0; i < 2; ++i) {
-					DATA promotedData   = splitResult.promoted.get(i);
-					Set<DATA> partition = splitResult.partitions.get(i);
-					
-					Node newNode = newSplitNodeReplacement(promotedData);
-					for(DATA data : partition) {
-						IndexItem child = children.get(data);
-						children.remove(data);
-						double distance = cachedDistanceFunction.calculate(promotedData, data);
-						newNode.addChild(child, distance);
+			node.addEntry(data, null, distance, 0);
+		} else {
+			// Choose the nearest child covering the data object, or else the
+			// child whose radius increases the least
+			int nearest = -1;
+			double nearestDistance = Double.POSITIVE_INFINITY;
+			int minIncrease = -1;
+			double minIncreaseDistance = -1.0;
+			double minRadiusIncrease = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < node.numEntries; i++) {
+				@SuppressWarnings("unchecked")
+				DATA childData = (DATA) node.entryData[i];
+				double childDistance = distanceFunction.calculate(childData, data);
+				double childRadius = node.entryRadius[i];
+				if(childDistance > childRadius) {
+					double radiusIncrease = childDistance - childRadius;
+					if(radiusIncrease < minRadiusIncrease) {
+						minRadiusIncrease = radiusIncrease;
+						minIncrease = i;
+						minIncreaseDistance = childDistance;
 					}
-
-					if(i == 0) {
-						newNode0 = newNode;
-					} else {
-						newNode1 = newNode;
+				} else {
+					if(childDistance < nearestDistance) {
+						nearestDistance = childDistance;
+						nearest = i;
 					}
 				}
-				assert children.isEmpty();
-
-				throw new SplitNodeReplacement(newNode0, newNode1);
 			}
-
-		}
-
-		protected Node newSplitNodeReplacement(DATA data) {
-			return leafness.newSplitNodeReplacement(data);
-		}
-
-		protected void addChild(IndexItem child, double distance) {
-			leafness.addChild(child, distance);
-		}
-
-		void removeData(DATA data, double distance) throws RootNodeReplacement, NodeUnderCapacity, DataNotFound {
-			doRemoveData(data, distance);
-			if(children.size() < getMinCapacity()) {
-				throw new NodeUnderCapacity();
+			int chosen = nearest >= 0 ? nearest : minIncrease;
+			double chosenDistance = nearest >= 0 ? nearestDistance : minIncreaseDistance;
+			
+			Node child = node.entryNode[chosen];
+			Node[] newNodes = insert(child, data, chosenDistance);
+			if(newNodes == null) {
+				node.entryRadius[chosen] = child.radius;
+				node.updateRadius(chosen);
+			} else {
+				// Replace the child with the new nodes
+				node.removeEntry(chosen);
+				for(Node newNode : newNodes) {
+					double newDistance = distanceFunction.calculate(node.data, newNode.data);
+					node.addEntry(newNode.data, newNode, newDistance, newNode.radius);
+				}
 			}
 		}
-
-		protected int getMinCapacity() {
-			return rootness.getMinCapacity();
-		}
-
-		private void updateMetrics(IndexItem child, double distance) {
-			child.distanceToParent = distance;
-			updateRadius(child);
-		}
-
-		private void updateRadius(IndexItem child) {
-                        if (child != null) // ### added by mits
-                            this.radius = Math.max(this.radius, child.distanceToParent + child.radius);
-		}
-
-		void _checkMinCapacity() {
-			rootness._checkMinCapacity();
-		}
-
-		private void _checkMaxCapacity() {
-			assert children.size() <= MTree.this.maxNodeCapacity;
-		}
-
-		private void _checkChildClass(IndexItem child) {
-			leafness._checkChildClass(child);
+		
+		if(node.numEntries > maxNodeCapacity) {
+			return split(node);
 		}
-
-		private void _checkChildMetrics(IndexItem child) {
-			double dist = MTree.this.distanceFunction.calculate(child.data, this.data);
-			assert child.distanceToParent == dist;
-
-			double sum = child.distanceToParent + child.radius;
-			assert sum <= this.radius;
+		return null;
+	}
+	
+	
+	/**
+	 * Splits a node with the split function.
+	 * @param node The node to split.
+	 * @return The two nodes replacing the node.
+	 */
+	private Node[] split(Node node) {
+		DistanceFunction<? super DATA> cachedDistanceFunction = DistanceFunctions.cached(distanceFunction);
+		Set<DATA> dataSet = new HashSet<DATA>();
+		for(int i = 0; i < node.numEntries; i++) {
+			@SuppressWarnings("unchecked")
+			DATA entryData = (DATA) node.entryData[i];
+			dataSet.add(entryData);
 		}
+		SplitResult<DATA> splitResult = splitFunction.process(dataSet, cachedDistanceFunction);
 		
-		protected void _checkDistanceToParent() {
-			rootness._checkDistanceToParent();
+		@SuppressWarnings("unchecked")
+		Node[] newNodes = (Node[]) new MTree.Node[2];
+		newNodes[0] = new Node(splitResult.promoted.first, node.isLeaf);
+		newNodes[1] = new Node(splitResult.promoted.second, node.isLeaf);
+		// Children routed by equal data objects are partitioned once, the
+		// others going to the smaller node
+		Set<DATA> partitioned = new HashSet<DATA>();
+		List<Integer> duplicates = new ArrayList<Integer>();
+		for(int i = 0; i < node.numEntries; i++) {
+			@SuppressWarnings("unchecked")
+			DATA entryData = (DATA) node.entryData[i];
+			if(partitioned.add(entryData)) {
+				int partition = splitResult.partitions.first.contains(entryData) ? 0 : 1;
+				split(node, i, newNodes[partition], cachedDistanceFunction);
+			} else {
+				duplicates.add(i);
+			}
 		}
-
-		private MTree<DATA> mtree() {
-			return MTree.this;
+		for(int i : duplicates) {
+			int partition = newNodes[0].numEntries <= newNodes[1].numEntries ? 0 : 1;
+			split(node, i, newNodes[partition], cachedDistanceFunction);
 		}
+		return newNodes;
 	}
 	
-	
-	
-	
-	private abstract class NodeTrait {
-		protected Node thisNode;
+	/**
+	 * Moves an entry of a node being split to one of the new nodes.
+	 */
+	private void split(Node node, int index, Node newNode, DistanceFunction<? super DATA> distanceFunction) {
+		@SuppressWarnings("unchecked")
+		DATA entryData = (DATA) node.entryData[index];
+		double distance = distanceFunction.calculate(newNode.data, entryData);
+		newNode.addEntry(entryData, node.childAt(index), distance, node.entryRadius[index]);
 	}
 	
-	private interface Leafness<DATA> {
-		void doAddData(DATA data, double distance);
-		void addChild(MTree<DATA>.IndexItem child, double distance);
-		void doRemoveData(DATA data, double distance) throws DataNotFound;
-		MTree<DATA>.Node newSplitNodeReplacement(DATA data);
-		void _checkChildClass(MTree<DATA>.IndexItem child);
-	}
 	
-	private interface Rootness {
-		int getMinCapacity();
-		void _checkDistanceToParent();
-		void _checkMinCapacity();
+	/**
+	 * Removes a data object from a subtree.
+	 * @param node The root of the subtree.
+	 * @param data The data object.
+	 * @param distance The distance from the data object to the data object of
+	 *        the node.
+	 * @return {@link #NOT_FOUND}, {@link #REMOVED}, or {@link #UNDER_CAPACITY}
+	 *         if the data object was removed and the node has fewer entries
+	 *         than the minimum capacity.
+	 */
+	private int remove(Node node, DATA data, double distance) {
+		if(node.isLeaf) {
+			int index = node.indexOf(data);
+			if(index < 0) {
+				return NOT_FOUND;
+			}
+			node.removeEntry(index);
+		} else {
+			int found = -1;
+			for(int i = 0; i < node.numEntries  &&  found < 0; i++) {
+				if(Math.abs(distance - node.entryDistance[i]) <= node.entryRadius[i]) {
+					@SuppressWarnings("unchecked")
+					DATA childData = (DATA) node.entryData[i];
+					double distanceToChild = distanceFunction.calculate(data, childData);
+					if(distanceToChild <= node.entryRadius[i]) {
+						int result = remove(node.entryNode[i], data, distanceToChild);
+						if(result == REMOVED) {
+							node.entryRadius[i] = node.entryNode[i].radius;
+							node.updateRadius(i);
+							found = i;
+						} else if(result == UNDER_CAPACITY) {
+							balanceChildren(node, i);
+							found = i;
+						}
+					}
+				}
+			}
+			if(found < 0) {
+				return NOT_FOUND;
+			}
+		}
+		return node.numEntries < minNodeCapacity ? UNDER_CAPACITY : REMOVED;
 	}
 	
 	
-	
-	private class RootNodeTrait extends NodeTrait implements Rootness {
-		
-		@Override
-		public int getMinCapacity() {
-			throw new RuntimeException("Should not be called!");
-		}
-		
-		@Override
-		public void _checkDistanceToParent() {
-			assert thisNode.distanceToParent == -1;
-		}
-
-		@Override
-		public void _checkMinCapacity() {
-			thisNode._checkMinCapacity();
-		}
-		
-	};
-
-
-	private class NonRootNodeTrait extends NodeTrait implements Rootness {
-		
-		@Override
-		public int getMinCapacity() {
-			return MTree.this.minNodeCapacity;
+	/**
+	 * Removes data objects from a subtree in one pass. Children left under
+	 * their minimum capacity are removed, their remaining data objects being
+	 * added to the orphans.
+	 * @param node The root of the subtree.
+	 * @param batch The data objects to remove from the M-Tree.
+	 * @param items The indices in the batch of the data objects the subtree
+	 *        may cover.
+	 * @param distances The distances from those data objects to the data
+	 *        object of the node.
+	 * @param numItems The number of indices.
+	 * @param found Whether each data object of the batch was removed already.
+	 * @param orphans The data objects to add again.
+	 */
+	private void removeAll(Node node, List<DATA> batch, int[] items, double[] distances, int numItems,
+			boolean[] found, List<DATA> orphans) {
+		if(node.isLeaf) {
+			for(int j = 0; j < numItems; j++) {
+				if(!found[items[j]]) {
+					int index = node.indexOf(batch.get(items[j]));
+					if(index >= 0) {
+						node.removeEntry(index);
+						found[items[j]] = true;
+					}
+				}
+			}
+			return;
 		}
 		
-		@Override
-		public void _checkMinCapacity() {
-			assert thisNode.children.size() >= thisNode.mtree().minNodeCapacity;
+		boolean[] visited = new boolean[node.numEntries];
+		int[] childItems = new int[numItems];
+		double[] childDistances = new double[numItems];
+		for(int i = 0; i < node.numEntries; i++) {
+			int numChildItems = 0;
+			for(int j = 0; j < numItems; j++) {
+				if(!found[items[j]]  &&  Math.abs(distances[j] - node.entryDistance[i]) <= node.entryRadius[i]) {
+					@SuppressWarnings("unchecked")
+					DATA childData = (DATA) node.entryData[i];
+					double distanceToChild = distanceFunction.calculate(batch.get(items[j]), childData);
+					if(distanceToChild <= node.entryRadius[i]) {
+						childItems[numChildItems] = items[j];
+						childDistances[numChildItems] = distanceToChild;
+						numChildItems++;
+					}
+				}
+			}
+			if(numChildItems > 0) {
+				removeAll(node.entryNode[i], batch, childItems, childDistances, numChildItems, found, orphans);
+				visited[i] = true;
+			}
 		}
 		
-		@Override
-		public void _checkDistanceToParent() {
-			assert thisNode.distanceToParent >= 0;
+		for(int i = node.numEntries - 1; i >= 0; i--) {
+			if(visited[i]) {
+				Node child = node.entryNode[i];
+				if(child.numEntries < minNodeCapacity) {
+					collect(child, orphans);
+					node.removeEntry(i);
+				} else {
+					node.entryRadius[i] = child.radius;
+					node.updateRadius(i);
+				}
+			}
 		}
-	};
+	}
 	
 	
-	private class LeafNodeTrait extends NodeTrait implements Leafness<DATA> {
-		
-		public void doAddData(DATA data, double distance) {
-			Entry entry = thisNode.mtree().new Entry(data);
-			assert !thisNode.children.containsKey(data);
-			thisNode.children.put(data, entry);
-			assert thisNode.children.containsKey(data);
-			thisNode.updateMetrics(entry, distance);
-		}
-
-		public void addChild(IndexItem child, double distance) {
-			assert !thisNode.children.containsKey(child.data);
-			thisNode.children.put(child.data, child);
-			assert thisNode.children.containsKey(child.data);
-			thisNode.updateMetrics(child, distance);
-		}
+	/**
+	 * Gives a child under its minimum capacity the nearest grandchild of the
+	 * nearest sibling that can donate one, or else merges it into the nearest
+	 * sibling.
+	 * @param node The parent node.
+	 * @param childIndex The index of the child in the parent node.
+	 */
+	private void balanceChildren(Node node, int childIndex) {
+		Node theChild = node.entryNode[childIndex];
 		
-		public Node newSplitNodeReplacement(DATA data) {
-			return thisNode.mtree().new LeafNode(data);
-		}
+		int nearestDonor = -1;
+		double distanceNearestDonor = Double.POSITIVE_INFINITY;
 		
-
-		@Override
-		public void doRemoveData(DATA data, double distance) throws DataNotFound {
-			if(thisNode.children.remove(data) == null) {
-				throw new DataNotFound();
+		int nearestMergeCandidate = -1;
+		double distanceNearestMergeCandidate = Double.POSITIVE_INFINITY;
+
+		for(int i = 0; i < node.numEntries; i++) {
+			if(i == childIndex) continue;
+			Node anotherChild = node.entryNode[i];
+
+			double distance = distanceFunction.calculate(theChild.data, anotherChild.data);
+			if(anotherChild.numEntries > minNodeCapacity) {
+				if(distance < distanceNearestDonor) {
+					distanceNearestDonor = distance;
+					nearestDonor = i;
+				}
+			} else {
+				if(distance < distanceNearestMergeCandidate) {
+					distanceNearestMergeCandidate = distance;
+					nearestMergeCandidate = i;
+				}
 			}
 		}
 
-		public void _checkChildClass(IndexItem child) {
-			assert child instanceof MTree.Entry;
-		}
-	}
-
-
-	class NonLeafNodeTrait extends NodeTrait implements Leafness<DATA> {
-		
-		public void doAddData(DATA data, double distance) {
-			class CandidateChild {
-				Node node;
-				double distance;
-				double metric;
-				private CandidateChild(Node node, double distance, double metric) {
-					this.node = node;
-					this.distance = distance;
-					this.metric = metric;
-				}
+		if(nearestDonor < 0) {
+			if(nearestMergeCandidate < 0) {
+				// No sibling, the parent is under capacity as well
+				node.entryRadius[childIndex] = theChild.radius;
+				node.updateRadius(childIndex);
+				return;
 			}
-			
-			CandidateChild minRadiusIncreaseNeeded = new CandidateChild(null, -1.0, Double.POSITIVE_INFINITY);
-			CandidateChild nearestDistance         = new CandidateChild(null, -1.0, Double.POSITIVE_INFINITY);
-			
-			for(IndexItem item : thisNode.children.values()) {
+			// Merge
+			Node mergeCandidate = node.entryNode[nearestMergeCandidate];
+			for(int i = 0; i < theChild.numEntries; i++) {
 				@SuppressWarnings("unchecked")
-				Node child = (Node)item;
-				double childDistance = thisNode.mtree().distanceFunction.calculate(child.data, data);
-				if(childDistance > child.radius) {
-					double radiusIncrease = childDistance - child.radius;
-					if(radiusIncrease < minRadiusIncreaseNeeded.metric) {
-						minRadiusIncreaseNeeded = new CandidateChild(child, childDistance, radiusIncrease);
-					}
-				} else {
-					if(childDistance < nearestDistance.metric) {
-						nearestDistance = new CandidateChild(child, childDistance, childDistance);
-					}
-				}
+				DATA grandchildData = (DATA) theChild.entryData[i];
+				double distance = distanceFunction.calculate(grandchildData, mergeCandidate.data);
+				mergeCandidate.addEntry(grandchildData, theChild.childAt(i), distance, theChild.entryRadius[i]);
 			}
-			
-			CandidateChild chosen = (nearestDistance.node != null)
-			                      ? nearestDistance
-			                      : minRadiusIncreaseNeeded;
-			
-			Node child = chosen.node;
-			try {
-				child.addData(data, chosen.distance);
-				thisNode.updateRadius(child);
-			} catch(SplitNodeReplacement e) {
-				// Replace current child with new nodes
-				IndexItem ii = thisNode.children.remove(child.data);
-				assert ii != null;
-				
-				for(int i = 0; i < e.newNodes.length; ++i) {
-					@SuppressWarnings("unchecked")
-					Node newChild = (Node) e.newNodes[i];
-					distance = thisNode.mtree().distanceFunction.calculate(thisNode.data, newChild.data);
-					thisNode.addChild(newChild, distance);
+			node.entryRadius[nearestMergeCandidate] = mergeCandidate.radius;
+			node.updateRadius(nearestMergeCandidate);
+			node.removeEntry(childIndex);
+		} else {
+			// Donate
+			// Look for the nearest grandchild
+			Node donor = node.entryNode[nearestDonor];
+			int nearestGrandchild = -1;
+			double nearestGrandchildDistance = Double.POSITIVE_INFINITY;
+			for(int i = 0; i < donor.numEntries; i++) {
+				@SuppressWarnings("unchecked")
+				DATA grandchildData = (DATA) donor.entryData[i];
+				double distance = distanceFunction.calculate(grandchildData, theChild.data);
+				if(distance < nearestGrandchildDistance) {
+					nearestGrandchildDistance = distance;
+					nearestGrandchild = i;
 				}
 			}
-		}
-		
 
-		public void addChild(IndexItem newChild_, double distance) {
 			@SuppressWarnings("unchecked")
-			Node newChild = (Node) newChild_;
-			
-			class ChildWithDistance {
-				Node child;
-				double distance;
-				private ChildWithDistance(Node child, double distance) {
-					this.child = child;
-					this.distance = distance;
-				}
-			}
-			
-			Deque<ChildWithDistance> newChildren = new ArrayDeque<ChildWithDistance>();
-			newChildren.addFirst(new ChildWithDistance(newChild, distance));
-			
-			while(!newChildren.isEmpty()) {
-				ChildWithDistance cwd = newChildren.removeFirst();
-				
-				newChild = cwd.child;
-				distance = cwd.distance;
-				if(thisNode.children.containsKey(newChild.data)) {
-					@SuppressWarnings("unchecked")
-					Node existingChild = (Node) thisNode.children.get(newChild.data);
-					assert existingChild.data.equals(newChild.data);
-					
-					// Transfer the _children_ of the newChild to the existingChild
-					for(IndexItem grandchild : newChild.children.values()) {
-						existingChild.addChild(grandchild, grandchild.distanceToParent);
-					}
-					newChild.children.clear();
-					
-					try {
-						existingChild.checkMaxCapacity();
-					} catch(SplitNodeReplacement e) {
-						IndexItem ii = thisNode.children.remove(existingChild.data);
-						assert ii != null;
-						
-						for(int i = 0; i < e.newNodes.length; ++i) {
-							@SuppressWarnings("unchecked")
-							Node newNode = (Node) e.newNodes[i];
-							distance = thisNode.mtree().distanceFunction.calculate(thisNode.data, newNode.data);
-							newChildren.addFirst(new ChildWithDistance(newNode, distance));
-						}
-					}
-				} else {
-					thisNode.children.put(newChild.data, newChild);
-					thisNode.updateMetrics(newChild, distance);
-				}
-			}
+			DATA grandchildData = (DATA) donor.entryData[nearestGrandchild];
+			Node grandchildNode = donor.childAt(nearestGrandchild);
+			double grandchildRadius = donor.entryRadius[nearestGrandchild];
+			donor.removeEntry(nearestGrandchild);
+			theChild.addEntry(grandchildData, grandchildNode, nearestGrandchildDistance, grandchildRadius);
+			node.entryRadius[childIndex] = theChild.radius;
+			node.updateRadius(childIndex);
 		}
-
-
-		public Node newSplitNodeReplacement(DATA data) {
-			return new InternalNode(data);
-		}
-
-
-		public void doRemoveData(DATA data, double distance) throws DataNotFound {
-			for(IndexItem childItem : thisNode.children.values()) {
+	}
+	
+	
+	/**
+	 * Adds the data objects of a subtree to a list.
+	 */
+	private void collect(Node node, List<DATA> data) {
+		for(int i = 0; i < node.numEntries; i++) {
+			if(node.isLeaf) {
 				@SuppressWarnings("unchecked")
-				Node child = (Node)childItem;
-				if(Math.abs(distance - child.distanceToParent) <= child.radius) {
-					double distanceToChild = thisNode.mtree().distanceFunction.calculate(data, child.data);
-					if(distanceToChild <= child.radius) {
-						try {
-							child.removeData(data, distanceToChild);
-							thisNode.updateRadius(child);
-							return;
-						} catch(DataNotFound e) {
-							// If DataNotFound was thrown, then the data was not found in the child
-						} catch(NodeUnderCapacity e) {
-							Node expandedChild = balanceChildren(child);
-							thisNode.updateRadius(expandedChild);
-							return;
-						} catch (RootNodeReplacement e) {
-							throw new RuntimeException("Should never happen!");
-						}
-					}
-				}
+				DATA entryData = (DATA) node.entryData[i];
+				data.add(entryData);
+			} else {
+				collect(node.entryNode[i], data);
 			}
-			
-			throw new DataNotFound();
 		}
-
+	}
+	
+	
+	/**
+	 * Builds the M-Tree bottom-up from a list of data objects, replacing its
+	 * contents.
+	 * 
+	 * <p>The data objects are first ordered so that near objects are close in
+	 * the order, splitting the list recursively between two far apart
+	 * objects. Consecutive objects are then packed in leaves, and consecutive
+	 * nodes in the nodes of the level above, until one node is left, each
+	 * node getting between the minimum and the maximum capacity of entries.
+	 * 
+	 * @param data The data objects, reordered by this method.
+	 */
+	private void bulkLoad(List<DATA> data) {
+		root = null;
+		size = 0;
+		if(data.isEmpty()) {
+			return;
+		}
+		orderByProximity(data, 0, data.size());
 		
-		private Node balanceChildren(Node theChild) {
-			// Tries to find anotherChild which can donate a grand-child to theChild.
-			
-			Node nearestDonor = null;
-			double distanceNearestDonor = Double.POSITIVE_INFINITY;
-			
-			Node nearestMergeCandidate = null;
-			double distanceNearestMergeCandidate = Double.POSITIVE_INFINITY;
-
-			for(IndexItem child : thisNode.children.values()) {
-				@SuppressWarnings("unchecked")
-				Node anotherChild = (Node)child;
-				if(anotherChild == theChild) continue;
-
-				double distance = thisNode.mtree().distanceFunction.calculate(theChild.data, anotherChild.data);
-				if(anotherChild.children.size() > anotherChild.getMinCapacity()) {
-					if(distance < distanceNearestDonor) {
-						distanceNearestDonor = distance;
-						nearestDonor = anotherChild;
-					}
-				} else {
-					if(distance < distanceNearestMergeCandidate) {
-						distanceNearestMergeCandidate = distance;
-						nearestMergeCandidate = anotherChild;
-					}
-				}
+		List<Node> level = new ArrayList<Node>();
+		pack(data, null, true, level);
+		while(level.size() > 1) {
+			List<DATA> levelData = new ArrayList<DATA>(level.size());
+			for(Node node : level) {
+				levelData.add(node.data);
 			}
-
-			if(nearestDonor == null) {
-				// Merge
-				for(IndexItem grandchild : theChild.children.values()) {
-                                    //if (thisNode == null) System.out.println("thisNode is null");
-                                    //if (thisNode.mtree() == null) System.out.println("thisNode.mtree() is null");
-                                    //if (grandchild == null) System.out.println("grandchild is null");
-                                    //if (grandchild.data == null) System.out.println("grandchild.data is null");                                
-                                    //if (nearestMergeCandidate == null) System.out.println("nearestMergeCandidate is null");                                
-                                    //if (nearestMergeCandidate.data == null) System.out.println("nearestMergeCandidate.data is null");
-
-                                    if (nearestMergeCandidate != null) { // ### added by mits
-                                        double distance = thisNode.mtree().distanceFunction.calculate(grandchild.data, nearestMergeCandidate.data);
-                                        nearestMergeCandidate.addChild(grandchild, distance); 
-                                    }                                    
+			List<Node> upperLevel = new ArrayList<Node>();
+			pack(levelData, level, false, upperLevel);
+			level = upperLevel;
+		}
+		root = level.get(0);
+		size = data.size();
+	}
+	
+	
+	/**
+	 * Packs consecutive entries into nodes of a level of the M-Tree.
+	 * @param data The data objects of the entries.
+	 * @param nodes The nodes of the entries, or {@code null} for leaves.
+	 * @param isLeaf Whether the nodes to create are leaves.
+	 * @param level The list to add the created nodes to.
+	 */
+	private void pack(List<DATA> data, List<Node> nodes, boolean isLeaf, List<Node> level) {
+		int numEntries = data.size();
+		int numNodes = (numEntries + maxNodeCapacity - 1) / maxNodeCapacity;
+		int from = 0;
+		for(int n = 0; n < numNodes; n++) {
+			int to = (int) ((long) numEntries * (n + 1) / numNodes);
+			// The data object of the node is the entry nearest to the others
+			int center = from;
+			double centerRadius = Double.POSITIVE_INFINITY;
+			for(int i = from; i < to; i++) {
+				double radius = 0;
+				for(int j = from; j < to  &&  radius < centerRadius; j++) {
+					double entryRadius = nodes == null ? 0 : nodes.get(j).radius;
+					radius = Math.max(radius, distanceFunction.calculate(data.get(i), data.get(j)) + entryRadius);
 				}
-
-				IndexItem removed = thisNode.children.remove(theChild.data);
-				assert removed != null;
-				return nearestMergeCandidate;
-			} else {
-				// Donate
-				// Look for the nearest grandchild
-				IndexItem nearestGrandchild = null;
-				double nearestGrandchildDistance = Double.POSITIVE_INFINITY;
-				for(IndexItem grandchild : nearestDonor.children.values()) {
-					double distance = thisNode.mtree().distanceFunction.calculate(grandchild.data, theChild.data);
-					if(distance < nearestGrandchildDistance) {
-						nearestGrandchildDistance = distance;
-						nearestGrandchild = grandchild;
-					}
+				if(radius < centerRadius) {
+					centerRadius = radius;
+					center = i;
 				}
-
-				IndexItem ii = nearestDonor.children.remove(nearestGrandchild.data);
-				assert ii != null;
-				theChild.addChild(nearestGrandchild, nearestGrandchildDistance);
-				return theChild;
 			}
-		}
-
-
-		public void _checkChildClass(IndexItem child) {
-			assert child instanceof MTree.InternalNode
-			    || child instanceof MTree.LeafNode;
+			Node node = new Node(data.get(center), isLeaf);
+			for(int i = from; i < to; i++) {
+				double distance = i == center ? 0 : distanceFunction.calculate(node.data, data.get(i));
+				Node child = nodes == null ? null : nodes.get(i);
+				node.addEntry(data.get(i), child, distance, child == null ? 0 : child.radius);
+			}
+			level.add(node);
+			from = to;
 		}
 	}
-
-
-	private class RootLeafNode extends Node {
-		
-		private RootLeafNode(DATA data) {
-			super(data, new RootNodeTrait(), new LeafNodeTrait());
+	
+	
+	/**
+	 * Orders data objects so that near objects are close in the order.
+	 * @param data The data objects.
+	 * @param from The first index of the range to order.
+	 * @param to The index after the last one of the range to order.
+	 */
+	private void orderByProximity(List<DATA> data, int from, int to) {
+		if(to - from <= maxNodeCapacity) {
+			return;
 		}
+		// Find two far apart objects
+		final DATA first = farthest(data, from, to, data.get(from));
+		final DATA second = farthest(data, from, to, first);
 		
-		void removeData(DATA data, double distance) throws RootNodeReplacement, DataNotFound {
-			try {
-				super.removeData(data, distance);
-			} catch (NodeUnderCapacity e) {
-				assert children.isEmpty();
-				throw new RootNodeReplacement(null);
+		// Sort by how much nearer to the first object than to the second
+		List<DATA> range = data.subList(from, to);
+		final double[] keys = new double[range.size()];
+		List<Integer> indices = new ArrayList<Integer>(range.size());
+		for(int i = 0; i < range.size(); i++) {
+			keys[i] = distanceFunction.calculate(range.get(i), first)
+					- distanceFunction.calculate(range.get(i), second);
+			indices.add(i);
+		}
+		Collections.sort(indices, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return Double.compare(keys[i1], keys[i2]);
 			}
+		});
+		List<DATA> sorted = new ArrayList<DATA>(range.size());
+		for(int i : indices) {
+			sorted.add(range.get(i));
 		}
-		
-		protected int getMinCapacity() {
-			return 1;
+		for(int i = 0; i < sorted.size(); i++) {
+			range.set(i, sorted.get(i));
 		}
-
-		void _checkMinCapacity() {
-			assert children.size() >= 1;
+		
+		int middle = (from + to) >>> 1;
+		orderByProximity(data, from, middle);
+		orderByProximity(data, middle, to);
+	}
+	
+	
+	private DATA farthest(List<DATA> data, int from, int to, DATA reference) {
+		DATA farthest = reference;
+		double farthestDistance = -1;
+		for(int i = from; i < to; i++) {
+			double distance = distanceFunction.calculate(data.get(i), reference);
+			if(distance > farthestDistance) {
+				farthestDistance = distance;
+				farthest = data.get(i);
+			}
 		}
+		return farthest;
 	}
-
-	private class RootNode extends Node {
-
-		private RootNode(DATA data) {
-			super(data, new RootNodeTrait(), new NonLeafNodeTrait());
+	
+	
+	/**
+	 * A node of the M-Tree, with the data object routing to it, its covering
+	 * radius and its entries. The entries of leaves are the indexed data
+	 * objects, the entries of the other nodes are their children.
+	 */
+	private class Node {
+		DATA data;
+		double radius;
+		final boolean isLeaf;
+		
+		int numEntries;
+		Object[] entryData;
+		Node[] entryNode;
+		double[] entryDistance;
+		double[] entryRadius;
+
+		@SuppressWarnings("unchecked")
+		private Node(DATA data, boolean isLeaf) {
+			this.data = data;
+			this.radius = 0;
+			this.isLeaf = isLeaf;
+			int capacity = MTree.this.maxNodeCapacity + 1;
+			this.entryData = new Object[capacity];
+			this.entryNode = isLeaf ? null : (Node[]) new MTree.Node[capacity];
+			this.entryDistance = new double[capacity];
+			this.entryRadius = new double[capacity];
 		}
 		
-		void removeData(DATA data, double distance) throws RootNodeReplacement, NodeUnderCapacity, DataNotFound {
-			try {
-				super.removeData(data, distance);
-			} catch(NodeUnderCapacity e) {
-				// Promote the only child to root
-				@SuppressWarnings("unchecked")
-				Node theChild = (Node)(children.values().iterator().next());
-				Node newRoot;
-				if(theChild instanceof MTree.InternalNode) {
-					newRoot = new RootNode(theChild.data);
-				} else {
-					assert theChild instanceof MTree.LeafNode;
-					newRoot = new RootLeafNode(theChild.data);
+		private void addEntry(DATA data, Node node, double distance, double radius) {
+			if(numEntries == entryData.length) {
+				int capacity = 2 * numEntries;
+				entryData = java.util.Arrays.copyOf(entryData, capacity);
+				if(entryNode != null) {
+					entryNode = java.util.Arrays.copyOf(entryNode, capacity);
 				}
-
-				for(IndexItem grandchild : theChild.children.values()) {
-					distance = MTree.this.distanceFunction.calculate(newRoot.data, grandchild.data);
-					newRoot.addChild(grandchild, distance);
-				}
-				theChild.children.clear();
-
-				throw new RootNodeReplacement(newRoot);
+				entryDistance = java.util.Arrays.copyOf(entryDistance, capacity);
+				entryRadius = java.util.Arrays.copyOf(entryRadius, capacity);
 			}
+			entryData[numEntries] = data;
+			if(entryNode != null) {
+				entryNode[numEntries] = node;
+			}
+			entryDistance[numEntries] = distance;
+			entryRadius[numEntries] = radius;
+			numEntries++;
+			updateRadius(numEntries - 1);
 		}
 		
+		private void removeEntry(int index) {
+			int moved = numEntries - index - 1;
+			System.arraycopy(entryData, index + 1, entryData, index, moved);
+			if(entryNode != null) {
+				System.arraycopy(entryNode, index + 1, entryNode, index, moved);
+				entryNode[numEntries - 1] = null;
+			}
+			System.arraycopy(entryDistance, index + 1, entryDistance, index, moved);
+			System.arraycopy(entryRadius, index + 1, entryRadius, index, moved);
+			entryData[numEntries - 1] = null;
+			numEntries--;
+		}
 		
-		@Override
-		protected int getMinCapacity() {
-			return 2;
+		private Node childAt(int index) {
+			return isLeaf ? null : entryNode[index];
 		}
 		
-		@Override
-		void _checkMinCapacity() {
-			assert children.size() >= 2;
+		private int indexOf(DATA data) {
+			for(int i = 0; i < numEntries; i++) {
+				if(data.equals(entryData[i])) {
+					return i;
+				}
+			}
+			return -1;
 		}
-	}
-
-
-	private class InternalNode extends Node {
-		private InternalNode(DATA data) {
-			super(data, new NonRootNodeTrait(), new NonLeafNodeTrait());
+		
+		/** Grows the covering radius to cover an entry. */
+		private void updateRadius(int index) {
+			radius = Math.max(radius, entryDistance[index] + entryRadius[index]);
 		}
-	};
-
-
-	private class LeafNode extends Node {
-
-		public LeafNode(DATA data) {
-			super(data, new NonRootNodeTrait(), new LeafNodeTrait());
+		
+		/** Recomputes the covering radius from all the entries. */
+		private void updateRadius() {
+			radius = 0;
+			for(int i = 0; i < numEntries; i++) {
+				updateRadius(i);
+			}
 		}
-	}
-
-
-	private class Entry extends IndexItem {
-		private Entry(DATA data) {
-			super(data);
+		
+		/**
+		 * Checks the invariants of the subtree.
+		 * @return The height of the subtree.
+		 */
+		private int _check(boolean isRoot) {
+			assert radius >= 0;
+			assert numEntries <= MTree.this.maxNodeCapacity;
+			assert numEntries >= (isRoot ? (isLeaf ? 1 : 2) : MTree.this.minNodeCapacity);
+			
+			int childHeight = -1;
+			for(int i = 0; i < numEntries; i++) {
+				@SuppressWarnings("unchecked")
+				DATA childData = (DATA) entryData[i];
+				double distance = MTree.this.distanceFunction.calculate(childData, data);
+				assert entryDistance[i] == distance;
+				assert entryDistance[i] + entryRadius[i] <= radius;
+				
+				int height = 0;
+				if(!isLeaf) {
+					assert entryNode[i].data.equals(childData);
+					assert entryNode[i].radius == entryRadius[i];
+					height = entryNode[i]._check(false);
+				}
+				if(childHeight < 0) {
+					childHeight = height;
+				} else {
+					assert childHeight == height;
+				}
+			}
+			
+			return childHeight + 1;
 		}
 	}
 }
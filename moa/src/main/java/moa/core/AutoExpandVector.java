@@ -20,6 +20,7 @@
 package moa.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import moa.AbstractMOAObject;
@@ -31,7 +32,7 @@ import moa.MOAObject;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class AutoExpandVector<T> extends ArrayList<T> implements MOAObject {
+public class AutoExpandVector<T> extends ArrayList<T> implements MOAObject, StructurallyCopyable, MemoryAccountable {
 
     private static final long serialVersionUID = 1L;
 
@@ -120,6 +121,18 @@ public class AutoExpandVector<T> extends ArrayList<T> implements MOAObject {
         return AbstractMOAObject.copy(this);
     }
 
+    @Override
+    public Object copyStructure(StructuralCopier copier) {
+        // Deserialization leaves the capacity equal to the size
+        Object[] elements = toArray();
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = copier.copy(elements[i]);
+        }
+        AutoExpandVector<Object> copy = new AutoExpandVector<Object>(elements.length);
+        copy.addAll(Arrays.asList(elements));
+        return copy;
+    }
+
     @Override
     public int measureByteSize() {
         return AbstractMOAObject.measureByteSize(this);
@@ -129,4 +142,14 @@ public class AutoExpandVector<T> extends ArrayList<T> implements MOAObject {
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
     }
+
+    @Override
+    public long estimatedByteSize() {
+        long size = SizeOf.shallowSizeOfInstance(getClass())
+                + SizeOf.sizeOfArray(size(), SizeOf.REFERENCE_BYTES);
+        for (T element : this) {
+            size += SizeOf.estimatedSizeOf(element);
+        }
+        return size;
+    }
 }
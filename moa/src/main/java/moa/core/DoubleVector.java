@@ -27,7 +27,7 @@ import moa.AbstractMOAObject;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
-public class DoubleVector extends AbstractMOAObject {
+public class DoubleVector extends AbstractMOAObject implements MemoryAccountable {
 
     private static final long serialVersionUID = 1L;
 
@@ -199,4 +199,9 @@ public class DoubleVector extends AbstractMOAObject {
     public void getDescription(StringBuilder sb, int indent) {
         getSingleLineDescription(sb);
     }
+
+    @Override
+    public long estimatedByteSize() {
+        return SizeOf.shallowSizeOfInstance(getClass()) + SizeOf.sizeOfArray(this.array);
+    }
 }
@@ -21,6 +21,7 @@
 package moa.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Simple extension of ArrayList. Exists for legacy reasons.
@@ -28,7 +29,23 @@ import java.util.ArrayList;
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
  * @version $Revision: 8034 $
  */
-public class FastVector<E> extends ArrayList<E> {
+public class FastVector<E> extends ArrayList<E> implements StructurallyCopyable {
+
+    /** The value computed before it was declared, for compatibility. */
+    private static final long serialVersionUID = -7952349329127471008L;
+
+    public FastVector() {
+        super();
+    }
+
+    /**
+     * Creates an empty vector.
+     *
+     * @param capacity the initial capacity
+     */
+    public FastVector(int capacity) {
+        super(capacity);
+    }
 
     /**
      * Adds an element to this vector. Increases its capacity if its not large
@@ -58,4 +75,16 @@ public class FastVector<E> extends ArrayList<E> {
     public final void removeElementAt(int index) {
         remove(index);
     }
+
+    @Override
+    public Object copyStructure(StructuralCopier copier) {
+        // Deserialization leaves the capacity equal to the size
+        Object[] elements = toArray();
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = copier.copy(elements[i]);
+        }
+        FastVector<Object> copy = new FastVector<Object>(elements.length);
+        copy.addAll(Arrays.asList(elements));
+        return copy;
+    }
 }
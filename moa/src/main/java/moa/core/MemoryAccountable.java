@@ -0,0 +1,42 @@
+/*
+ *    MemoryAccountable.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+/**
+ * Interface for objects that estimate their own memory size, from the sizes
+ * of the structures they grow, instead of having the SizeOf agent walk
+ * them. Estimating must not depend on the amount of data seen, apart from
+ * parts that changed since the last estimate, so that models can be
+ * measured often.
+ *
+ * The estimates are computed with the constants of {@link SizeOf}, and
+ * cover the data the objects learn, their options, and the structures that
+ * keep track of them, as the agent would measure. The agent measures the
+ * objects instead when {@link SizeOf#isVerifying()}.
+ */
+public interface MemoryAccountable {
+
+    /**
+     * Estimates the memory size of this object, including the objects it
+     * refers to.
+     *
+     * @return the estimated size in bytes
+     */
+    long estimatedByteSize();
+}
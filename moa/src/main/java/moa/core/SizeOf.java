@@ -22,6 +22,9 @@ package moa.core;
 
 import sizeof.agent.SizeOfAgent;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
 /**
  * Helper class for <a href="http://www.jroller.com/maxim/entry/again_about_determining_size_of" target="_blank">Maxim Zakharenkov's SizeOf agent</a>.
  *
@@ -30,9 +33,40 @@ import sizeof.agent.SizeOfAgent;
  */
 public class SizeOf {
 
+    /** the estimated size of an object header (64-bit JVM, compressed references). */
+    public static final int OBJECT_HEADER_BYTES = 12;
+
+    /** the estimated size of an array header. */
+    public static final int ARRAY_HEADER_BYTES = 16;
+
+    /** the estimated size of a reference. */
+    public static final int REFERENCE_BYTES = 4;
+
+    /** the alignment of the objects in memory. */
+    public static final int OBJECT_ALIGNMENT = 8;
+
     /** whether the agent is present. */
     protected static Boolean m_Present;
 
+    /** whether the agent measures objects that estimate their size. */
+    protected static volatile boolean m_Verifying = Boolean.getBoolean("moa.sizeof.verify");
+
+    /** the estimated sizes of the instances of classes, without referred objects. */
+    protected static final ClassValue<Long> SHALLOW_SIZES = new ClassValue<Long>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            long size = OBJECT_HEADER_BYTES;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += bytesOf(field.getType());
+                    }
+                }
+            }
+            return alignObjectSize(size);
+        }
+    };
+
     /**
      * Checks whteher the agent is present.
      *
@@ -78,4 +112,142 @@ public class SizeOf {
             return -1;
         }
     }
+
+    /**
+     * Returns whether the agent measures the objects that estimate their
+     * size, to verify the estimates. Enabled with the system property
+     * "moa.sizeof.verify".
+     *
+     * @return true if the objects are measured by the agent
+     */
+    public static boolean isVerifying() {
+        return m_Verifying;
+    }
+
+    /**
+     * Sets whether the agent measures the objects that estimate their size.
+     *
+     * @param value	true to measure the objects with the agent
+     */
+    public static void setVerifying(boolean value) {
+        m_Verifying = value;
+    }
+
+    /**
+     * Returns the size of the object, estimated if it accounts for its
+     * memory, or measured by the agent otherwise.
+     *
+     * @param o	the object to get the size for
+     * @return the size of the object, or if it isn't estimated and the
+     * agent isn't present -1
+     */
+    public static long measuredSizeOf(Object o) {
+        if ((o instanceof MemoryAccountable) && !isVerifying()) {
+            return ((MemoryAccountable) o).estimatedByteSize();
+        }
+        return fullSizeOf(o);
+    }
+
+    /**
+     * Returns the estimated size of an object that is part of an estimated
+     * one. Objects that do not account for their memory are measured by the
+     * agent if present, and are otherwise counted without the objects they
+     * refer to.
+     *
+     * @param o	the object to get the size for, may be null
+     * @return the estimated size of the object, 0 for null
+     */
+    public static long estimatedSizeOf(Object o) {
+        if (o == null) {
+            return 0;
+        }
+        if (o instanceof MemoryAccountable) {
+            return ((MemoryAccountable) o).estimatedByteSize();
+        }
+        long size = fullSizeOf(o);
+        return size >= 0 ? size : shallowSizeOfInstance(o.getClass());
+    }
+
+    /**
+     * Returns the estimated size of the instances of a class, without the
+     * objects they refer to.
+     *
+     * @param type	the class of the instances
+     * @return the estimated size
+     */
+    public static long shallowSizeOfInstance(Class<?> type) {
+        return SHALLOW_SIZES.get(type);
+    }
+
+    /**
+     * Returns the estimated size of an array.
+     *
+     * @param length	the length of the array
+     * @param elementBytes	the size of the elements
+     * @return the estimated size
+     */
+    public static long sizeOfArray(int length, int elementBytes) {
+        return alignObjectSize(ARRAY_HEADER_BYTES + (long) length * elementBytes);
+    }
+
+    /**
+     * Returns the estimated size of an array.
+     *
+     * @param array	the array, may be null
+     * @return the estimated size, 0 for null
+     */
+    public static long sizeOfArray(double[] array) {
+        return array == null ? 0 : sizeOfArray(array.length, 8);
+    }
+
+    /**
+     * Returns the estimated size of an array.
+     *
+     * @param array	the array, may be null
+     * @return the estimated size, 0 for null
+     */
+    public static long sizeOfArray(int[] array) {
+        return array == null ? 0 : sizeOfArray(array.length, 4);
+    }
+
+    /**
+     * Returns the estimated size of an array, without the objects it refers
+     * to.
+     *
+     * @param array	the array, may be null
+     * @return the estimated size, 0 for null
+     */
+    public static long sizeOfArray(Object[] array) {
+        return array == null ? 0 : sizeOfArray(array.length, REFERENCE_BYTES);
+    }
+
+    /**
+     * Rounds a size up to the alignment of the objects.
+     *
+     * @param size	the size to align
+     * @return the aligned size
+     */
+    public static long alignObjectSize(long size) {
+        return (size + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+    }
+
+    /**
+     * Returns the size of the values of a type in fields and arrays.
+     *
+     * @param type	the type of the values
+     * @return the size in bytes
+     */
+    protected static int bytesOf(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return REFERENCE_BYTES;
+        } else if ((type == long.class) || (type == double.class)) {
+            return 8;
+        } else if ((type == int.class) || (type == float.class)) {
+            return 4;
+        } else if ((type == short.class) || (type == char.class)) {
+            return 2;
+        } else {
+            return 1;
+        }
+    }
 }
@@ -0,0 +1,643 @@
+/*
+ *    StructuralCopier.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deep copies of serializable objects, equal to those of a serialization
+ * round trip ({@link SerializeUtils#copyObject(Serializable)}) but made
+ * without writing and parsing bytes.
+ *
+ * Objects are copied field by field, as serialization would: the
+ * constructor of the first non-serializable superclass is run, the
+ * non-transient fields are copied and the transient ones are left at their
+ * default values. References shared in the original are shared in the
+ * copy. Strings, boxed primitives, enum constants and classes are
+ * immutable and kept rather than duplicated.
+ *
+ * Classes implementing {@link StructurallyCopyable} copy themselves.
+ * Objects of classes with their own serialization methods (most JDK
+ * collections, Random) and of JDK classes whose fields are not accessible
+ * are serialized one by one, the objects they refer to being copied
+ * structurally. If an object cannot be copied this way (e.g. it is not
+ * serializable, or is referred to while being serialized) the whole object
+ * is copied by serialization.
+ */
+public class StructuralCopier {
+
+    /** Thrown when an object cannot be copied structurally. */
+    protected static class UnsupportedCopyException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        public static final UnsupportedCopyException INSTANCE = new UnsupportedCopyException();
+
+        protected UnsupportedCopyException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** Placeholder for a referred object in the serialized form of an object. */
+    protected static class Reference implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final int index;
+
+        public Reference(int index) {
+            this.index = index;
+        }
+    }
+
+    /** Copies the objects of a class. */
+    protected static abstract class ClassCopier {
+
+        /**
+         * Creates the copy of an object, and records it.
+         */
+        public abstract Object copy(Object original, StructuralCopier copier);
+
+        /**
+         * Fills in the copy of an object created earlier.
+         */
+        public void fill(Object original, Object copy, StructuralCopier copier) {
+        }
+    }
+
+    /** Marks the objects whose copy is being created. */
+    protected static final Object IN_PROGRESS = new Object();
+
+    /** Keeps immutable objects. */
+    protected static final ClassCopier SHARED = new ClassCopier() {
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            return original;
+        }
+    };
+
+    /** Gives up on objects that serialization would fail on. */
+    protected static final ClassCopier UNSUPPORTED = new ClassCopier() {
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            throw UnsupportedCopyException.INSTANCE;
+        }
+    };
+
+    /** Clones arrays of primitives. */
+    protected static final ClassCopier PRIMITIVE_ARRAY = new ClassCopier() {
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            Object copy;
+            if (original instanceof double[]) {
+                copy = ((double[]) original).clone();
+            } else if (original instanceof int[]) {
+                copy = ((int[]) original).clone();
+            } else if (original instanceof long[]) {
+                copy = ((long[]) original).clone();
+            } else if (original instanceof float[]) {
+                copy = ((float[]) original).clone();
+            } else if (original instanceof boolean[]) {
+                copy = ((boolean[]) original).clone();
+            } else if (original instanceof byte[]) {
+                copy = ((byte[]) original).clone();
+            } else if (original instanceof short[]) {
+                copy = ((short[]) original).clone();
+            } else {
+                copy = ((char[]) original).clone();
+            }
+            copier.copies.put(original, copy);
+            return copy;
+        }
+    };
+
+    /** Copies arrays of objects. */
+    protected static final ClassCopier OBJECT_ARRAY = new ClassCopier() {
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            Object copy = ((Object[]) original).clone();
+            copier.copies.put(original, copy);
+            copier.addPending(original, copy);
+            return copy;
+        }
+
+        @Override
+        public void fill(Object original, Object copy, StructuralCopier copier) {
+            Object[] originalArray = (Object[]) original;
+            Object[] copyArray = (Object[]) copy;
+            for (int i = 0; i < originalArray.length; i++) {
+                copyArray[i] = copier.copy(originalArray[i]);
+            }
+        }
+    };
+
+    /** Copies array lists, with the capacity deserialization gives them. */
+    protected static final ClassCopier ARRAY_LIST = new ClassCopier() {
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            copier.copies.put(original, IN_PROGRESS);
+            Object[] elements = ((ArrayList<?>) original).toArray();
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = copier.copy(elements[i]);
+            }
+            Object copy = new ArrayList<Object>(Arrays.asList(elements));
+            copier.copies.put(original, copy);
+            return copy;
+        }
+    };
+
+    /** Copies linked lists. */
+    protected static final ClassCopier LINKED_LIST = new ClassCopier() {
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            copier.copies.put(original, IN_PROGRESS);
+            LinkedList<Object> copy = new LinkedList<Object>();
+            for (Object element : (LinkedList<?>) original) {
+                copy.add(copier.copy(element));
+            }
+            copier.copies.put(original, copy);
+            return copy;
+        }
+    };
+
+    /** Lets the objects copy themselves. */
+    protected static final ClassCopier STRUCTURALLY_COPYABLE = new ClassCopier() {
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            copier.copies.put(original, IN_PROGRESS);
+            Object copy = ((StructurallyCopyable) original).copyStructure(copier);
+            copier.copies.put(original, copy);
+            return copy;
+        }
+    };
+
+    /** Serializes the objects, replacing those they refer to by their copies. */
+    protected static final ClassCopier SERIALIZED = new ClassCopier() {
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            copier.copies.put(original, IN_PROGRESS);
+            Object copy;
+            try {
+                copy = copier.copySerialized(original);
+            } catch (IOException | ClassNotFoundException e) {
+                throw UnsupportedCopyException.INSTANCE;
+            }
+            copier.copies.put(original, copy);
+            return copy;
+        }
+    };
+
+    /** Copies the serializable fields of the objects of a class. */
+    protected static class FieldsCopier extends ClassCopier {
+
+        /** Creates the objects, running the constructor of the first non-serializable superclass. */
+        protected final Constructor<?> constructor;
+
+        /** The fields to copy. */
+        protected final Field[] fields;
+
+        /** The types of the fields, 'L' for references. */
+        protected final char[] types;
+
+        public FieldsCopier(Constructor<?> constructor, List<Field> fields) {
+            this.constructor = constructor;
+            this.fields = fields.toArray(new Field[fields.size()]);
+            this.types = new char[this.fields.length];
+            for (int i = 0; i < this.fields.length; i++) {
+                Class<?> type = this.fields[i].getType();
+                if (!type.isPrimitive()) {
+                    this.types[i] = 'L';
+                } else if (type == boolean.class) {
+                    this.types[i] = 'Z';
+                } else if (type == long.class) {
+                    this.types[i] = 'J';
+                } else {
+                    this.types[i] = Character.toUpperCase(type.getName().charAt(0));
+                }
+            }
+        }
+
+        @Override
+        public Object copy(Object original, StructuralCopier copier) {
+            Object copy;
+            try {
+                copy = this.constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw UnsupportedCopyException.INSTANCE;
+            }
+            copier.copies.put(original, copy);
+            copier.addPending(original, copy);
+            return copy;
+        }
+
+        @Override
+        public void fill(Object original, Object copy, StructuralCopier copier) {
+            try {
+                for (int i = 0; i < this.fields.length; i++) {
+                    Field field = this.fields[i];
+                    switch (this.types[i]) {
+                        case 'D':
+                            field.setDouble(copy, field.getDouble(original));
+                            break;
+                        case 'I':
+                            field.setInt(copy, field.getInt(original));
+                            break;
+                        case 'J':
+                            field.setLong(copy, field.getLong(original));
+                            break;
+                        case 'Z':
+                            field.setBoolean(copy, field.getBoolean(original));
+                            break;
+                        case 'F':
+                            field.setFloat(copy, field.getFloat(original));
+                            break;
+                        case 'B':
+                            field.setByte(copy, field.getByte(original));
+                            break;
+                        case 'S':
+                            field.setShort(copy, field.getShort(original));
+                            break;
+                        case 'C':
+                            field.setChar(copy, field.getChar(original));
+                            break;
+                        default:
+                            field.set(copy, copier.copy(field.get(original)));
+                    }
+                }
+            } catch (IllegalAccessException e) {
+                throw UnsupportedCopyException.INSTANCE;
+            }
+        }
+    }
+
+    /** The copiers of the classes, created when first needed. */
+    protected static final ClassValue<ClassCopier> CLASS_COPIERS = new ClassValue<ClassCopier>() {
+        @Override
+        protected ClassCopier computeValue(Class<?> type) {
+            return createClassCopier(type);
+        }
+    };
+
+    /** Creates constructors for serialization, null if not available. */
+    protected static final Method NEW_CONSTRUCTOR_FOR_SERIALIZATION;
+
+    /** The factory of constructors for serialization, null if not available. */
+    protected static final Object REFLECTION_FACTORY;
+
+    static {
+        Method method = null;
+        Object factory = null;
+        try {
+            Class<?> factoryClass = Class.forName("sun.reflect.ReflectionFactory");
+            factory = factoryClass.getMethod("getReflectionFactory").invoke(null);
+            method = factoryClass.getMethod("newConstructorForSerialization", Class.class, Constructor.class);
+        } catch (Exception e) {
+            // objects will be copied by serialization
+        }
+        NEW_CONSTRUCTOR_FOR_SERIALIZATION = method;
+        REFLECTION_FACTORY = factory;
+    }
+
+    /** The number of objects in the last copy of an object of a class, to size the table of copies. */
+    protected static final ClassValue<int[]> SIZE_HINTS = new ClassValue<int[]>() {
+        @Override
+        protected int[] computeValue(Class<?> type) {
+            return new int[1];
+        }
+    };
+
+    /** The copies of the objects, by original. */
+    protected final IdentityHashMap<Object, Object> copies;
+
+    /** The originals and copies of the objects still to fill in. */
+    protected final ArrayDeque<Object> pending = new ArrayDeque<Object>();
+
+    /**
+     * Creates a copier.
+     *
+     * @param expectedSize the expected number of objects to copy
+     */
+    public StructuralCopier(int expectedSize) {
+        this.copies = new IdentityHashMap<Object, Object>(Math.max(expectedSize, 21));
+    }
+
+    public StructuralCopier() {
+        this(0);
+    }
+
+    /**
+     * Copies an object, structurally if possible or else by serialization.
+     *
+     * @param obj the object to copy
+     * @return the copy
+     * @throws Exception if the object cannot be serialized
+     */
+    public static Object copyObject(Serializable obj) throws Exception {
+        try {
+            // Objects of the same class are usually copied several times,
+            // and have similar sizes
+            int[] sizeHint = SIZE_HINTS.get(obj.getClass());
+            StructuralCopier copier = new StructuralCopier(sizeHint[0]);
+            Object copy = copier.copy(obj);
+            copier.fillPending();
+            sizeHint[0] = copier.copies.size();
+            return copy;
+        } catch (UnsupportedCopyException e) {
+            return SerializeUtils.copyObject(obj);
+        }
+    }
+
+    /**
+     * Gives the copy of an object referred to by the object being copied,
+     * creating it if it has not been copied yet.
+     *
+     * @param original the object referred to, can be null
+     * @return the copy of the object, which may not be filled in yet
+     */
+    public Object copy(Object original) {
+        if (original == null) {
+            return null;
+        }
+        ClassCopier classCopier = CLASS_COPIERS.get(original.getClass());
+        if (classCopier == SHARED) {
+            return original;
+        }
+        Object copy = this.copies.get(original);
+        if (copy == null) {
+            return classCopier.copy(original, this);
+        }
+        if (copy == IN_PROGRESS) {
+            throw UnsupportedCopyException.INSTANCE;
+        }
+        return copy;
+    }
+
+    protected void addPending(Object original, Object copy) {
+        this.pending.add(original);
+        this.pending.add(copy);
+    }
+
+    /**
+     * Fills in all the copies created but not filled in yet.
+     */
+    protected void fillPending() {
+        while (!this.pending.isEmpty()) {
+            Object original = this.pending.poll();
+            Object copy = this.pending.poll();
+            CLASS_COPIERS.get(original.getClass()).fill(original, copy, this);
+        }
+    }
+
+    /**
+     * Copies an object by serialization, with the objects it refers to
+     * copied structurally.
+     */
+    protected Object copySerialized(final Object original) throws IOException, ClassNotFoundException {
+        final List<Object> referred = new ArrayList<Object>();
+        final Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes) {
+            protected boolean first = true;
+
+            {
+                enableReplaceObject(true);
+            }
+
+            @Override
+            protected void annotateClass(Class<?> cl) {
+                classes.put(cl.getName(), cl);
+            }
+
+            @Override
+            protected Object replaceObject(Object obj) {
+                if (this.first) {
+                    this.first = false;
+                    return obj;
+                }
+                referred.add(obj);
+                return new Reference(referred.size() - 1);
+            }
+        };
+        out.writeObject(original);
+        out.close();
+
+        final Object[] copies = new Object[referred.size()];
+        boolean allShared = true;
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = copy(referred.get(i));
+            allShared &= (copies[i] == referred.get(i));
+        }
+
+        // The referred objects must be complete before deserializing an
+        // object that may use them, e.g. the keys of a hash map
+        if (!allShared && usesReferredObjects(original)) {
+            fillPending();
+        }
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())) {
+            {
+                enableResolveObject(true);
+            }
+
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                // The classes written, without looking them up again
+                Class<?> cl = classes.get(desc.getName());
+                return (cl != null) ? cl : super.resolveClass(desc);
+            }
+
+            @Override
+            protected Object resolveObject(Object obj) {
+                return (obj instanceof Reference) ? copies[((Reference) obj).index] : obj;
+            }
+        };
+        Object copy = in.readObject();
+        in.close();
+        return copy;
+    }
+
+    /**
+     * Whether an object may use the objects it refers to while it is
+     * deserialized, unlike lists (which only store them) and random number
+     * generators (which refer to none).
+     */
+    protected static boolean usesReferredObjects(Object obj) {
+        if (obj instanceof Set || obj instanceof PriorityQueue) {
+            return true;
+        }
+        return !(obj instanceof Collection || obj instanceof Random);
+    }
+
+    /**
+     * Chooses how to copy the objects of a class.
+     */
+    protected static ClassCopier createClassCopier(Class<?> type) {
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() ? PRIMITIVE_ARRAY : OBJECT_ARRAY;
+        }
+        if (type == String.class || type == Integer.class || type == Double.class
+                || type == Long.class || type == Boolean.class || type == Float.class
+                || type == Short.class || type == Byte.class || type == Character.class
+                || type == Class.class || Enum.class.isAssignableFrom(type)) {
+            return SHARED;
+        }
+        if (!Serializable.class.isAssignableFrom(type)) {
+            return UNSUPPORTED;
+        }
+        if (type == ArrayList.class) {
+            return ARRAY_LIST;
+        }
+        if (type == LinkedList.class) {
+            return LINKED_LIST;
+        }
+        if (StructurallyCopyable.class.isAssignableFrom(type)
+                && declaresMethod(type, "copyStructure", StructuralCopier.class)) {
+            return STRUCTURALLY_COPYABLE;
+        }
+        if (Externalizable.class.isAssignableFrom(type) || hasSerializationMethods(type)) {
+            return SERIALIZED;
+        }
+        return createFieldsCopier(type);
+    }
+
+    /**
+     * Whether a class or one of its superclasses changes how it is
+     * serialized.
+     */
+    protected static boolean hasSerializationMethods(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            if (Serializable.class.isAssignableFrom(c)
+                    && (declaresMethod(c, "writeObject", ObjectOutputStream.class)
+                    || declaresMethod(c, "readObject", ObjectInputStream.class)
+                    || declaresMethod(c, "readObjectNoData")
+                    || declaresField(c, "serialPersistentFields"))) {
+                return true;
+            }
+            if (declaresMethod(c, "writeReplace") || declaresMethod(c, "readResolve")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static boolean declaresMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            type.getDeclaredMethod(name, parameterTypes);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    protected static boolean declaresField(Class<?> type, String name) {
+        try {
+            type.getDeclaredField(name);
+            return true;
+        } catch (NoSuchFieldException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the copier of the fields of a class without its own
+     * serialization methods.
+     */
+    protected static ClassCopier createFieldsCopier(Class<?> type) {
+        // Serialization runs the no-argument constructor of the first
+        // non-serializable superclass, which must be accessible
+        Class<?> base = type;
+        while (base != null && Serializable.class.isAssignableFrom(base)) {
+            base = base.getSuperclass();
+        }
+        Constructor<?> baseConstructor;
+        try {
+            baseConstructor = base.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            return UNSUPPORTED;
+        }
+        int modifiers = baseConstructor.getModifiers();
+        if (Modifier.isPrivate(modifiers)
+                || (!Modifier.isPublic(modifiers) && !Modifier.isProtected(modifiers)
+                && !samePackage(base, type))) {
+            return UNSUPPORTED;
+        }
+        if (NEW_CONSTRUCTOR_FOR_SERIALIZATION == null) {
+            return SERIALIZED;
+        }
+        Constructor<?> constructor;
+        try {
+            constructor = (Constructor<?>) NEW_CONSTRUCTOR_FOR_SERIALIZATION.invoke(
+                    REFLECTION_FACTORY, type, baseConstructor);
+        } catch (Exception e) {
+            return SERIALIZED;
+        }
+
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> c = type; c != base; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int fieldModifiers = field.getModifiers();
+                if (Modifier.isStatic(fieldModifiers) || Modifier.isTransient(fieldModifiers)) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    // e.g. the fields of JDK classes, from Java 9 on
+                    return SERIALIZED;
+                }
+                fields.add(field);
+            }
+        }
+        return new FieldsCopier(constructor, fields);
+    }
+
+    protected static boolean samePackage(Class<?> a, Class<?> b) {
+        if (a.getClassLoader() != b.getClassLoader()) {
+            return false;
+        }
+        String nameA = a.getName();
+        String nameB = b.getName();
+        int dotA = nameA.lastIndexOf('.');
+        int dotB = nameB.lastIndexOf('.');
+        return (dotA == dotB) && nameA.regionMatches(0, nameB, 0, Math.max(dotA, 0));
+    }
+}
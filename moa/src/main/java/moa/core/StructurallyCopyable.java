@@ -0,0 +1,46 @@
+/*
+ *    StructurallyCopyable.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.core;
+
+import java.io.Serializable;
+
+/**
+ * Interface for serializable classes that copy themselves faster than the
+ * generic copy of {@link StructuralCopier}.
+ *
+ * The copy must be the object a serialization round trip would give: all
+ * the non-transient fields copied, the transient ones left at their
+ * default values. The objects referred to are copied with
+ * {@link StructuralCopier#copy(Object)}, so that references shared in the
+ * original are shared in the copy. These copies may not be filled in yet,
+ * and must not be used (e.g. hashed) while copying.
+ *
+ * Only used for objects of the class that implements the method, not for
+ * those of its subclasses.
+ */
+public interface StructurallyCopyable extends Serializable {
+
+    /**
+     * Copies this object.
+     *
+     * @param copier the copier to copy the referred objects with
+     * @return the copy
+     */
+    Object copyStructure(StructuralCopier copier);
+}
@@ -27,7 +27,6 @@
  * TODO:
  * - try to avoid calcualting the radius multiple times
  * - avoid the full distance map?
- * - knn functionality in clusters
  * - noise error
  */
 
@@ -37,9 +36,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import moa.cluster.Clustering;
+import moa.clusterers.outliers.utils.mtree.DistanceFunction;
+import moa.clusterers.outliers.utils.mtree.MTree;
 import moa.core.AutoExpandVector;
 import moa.gui.visualization.DataPoint;
-import com.yahoo.labs.samoa.instances.Instance;
 
 public class CMM_GTAnalysis{
 	
@@ -150,9 +150,30 @@ public class CMM_GTAnalysis{
     private double lambdaConnRefXValue = 0.01;
     private double lambdaConnX = 4;
     private double lamdaConn;
+
+    /**
+     * clusters with at least this number of points are indexed by an M-Tree
+     * to find the nearest neighbors, smaller ones are scanned
+     */
+    private int knnIndexMinPoints = 100;
+
+    /**
+     * minimum number of entries of the nodes of the M-Trees
+     */
+    private int knnIndexMinNodeCapacity = 10;
     
     
     /******************************************/
+
+    /**
+     * distance between the points indexed by the M-Trees of the clusters
+     */
+    private final DistanceFunction<CMMPoint> pointDistance = new DistanceFunction<CMMPoint>() {
+        @Override
+        public double calculate(CMMPoint point1, CMMPoint point2) {
+            return distance(point1.coordinates, point2.coordinates);
+        }
+    };
     
     
     /**
@@ -194,12 +215,18 @@ public class CMM_GTAnalysis{
          */
         protected ArrayList<Integer> knnIndices;
 
+        /**
+         * values of the attributes, to compute distances
+         */
+        protected double[] coordinates;
+
         public CMMPoint(DataPoint point, int id) {
             //make a copy, but keep reference
             super(point,point.getTimestamp());
             p = point;
             pID = id;
             trueClass = (int)point.classValue();
+            coordinates = toDoubleArray();
         }
 
         
@@ -255,6 +282,9 @@ public class CMM_GTAnalysis{
         
         /** connectivity of the cluster to all other clusters */
         private ArrayList<Double> connections = new ArrayList<Double>();
+
+        /** index of the points to find nearest neighbors, built when needed */
+        private MTree<CMMPoint> knnIndex = null;
         
 
         private GTCluster(int workclass, int label, int gtClusteringID) {
@@ -301,7 +331,7 @@ public class CMM_GTAnalysis{
                     AutoExpandVector<Integer> knnPointIndex = new AutoExpandVector<Integer>();
                     
                     //calculate nearest neighbours 
-                    getKnnInCluster(cmdp, knnNeighbourhood, points, knnDist,knnPointIndex);
+                    getKnnInCluster(cmdp, knnNeighbourhood, this, knnDist,knnPointIndex);
 
                     //TODO: What to do if we have less then k neighbours?
                     double avgKnn = 0;
@@ -418,6 +448,7 @@ public class CMM_GTAnalysis{
 
                 //merge points from B into A
                 points.addAll(gtcMerge.points);
+                knnIndex = null;
                 clusterRepresentations.addAll(gtcMerge.clusterRepresentations);
                 if(mergedWorkLabels==null){
                     mergedWorkLabels = new ArrayList<Integer>();
@@ -547,7 +578,7 @@ public class CMM_GTAnalysis{
         AutoExpandVector<Integer> knnPointIndex = new AutoExpandVector<Integer>();
         
         //calculate the knn distance of the point to the cluster
-        getKnnInCluster(cmmp, knnNeighbourhood, gt0Clusters.get(clusterID).points, knnDist, knnPointIndex);
+        getKnnInCluster(cmmp, knnNeighbourhood, gt0Clusters.get(clusterID), knnDist, knnPointIndex);
 
         //TODO: What to do if we have less then k neighbors?
         double avgDist = 0;
@@ -588,20 +619,37 @@ public class CMM_GTAnalysis{
     /**
      * @param cmmp point to calculate knn distance for
      * @param k number of nearest neighbors to look for
-     * @param pointIDs list of point IDs to check
+     * @param cluster cluster whose points to check
      * @param knnDist sorted list of smallest knn distances (can already be filled to make updates possible)  
      * @param knnPointIndex list of corresponding knn indices
      */
     private void getKnnInCluster(CMMPoint cmmp, int k,
-                                 ArrayList<Integer> pointIDs,
+                                 GTCluster cluster,
                                  AutoExpandVector<Double> knnDist,
                                  AutoExpandVector<Integer> knnPointIndex) {
+        ArrayList<Integer> pointIDs = cluster.points;
+        if(knnDist.isEmpty() && pointIDs.size() >= knnIndexMinPoints){
+            //query the index of the cluster, for one more neighbor in case the point is in the cluster
+            if(cluster.knnIndex == null){
+                cluster.knnIndex = new MTree<CMMPoint>(knnIndexMinNodeCapacity, pointDistance, null);
+                for (int pid : pointIDs) {
+                    cluster.knnIndex.add(cmmpoints.get(pid));
+                }
+            }
+            for (MTree<CMMPoint>.ResultItem item : cluster.knnIndex.getNearestByLimit(cmmp, k + 1)) {
+                if(item.data.pID == cmmp.pID) continue;
+                if(knnDist.size() == k) break;
+                knnDist.add(item.distance);
+                knnPointIndex.add(item.data.pID);
+            }
+            return;
+        }
 
         //iterate over every point in the choosen cluster, cal distance and insert into list
         for (int p1 = 0; p1 < pointIDs.size(); p1++) {
             int pid = pointIDs.get(p1);
             if(cmmp.pID == pid) continue;
-            double dist = distance(cmmp,cmmpoints.get(pid));
+            double dist = distance(cmmp.coordinates,cmmpoints.get(pid).coordinates);
             if(knnDist.size() < k || dist < knnDist.get(knnDist.size()-1)){
                 int index = 0;
                 while(index < knnDist.size() && dist > knnDist.get(index)) {
@@ -796,21 +844,10 @@ public class CMM_GTAnalysis{
      * @param inst2 point as double array
      * @return euclidian distance
      */
-    private double distance(Instance inst1, Instance inst2){
-          return distance(inst1, inst2.toDoubleArray());
-
-    }
-    
-    /**
-     * Calculates Euclidian distance 
-     * @param inst1 point as an instance
-     * @param inst2 point as double array
-     * @return euclidian distance
-     */
-    private double distance(Instance inst1, double[] inst2){
+    private double distance(double[] inst1, double[] inst2){
         double distance = 0.0;
         for (int i = 0; i < numDims; i++) {
-            double d = inst1.value(i) - inst2[i];
+            double d = inst1[i] - inst2[i];
             distance += d * d;
         }
         return Math.sqrt(distance);
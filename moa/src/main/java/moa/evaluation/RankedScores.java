@@ -0,0 +1,317 @@
+/*
+ *    RankedScores.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.evaluation;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Multiset of the scores of positive and negative examples, ordered by score,
+ * that counts and sums the scores above or below a given score in O(log n).
+ *
+ * <p>The distinct scores are the nodes of a treap stored in arrays, each node
+ * counting the positive and negative examples with its score and the
+ * examples of its subtree. Equal scores are the scores equal with
+ * <code>==</code>, as when comparing the scores of examples when computing
+ * the AUC.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class RankedScores implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	protected static final int NIL = -1;
+
+	protected double[] value;
+
+	protected int[] priority;
+
+	protected int[] left;
+
+	protected int[] right;
+
+	/** Number of positive and negative examples with the score of the node */
+	protected int[] numPos;
+
+	protected int[] numNeg;
+
+	/** Number of positive and negative examples of the subtree */
+	protected int[] subtreePos;
+
+	protected int[] subtreeNeg;
+
+	/** Sums of the scores of the positive and negative examples of the subtree */
+	protected double[] subtreePosSum;
+
+	protected double[] subtreeNegSum;
+
+	protected int root = NIL;
+
+	/** First node of the list of free nodes, linked by their right child */
+	protected int free = NIL;
+
+	protected int numNodes;
+
+	/** State of the xorshift generator of the priorities */
+	protected int seed = 0x2545F491;
+
+	/** Results of the last {@link #rank} */
+	protected int rankBelow;
+
+	protected int rankEqual;
+
+	protected int rankAbove;
+
+	protected double rankSumAbove;
+
+	public RankedScores(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+
+	protected void allocate(int capacity) {
+		this.value = this.value == null ? new double[capacity] : Arrays.copyOf(this.value, capacity);
+		this.priority = this.priority == null ? new int[capacity] : Arrays.copyOf(this.priority, capacity);
+		this.left = this.left == null ? new int[capacity] : Arrays.copyOf(this.left, capacity);
+		this.right = this.right == null ? new int[capacity] : Arrays.copyOf(this.right, capacity);
+		this.numPos = this.numPos == null ? new int[capacity] : Arrays.copyOf(this.numPos, capacity);
+		this.numNeg = this.numNeg == null ? new int[capacity] : Arrays.copyOf(this.numNeg, capacity);
+		this.subtreePos = this.subtreePos == null ? new int[capacity] : Arrays.copyOf(this.subtreePos, capacity);
+		this.subtreeNeg = this.subtreeNeg == null ? new int[capacity] : Arrays.copyOf(this.subtreeNeg, capacity);
+		this.subtreePosSum = this.subtreePosSum == null ? new double[capacity] : Arrays.copyOf(this.subtreePosSum, capacity);
+		this.subtreeNegSum = this.subtreeNegSum == null ? new double[capacity] : Arrays.copyOf(this.subtreeNegSum, capacity);
+	}
+
+	/**
+	 * Adds the score of an example.
+	 *
+	 * @param score the score
+	 * @param isPositive true if the example is positive
+	 */
+	public void add(double score, boolean isPositive) {
+		this.root = insert(this.root, score, isPositive);
+	}
+
+	/**
+	 * Removes the score of an example, which must have been added before.
+	 *
+	 * @param score the score
+	 * @param isPositive true if the example is positive
+	 */
+	public void remove(double score, boolean isPositive) {
+		this.root = delete(this.root, score, isPositive);
+	}
+
+	/**
+	 * Counts the examples of a class with a score lower than, equal to and
+	 * greater than the given one, and sums the scores of the greater ones.
+	 * The results are then returned by {@link #countBelow()},
+	 * {@link #countEqual()}, {@link #countAbove()} and {@link #sumAbove()}.
+	 *
+	 * @param score the score
+	 * @param isPositive true to count the positive examples
+	 */
+	public void rank(double score, boolean isPositive) {
+		int below = 0;
+		int above = 0;
+		double sumAbove = 0;
+		int equal = 0;
+		int node = this.root;
+		while (node != NIL) {
+			if (this.value[node] > score) {
+				int count = count(node, isPositive);
+				above += count + subtreeCount(this.right[node], isPositive);
+				sumAbove += this.value[node] * count + subtreeSum(this.right[node], isPositive);
+				node = this.left[node];
+			} else if (this.value[node] < score) {
+				below += count(node, isPositive) + subtreeCount(this.left[node], isPositive);
+				node = this.right[node];
+			} else {
+				equal = count(node, isPositive);
+				below += subtreeCount(this.left[node], isPositive);
+				above += subtreeCount(this.right[node], isPositive);
+				sumAbove += subtreeSum(this.right[node], isPositive);
+				break;
+			}
+		}
+		this.rankBelow = below;
+		this.rankEqual = equal;
+		this.rankAbove = above;
+		this.rankSumAbove = sumAbove;
+	}
+
+	/** Gets the number of examples with a lower score, found by the last {@link #rank}. */
+	public int countBelow() {
+		return this.rankBelow;
+	}
+
+	/** Gets the number of examples with an equal score, found by the last {@link #rank}. */
+	public int countEqual() {
+		return this.rankEqual;
+	}
+
+	/** Gets the number of examples with a greater score, found by the last {@link #rank}. */
+	public int countAbove() {
+		return this.rankAbove;
+	}
+
+	/** Gets the sum of the greater scores, found by the last {@link #rank}. */
+	public double sumAbove() {
+		return this.rankSumAbove;
+	}
+
+	/**
+	 * Gets the number of examples of a class.
+	 */
+	public int count(boolean isPositive) {
+		return subtreeCount(this.root, isPositive);
+	}
+
+	/**
+	 * Gets the sum of the scores of the examples of a class.
+	 */
+	public double sum(boolean isPositive) {
+		return subtreeSum(this.root, isPositive);
+	}
+
+	protected int count(int node, boolean isPositive) {
+		return isPositive ? this.numPos[node] : this.numNeg[node];
+	}
+
+	protected int subtreeCount(int node, boolean isPositive) {
+		return node == NIL ? 0 : (isPositive ? this.subtreePos[node] : this.subtreeNeg[node]);
+	}
+
+	protected double subtreeSum(int node, boolean isPositive) {
+		return node == NIL ? 0 : (isPositive ? this.subtreePosSum[node] : this.subtreeNegSum[node]);
+	}
+
+	/** Updates the counts and sums of the subtree of the node from its children. */
+	protected void update(int node) {
+		int l = this.left[node];
+		int r = this.right[node];
+		this.subtreePos[node] = this.numPos[node] + subtreeCount(l, true) + subtreeCount(r, true);
+		this.subtreeNeg[node] = this.numNeg[node] + subtreeCount(l, false) + subtreeCount(r, false);
+		this.subtreePosSum[node] = this.value[node] * this.numPos[node] + subtreeSum(l, true) + subtreeSum(r, true);
+		this.subtreeNegSum[node] = this.value[node] * this.numNeg[node] + subtreeSum(l, false) + subtreeSum(r, false);
+	}
+
+	protected int newNode(double score) {
+		int node;
+		if (this.free != NIL) {
+			node = this.free;
+			this.free = this.right[node];
+		} else {
+			if (this.numNodes == this.value.length) {
+				allocate(this.value.length * 2);
+			}
+			node = this.numNodes++;
+		}
+		this.seed ^= this.seed << 13;
+		this.seed ^= this.seed >>> 17;
+		this.seed ^= this.seed << 5;
+		this.value[node] = score;
+		this.priority[node] = this.seed;
+		this.left[node] = NIL;
+		this.right[node] = NIL;
+		this.numPos[node] = 0;
+		this.numNeg[node] = 0;
+		return node;
+	}
+
+	protected int insert(int node, double score, boolean isPositive) {
+		if (node == NIL) {
+			node = newNode(score);
+		} else if (score < this.value[node]) {
+			int child = insert(this.left[node], score, isPositive);
+			this.left[node] = child;
+			if (this.priority[child] > this.priority[node]) {
+				// rotate right
+				this.left[node] = this.right[child];
+				this.right[child] = node;
+				update(node);
+				node = child;
+			}
+			update(node);
+			return node;
+		} else if (score > this.value[node]) {
+			int child = insert(this.right[node], score, isPositive);
+			this.right[node] = child;
+			if (this.priority[child] > this.priority[node]) {
+				// rotate left
+				this.right[node] = this.left[child];
+				this.left[child] = node;
+				update(node);
+				node = child;
+			}
+			update(node);
+			return node;
+		}
+		if (isPositive) {
+			this.numPos[node]++;
+		} else {
+			this.numNeg[node]++;
+		}
+		update(node);
+		return node;
+	}
+
+	protected int delete(int node, double score, boolean isPositive) {
+		if (node == NIL) {
+			throw new IllegalArgumentException("Score not found: " + score);
+		}
+		if (score < this.value[node]) {
+			this.left[node] = delete(this.left[node], score, isPositive);
+		} else if (score > this.value[node]) {
+			this.right[node] = delete(this.right[node], score, isPositive);
+		} else {
+			if (isPositive) {
+				this.numPos[node]--;
+			} else {
+				this.numNeg[node]--;
+			}
+			if (this.numPos[node] == 0 && this.numNeg[node] == 0) {
+				int merged = merge(this.left[node], this.right[node]);
+				this.right[node] = this.free;
+				this.free = node;
+				return merged;
+			}
+		}
+		update(node);
+		return node;
+	}
+
+	/** Merges two subtrees, all the scores of the first being lower. */
+	protected int merge(int lower, int upper) {
+		if (lower == NIL) {
+			return upper;
+		}
+		if (upper == NIL) {
+			return lower;
+		}
+		if (this.priority[lower] > this.priority[upper]) {
+			this.right[lower] = merge(this.right[lower], upper);
+			update(lower);
+			return lower;
+		}
+		this.left[upper] = merge(lower, this.left[upper]);
+		update(upper);
+		return upper;
+	}
+}
@@ -21,75 +21,154 @@
 package moa.evaluation; 
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Random;
 import moa.cluster.Cluster;
 import moa.cluster.Clustering;
 import moa.gui.visualization.DataPoint;
 
+/**
+ * Silhouette coefficient of the points covered by the found clustering.
+ *
+ * <p>The distance between two points is computed once for both of them. For
+ * large horizons the coefficient can be approximated on a random sample of
+ * at most <code>maxSampleSize</code> points, which are evaluated with the
+ * average distances to the sampled points of each cluster.</p>
+ *
+ * <p>The second measure, SilhCoeffBound, is the Hoeffding bound of such an
+ * approximation, 0 when all the points were evaluated. With probability
+ * <code>confidence</code>, the coefficient of the sample differs by less than
+ * the bound from the mean, over all the covered points, of their normalized
+ * silhouettes measured against the same sample. It only covers the sampling
+ * of the points that are evaluated. It does not cover the error of measuring
+ * the average distances of each point against the sample instead of all the
+ * points, as the distances are not bounded in general.</p>
+ */
 public class SilhouetteCoefficient extends MeasureCollection{
     private double pointInclusionProbThreshold = 0.8;
 
+    /**
+     * maximum number of points to evaluate, 0 to evaluate all the points
+     */
+    public int maxSampleSize = 0;
+
+    /**
+     * probability of the sampled coefficient being within the error bound
+     */
+    public double confidence = 0.95;
+
+    /**
+     * seed of the random sampling of the points
+     */
+    public int randomSeed = 1;
+
+    /**
+     * Hoeffding bound of the last sampled coefficient, 0 if it was exact,
+     * also reported as the SilhCoeffBound measure
+     */
+    private double errorBound = 0.0;
+
     public SilhouetteCoefficient() {
         super();
     }
 
     @Override
     protected boolean[] getDefaultEnabled() {
-        boolean [] defaults = {false};
+        boolean [] defaults = {false, false};
         return defaults;
     }
 
     @Override
     public String[] getNames() {
-        String[] names = {"SilhCoeff"};
+        String[] names = {"SilhCoeff", "SilhCoeffBound"};
         return names;
     }
 
+    /**
+     * Error bound of the last coefficient due to the sampling of the evaluated
+     * points, with probability <code>confidence</code>, or 0 when all the
+     * points were evaluated. See the class description for what it covers.
+     * @return the error bound
+     */
+    public double getErrorBound() {
+        return errorBound;
+    }
+
     public void evaluateClustering(Clustering clustering, Clustering trueClustering, ArrayList<DataPoint> points) {
+        boolean sampled = maxSampleSize > 0 && points.size() > maxSampleSize;
+        if(sampled){
+            points = samplePoints(points, maxSampleSize);
+        }
+        int numPoints = points.size();
         int numFCluster = clustering.size();
 
-        double [][] pointInclusionProbFC = new double[points.size()][numFCluster];
-        for (int p = 0; p < points.size(); p++) {
+        //clusters including each point, and coordinates of the points
+        int[][] pointClusters = new int[numPoints][];
+        double[][] coordinates = new double[numPoints][];
+        int[] clusterBuffer = new int[numFCluster];
+        for (int p = 0; p < numPoints; p++) {
             DataPoint point = points.get(p);
+            int numClusters = 0;
             for (int fc = 0; fc < numFCluster; fc++) {
                 Cluster cl = clustering.get(fc);
-                pointInclusionProbFC[p][fc] = cl.getInclusionProbability(point);
+                if(cl.getInclusionProbability(point) > pointInclusionProbThreshold){
+                    clusterBuffer[numClusters++] = fc;
+                }
+            }
+            pointClusters[p] = Arrays.copyOf(clusterBuffer, numClusters);
+            coordinates[p] = new double[point.numAttributes()];
+            for (int i = 0; i < coordinates[p].length; i++) {
+                coordinates[p][i] = point.value(i);
             }
         }
 
-        double silhCoeff = 0.0;
-        int totalCount = 0;
-        for (int p = 0; p < points.size(); p++) {
-            DataPoint point = points.get(p);
-            ArrayList<Integer> ownClusters = new ArrayList<Integer>();
-            for (int fc = 0; fc < numFCluster; fc++) {
-                if(pointInclusionProbFC[p][fc] > pointInclusionProbThreshold){
-                    ownClusters.add(fc);
-                }
+        //sum up the distances of every covered point to all clusters, computing
+        //each distance once for both points, in the order of the points
+        double[][] distanceByClusters = new double[numPoints][];
+        int[][] countsByClusters = new int[numPoints][];
+        for (int p = 0; p < numPoints; p++) {
+            if(pointClusters[p].length > 0){
+                distanceByClusters[p] = new double[numFCluster];
+                countsByClusters[p] = new int[numFCluster];
             }
-
-            if(ownClusters.size() > 0){
-                double[] distanceByClusters = new double[numFCluster];
-                int[] countsByClusters = new int[numFCluster];
-                    //calculate averageDistance of p to all cluster
-                for (int p1 = 0; p1 < points.size(); p1++) {
-                    DataPoint point1 = points.get(p1);
-                    if(p1!= p && point1.classValue() != -1){
-                        for (int fc = 0; fc < numFCluster; fc++) {
-                            if(pointInclusionProbFC[p1][fc] > pointInclusionProbThreshold){
-                                double distance = distance(point, point1);
-                                distanceByClusters[fc]+=distance;
-                                countsByClusters[fc]++;
-                            }
-                        }
+        }
+        for (int p = 0; p < numPoints; p++) {
+            boolean isCovered = pointClusters[p].length > 0;
+            boolean isNoise = points.get(p).classValue() == -1;
+            for (int p1 = p + 1; p1 < numPoints; p1++) {
+                boolean addToP = isCovered && pointClusters[p1].length > 0 && points.get(p1).classValue() != -1;
+                boolean addToP1 = !isNoise && pointClusters[p1].length > 0 && isCovered;
+                if(!addToP && !addToP1){
+                    continue;
+                }
+                double distance = distance(coordinates[p], coordinates[p1]);
+                if(addToP){
+                    for (int fc : pointClusters[p1]) {
+                        distanceByClusters[p][fc]+=distance;
+                        countsByClusters[p][fc]++;
+                    }
+                }
+                if(addToP1){
+                    for (int fc : pointClusters[p]) {
+                        distanceByClusters[p1][fc]+=distance;
+                        countsByClusters[p1][fc]++;
                     }
                 }
+            }
+        }
 
+        double silhCoeff = 0.0;
+        int totalCount = 0;
+        for (int p = 0; p < numPoints; p++) {
+            DataPoint point = points.get(p);
+            int[] ownClusters = pointClusters[p];
+
+            if(ownClusters.length > 0){
                 //find closest OWN cluster as clusters might overlap
                 double minAvgDistanceOwn = Double.MAX_VALUE;
                 int minOwnIndex = -1;
                 for (int fc : ownClusters) {
-                        double normDist = distanceByClusters[fc]/(double)countsByClusters[fc];
+                        double normDist = distanceByClusters[p][fc]/(double)countsByClusters[p][fc];
                         if(normDist < minAvgDistanceOwn){// && pointInclusionProbFC[p][fc] > pointInclusionProbThreshold){
                             minAvgDistanceOwn = normDist;
                             minOwnIndex = fc;
@@ -101,7 +180,7 @@ public class SilhouetteCoefficient extends MeasureCollection{
                 double minAvgDistanceOther = Double.MAX_VALUE;
                 for (int fc = 0; fc < numFCluster; fc++) {
                     if(fc != minOwnIndex){
-                        double normDist = distanceByClusters[fc]/(double)countsByClusters[fc];
+                        double normDist = distanceByClusters[p][fc]/(double)countsByClusters[p][fc];
                         if(normDist < minAvgDistanceOther){
                             minAvgDistanceOther = normDist;
                         }
@@ -122,14 +201,47 @@ public class SilhouetteCoefficient extends MeasureCollection{
             silhCoeff/=(double)totalCount;
         //normalize from -1, 1 to 0,1
         silhCoeff = (silhCoeff+1)/2.0;
+        //Hoeffding bound of the mean of the normalized values of the sampled points
+        if(!sampled || totalCount == 0)
+            errorBound = 0.0;
+        else
+            errorBound = Math.sqrt(Math.log(2.0/(1.0-confidence))/(2.0*totalCount));
         addValue(0,silhCoeff);
+        addValue(1,errorBound);
+    }
+
+    /**
+     * Draws a uniform random sample of the points, keeping their order.
+     * @param points the points
+     * @param sampleSize the number of points to draw
+     * @return the sampled points
+     */
+    private ArrayList<DataPoint> samplePoints(ArrayList<DataPoint> points, int sampleSize) {
+        //reservoir sampling of the indices of the points
+        Random random = new Random(randomSeed);
+        int[] reservoir = new int[sampleSize];
+        for (int p = 0; p < points.size(); p++) {
+            if(p < sampleSize){
+                reservoir[p] = p;
+            }
+            else{
+                int r = random.nextInt(p + 1);
+                if(r < sampleSize)
+                    reservoir[r] = p;
+            }
+        }
+        Arrays.sort(reservoir);
+        ArrayList<DataPoint> sample = new ArrayList<DataPoint>(sampleSize);
+        for (int p : reservoir) {
+            sample.add(points.get(p));
+        }
+        return sample;
     }
 
-    private double distance(DataPoint inst1, DataPoint inst2){
+    private double distance(double[] inst1, double[] inst2){
         double distance = 0.0;
-        int numDims = inst1.numAttributes();
-        for (int i = 0; i < numDims; i++) {
-            double d = inst1.value(i) - inst2.value(i);
+        for (int i = 0; i < inst1.length; i++) {
+            double d = inst1[i] - inst2[i];
             distance += d * d;
         }
         return Math.sqrt(distance);
@@ -18,8 +18,6 @@
  */
 package moa.evaluation;
 
-import java.util.TreeSet;
-
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
@@ -43,6 +41,10 @@ import moa.tasks.TaskMonitor;
  * Curve for Data Streams with Concept Drift", Knowledge and Information
  * Systems, 2017.
  * 
+ * The rank sums of the AUC and of the scored AUC are updated when an example
+ * enters or leaves the window, in O(log w), from the scores of the window
+ * ordered in {@link RankedScores}.
+ * 
  * @author Dariusz Brzezinski (dbrzezinski at cs.put.poznan.pl)
  * @author Tomasz Pewinski
  */
@@ -141,9 +143,29 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 			}
 		}
 
-		protected TreeSet<Score> sortedScores;
-		
-		protected TreeSet<Score> holdoutSortedScores;
+		protected RankedScores sortedScores;
+
+		/**
+		 * Sum over the negative examples of the number of positive examples
+		 * with a greater score, ties counting half
+		 */
+		protected double aucRankSum;
+
+		/**
+		 * Sum over the negative examples of the scores of the positive
+		 * examples with a greater score, ties counting half
+		 */
+		protected double scoredAUCSum;
+
+		/**
+		 * Sum over the positive examples of the scores of the negative
+		 * examples with a greater score
+		 */
+		protected double scoredAOCSum;
+
+		protected double holdoutAUCRankSum;
+
+		protected boolean holdoutIsEmpty;
 
 		protected Score[] window;
 		
@@ -170,8 +192,8 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 	    protected double[] rowKappa;
 
 		public Estimator(int sizeWindow) {
-			this.sortedScores = new TreeSet<Score>();
-			this.holdoutSortedScores = new TreeSet<Score>();
+			this.sortedScores = new RankedScores(sizeWindow);
+			this.holdoutIsEmpty = true;
 			this.size = sizeWindow;
 			this.window = new Score[sizeWindow];
 			this.predictions = new double[sizeWindow];
@@ -195,12 +217,8 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 		public void add(double score, boolean isPositive, boolean correctPrediction) {
             // // periodically update holdout evaluation
 			if (size > 0 && posWindow % this.size == 0) {
-				this.holdoutSortedScores = new TreeSet<Score>();
-				
-				for (Score s : this.sortedScores) {
-					this.holdoutSortedScores.add(s);
-				}
-				
+				this.holdoutAUCRankSum = this.aucRankSum;
+				this.holdoutIsEmpty = this.numPos + this.numNeg == 0;
 				this.holdoutNumPos = this.numPos;
 				this.holdoutNumNeg = this.numNeg;
 			}
@@ -208,7 +226,7 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 			// // if the window is used and it's full			
 			if (size > 0 && posWindow >= this.size) {
 				// // remove the oldest example
-				sortedScores.remove(window[posWindow % size]);
+				removeScore(window[posWindow % size]);
 				correctPredictions -= predictions[posWindow % size];
 				correctPositivePredictions -= window[posWindow % size].isPositive ? predictions[posWindow % size] : 0;
 				
@@ -227,7 +245,7 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 			
 			// // add new example
 			Score newScore = new Score(score, posWindow, isPositive);
-			sortedScores.add(newScore);
+			addScore(newScore);
 			correctPredictions += correctPrediction ? 1 : 0;
 			correctPositivePredictions += correctPrediction && isPositive ? 1 : 0;
 			
@@ -251,44 +269,45 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 			posWindow++;
 		}
 
+		/**
+		 * Adds a score to the window, updating the rank sums with the pairs
+		 * of the score and the scores of the other class.
+		 */
+		protected void addScore(Score s) {
+			updateRankSums(s, 1);
+			this.sortedScores.add(s.value, s.isPositive);
+		}
+
+		protected void removeScore(Score s) {
+			this.sortedScores.remove(s.value, s.isPositive);
+			updateRankSums(s, -1);
+		}
+
+		protected void updateRankSums(Score s, int sign) {
+			RankedScores others = this.sortedScores;
+			others.rank(s.value, !s.isPositive);
+			if (s.isPositive) {
+				double negBelow = others.countBelow() + others.countEqual() / 2.0;
+				this.aucRankSum += sign * negBelow;
+				this.scoredAUCSum += sign * s.value * negBelow;
+				this.scoredAOCSum += sign * others.sumAbove();
+			} else {
+				this.aucRankSum += sign * (others.countAbove() + others.countEqual() / 2.0);
+				this.scoredAUCSum += sign * (others.sumAbove() + s.value * others.countEqual() / 2.0);
+				this.scoredAOCSum += sign * s.value * others.countBelow();
+			}
+		}
+
 		public double getAUC() {
-			double AUC = 0;
-			double c = 0;
-			double prevc = 0;
-			double lastPosScore = Double.MAX_VALUE;
-					
 			if (numPos == 0 || numNeg == 0) {
 				return 1;
 			}
 			
-			for (Score s : sortedScores){
-				if(s.isPositive) {			
-					if (s.value != lastPosScore) {
-						prevc = c;
-						lastPosScore = s.value;
-					}
-					
-					c += 1;
-				} else {
-					if (s.value == lastPosScore) {
-						// tie
-						AUC += ((double)(c + prevc))/2.0;
-					} else {
-						AUC += c;
-					}
-				}
-			}
-			
-			return AUC / (numPos * numNeg);
+			return aucRankSum / (numPos * numNeg);
 		}
 		
 		public double getHoldoutAUC() {
-			double AUC = 0;
-			double c = 0;
-			double prevc = 0;
-			double lastPosScore = Double.MAX_VALUE;
-
-			if (holdoutSortedScores.isEmpty()) {
+			if (holdoutIsEmpty) {
 				return 0;
 			}
 			
@@ -296,76 +315,18 @@ public class WindowAUCImbalancedPerformanceEvaluator extends
 				return 1;
 			}
 
-			for (Score s : holdoutSortedScores){
-				if(s.isPositive) {
-					if (s.value != lastPosScore) {
-						prevc = c;
-						lastPosScore = s.value;
-					}
-					
-					c += 1;
-				} else {
-					if (s.value == lastPosScore) {
-						// tie
-						AUC += ((double)(c + prevc))/2.0;
-					} else {
-						AUC += c;
-					}
-				}
-			}
-			
-			return AUC / (holdoutNumPos * holdoutNumNeg);
+			return holdoutAUCRankSum / (holdoutNumPos * holdoutNumNeg);
 		}
 
 		public double getScoredAUC() {
-			double AOC = 0;
-			double AUC = 0;
-			double r = 0;
-			double prevr = 0;
-			double c = 0;
-			double prevc = 0;
 			double R_plus, R_minus;
-			double lastPosScore = Double.MAX_VALUE;
-			double lastNegScore = Double.MAX_VALUE;
 			
 			if (numPos == 0 || numNeg == 0) {
 				return 1;
 			}
 			
-			for (Score s : sortedScores){
-				if(s.isPositive) {
-					if (s.value != lastPosScore) {
-						prevc = c;
-						lastPosScore = s.value;
-					}
-					
-					c += s.value;
-					
-					if (s.value == lastNegScore) {
-						// tie
-						AOC += ((double)(r + prevr))/2.0;
-					} else {
-						AOC += r;
-					}
-				} else {
-					if (s.value != lastNegScore) {
-						prevr = r;
-						lastNegScore = s.value;
-					}
-					
-					r += s.value;
-					
-					if (s.value == lastPosScore) {
-						// tie
-						AUC += ((double)(c + prevc))/2.0;
-					} else {
-						AUC += c;
-					}
-				}
-			}
-			
-			R_minus = (numPos*r - AOC)/(numPos * numNeg);
-			R_plus = (AUC)/(numPos * numNeg);		
+			R_minus = (numPos * sortedScores.sum(false) - scoredAOCSum)/(numPos * numNeg);
+			R_plus = (scoredAUCSum)/(numPos * numNeg);		
 			return R_plus - R_minus;
 		}
 		
@@ -19,8 +19,10 @@
  */
 package moa.evaluation.preview;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import moa.core.DoubleVector;
 import moa.core.Measurement;
@@ -30,6 +32,13 @@ import moa.evaluation.LearningEvaluation;
 /**
  * Class that stores and keeps the history of evaluation measurements.
  *
+ * Entries are only ever appended to the arrays holding them, and published
+ * together with their number in one volatile reference, so that other
+ * threads can read the curve while the task adds to it. Snapshots share the
+ * arrays and only see the entries published when they were taken; inserting
+ * an entry before existing ones, or replacing the data, copies the arrays
+ * instead of changing them.
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision: 7 $
  */
@@ -37,34 +46,71 @@ public class LearningCurve extends Preview {
 
     private static final long serialVersionUID = 1L;
 
-    protected List<String> measurementNames = new ArrayList<String>();
+    /** Source of the generations of the entries. */
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    /**
+     * Names and entries of a curve, of which only the first numNames and
+     * numEntries are used. The used parts of the arrays are never changed.
+     */
+    protected static class Contents implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String[] names;
+
+        protected final int numNames;
 
-    protected List<double[]> measurementValues = new ArrayList<double[]>();
+        protected final double[][] entries;
+
+        protected final int numEntries;
+
+        /** Shared by contents that only differ by appended entries. */
+        protected final long generation;
+
+        protected Contents(String[] names, int numNames, double[][] entries,
+                int numEntries, long generation) {
+            this.names = names;
+            this.numNames = numNames;
+            this.entries = entries;
+            this.numEntries = numEntries;
+            this.generation = generation;
+        }
+    }
+
+    protected volatile Contents contents;
+
+    /**
+     * Whether the arrays of the contents belong to another curve, which may
+     * append to them, so that they have to be copied before changing them.
+     */
+    protected boolean sharesContents = false;
 
     Class<?> taskClass = null;
     
     public LearningCurve(String orderingMeasurementName) {
-        this.measurementNames.add(orderingMeasurementName);
+        this.contents = new Contents(new String[]{orderingMeasurementName}, 1,
+                new double[16][], 0, GENERATIONS.incrementAndGet());
     }
     
     public LearningCurve(String orderingMeasurementName, Class<?> taskClass) {
-        this.measurementNames.add(orderingMeasurementName);
+        this(orderingMeasurementName);
         this.taskClass = taskClass;
     }
 
     public String getOrderingMeasurementName() {
-        return this.measurementNames.get(0);
+        return this.contents.names[0];
     }
     
     public void setData(
     		List<String> measurementNames, 
     		List<double[]> measurementValues) 
     {
-    	this.measurementNames.clear();
-    	this.measurementValues.clear();
-    	
-    	this.measurementNames.addAll(measurementNames);
-    	this.measurementValues.addAll(measurementValues);
+    	String[] names = measurementNames.toArray(new String[measurementNames.size()]);
+    	double[][] entries = measurementValues.toArray(new double[measurementValues.size()][]);
+    	this.contents = new Contents(names, names.length, entries, entries.length,
+    	        GENERATIONS.incrementAndGet());
+    	this.sharesContents = false;
     }
 
     public void insertEntry(LearningEvaluation learningEvaluation) {
@@ -80,45 +126,103 @@ public class LearningCurve extends Preview {
                     measurement.getValue());
         }
         double orderVal = orderMeasurement.getValue();
-        int index = 0;
-        while ((index < this.measurementValues.size())
-                && (orderVal > this.measurementValues.get(index)[0])) {
-            index++;
+        Contents current = this.contents;
+        int numEntries = current.numEntries;
+        if ((numEntries == 0) || (orderVal > current.entries[numEntries - 1][0])) {
+            double[][] entries = current.entries;
+            if (this.sharesContents || (numEntries == entries.length)) {
+                entries = Arrays.copyOf(entries, Math.max(16, 2 * numEntries));
+            }
+            entries[numEntries] = entryVals.getArrayRef();
+            this.contents = new Contents(current.names, current.numNames,
+                    entries, numEntries + 1, current.generation);
+        } else {
+            int index = 0;
+            while ((index < numEntries)
+                    && (orderVal > current.entries[index][0])) {
+                index++;
+            }
+            double[][] entries = new double[Math.max(16, 2 * numEntries)][];
+            System.arraycopy(current.entries, 0, entries, 0, index);
+            entries[index] = entryVals.getArrayRef();
+            System.arraycopy(current.entries, index, entries, index + 1,
+                    numEntries - index);
+            this.contents = new Contents(current.names, current.numNames,
+                    entries, numEntries + 1, GENERATIONS.incrementAndGet());
         }
-        this.measurementValues.add(index, entryVals.getArrayRef());
+        this.sharesContents = false;
     }
 
     public int numEntries() {
-        return this.measurementValues.size();
+        return this.contents.numEntries;
     }
 
     protected int addMeasurementName(String name) {
-        int index = this.measurementNames.indexOf(name);
-        if (index < 0) {
-            index = this.measurementNames.size();
-            this.measurementNames.add(name);
+        Contents current = this.contents;
+        for (int i = 0; i < current.numNames; i++) {
+            if (current.names[i].equals(name)) {
+                return i;
+            }
         }
+        int index = current.numNames;
+        String[] names = current.names;
+        if (this.sharesContents || (index == names.length)) {
+            names = Arrays.copyOf(names, Math.max(8, 2 * index));
+        }
+        names[index] = name;
+        this.contents = new Contents(names, index + 1, current.entries,
+                current.numEntries, current.generation);
         return index;
     }
 
+    /**
+     * Returns a view of the entries of this curve so far, that entries added
+     * later do not change. Nothing is copied, so snapshots can be taken as
+     * often as previews are requested, whatever the length of the curve.
+     *
+     * @return the snapshot
+     */
+    public LearningCurve snapshot() {
+        LearningCurve snapshot = new LearningCurve(getOrderingMeasurementName(), this.taskClass);
+        snapshot.contents = this.contents;
+        snapshot.sharesContents = true;
+        return snapshot;
+    }
+
+    @Override
+    public int numEntriesUnchangedSince(Preview earlier) {
+        if (!(earlier instanceof LearningCurve)) {
+            return 0;
+        }
+        Contents current = this.contents;
+        Contents previous = ((LearningCurve) earlier).contents;
+        if (current.generation != previous.generation) {
+            return 0;
+        }
+        return Math.min(current.numEntries, previous.numEntries);
+    }
+
     public String headerToString() {
+        Contents current = this.contents;
         StringBuilder sb = new StringBuilder();
-        boolean first = true;
-        for (String name : this.measurementNames) {
-            if (!first) {
+        for (int i = 0; i < current.numNames; i++) {
+            if (i > 0) {
                 sb.append(',');
-            } else {
-                first = false;
             }
-            sb.append(name);
+            sb.append(current.names[i]);
         }
         return sb.toString();
     }
 
     public String entryToString(int entryIndex) {
         StringBuilder sb = new StringBuilder();
-        double[] vals = this.measurementValues.get(entryIndex);
-        for (int i = 0; i < this.measurementNames.size(); i++) {
+        appendEntry(sb, this.contents, entryIndex);
+        return sb.toString();
+    }
+
+    protected static void appendEntry(StringBuilder sb, Contents contents, int entryIndex) {
+        double[] vals = entry(contents, entryIndex);
+        for (int i = 0; i < contents.numNames; i++) {
             if (i > 0) {
                 sb.append(',');
             }
@@ -128,31 +232,46 @@ public class LearningCurve extends Preview {
                 sb.append(Double.toString(vals[i]));
             }
         }
-        return sb.toString();
+    }
+
+    protected static double[] entry(Contents contents, int entryIndex) {
+        if ((entryIndex < 0) || (entryIndex >= contents.numEntries)) {
+            throw new IndexOutOfBoundsException("Index: " + entryIndex
+                    + ", Size: " + contents.numEntries);
+        }
+        return contents.entries[entryIndex];
     }
 
     @Override
     public void getDescription(StringBuilder sb, int indent) {
+        Contents current = this.contents;
         sb.append(headerToString());
-        for (int i = 0; i < numEntries(); i++) {
-            StringUtils.appendNewlineIndented(sb, indent, entryToString(i));
+        for (int i = 0; i < current.numEntries; i++) {
+            StringUtils.appendNewline(sb);
+            StringUtils.appendIndent(sb, indent);
+            appendEntry(sb, current, i);
         }
     }
 
     public double getMeasurement(int entryIndex, int measurementIndex) {
-        return this.measurementValues.get(entryIndex)[measurementIndex];
+        return entry(this.contents, entryIndex)[measurementIndex];
     }
 
     public String getMeasurementName(int measurementIndex) {
-        return this.measurementNames.get(measurementIndex);
+        Contents current = this.contents;
+        if (measurementIndex >= current.numNames) {
+            throw new IndexOutOfBoundsException("Index: " + measurementIndex
+                    + ", Size: " + current.numNames);
+        }
+        return current.names[measurementIndex];
     }
 
     public int getMeasurementNameCount() {
-        return this.measurementNames.size();
+        return this.contents.numNames;
     }
 
     public int getEntryMeasurementCount(int entryIdx) {
-        return this.measurementValues.get(entryIdx).length;
+        return entry(this.contents, entryIdx).length;
     }
 
 	@Override
@@ -45,6 +45,18 @@ public abstract class Preview extends AbstractMOAObject{
 	public abstract Class<?> getTaskClass();
 
 	public abstract double[] getEntryData(int entryIndex);
+
+	/**
+	 * Returns the number of leading entries of this preview that are the
+	 * same as those of an earlier preview of the same task, so that readers
+	 * only need to read the entries after them.
+	 *
+	 * @param earlier the earlier preview
+	 * @return the number of entries unchanged since the earlier preview
+	 */
+	public int numEntriesUnchangedSince(Preview earlier) {
+		return 0;
+	}
 	
 	public String[] getMeasurementNames() {
 		int numNames = getMeasurementNameCount();
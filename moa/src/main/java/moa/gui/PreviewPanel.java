@@ -27,6 +27,7 @@ import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import moa.core.StringUtils;
 import moa.evaluation.Accuracy;
@@ -215,8 +216,19 @@ public class PreviewPanel extends JPanel implements ResultPreviewListener {
         updateAutoRefreshTimer();
     }
 
+    /**
+     * Displays the new preview. Called by the task thread, so the preview is
+     * read and formatted on the event dispatch thread instead, to keep the
+     * task running meanwhile.
+     */
     @Override
     public void latestPreviewChanged() {
-        setTaskThreadToPreview(this.previewedThread);
+        SwingUtilities.invokeLater(new Runnable() {
+
+            @Override
+            public void run() {
+                setTaskThreadToPreview(previewedThread);
+            }
+        });
     }
 }
@@ -92,16 +92,26 @@ public class PreviewTableModel extends AbstractTableModel {
 			structureChangeFlag |= latestPreview != null && latestPreview.numEntries() == 0 && preview.numEntries() > 0;
 			structureChangeFlag |= latestPreview != null && latestPreview.getTaskClass() != preview.getTaskClass();
 		}
-		latestPreview = preview;
 		if(preview != null)
 		{
-			data = preview.getData();
+			// only read the entries added since the latest preview
+			int unchanged = structureChangeFlag || latestPreview == null ?
+					0 : Math.min(preview.numEntriesUnchangedSince(latestPreview), data.size());
+			int numEntries = preview.numEntries();
+			List<double[]> newData = new ArrayList<>(numEntries);
+			newData.addAll(data.subList(0, unchanged));
+			for(int entryIdx = unchanged; entryIdx < numEntries; ++entryIdx)
+			{
+				newData.add(preview.getEntryData(entryIdx));
+			}
+			data = newData;
 			
 			if(structureChangeFlag)
 			{
 				copyMeasurementNames(preview);
 			}
 		}
+		latestPreview = preview;
 	}
 	
 	@Override
@@ -27,6 +27,7 @@ import javax.swing.JButton;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import moa.core.StringUtils;
 import moa.evaluation.Accuracy;
@@ -195,8 +196,18 @@ public class ExpPreviewPanel extends JPanel implements ResultPreviewListener {
         updateAutoRefreshTimer();
     }
 
+    /**
+     * Called by the task thread; the preview text is built on the event
+     * dispatch thread.
+     */
     @Override
     public void latestPreviewChanged() {
-        setTaskThreadToPreview(this.previewedThread);
+        SwingUtilities.invokeLater(new Runnable() {
+
+            @Override
+            public void run() {
+                setTaskThreadToPreview(previewedThread);
+            }
+        });
     }
 }
@@ -134,6 +134,28 @@ public interface Learner<E extends Example> extends MOAObject, OptionHandler, AW
 
 	public Prediction getPredictionForInstance(E testInst);
 
+    /**
+     * Gets whether this learner keeps references to the instances it is
+     * trained or tested on, e.g. in a window. Evaluation tasks only reuse
+     * the same mutable instance for the whole stream if this returns false,
+     * otherwise every instance is a new object.
+     *
+     * @return true if the learner needs a defensive copy of the instances
+     */
+    default boolean retainsInstances() {
+        return true;
+    }
+
+    /**
+     * Trains the learner on the instances it has buffered but not learnt
+     * from yet, e.g. an incomplete mini-batch. Tasks call this when the
+     * stream ends, so that the final model does not depend on where the
+     * stream stopped. Learners that train on every instance right away
+     * have nothing to do.
+     */
+    default void trainOnPendingInstances() {
+    }
+
     default void draw() {};
 }
 
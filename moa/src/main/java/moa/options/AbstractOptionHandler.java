@@ -19,9 +19,13 @@
  */
 package moa.options;
 
+import com.github.javacliparser.Option;
 import com.github.javacliparser.Options;
+import java.lang.reflect.Field;
+import java.util.LinkedList;
 import moa.AbstractMOAObject;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.tasks.NullMonitor;
 import moa.tasks.TaskMonitor;
 
@@ -37,6 +41,30 @@ public abstract class AbstractOptionHandler extends AbstractMOAObject implements
 
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Estimated size of the options of the classes, discovered like
+     * {@link OptionsHandler#discoverOptionsViaReflection()}: the size of the
+     * option objects, and the size of the handler that lists them.
+     */
+    protected static final ClassValue<long[]> OPTIONS_SIZES = new ClassValue<long[]>() {
+        @Override
+        protected long[] computeValue(Class<?> type) {
+            long optionsSize = 0;
+            long handlerSize = SizeOf.shallowSizeOfInstance(OptionsHandler.class)
+                    + SizeOf.shallowSizeOfInstance(Options.class)
+                    + SizeOf.shallowSizeOfInstance(LinkedList.class);
+            for (Field field : type.getFields()) {
+                if (Option.class.isAssignableFrom(field.getType())) {
+                    optionsSize += SizeOf.shallowSizeOfInstance(field.getType());
+                    // node of the linked list
+                    handlerSize += SizeOf.alignObjectSize(SizeOf.OBJECT_HEADER_BYTES
+                            + 3 * SizeOf.REFERENCE_BYTES);
+                }
+            }
+            return new long[]{optionsSize, handlerSize};
+        }
+    };
+
     /** Options to handle */
     //protected Options options;
 
@@ -110,6 +138,18 @@ public abstract class AbstractOptionHandler extends AbstractMOAObject implements
         return (OptionHandler) super.copy();
     }
 
+    /**
+     * Estimates the memory size of the options of this object, for the
+     * objects that account for their memory. Models copy the option
+     * handlers they grow, e.g. attribute observers, with their options.
+     *
+     * @return the estimated size in bytes
+     */
+    protected long estimatedOptionsByteSize() {
+        long[] sizes = OPTIONS_SIZES.get(getClass());
+        return this.config == null ? sizes[0] : sizes[0] + sizes[1];
+    }
+
     /**
      * Gets the options of this class via reflection.
      *
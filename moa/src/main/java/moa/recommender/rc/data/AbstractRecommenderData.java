@@ -23,6 +23,8 @@ package moa.recommender.rc.data;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import moa.recommender.rc.utils.Pair;
+import moa.recommender.rc.utils.SparseVector;
 import moa.recommender.rc.utils.Updatable;
 
 
@@ -96,6 +98,23 @@ public abstract class AbstractRecommenderData implements RecommenderData {
         }
     }
 
+    public int getRatingsUser(int userID, int[] itemIDs, double[] ratings) {
+        return copyRatings(getRatingsUser(userID), itemIDs, ratings);
+    }
+    public int getRatingsItem(int itemID, int[] userIDs, double[] ratings) {
+        return copyRatings(getRatingsItem(itemID), userIDs, ratings);
+    }
+    private static int copyRatings(SparseVector vector, int[] ids, double[] ratings) {
+        int n = 0;
+        Iterator<Pair<Integer, Double>> it = vector.iterator();
+        while (it.hasNext()) {
+            Pair<Integer, Double> p = it.next();
+            ids[n] = p.getFirst();
+            ratings[n++] = p.getSecond();
+        }
+        return n;
+    }
+
     public void attachUpdatable(Updatable obj) {
         updatables.add(obj);
     }
@@ -39,6 +39,10 @@ public interface RecommenderData extends Serializable {
     public void removeRating(int userID, int itemID);
     public SparseVector getRatingsUser(int userID); //TODO:Iterator version for this?
     public SparseVector getRatingsItem(int itemID); //TODO:Iterator version for this?
+    /** Copies the ratings of the user into arrays with room for countRatingsUser(userID) entries, returns how many */
+    public int getRatingsUser(int userID, int[] itemIDs, double[] ratings);
+    /** Copies the ratings of the item into arrays with room for countRatingsItem(itemID) entries, returns how many */
+    public int getRatingsItem(int itemID, int[] userIDs, double[] ratings);
     public double getRating(int userID, int itemID);
     public int getNumItems();
     public int getNumUsers();
@@ -20,117 +20,90 @@
 
 package moa.recommender.rc.data.impl;
 
-import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import moa.recommender.rc.data.AbstractRecommenderData;
+import moa.recommender.rc.utils.IdIndex;
 import moa.recommender.rc.utils.Rating;
+import moa.recommender.rc.utils.RatingRows;
 import moa.recommender.rc.utils.SparseVector;
 
+/**
+ * Keeps the ratings in memory, in primitive arrays. Users and items are given
+ * dense rows by an IdIndex, and the ratings are stored twice, in the rows of
+ * their user (by item ID) and in the rows of their item (by user ID), so that
+ * both the ratings of a user and those of an item can be read without boxing
+ * IDs or ratings. The sum of the ratings of each row is kept up to date for
+ * the averages.
+ */
 public class MemRecommenderData extends AbstractRecommenderData {
 
     private static final long serialVersionUID = 2844235954903772074L;
 
-    class EntityStats implements Serializable {
-        private static final long serialVersionUID = -8933750377510577120L;
-        public double sum = 0;
-        public double num = 0;
-    }
-    
-    protected Map<Integer, Map<Integer, Double>> ratingsUser;
-    protected Map<Integer, Map<Integer, Double>> ratingsItem;
-    protected Map<Integer, EntityStats> usersStats;
-    protected Map<Integer, EntityStats> itemsStats;
+    protected IdIndex users;
+    protected IdIndex items;
+    protected RatingRows ratingsUser;
+    protected RatingRows ratingsItem;
     
-    protected int nItems = 0;
-    protected int nUsers = 0;
     protected double sumRatings = 0;
     protected int nRatings = 0;
     protected double minRating = 0;
     protected double maxRating = 0;
     
     protected class RatingIterator implements Iterator<Rating> {
-        private int currentUser = -1;
-        private Iterator<Integer> userIt = null;
-        private Iterator<Entry<Integer, Double>> ratsIt = null;
-        private boolean calculated = false;
-        private boolean result = true;
+        private int row = -1;
+        private int k = 0;
         
-        RatingIterator() throws Exception {
+        RatingIterator() {
+            advance();
+        }
+        
+        private void advance() {
+            while (row < users.getNumRows() && (row < 0 || !users.isUsed(row) || k >= ratingsUser.size(row))) {
+                ++row;
+                k = 0;
+            }
         }
         
         @Override
         public boolean hasNext() {
-            if (calculated)
-                return result;
-            
-            calculated = true;
-            result = false;
-            if (ratsIt == null) {
-                if (!ratingsUser.isEmpty()) {
-                    userIt = ratingsUser.keySet().iterator();
-                    if (userIt.hasNext()) {
-                        Integer first = userIt.next();
-                        currentUser = first;
-                        ratsIt = ratingsUser.get(first).entrySet().iterator();
-                        if (ratsIt.hasNext()) {
-                            result = true;
-                        }
-                    }
-                }
-            }
-            else {
-                if (ratsIt.hasNext()) {
-                    result = true;
-                }
-                else if (userIt.hasNext()) {
-                    Integer first = userIt.next();
-                    currentUser = first;
-                    ratsIt = ratingsUser.get(first).entrySet().iterator();
-                    if (ratsIt.hasNext()) {
-                        result = true;
-                    }
-                }
-            }
-            return result;
+            return row < users.getNumRows();
         }
 
         @Override
         public Rating next() {
-            if (!calculated)
-                hasNext();
-            calculated = false;
-            Entry<Integer, Double> pair = ratsIt.next();
-            
-            return new Rating(currentUser, pair.getKey(), pair.getValue());
+            if (!hasNext())
+                throw new NoSuchElementException();
+            Rating rating = new Rating(users.getId(row), ratingsUser.getId(row, k), ratingsUser.getRating(row, k));
+            ++k;
+            advance();
+            return rating;
         }
 
         @Override
         public void remove() {
-            // TODO Auto-generated method stub
-            
+            throw new UnsupportedOperationException();
         }
         
     }
     
     public MemRecommenderData() {
         super();
-        ratingsItem = new HashMap<Integer, Map<Integer, Double>>();
-        ratingsUser = new HashMap<Integer, Map<Integer, Double>>();
-        usersStats = new HashMap<Integer, EntityStats>();
-        itemsStats = new HashMap<Integer, EntityStats>();
+        users = new IdIndex();
+        items = new IdIndex();
+        ratingsUser = new RatingRows();
+        ratingsItem = new RatingRows();
     }
     
     @Override
     public void addUser(int userID, List<Integer> ratedItems, List<Double> ratings) {
         super.addUser(userID, ratedItems, ratings);
         
-        ratingsUser.put(userID, new HashMap<Integer, Double>());
-        usersStats.put(userID, new EntityStats());
+        users.add(userID);
         
         int n = ratedItems.size();
         
@@ -138,31 +111,48 @@ public class MemRecommenderData extends AbstractRecommenderData {
             auxSetRating(userID, ratedItems.get(i), ratings.get(i));
     }
 
-    //FIXME: have to update item stats!!!
     @Override
     public void removeUser(int userID) {
         super.removeUser(userID);
-        ratingsUser.remove(userID);
-        usersStats.remove(userID);
+        int row = users.get(userID);
+        if (row < 0)
+            return;
+        int n = ratingsUser.size(row);
+        for (int k = 0; k < n; ++k) {
+            int itemRow = items.get(ratingsUser.getId(row, k));
+            ratingsItem.removeAt(itemRow, ratingsItem.indexOf(itemRow, userID));
+            sumRatings -= ratingsUser.getRating(row, k);
+        }
+        nRatings -= n;
+        ratingsUser.clearRow(row);
+        users.remove(userID);
     }
 
     @Override
     public void addItem(int itemID, List<Integer> ratingUsers, List<Double> ratings) {
         super.addItem(itemID, ratingUsers, ratings);
         
-        ratingsItem.put(itemID, new HashMap<Integer, Double>());
-        itemsStats.put(itemID, new EntityStats());
+        items.add(itemID);
         int n = ratingUsers.size();
         for (int i = 0; i < n; ++i)
             auxSetRating(ratingUsers.get(i), itemID, ratings.get(i));
     }
 
-    //FIXME: have to update user stats!!!
     @Override
     public void removeItem(int itemID) {
         super.removeItem(itemID);
-        ratingsItem.remove(itemID);
-        itemsStats.remove(itemID);
+        int row = items.get(itemID);
+        if (row < 0)
+            return;
+        int n = ratingsItem.size(row);
+        for (int k = 0; k < n; ++k) {
+            int userRow = users.get(ratingsItem.getId(row, k));
+            ratingsUser.removeAt(userRow, ratingsUser.indexOf(userRow, itemID));
+            sumRatings -= ratingsItem.getRating(row, k);
+        }
+        nRatings -= n;
+        ratingsItem.clearRow(row);
+        items.remove(itemID);
     }
 
     private void auxSetRating(int userID, int itemID, double rating) {
@@ -175,42 +165,18 @@ public class MemRecommenderData extends AbstractRecommenderData {
             maxRating = Math.max(maxRating, rating);
         }
         
-        EntityStats userStats = usersStats.get(userID);
-        EntityStats itemStats = itemsStats.get(itemID);
-        if (userStats == null) {
-            ++nUsers;
-            ratingsUser.put(userID, new HashMap<Integer, Double>());
-            userStats = new EntityStats();
-            usersStats.put(userID, userStats);
-        }
-        
-        if (itemStats == null) {
-            ++nItems;
-            ratingsItem.put(itemID, new HashMap<Integer, Double>());
-            itemStats = new EntityStats();
-            itemsStats.put(itemID, itemStats);
-        }
-        
-        Map<Integer, Double> ratUser = ratingsUser.get(userID);
-        Map<Integer, Double> ratItem = ratingsItem.get(itemID);
-        Double rat = ratUser.get(itemID);
-        if (rat != null) {
-            sumRatings -= rat;
-            userStats.sum -= rat;
-            userStats.num--;
-            itemStats.sum -= rat;
-            itemStats.num--;
+        int userRow = users.add(userID);
+        int itemRow = items.add(itemID);
+        int k = ratingsUser.indexOf(userRow, itemID);
+        if (k >= 0) {
+            sumRatings -= ratingsUser.getRating(userRow, k);
             --nRatings;
         }
         
-        userStats.sum += rating;
-        userStats.num++;
-        itemStats.sum += rating;
-        itemStats.num++;
         sumRatings += rating;
         ++nRatings;
-        ratUser.put(itemID, rating);
-        ratItem.put(userID, rating);
+        ratingsUser.set(userRow, itemID, rating);
+        ratingsItem.set(itemRow, userID, rating);
     }
     
     @Override
@@ -223,59 +189,64 @@ public class MemRecommenderData extends AbstractRecommenderData {
     public void removeRating(int userID, int itemID) {
         super.removeRating(userID, itemID);
         
-        Map<Integer, Double> ratUser = ratingsUser.get(userID);
-        Map<Integer, Double> ratItem = ratingsItem.get(itemID);
-        Double rat = ratUser.get(itemID);
-        EntityStats userStats = usersStats.get(userID);
-        EntityStats itemStats = itemsStats.get(itemID);
-        if (rat != null) {
-            sumRatings -= rat;
+        int userRow = users.get(userID);
+        int itemRow = items.get(itemID);
+        if (userRow < 0 || itemRow < 0)
+            return;
+        int k = ratingsUser.indexOf(userRow, itemID);
+        if (k >= 0) {
+            sumRatings -= ratingsUser.getRating(userRow, k);
             --nRatings;
-            userStats.sum -= rat;
-            userStats.num--;
-            itemStats.sum -= rat;
-            itemStats.num--;
-            ratUser.remove(itemID);
-            ratItem.remove(userID);
+            ratingsUser.removeAt(userRow, k);
+            ratingsItem.removeAt(itemRow, ratingsItem.indexOf(itemRow, userID));
         }
     }
 
+    /**
+     * @return a copy of the ratings of the user, by item ID
+     */
     @Override
     public SparseVector getRatingsUser(int userID) {
-        Map<Integer, Double> ratUser = ratingsUser.get(userID);
-        return new SparseVector(ratUser);
+        return toSparseVector(ratingsUser, users.get(userID));
+    }
+
+    @Override
+    public int getRatingsUser(int userID, int[] itemIDs, double[] ratings) {
+        int row = users.get(userID);
+        return (row >= 0 ? ratingsUser.copyRow(row, itemIDs, ratings) : 0);
     }
     
     @Override
     public double getRating(int userID, int itemID) {
-        Map<Integer, Double> ratUser = ratingsUser.get(userID);
-        return (ratUser.get(itemID) != null ? ratUser.get(itemID) : 0);
+        int row = users.get(userID);
+        int k = (row >= 0 ? ratingsUser.indexOf(row, itemID) : -1);
+        return (k >= 0 ? ratingsUser.getRating(row, k) : 0);
     }
 
     @Override
     public int getNumItems() {
-        return nItems;
+        return items.size();
     }
 
     @Override
     public int getNumUsers() {
-        return nUsers;
+        return users.size();
     }
     
     @Override
     public double getAvgRatingUser(int userID) {
-        EntityStats stats = usersStats.get(userID);
-        double sum = (stats != null ? stats.sum : 0);
-        double num = (stats != null ? stats.num : 0);
+        int row = users.get(userID);
+        double sum = (row >= 0 ? ratingsUser.sum(row) : 0);
+        double num = (row >= 0 ? ratingsUser.size(row) : 0);
         double mean = (nRatings > 0 ? sumRatings/(double)nRatings : (minRating + maxRating)/2.0);
         return (mean*25 + sum)/(25 + num);
     }
 
     @Override
     public double getAvgRatingItem(int itemID) {
-        EntityStats stats = itemsStats.get(itemID);
-        double sum = (stats != null ? stats.sum : 0);
-        double num = (stats != null ? stats.num : 0);
+        int row = items.get(itemID);
+        double sum = (row >= 0 ? ratingsItem.sum(row) : 0);
+        double num = (row >= 0 ? ratingsItem.size(row) : 0);
         double mean = (nRatings > 0 ? sumRatings/(double)nRatings : (minRating + maxRating)/2.0);
         return (mean*25 + sum)/(25 + num);
     }
@@ -292,18 +263,34 @@ public class MemRecommenderData extends AbstractRecommenderData {
 
     @Override
     public Set<Integer> getUsers() {
-        return usersStats.keySet();
+        return users.idSet();
     }
 
+    /**
+     * @return a copy of the ratings of the item, by user ID
+     */
     @Override
     public SparseVector getRatingsItem(int itemID) {
-        Map<Integer, Double> ratItem = ratingsItem.get(itemID);
-        return new SparseVector(ratItem);
+        return toSparseVector(ratingsItem, items.get(itemID));
+    }
+
+    @Override
+    public int getRatingsItem(int itemID, int[] userIDs, double[] ratings) {
+        int row = items.get(itemID);
+        return (row >= 0 ? ratingsItem.copyRow(row, userIDs, ratings) : 0);
+    }
+
+    private static SparseVector toSparseVector(RatingRows rows, int row) {
+        int n = (row >= 0 ? rows.size(row) : 0);
+        Map<Integer, Double> map = new HashMap<Integer, Double>(Math.max(16, 2*n));
+        for (int k = 0; k < n; ++k)
+            map.put(rows.getId(row, k), rows.getRating(row, k));
+        return new SparseVector(map);
     }
 
     @Override
     public Set<Integer> getItems() {
-        return itemsStats.keySet();
+        return items.idSet();
     }
 
     @Override
@@ -313,20 +300,22 @@ public class MemRecommenderData extends AbstractRecommenderData {
 
     @Override
     public int countRatingsUser(int userID) {
-        EntityStats stats = usersStats.get(userID);
-        return (stats != null ? (int)stats.num : 0);
+        int row = users.get(userID);
+        return (row >= 0 ? ratingsUser.size(row) : 0);
     }
 
     @Override
     public int countRatingsItem(int itemID) {
-        EntityStats stats = itemsStats.get(itemID);
-        return (stats != null ? (int)stats.num : 0);
+        int row = items.get(itemID);
+        return (row >= 0 ? ratingsItem.size(row) : 0);
     }
 
+    /**
+     * @return an iterator over all the ratings, user by user
+     */
     @Override
     public Iterator<Rating> ratingIterator() {
-        // TODO Auto-generated method stub
-        return null;
+        return new RatingIterator();
     }
 
     @Override
@@ -336,18 +325,18 @@ public class MemRecommenderData extends AbstractRecommenderData {
     
     @Override
     public boolean userExists(int userID) {
-        return usersStats.containsKey(userID);
+        return users.contains(userID);
     }
     @Override
     public boolean itemExists(int itemID) {
-        return itemsStats.containsKey(itemID);
+        return items.contains(itemID);
     }
 
     @Override
     public void clear() {
-        usersStats.clear();
-        itemsStats.clear();
-        minRating = maxRating = nItems = nUsers = 0;
+        users.clear();
+        items.clear();
+        minRating = maxRating = 0;
         sumRatings = nRatings = 0;
         ratingsUser.clear();
         ratingsItem.clear();
@@ -21,14 +21,13 @@
 package moa.recommender.rc.predictor.impl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import moa.classifiers.meta.EnsembleExecutor;
 import moa.recommender.rc.data.RecommenderData;
-import moa.recommender.rc.utils.Pair;
+import moa.recommender.rc.utils.FeatureMatrix;
 import moa.recommender.rc.utils.Rating;
-import moa.recommender.rc.utils.SparseVector;
 import moa.recommender.rc.utils.Updatable;
 
 /**
@@ -46,6 +45,13 @@ import moa.recommender.rc.utils.Updatable;
  * by retraining only the affected user and item vectors when 
  * a new rating is inserted.
  * 
+ * <p>The feature vectors are stored in contiguous float matrices,
+ * with a row per user or item. Batch training can update them from
+ * several threads at once without locking (Hogwild!, Niu et al.),
+ * each thread going through its own part of the ratings; the few
+ * updates lost to concurrent writes do not affect convergence much,
+ * but the result then depends on thread scheduling.</p>
+ * 
  * <p>Parameters:</p>
  * <ul>
  * <li> features - the number of features to be trained for each user and 
@@ -55,6 +61,7 @@ import moa.recommender.rc.utils.Updatable;
  *      regularization</li>
  * <li> iterations - the number of iterations to be used when retraining
  *      user and item features (online training). </li>
+ * <li> jobs - the number of threads used by batch training </li>
  * </lu>
  * 
  */
@@ -63,12 +70,18 @@ public class BRISMFPredictor implements Updatable {
     
     protected RecommenderData data;
     protected int nFeatures;
-    protected HashMap<Integer, float[]> userFeature;
-    protected HashMap<Integer, float[]> itemFeature;
+    protected FeatureMatrix userFeature;
+    protected FeatureMatrix itemFeature;
     protected Random rnd;
     protected double lRate = 0.01;
     protected double rFactor = 0.02;
     protected int nIterations = 30;
+    protected EnsembleExecutor executor = new EnsembleExecutor(1);
+    
+    //Buffers for the ratings of the user or item being retrained
+    private int[] idBuffer = new int[16];
+    private double[] ratingBuffer = new double[16];
+    private int[] offsetBuffer = new int[16];
     
     public void setLRate(double lRate) {
         this.lRate = lRate;
@@ -82,6 +95,14 @@ public class BRISMFPredictor implements Updatable {
         this.nIterations = nIterations; 
     }
     
+    /**
+     * @param numberOfJobs the number of threads used by batch training,
+     * -1 for as many as processors, 0 or 1 to train on the calling thread
+     */
+    public void setNumberOfJobs(int numberOfJobs) {
+        this.executor = new EnsembleExecutor(numberOfJobs);
+    }
+    
     public RecommenderData getData() {
     	return data;
     }
@@ -89,8 +110,8 @@ public class BRISMFPredictor implements Updatable {
     public BRISMFPredictor(int nFeatures, RecommenderData data, boolean train) {
         this.data = data;
         this.nFeatures = nFeatures;
-        this.userFeature = new HashMap<Integer, float[]>();
-        this.itemFeature = new HashMap<Integer, float[]>();
+        this.userFeature = new FeatureMatrix(nFeatures);
+        this.itemFeature = new FeatureMatrix(nFeatures);
         this.rnd = new Random(12345);
         data.attachUpdatable(this);
         if (train) train();
@@ -99,8 +120,8 @@ public class BRISMFPredictor implements Updatable {
     public BRISMFPredictor(int nFeatures, RecommenderData data, double lRate, double rFactor, boolean train) {
         this.data = data;
         this.nFeatures = nFeatures;
-        this.userFeature = new HashMap<Integer, float[]>();
-        this.itemFeature = new HashMap<Integer, float[]>();
+        this.userFeature = new FeatureMatrix(nFeatures);
+        this.itemFeature = new FeatureMatrix(nFeatures);
         this.rnd = new Random(12345);
         this.lRate = lRate;
         this.rFactor = rFactor;
@@ -108,48 +129,75 @@ public class BRISMFPredictor implements Updatable {
         if (train) train();
     }
     
-    private void resetFeatures(float[] feats, boolean userFeats) {
-        int n = feats.length;
-        for (int i = 0; i < n; ++i)
-            feats[i] = (float)0.01*(rnd.nextFloat()*2 - 1);
-        if (userFeats) feats[0] = 1;
-        else feats[1] = 1;
+    private void resetFeatures(float[] feats, int offset, boolean userFeats) {
+        for (int i = 0; i < nFeatures; ++i)
+            feats[offset + i] = (float)0.01*(rnd.nextFloat()*2 - 1);
+        if (userFeats) feats[offset] = 1;
+        else feats[offset + 1] = 1;
     }
     
     public double predictRating(int userID, int itemID) {
-        float[] userFeats = userFeature.get(userID);
-        float[] itemFeats = itemFeature.get(itemID);
-        return predictRating(userFeats, itemFeats);
+        int userRow = userFeature.getRow(userID);
+        int itemRow = itemFeature.getRow(itemID);
+        if (userRow < 0 || itemRow < 0)
+            return predictRating(null, null);
+        return clip(dot(data.getGlobalMean(), userFeature.getValues(), userRow*nFeatures,
+                itemFeature.getValues(), itemRow*nFeatures));
     }
     
     public double predictRating(float userFeats[], float itemFeats[]) {
         double ret = data.getGlobalMean();
         if (userFeats != null && itemFeats != null)
-            for (int i = 0; i < nFeatures; ++i)
-                ret += userFeats[i]*itemFeats[i];
-
+            ret = dot(ret, userFeats, 0, itemFeats, 0);
+        return clip(ret);
+    }
+    
+    private double dot(double ret, float[] userFeats, int userOffset, float[] itemFeats, int itemOffset) {
+        for (int i = 0; i < nFeatures; ++i)
+            ret += userFeats[userOffset + i]*itemFeats[itemOffset + i];
+        return ret;
+    }
+    
+    private double clip(double ret) {
         if (ret < data.getMinRating()) ret = data.getMinRating();
         else if (ret > data.getMaxRating()) ret = data.getMaxRating();
-        
+        return ret;
+    }
+    
+    private static double clip(double ret, double min, double max) {
+        if (ret < min) ret = min;
+        else if (ret > max) ret = max;
         return ret;
     }
     
     public float[] trainUserFeats(List<Integer> itm, List<Double> rat, int nIts) {
+        int n = toBuffers(itm, rat);
+        return trainUserFeats(idBuffer, ratingBuffer, n, nIts);
+    }
+    
+    /**
+     * Trains the features of a user from its ratings, given by the first n
+     * item IDs and ratings of the arrays.
+     */
+    protected float[] trainUserFeats(int[] itm, double[] rat, int n, int nIts) {
         float[] userFeats = new float[nFeatures];
-        resetFeatures(userFeats, true);
+        resetFeatures(userFeats, 0, true);
         
-        int n = itm.size();
+        double mean = data.getGlobalMean();
+        double min = data.getMinRating();
+        double max = data.getMaxRating();
+        float[] itemValues = itemFeature.getValues();
+        int[] offsets = toOffsets(itemFeature, itm, n);
         for (int k = 0; k < nIts; ++k) {
             for (int i = 0; i < n; ++i) {
-                int itemID = itm.get(i);
-                float[] itemFeats = itemFeature.get(itemID);
-                double rating = rat.get(i);
-                double pred = predictRating(userFeats, itemFeats);
-                double err = rating - pred;
+                int offset = offsets[i];
+                if (offset < 0)
+                    continue;
+                double pred = clip(dot(mean, userFeats, 0, itemValues, offset), min, max);
+                double err = rat[i] - pred;
                 
-                if (itemFeats != null)
-                    for (int j = 1; j < nFeatures; ++j) 
-                        userFeats[j] += lRate*(err*itemFeats[j] - rFactor*userFeats[j]);
+                for (int j = 1; j < nFeatures; ++j) 
+                    userFeats[j] += lRate*(err*itemValues[offset + j] - rFactor*userFeats[j]);
             }
         }
         
@@ -157,99 +205,114 @@ public class BRISMFPredictor implements Updatable {
     }
     
     public float[] trainItemFeats(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
+        int n = toBuffers(usr, rat);
+        return trainItemFeats(idBuffer, ratingBuffer, n, nIts);
+    }
+    
+    /**
+     * Trains the features of an item from its ratings, given by the first n
+     * user IDs and ratings of the arrays.
+     */
+    protected float[] trainItemFeats(int[] usr, double[] rat, int n, int nIts) {
         float[] itemFeats = new float[nFeatures];
-        resetFeatures(itemFeats, false);
+        resetFeatures(itemFeats, 0, false);
         
-        int n = usr.size();
+        double mean = data.getGlobalMean();
+        double min = data.getMinRating();
+        double max = data.getMaxRating();
+        float[] userValues = userFeature.getValues();
+        int[] offsets = toOffsets(userFeature, usr, n);
         for (int k = 0; k < nIts; ++k) {
             for (int i = 0; i < n; ++i) {
-                int userID = usr.get(i);
-                float[] userFeats = userFeature.get(userID);
-                double rating = rat.get(i);
-                double pred = predictRating(userFeats, itemFeats);
-                double err = rating - pred;
+                int offset = offsets[i];
+                if (offset < 0)
+                    continue;
+                double pred = clip(dot(mean, userValues, offset, itemFeats, 0), min, max);
+                double err = rat[i] - pred;
                 
-                if (userFeats != null) {
-                    itemFeats[0] += lRate*(err*userFeats[0] - rFactor*itemFeats[0]);
-                    for (int j = 2; j < nFeatures; ++j)
-                        itemFeats[j] += lRate*(err*userFeats[j] - rFactor*itemFeats[j]);
-                }
+                itemFeats[0] += lRate*(err*userValues[offset] - rFactor*itemFeats[0]);
+                for (int j = 2; j < nFeatures; ++j)
+                    itemFeats[j] += lRate*(err*userValues[offset + j] - rFactor*itemFeats[j]);
             }
         }
         
         return itemFeats;
     }
     
+    private void ensureBuffers(int n) {
+        if (idBuffer.length < n) {
+            int capacity = Math.max(n, 2*idBuffer.length);
+            idBuffer = new int[capacity];
+            ratingBuffer = new double[capacity];
+        }
+    }
+    
+    //Looks up once the offsets of the features of the first n IDs, -1 for
+    //those without features, before iterating over them
+    private int[] toOffsets(FeatureMatrix features, int[] ids, int n) {
+        if (offsetBuffer.length < n)
+            offsetBuffer = new int[Math.max(n, 2*offsetBuffer.length)];
+        for (int i = 0; i < n; ++i) {
+            int row = features.getRow(ids[i]);
+            offsetBuffer[i] = (row >= 0 ? row*nFeatures : -1);
+        }
+        return offsetBuffer;
+    }
+    
+    private int toBuffers(List<Integer> ids, List<Double> rat) {
+        int n = ids.size();
+        ensureBuffers(n);
+        for (int i = 0; i < n; ++i) {
+            idBuffer[i] = ids.get(i);
+            ratingBuffer[i] = rat.get(i);
+        }
+        return n;
+    }
+    
+    //Copies the ratings of the user into the buffers, with room for one more
+    private int userToBuffers(int userID) {
+        ensureBuffers(data.countRatingsUser(userID) + 1);
+        return data.getRatingsUser(userID, idBuffer, ratingBuffer);
+    }
+    
+    //Copies the ratings of the item into the buffers, with room for one more
+    private int itemToBuffers(int itemID) {
+        ensureBuffers(data.countRatingsItem(itemID) + 1);
+        return data.getRatingsItem(itemID, idBuffer, ratingBuffer);
+    }
+    
     public void trainUser(int userID, List<Integer> itm, List<Double> rat, int nIts) {
-        userFeature.put(userID, trainUserFeats(itm, rat, nIts));
+        userFeature.set(userID, trainUserFeats(itm, rat, nIts));
     }
     
     public void trainUser(int userID, int nIts) {
-        SparseVector usrRats = data.getRatingsUser(userID);
-        ArrayList<Integer> itm = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            itm.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainUser(userID, itm, rat, nIts);
+        int n = userToBuffers(userID);
+        userFeature.set(userID, trainUserFeats(idBuffer, ratingBuffer, n, nIts));
     }
     
     public void trainUser(int userID, List<Integer> itm, List<Double> rat) {
-        userFeature.put(userID, trainUserFeats(itm, rat, nIterations));
+        trainUser(userID, itm, rat, nIterations);
     }
     
     public void trainItem(int itemID) {
-        SparseVector itmRats = data.getRatingsItem(itemID);
-        ArrayList<Integer> usr = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            usr.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainItem(itemID, usr, rat);
+        trainItem(itemID, nIterations);
     }
     
     public void trainItem(int itemID, int nIts) {
-        SparseVector itmRats = data.getRatingsItem(itemID);
-        ArrayList<Integer> usr = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            usr.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainItem(itemID, usr, rat, nIts);
+        int n = itemToBuffers(itemID);
+        itemFeature.set(itemID, trainItemFeats(idBuffer, ratingBuffer, n, nIts));
     }
     
     public void trainUser(int userID) {
-        SparseVector usrRats = data.getRatingsUser(userID);
-        ArrayList<Integer> itm = new ArrayList<Integer>();
-        ArrayList<Double> rat = new ArrayList<Double>();
-        Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-        
-        while (it.hasNext()) {
-            Pair<Integer, Double> p = it.next();
-            itm.add(p.getFirst());
-            rat.add(p.getSecond());
-        }
-        trainUser(userID, itm, rat);
+        trainUser(userID, nIterations);
     }
     
     public void trainItem(int itemID, List<Integer> usr, List<Double> rat) {
-        itemFeature.put(itemID, trainItemFeats(itemID, usr, rat, nIterations));
+        trainItem(itemID, usr, rat, nIterations);
     }
     
     public void trainItem(int itemID, List<Integer> usr, List<Double> rat, int nIts) {
-        itemFeature.put(itemID, trainItemFeats(itemID, usr, rat, nIts));
+        itemFeature.set(itemID, trainItemFeats(itemID, usr, rat, nIts));
     }
     
     public void train() {
@@ -260,63 +323,64 @@ public class BRISMFPredictor implements Updatable {
         
         Iterator<Integer> it = data.getUsers().iterator();
         while (it.hasNext()) {
-            float[] feats = new float[nFeatures];
-            resetFeatures(feats, true);
-            userFeature.put(it.next(), feats);
+            int row = userFeature.addRow(it.next());
+            resetFeatures(userFeature.getValues(), row*nFeatures, true);
         }
         
         it = data.getItems().iterator();
         while (it.hasNext()) {
-            float[] feats = new float[nFeatures];
-            resetFeatures(feats, false);
-            itemFeature.put(it.next(), feats);
+            int row = itemFeature.addRow(it.next());
+            resetFeatures(itemFeature.getValues(), row*nFeatures, false);
         }
+        
+        if (n == 0)
+            return;
 
+        //Rows of the users and items of all the ratings, so that they can
+        //be split among the threads
+        final int[] userRows = new int[n];
+        final int[] itemRows = new int[n];
+        final double[] ratings = new double[n];
+        Iterator<Rating> ratIt = data.ratingIterator();
+        for (int i = 0; i < n && ratIt.hasNext(); ++i) {
+            Rating rat = ratIt.next();
+            userRows[i] = userFeature.getRow(rat.userID);
+            itemRows[i] = itemFeature.getRow(rat.itemID);
+            ratings[i] = rat.rating;
+        }
+        
+        final int trainDiv = Math.max(20, n/1000000);
+        final double mean = data.getGlobalMean();
+        final double min = data.getMinRating();
+        final double max = data.getMaxRating();
+        final float[] userValues = userFeature.getValues();
+        final float[] itemValues = itemFeature.getValues();
+        final int nRanges = executor.getNumberOfThreads();
+        
         int exit = 0;
         double lastRMSE = 1e20;
         
-        int count = 0;
-        int trainDiv = Math.max(20, n/1000000);
-        ArrayList<Rating> ratTest = new ArrayList<Rating>(n/trainDiv);
         do {
             long start = System.currentTimeMillis();
-            Iterator<Rating> ratIt = data.ratingIterator();
-            int idx = 0;
-            
-            while (ratIt.hasNext()) {
-                Rating rat = ratIt.next();
-                if (idx%trainDiv == 0) {
-                    if (count == 0) ratTest.add(rat);
-                }
-                else {
-                    int userID = rat.userID;
-                    int itemID = rat.itemID;
-                    double rating = rat.rating;
-                    float[] userFeats = userFeature.get(userID);
-                    float[] itemFeats = itemFeature.get(itemID);
-                    
-                    double pred = predictRating(userFeats, itemFeats);
-                    double err = rating - pred;
-                    
-                    itemFeats[0] += lRate*(err*userFeats[0] - rFactor*itemFeats[0]);
-                    userFeats[1] += lRate*(err*itemFeats[1] - rFactor*userFeats[1]);
-                    for (int j = 2; j < nFeatures; ++j) {
-                        double uv = userFeats[j];
-                        userFeats[j] += lRate*(err*itemFeats[j] - rFactor*userFeats[j]);
-                        itemFeats[j] += lRate*(err*uv - rFactor*itemFeats[j]);
+            executor.forEachMember(nRanges, new EnsembleExecutor.MemberTask() {
+                @Override
+                public void run(int index) {
+                    int from = (int) ((long) index * userRows.length / nRanges);
+                    int to = (int) ((long) (index + 1) * userRows.length / nRanges);
+                    for (int idx = from; idx < to; ++idx) {
+                        if (idx%trainDiv != 0)
+                            update(userValues, userRows[idx]*nFeatures, itemValues, itemRows[idx]*nFeatures,
+                                    ratings[idx], mean, min, max);
                     }
                 }
-                ++idx;
-            }
-            int nTest = ratTest.size();
+            });
 
             double sum = 0;
-            for (int i = 0; i < nTest; ++i) {
-                int userID = ratTest.get(i).userID;
-                int itemID = ratTest.get(i).itemID;
-                double rating = ratTest.get(i).rating;
-                double pred = predictRating(userID, itemID);
-                sum += Math.pow(rating - pred, 2);
+            int nTest = 0;
+            for (int idx = 0; idx < n; idx += trainDiv) {
+                double pred = clip(dot(mean, userValues, userRows[idx]*nFeatures, itemValues, itemRows[idx]*nFeatures), min, max);
+                sum += Math.pow(ratings[idx] - pred, 2);
+                ++nTest;
             }
             
             double curRMSE = Math.sqrt(sum/(double)nTest);
@@ -325,15 +389,36 @@ public class BRISMFPredictor implements Updatable {
                 ++exit;
             }
             lastRMSE = curRMSE;
-            ++count;
         }
         while (exit < 1);
     }
     
+    //One step of stochastic gradient descent on a rating. Several threads may
+    //run it at once on the same features: the updates are not synchronized.
+    private void update(float[] userFeats, int userOffset, float[] itemFeats, int itemOffset,
+            double rating, double mean, double min, double max) {
+        double pred = clip(dot(mean, userFeats, userOffset, itemFeats, itemOffset), min, max);
+        double err = rating - pred;
+        
+        itemFeats[itemOffset] += lRate*(err*userFeats[userOffset] - rFactor*itemFeats[itemOffset]);
+        userFeats[userOffset + 1] += lRate*(err*itemFeats[itemOffset + 1] - rFactor*userFeats[userOffset + 1]);
+        for (int j = 2; j < nFeatures; ++j) {
+            double uv = userFeats[userOffset + j];
+            userFeats[userOffset + j] += lRate*(err*itemFeats[itemOffset + j] - rFactor*userFeats[userOffset + j]);
+            itemFeats[itemOffset + j] += lRate*(err*uv - rFactor*itemFeats[itemOffset + j]);
+        }
+    }
+    
+    /**
+     * @return a copy of the features of the user, or null if it has none
+     */
     public float[] getUserFeatures(int userID) {
         return userFeature.get(userID);
     }
 
+    /**
+     * @return a copy of the features of the item, or null if it has none
+     */
     public float[] getItemFeatures(int itemID) {
         return itemFeature.get(itemID);
     }
@@ -379,51 +464,32 @@ public class BRISMFPredictor implements Updatable {
         double prob2 = Math.pow(0.99, nItm);
 
         if (nUsr < 5 || rnd.nextDouble() < prob1) {
-            SparseVector usrRats = data.getRatingsUser(userID);
-            ArrayList<Integer> itm = new ArrayList<Integer>();
-            ArrayList<Double> rat = new ArrayList<Double>();
-            
             //Train user
-            boolean found = false;
-            Iterator<Pair<Integer, Double>> it = usrRats.iterator();
-            while (it.hasNext()) {
-                Pair<Integer, Double> p = it.next();
-                itm.add(p.getFirst());
-                if (p.getFirst() == itemID) {
-                    found = true;
-                    rat.add(rating);
-                }
-                else rat.add(p.getSecond());
-            }
-            if (!found) {
-                itm.add(itemID);
-                rat.add(rating);
-            }
-            trainUser(userID, itm, rat);
+            int n = userToBuffers(userID);
+            n = setRating(n, itemID, rating);
+            userFeature.set(userID, trainUserFeats(idBuffer, ratingBuffer, n, nIterations));
         }
         
         if (nItm < 5 || rnd.nextDouble() < prob2) {
-            SparseVector itmRats = data.getRatingsItem(itemID);
             //Train item
-            Iterator<Pair<Integer, Double>> it = itmRats.iterator();
-            boolean found = false;
-            ArrayList<Integer> usr = new ArrayList<Integer>();
-            ArrayList<Double> rat = new ArrayList<Double>();
-            while (it.hasNext()) {
-                Pair<Integer, Double> p = it.next();
-                usr.add(p.getFirst());
-                if (p.getFirst() == userID) {
-                    found = true;
-                    rat.add(rating);
-                }
-                else rat.add(p.getSecond());
-            }
-            if (!found) {
-                usr.add(itemID);
-                rat.add(rating);
+            int n = itemToBuffers(itemID);
+            n = setRating(n, userID, rating);
+            itemFeature.set(itemID, trainItemFeats(idBuffer, ratingBuffer, n, nIterations));
+        }
+    }
+    
+    //Sets the rating of the ID among the first n of the buffers, adding it at
+    //the end if it is not there, and returns the new number of ratings
+    private int setRating(int n, int id, double rating) {
+        for (int i = 0; i < n; ++i) {
+            if (idBuffer[i] == id) {
+                ratingBuffer[i] = rating;
+                return n;
             }
-            trainItem(itemID, usr, rat);
         }
+        idBuffer[n] = id;
+        ratingBuffer[n] = rating;
+        return n + 1;
     }
 
     @Override
@@ -0,0 +1,105 @@
+/*
+ *    FeatureMatrix.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Feature vectors of users or items, stored one after the other in a single
+ * float array: the features of row r are at offsets r*nFeatures to
+ * (r+1)*nFeatures - 1 of getValues(). The rows of the IDs are given by an
+ * IdIndex.
+ */
+public class FeatureMatrix implements Serializable {
+
+    private static final long serialVersionUID = -3675016394421738207L;
+
+    private final int nFeatures;
+    private final IdIndex index;
+    private float[] values;
+
+    public FeatureMatrix(int nFeatures) {
+        this.nFeatures = nFeatures;
+        this.index = new IdIndex();
+        this.values = new float[8*nFeatures];
+    }
+
+    public int getNumFeatures() {
+        return nFeatures;
+    }
+
+    /**
+     * @return the number of IDs with features
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the row of the ID, or -1 if it has no features
+     */
+    public int getRow(int id) {
+        return index.get(id);
+    }
+
+    /**
+     * Adds a row for the ID, if it has none. The array returned by
+     * getValues() may change.
+     *
+     * @return the row of the ID
+     */
+    public int addRow(int id) {
+        int row = index.add(id);
+        if ((row + 1)*nFeatures > values.length)
+            values = Arrays.copyOf(values, Math.max(2*values.length, (row + 1)*nFeatures));
+        return row;
+    }
+
+    /**
+     * Sets the features of the ID, adding a row for it if it has none.
+     */
+    public void set(int id, float[] features) {
+        int row = addRow(id);
+        System.arraycopy(features, 0, values, row*nFeatures, nFeatures);
+    }
+
+    /**
+     * @return a copy of the features of the ID, or null if it has none
+     */
+    public float[] get(int id) {
+        int row = index.get(id);
+        return (row >= 0 ? Arrays.copyOfRange(values, row*nFeatures, (row + 1)*nFeatures) : null);
+    }
+
+    /**
+     * @return the features of all the rows
+     */
+    public float[] getValues() {
+        return values;
+    }
+
+    public void remove(int id) {
+        index.remove(id);
+    }
+
+    public void clear() {
+        index.clear();
+    }
+}
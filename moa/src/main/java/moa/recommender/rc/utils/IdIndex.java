@@ -0,0 +1,254 @@
+/*
+ *    IdIndex.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.utils;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Maps user or item IDs to dense row numbers, so that their data can be kept
+ * in primitive arrays indexed by row instead of maps of boxed IDs. The IDs are
+ * hashed into an open addressing table with linear probing. The row of a
+ * removed ID is reused by the next ID added.
+ */
+public class IdIndex implements Serializable {
+
+    private static final long serialVersionUID = -2946385512735530421L;
+
+    private static final int FREE = -1;
+
+    /** IDs in the table */
+    private int[] keys;
+
+    /** Row of the ID in each slot of the table, FREE if the slot is empty */
+    private int[] slots;
+
+    /** ID of each row */
+    private int[] ids;
+
+    /** Whether each row is in use */
+    private boolean[] used;
+
+    /** Rows freed by removed IDs, to be reused */
+    private int[] freeRows;
+    private int nFreeRows = 0;
+
+    /** Number of rows ever used, including the freed ones */
+    private int nRows = 0;
+
+    private int size = 0;
+
+    public IdIndex() {
+        this.keys = new int[16];
+        this.slots = new int[16];
+        Arrays.fill(this.slots, FREE);
+        this.ids = new int[8];
+        this.used = new boolean[8];
+        this.freeRows = new int[8];
+    }
+
+    /**
+     * @return the number of IDs in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return an upper bound of the rows in use, the size of the arrays
+     *         indexed by row
+     */
+    public int getNumRows() {
+        return nRows;
+    }
+
+    /**
+     * @return the row of the ID, or -1 if it is not in the index
+     */
+    public int get(int id) {
+        int mask = slots.length - 1;
+        for (int slot = Hash.hashCode(id) & mask; slots[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == id)
+                return slots[slot];
+        }
+        return -1;
+    }
+
+    public boolean contains(int id) {
+        return get(id) >= 0;
+    }
+
+    /**
+     * @return the ID of a row in use
+     */
+    public int getId(int row) {
+        return ids[row];
+    }
+
+    public boolean isUsed(int row) {
+        return row < nRows && used[row];
+    }
+
+    /**
+     * Adds the ID to the index, if it is not already there.
+     *
+     * @return the row of the ID
+     */
+    public int add(int id) {
+        int mask = slots.length - 1;
+        int slot = Hash.hashCode(id) & mask;
+        for (; slots[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == id)
+                return slots[slot];
+        }
+        int row;
+        if (nFreeRows > 0) {
+            row = freeRows[--nFreeRows];
+        }
+        else {
+            if (nRows == ids.length) {
+                ids = Arrays.copyOf(ids, 2*nRows);
+                used = Arrays.copyOf(used, 2*nRows);
+            }
+            row = nRows++;
+        }
+        ids[row] = id;
+        used[row] = true;
+        keys[slot] = id;
+        slots[slot] = row;
+        if (++size*4 > slots.length*3)
+            rehash(2*slots.length);
+        return row;
+    }
+
+    /**
+     * Removes the ID from the index. Its row is reused by the next ID added.
+     *
+     * @return the row the ID had, or -1 if it was not in the index
+     */
+    public int remove(int id) {
+        int mask = slots.length - 1;
+        int slot = Hash.hashCode(id) & mask;
+        for (; slots[slot] != FREE; slot = (slot + 1) & mask) {
+            if (keys[slot] == id)
+                break;
+        }
+        if (slots[slot] == FREE)
+            return -1;
+        int row = slots[slot];
+        used[row] = false;
+        if (nFreeRows == freeRows.length)
+            freeRows = Arrays.copyOf(freeRows, 2*nFreeRows);
+        freeRows[nFreeRows++] = row;
+        --size;
+
+        // Shift back the following entries of the cluster that would not be
+        // found anymore across the emptied slot
+        int empty = slot;
+        for (slot = (slot + 1) & mask; slots[slot] != FREE; slot = (slot + 1) & mask) {
+            int home = Hash.hashCode(keys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - empty) & mask)) {
+                keys[empty] = keys[slot];
+                slots[empty] = slots[slot];
+                empty = slot;
+            }
+        }
+        slots[empty] = FREE;
+        return row;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, FREE);
+        Arrays.fill(used, false);
+        nRows = 0;
+        nFreeRows = 0;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new int[capacity];
+        slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldSlots.length; ++i) {
+            if (oldSlots[i] != FREE) {
+                int slot = Hash.hashCode(oldKeys[i]) & mask;
+                while (slots[slot] != FREE)
+                    slot = (slot + 1) & mask;
+                keys[slot] = oldKeys[i];
+                slots[slot] = oldSlots[i];
+            }
+        }
+    }
+
+    /**
+     * @return a view of the IDs in the index, in the order of their rows
+     */
+    public Set<Integer> idSet() {
+        return new AbstractSet<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    private int row = nextRow(0);
+
+                    private int nextRow(int from) {
+                        while (from < nRows && !used[from])
+                            ++from;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return row < nRows;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        if (row >= nRows)
+                            throw new NoSuchElementException();
+                        int id = ids[row];
+                        row = nextRow(row + 1);
+                        return id;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return o instanceof Integer && IdIndex.this.contains((Integer)o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ *    RatingRows.java
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ *
+ *
+ */
+
+package moa.recommender.rc.utils;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Sparse rows of ratings, like the rows of a matrix in compressed sparse row
+ * format: each row keeps the IDs it has ratings for, in increasing order, and
+ * the ratings in a parallel array. Every row has its own arrays, with some
+ * room to grow, so that a rating can be added to any row while the stream is
+ * replayed. Finding a rating is a binary search within its row.
+ */
+public class RatingRows implements Serializable {
+
+    private static final long serialVersionUID = 6053591749542839517L;
+
+    private static final int[] NO_IDS = new int[0];
+    private static final double[] NO_RATINGS = new double[0];
+
+    private int[][] ids;
+    private double[][] ratings;
+    private int[] sizes;
+
+    /** Sum of the ratings of each row */
+    private double[] sums;
+
+    public RatingRows() {
+        this.ids = new int[8][];
+        this.ratings = new double[8][];
+        this.sizes = new int[8];
+        this.sums = new double[8];
+        Arrays.fill(this.ids, NO_IDS);
+        Arrays.fill(this.ratings, NO_RATINGS);
+    }
+
+    private void ensureRow(int row) {
+        if (row >= sizes.length) {
+            int n = sizes.length;
+            int capacity = Math.max(2*n, row + 1);
+            ids = Arrays.copyOf(ids, capacity);
+            ratings = Arrays.copyOf(ratings, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            Arrays.fill(ids, n, capacity, NO_IDS);
+            Arrays.fill(ratings, n, capacity, NO_RATINGS);
+        }
+    }
+
+    /**
+     * @return the number of ratings in the row
+     */
+    public int size(int row) {
+        return row < sizes.length ? sizes[row] : 0;
+    }
+
+    /**
+     * @return the sum of the ratings in the row
+     */
+    public double sum(int row) {
+        return row < sums.length ? sums[row] : 0;
+    }
+
+    /**
+     * @return the ID of the k-th rating of the row, in increasing order
+     */
+    public int getId(int row, int k) {
+        return ids[row][k];
+    }
+
+    /**
+     * @return the k-th rating of the row
+     */
+    public double getRating(int row, int k) {
+        return ratings[row][k];
+    }
+
+    /**
+     * @return the position of the ID in the row, or -(insertion point) - 1 if
+     *         the row has no rating for it
+     */
+    public int indexOf(int row, int id) {
+        if (row >= sizes.length)
+            return -1;
+        return Arrays.binarySearch(ids[row], 0, sizes[row], id);
+    }
+
+    /**
+     * Sets the rating of the ID in the row.
+     *
+     * @return the position of the ID in the row if it already had a rating,
+     *         which is replaced, or -(position) - 1 if it is new
+     */
+    public int set(int row, int id, double rating) {
+        ensureRow(row);
+        int k = indexOf(row, id);
+        if (k >= 0) {
+            sums[row] += rating - ratings[row][k];
+            ratings[row][k] = rating;
+            return k;
+        }
+        k = -k - 1;
+        int n = sizes[row];
+        int[] rowIds = ids[row];
+        double[] rowRatings = ratings[row];
+        if (n == rowIds.length) {
+            int capacity = Math.max(4, n + (n >> 1));
+            ids[row] = Arrays.copyOf(rowIds, capacity);
+            ratings[row] = Arrays.copyOf(rowRatings, capacity);
+        }
+        System.arraycopy(rowIds, k, ids[row], k + 1, n - k);
+        System.arraycopy(rowRatings, k, ratings[row], k + 1, n - k);
+        ids[row][k] = id;
+        ratings[row][k] = rating;
+        sizes[row] = n + 1;
+        sums[row] += rating;
+        return -k - 1;
+    }
+
+    /**
+     * Removes the k-th rating of the row.
+     */
+    public void removeAt(int row, int k) {
+        int n = sizes[row] - 1;
+        sums[row] -= ratings[row][k];
+        System.arraycopy(ids[row], k + 1, ids[row], k, n - k);
+        System.arraycopy(ratings[row], k + 1, ratings[row], k, n - k);
+        sizes[row] = n;
+        if (n == 0)
+            sums[row] = 0;
+    }
+
+    /**
+     * Removes all the ratings of the row and frees its arrays.
+     */
+    public void clearRow(int row) {
+        if (row < sizes.length) {
+            ids[row] = NO_IDS;
+            ratings[row] = NO_RATINGS;
+            sizes[row] = 0;
+            sums[row] = 0;
+        }
+    }
+
+    /**
+     * Copies the IDs and ratings of the row into the arrays, which must have
+     * room for size(row) entries.
+     *
+     * @return the number of ratings copied
+     */
+    public int copyRow(int row, int[] rowIds, double[] rowRatings) {
+        int n = size(row);
+        if (n > 0) {
+            System.arraycopy(ids[row], 0, rowIds, 0, n);
+            System.arraycopy(ratings[row], 0, rowRatings, 0, n);
+        }
+        return n;
+    }
+
+    public void clear() {
+        Arrays.fill(ids, NO_IDS);
+        Arrays.fill(ratings, NO_RATINGS);
+        Arrays.fill(sizes, 0);
+        Arrays.fill(sums, 0);
+    }
+}
@@ -21,6 +21,8 @@ package moa.streams;
 
 import com.github.javacliparser.FileOption;
 import com.github.javacliparser.IntOption;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.Instances;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import java.io.BufferedReader;
@@ -49,7 +51,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class ArffFileStream extends AbstractOptionHandler implements
-        InstanceStream, ConceptDriftGenerator, CapabilitiesHandler {
+        ReusableInstanceStream, ConceptDriftGenerator, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -120,6 +122,22 @@ public class ArffFileStream extends AbstractOptionHandler implements
         return prevInstance;
     }
 
+    @Override
+    public void fillNextInstance(Instance inst) {
+        Instance pending = this.lastInstanceRead.getData();
+        int numAttributes = pending.numAttributes();
+        inst.setWeight(pending.weight());
+        for (int i = 0; i < numAttributes; i++) {
+            inst.setValue(i, pending.value(i));
+        }
+        if (pending instanceof DenseInstance) {
+            // the pending instance is never handed out, read the next one into it
+            this.hitEndOfFile = !readNextInstanceFromFile(pending);
+        } else {
+            this.hitEndOfFile = !readNextInstanceFromFile();
+        }
+    }
+
     @Override
     public boolean isRestartable() {
         return true;
@@ -171,6 +189,23 @@ public class ArffFileStream extends AbstractOptionHandler implements
         }
     }
 
+    protected boolean readNextInstanceFromFile(Instance reusable) {
+        if (this.instances.readInstanceInto(reusable)) {
+            this.numInstancesRead++;
+            return true;
+        }
+        try {
+            if (this.fileReader != null) {
+                this.fileReader.close();
+                this.fileReader = null;
+            }
+            return false;
+        } catch (IOException ioe) {
+            throw new RuntimeException(
+                    "ArffFileStream failed to read instance from stream.", ioe);
+        }
+    }
+
     @Override
     public void getDescription(StringBuilder sb, int indent) {
         // TODO Auto-generated method stub
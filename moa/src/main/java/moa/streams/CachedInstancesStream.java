@@ -21,6 +21,7 @@ package moa.streams;
 
 import moa.AbstractMOAObject;
 import moa.core.InstanceExample;
+import com.yahoo.labs.samoa.instances.Instance;
 import com.yahoo.labs.samoa.instances.InstancesHeader;
 import com.yahoo.labs.samoa.instances.Instances;
 
@@ -33,7 +34,7 @@ import com.yahoo.labs.samoa.instances.Instances;
  * @version $Revision: 7 $
  */
 public class CachedInstancesStream extends AbstractMOAObject implements
-		MultiTargetInstanceStream {
+		MultiTargetInstanceStream, ReusableInstanceStream {
 
 	private static final long serialVersionUID = 1L;
 
@@ -41,8 +42,24 @@ public class CachedInstancesStream extends AbstractMOAObject implements
 
 	protected int streamPos;
 
+	/** Whether every instance read is a copy of the cached one. */
+	protected boolean copyInstances;
+
 	public CachedInstancesStream(Instances toStream) {
+		this(toStream, false);
+	}
+
+	/**
+	 * Creates a stream of the cached instances.
+	 *
+	 * @param toStream the instances to stream
+	 * @param copyInstances whether to return copies of the cached instances,
+	 * so that learners changing their input (e.g. its weight) do not change
+	 * the cache, which other streams may be reading at the same time
+	 */
+	public CachedInstancesStream(Instances toStream, boolean copyInstances) {
 		this.toStream = toStream;
+		this.copyInstances = copyInstances;
 	}
 
     @Override
@@ -62,7 +79,19 @@ public class CachedInstancesStream extends AbstractMOAObject implements
 
     @Override
 	public InstanceExample nextInstance() {
-		return new InstanceExample(this.toStream.instance(this.streamPos++));
+		Instance cached = this.toStream.instance(this.streamPos++);
+		return new InstanceExample(this.copyInstances ? cached.copy() : cached);
+	}
+
+    @Override
+	public void fillNextInstance(Instance inst) {
+		// copy the values, the cached instances must never be overwritten
+		Instance cached = this.toStream.instance(this.streamPos++);
+		int numAttributes = cached.numAttributes();
+		inst.setWeight(cached.weight());
+		for (int i = 0; i < numAttributes; i++) {
+			inst.setValue(i, cached.value(i));
+		}
 	}
 
     @Override
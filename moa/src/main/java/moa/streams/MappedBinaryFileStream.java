@@ -0,0 +1,328 @@
+/*
+ *    MappedBinaryFileStream.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.github.javacliparser.FileOption;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+import moa.capabilities.CapabilitiesHandler;
+import moa.capabilities.Capability;
+import moa.capabilities.ImmutableCapabilities;
+import moa.core.InstanceExample;
+import moa.core.ObjectRepository;
+import moa.options.AbstractOptionHandler;
+import moa.tasks.TaskMonitor;
+
+/**
+ * Stream reader of binary instance files, as written by
+ * {@link moa.tasks.WriteStreamToBinaryFile}.
+ *
+ * <p>The file starts with a small preamble (magic number, format version,
+ * number of attributes and length of the header) followed by the
+ * Java-serialized {@link InstancesHeader}, padded to a multiple of eight
+ * bytes. The body is a sequence of fixed-width records, each holding the
+ * instance weight followed by the value of every attribute as a big-endian
+ * double. Missing values are stored as NaN, nominal values as their index.</p>
+ *
+ * <p>The body is memory mapped in regions, so no text parsing takes place and
+ * the number of remaining instances is known exactly.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class MappedBinaryFileStream extends AbstractOptionHandler implements
+        ReusableInstanceStream, CapabilitiesHandler {
+
+    @Override
+    public String getPurposeString() {
+        return "A stream read from a memory mapped binary instance file.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    /** Magic number identifying the file format ("MOAB"). */
+    public static final int MAGIC = 0x4D4F4142;
+
+    /** Version of the file format. */
+    public static final int VERSION = 1;
+
+    /** Default file extension. */
+    public static final String FILE_EXTENSION = "moab";
+
+    /** Maximum number of bytes mapped at once (a mapping is limited to 2GB). */
+    protected static final long MAX_REGION_SIZE = 1L << 30;
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'f',
+            "Binary instance file to load.", null, FILE_EXTENSION, false);
+
+    protected InstancesHeader header;
+
+    protected int numAttributes;
+
+    protected long dataOffset;
+
+    protected long numRecords;
+
+    protected long numInstancesRead;
+
+    protected transient FileChannel fileChannel;
+
+    protected transient DoubleBuffer region;
+
+    protected long regionEnd;
+
+    public MappedBinaryFileStream() {
+    }
+
+    public MappedBinaryFileStream(String binaryFileName) {
+        this.binaryFileOption.setValue(binaryFileName);
+        restart();
+    }
+
+    @Override
+    public void prepareForUseImpl(TaskMonitor monitor,
+            ObjectRepository repository) {
+        restart();
+    }
+
+    @Override
+    public InstancesHeader getHeader() {
+        return this.header;
+    }
+
+    @Override
+    public long estimatedRemainingInstances() {
+        return this.numRecords - this.numInstancesRead;
+    }
+
+    @Override
+    public boolean hasMoreInstances() {
+        return this.numInstancesRead < this.numRecords;
+    }
+
+    @Override
+    public InstanceExample nextInstance() {
+        if (this.region == null || this.numInstancesRead >= this.regionEnd) {
+            mapRegion(this.numInstancesRead);
+        }
+        double weight = this.region.get();
+        double[] values = new double[this.numAttributes];
+        this.region.get(values);
+        this.numInstancesRead++;
+        Instance inst = new DenseInstance(weight, values);
+        inst.setDataset(this.header);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public void fillNextInstance(Instance inst) {
+        if (this.region == null || this.numInstancesRead >= this.regionEnd) {
+            mapRegion(this.numInstancesRead);
+        }
+        inst.setWeight(this.region.get());
+        for (int i = 0; i < this.numAttributes; i++) {
+            inst.setValue(i, this.region.get());
+        }
+        this.numInstancesRead++;
+    }
+
+    @Override
+    public boolean isRestartable() {
+        return true;
+    }
+
+    @Override
+    public void restart() {
+        try {
+            close();
+            RandomAccessFile file = new RandomAccessFile(this.binaryFileOption.getFile(), "r");
+            this.fileChannel = file.getChannel();
+            ByteBuffer preamble = ByteBuffer.allocate(16);
+            readFully(preamble, 0);
+            if (preamble.getInt() != MAGIC) {
+                throw new IOException("Not a binary instance file: "
+                        + this.binaryFileOption.getFile());
+            }
+            int version = preamble.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary instance file version: " + version);
+            }
+            this.numAttributes = preamble.getInt();
+            int headerLength = preamble.getInt();
+            ByteBuffer headerBytes = ByteBuffer.allocate(headerLength);
+            readFully(headerBytes, 16);
+            this.header = deserializeHeader(headerBytes.array());
+            this.dataOffset = dataOffset(headerLength);
+            this.numRecords = (this.fileChannel.size() - this.dataOffset)
+                    / recordSize(this.numAttributes);
+            this.numInstancesRead = 0;
+            this.region = null;
+            this.regionEnd = 0;
+        } catch (IOException ioe) {
+            throw new RuntimeException("MappedBinaryFileStream restart failed.", ioe);
+        }
+    }
+
+    /**
+     * Maps the region of the body that starts with the given record.
+     *
+     * @param firstRecord the index of the first record in the region
+     */
+    protected void mapRegion(long firstRecord) {
+        try {
+            if (this.fileChannel == null) {
+                // the stream was copied or deserialized, reopen the file
+                long position = this.numInstancesRead;
+                restart();
+                this.numInstancesRead = position;
+            }
+            long recordSize = recordSize(this.numAttributes);
+            long recordsPerRegion = Math.max(1, MAX_REGION_SIZE / recordSize);
+            long count = Math.min(recordsPerRegion, this.numRecords - firstRecord);
+            this.region = this.fileChannel.map(FileChannel.MapMode.READ_ONLY,
+                    this.dataOffset + firstRecord * recordSize,
+                    count * recordSize).asDoubleBuffer();
+            this.regionEnd = firstRecord + count;
+        } catch (IOException ioe) {
+            throw new RuntimeException(
+                    "MappedBinaryFileStream failed to map instance records.", ioe);
+        }
+    }
+
+    protected void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = this.fileChannel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of binary instance file.");
+            }
+        }
+        buffer.flip();
+    }
+
+    protected void close() throws IOException {
+        this.region = null;
+        if (this.fileChannel != null) {
+            this.fileChannel.close();
+            this.fileChannel = null;
+        }
+    }
+
+    @Override
+    public void getDescription(StringBuilder sb, int indent) {
+        sb.append("MappedBinaryFileStream: ");
+        sb.append(this.binaryFileOption.getFile() == null ? "-"
+                : this.binaryFileOption.getFile().getName());
+        sb.append("\t NumAttributes: ");
+        sb.append(this.numAttributes);
+        sb.append("\t NumInstancesRead: ");
+        sb.append(this.numInstancesRead);
+        sb.append(" of ");
+        sb.append(this.numRecords);
+    }
+
+    @Override
+    public ImmutableCapabilities defineImmutableCapabilities() {
+        return new ImmutableCapabilities(Capability.VIEW_STANDARD);
+    }
+
+    /**
+     * Returns the number of bytes of one record.
+     *
+     * @param numAttributes the number of attributes, including the class
+     * @return the record size
+     */
+    public static long recordSize(int numAttributes) {
+        return 8L * (numAttributes + 1);
+    }
+
+    /**
+     * Returns the offset of the first record, the preamble and header being
+     * padded so that records are aligned on eight bytes.
+     *
+     * @param headerLength the length of the serialized header
+     * @return the offset of the body
+     */
+    public static long dataOffset(int headerLength) {
+        return ((16L + headerLength + 7) / 8) * 8;
+    }
+
+    /**
+     * Writes the preamble and serialized header of a binary instance file.
+     *
+     * @param out the output to write to
+     * @param header the header of the stream
+     * @throws IOException if writing fails
+     */
+    public static void writeHeader(DataOutputStream out, InstancesHeader header)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bytes);
+        oos.writeObject(new InstancesHeader(header));
+        oos.close();
+        byte[] headerBytes = bytes.toByteArray();
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(header.numAttributes());
+        out.writeInt(headerBytes.length);
+        out.write(headerBytes);
+        long padding = dataOffset(headerBytes.length) - 16 - headerBytes.length;
+        for (int i = 0; i < padding; i++) {
+            out.writeByte(0);
+        }
+    }
+
+    /**
+     * Writes one instance as a fixed-width record.
+     *
+     * @param out the output to write to
+     * @param inst the instance to write
+     * @throws IOException if writing fails
+     */
+    public static void writeInstance(DataOutputStream out, Instance inst)
+            throws IOException {
+        out.writeDouble(inst.weight());
+        int numAttributes = inst.numAttributes();
+        for (int i = 0; i < numAttributes; i++) {
+            out.writeDouble(inst.value(i));
+        }
+    }
+
+    protected static InstancesHeader deserializeHeader(byte[] bytes)
+            throws IOException {
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (InstancesHeader) ois.readObject();
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException("Failed to read header of binary instance file.", cnfe);
+        } finally {
+            ois.close();
+        }
+    }
+}
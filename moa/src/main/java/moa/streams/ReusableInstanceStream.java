@@ -0,0 +1,58 @@
+/*
+ *    ReusableInstanceStream.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.streams;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+
+/**
+ * Interface representing an instance stream that can write its next instance
+ * into an instance owned by the caller, instead of allocating a new instance
+ * for every call of <code>nextInstance()</code>.
+ *
+ * <p>The filled instance is overwritten by the next call, so it must only be
+ * passed to consumers that do not keep a reference to it (see
+ * {@link moa.learners.Learner#retainsInstances()}).</p>
+ *
+ * @version $Revision: 7 $
+ */
+public interface ReusableInstanceStream extends InstanceStream {
+
+    /**
+     * Overwrites the weight and attribute values of the given instance with
+     * the next instance of this stream.
+     *
+     * @param inst a dense instance created with {@link #newReusableInstance()}
+     */
+    public void fillNextInstance(Instance inst);
+
+    /**
+     * Creates a dense instance with the header of this stream, to be filled
+     * by {@link #fillNextInstance(Instance)}.
+     *
+     * @return the instance to reuse
+     */
+    default Instance newReusableInstance() {
+        InstancesHeader header = getHeader();
+        Instance inst = new DenseInstance(header.numAttributes());
+        inst.setDataset(header);
+        return inst;
+    }
+}
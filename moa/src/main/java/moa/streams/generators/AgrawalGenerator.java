@@ -39,6 +39,7 @@ import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.InstanceStream;
+import moa.streams.ReusableInstanceStream;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -62,7 +63,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class AgrawalGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        ReusableInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -336,6 +337,15 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        InstancesHeader header = getHeader();
+        Instance inst = new DenseInstance(header.numAttributes());
+        inst.setDataset(header);
+        fillNextInstance(inst);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public void fillNextInstance(Instance inst) {
         double salary = 0, commission = 0, hvalue = 0, loan = 0;
         int age = 0, elevel = 0, car = 0, zipcode = 0, hyears = 0, group = 0;
         boolean desiredClassFound = false;
@@ -381,8 +391,7 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
             loan = perturbValue(loan, 0, 500000);
         }
         // construct instance
-        InstancesHeader header = getHeader();
-        Instance inst = new DenseInstance(header.numAttributes());
+        inst.setWeight(1.0);
         inst.setValue(0, salary);
         inst.setValue(1, commission);
         inst.setValue(2, age);
@@ -392,9 +401,7 @@ public class AgrawalGenerator extends AbstractOptionHandler implements
         inst.setValue(6, hvalue);
         inst.setValue(7, hyears);
         inst.setValue(8, loan);
-        inst.setDataset(header);
         inst.setClassValue(group);
-        return new InstanceExample(inst);
     }
 
     protected double perturbValue(double val, double min, double max) {
@@ -38,6 +38,7 @@ import moa.core.ObjectRepository;
 import moa.options.AbstractOptionHandler;
 import com.github.javacliparser.IntOption;
 import moa.streams.InstanceStream;
+import moa.streams.ReusableInstanceStream;
 import moa.tasks.TaskMonitor;
 
 /**
@@ -47,7 +48,7 @@ import moa.tasks.TaskMonitor;
  * @version $Revision: 7 $
  */
 public class RandomRBFGenerator extends AbstractOptionHandler implements
-        InstanceStream, CapabilitiesHandler {
+        ReusableInstanceStream, CapabilitiesHandler {
 
     @Override
     public String getPurposeString() {
@@ -127,28 +128,33 @@ public class RandomRBFGenerator extends AbstractOptionHandler implements
 
     @Override
     public InstanceExample nextInstance() {
+        Instance inst = new DenseInstance(1.0, new double[this.numAttsOption.getValue() + 1]);
+        inst.setDataset(getHeader());
+        fillNextInstance(inst);
+        return new InstanceExample(inst);
+    }
+
+    @Override
+    public void fillNextInstance(Instance inst) {
         Centroid centroid = this.centroids[MiscUtils.chooseRandomIndexBasedOnWeights(this.centroidWeights,
                 this.instanceRandom)];
         int numAtts = this.numAttsOption.getValue();
-        double[] attVals = new double[numAtts + 1];
         for (int i = 0; i < numAtts; i++) {
-            attVals[i] = (this.instanceRandom.nextDouble() * 2.0) - 1.0;
+            inst.setValue(i, (this.instanceRandom.nextDouble() * 2.0) - 1.0);
         }
         double magnitude = 0.0;
         for (int i = 0; i < numAtts; i++) {
-            magnitude += attVals[i] * attVals[i];
+            magnitude += inst.value(i) * inst.value(i);
         }
         magnitude = Math.sqrt(magnitude);
         double desiredMag = this.instanceRandom.nextGaussian()
                 * centroid.stdDev;
         double scale = desiredMag / magnitude;
         for (int i = 0; i < numAtts; i++) {
-            attVals[i] = centroid.centre[i] + attVals[i] * scale;
+            inst.setValue(i, centroid.centre[i] + inst.value(i) * scale);
         }
-        Instance inst = new DenseInstance(1.0, attVals);
-        inst.setDataset(getHeader());
+        inst.setWeight(1.0);
         inst.setClassValue(centroid.classLabel);
-        return new InstanceExample(inst);
     }
 
     protected void generateHeader() {
@@ -59,7 +59,11 @@ public class EvaluateClustering extends AuxiliarMainTask {
     
     public FlagOption separationOption = new FlagOption("Separation", 'p', "BSS, BSS-GT, BSS-Ratio.");
     
-    public FlagOption silhouetteOption = new FlagOption("Silhouette", 'h', "SilhCoeff.");
+    public FlagOption silhouetteOption = new FlagOption("Silhouette", 'h', "SilhCoeff, SilhCoeffBound.");
+    
+    public IntOption silhouetteSampleSizeOption = new IntOption("silhouetteSampleSize", 'm',
+            "Maximum number of points of each horizon to compute the silhouette coefficient on (0 = all points), its error bound being reported as SilhCoeffBound.",
+            0, 0, Integer.MAX_VALUE);
     
     public FlagOption statisticalOption = new FlagOption("Statistical", 't', "van Dongen, Rand statistic.");
        
@@ -124,7 +128,8 @@ public class EvaluateClustering extends AuxiliarMainTask {
                 (AbstractClusterer) getPreparedClassOption(this.learnerOption),
                 measureCollection,
                 (int) this.instanceLimitOption.getValue(),
-                (String) dumpFileOption.getValue());
+                (String) dumpFileOption.getValue(),
+                this.silhouetteSampleSizeOption.getValue());
 
         LearningCurve learningCurve = new LearningCurve("EvaluateClustering does not support custom output file (> [filename]).\n" +
         												"Check out the dump file to see the results (if you haven't specified, dumpClustering.csv by default).");
@@ -27,6 +27,7 @@ import moa.core.Example;
 import moa.core.InstanceExample;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
@@ -223,7 +224,7 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 			////Result output
 			if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0) {
 				
-				double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+				double RAMHoursIncrement = SizeOf.measuredSizeOf(learner) / (1024.0 * 1024.0 * 1024.0); //GBs
                 RAMHoursIncrement *= (TimingUtils.nanoTimeToSeconds(sampleTrainTime + sampleTestTime) / 3600.0); //Hours
                 RAMHours += RAMHoursIncrement;
 				
@@ -276,7 +277,7 @@ public class EvaluateInterleavedChunks extends ClassificationMainTask {
 								: (double) instancesProcessed
 										/ (double) (instancesProcessed + estimatedRemainingInstances));
 				if (monitor.resultPreviewRequested()) {
-					monitor.setLatestResultPreview(learningCurve.copy());
+					monitor.setLatestResultPreview(learningCurve.snapshot());
 				}
 				secondsElapsed = (int) TimingUtils
 						.nanoTimeToSeconds(TimingUtils
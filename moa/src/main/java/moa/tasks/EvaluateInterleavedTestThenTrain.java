@@ -28,8 +28,10 @@ import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
+import moa.core.InstanceExample;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.core.TimingUtils;
 import moa.evaluation.LearningEvaluation;
 import moa.evaluation.LearningPerformanceEvaluator;
@@ -37,8 +39,10 @@ import moa.evaluation.preview.LearningCurve;
 import moa.learners.Learner;
 import moa.options.ClassOption;
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
+import moa.streams.ReusableInstanceStream;
 import moa.streams.InstanceStream;
 import com.yahoo.labs.samoa.instances.Instance;
 
@@ -94,6 +98,9 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
     public FileOption dumpFileOption = new FileOption("dumpFile", 'd',
             "File to append intermediate csv reslts to.", null, "csv", true);
 
+    public FlagOption reuseInstancesOption = new FlagOption("reuseInstances", 'u',
+            "Fill the same instance for the whole stream instead of allocating one per example, if the stream supports it and the learner does not keep instances.");
+
     @Override
     public Class<?> getTaskResultType() {
         return LearningCurve.class;
@@ -144,10 +151,23 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
+        ReusableInstanceStream reusableStream = null;
+        Example reusableInst = null;
+        if (this.reuseInstancesOption.isSet() && (stream instanceof ReusableInstanceStream)
+                && !learner.retainsInstances()) {
+            reusableStream = (ReusableInstanceStream) stream;
+            reusableInst = new InstanceExample(reusableStream.newReusableInstance());
+        }
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = stream.nextInstance();
+            Example trainInst;
+            if (reusableStream != null) {
+                reusableStream.fillNextInstance((Instance) reusableInst.getData());
+                trainInst = reusableInst;
+            } else {
+                trainInst = stream.nextInstance();
+            }
             Example testInst = trainInst; //.copy();
             //int trueClass = (int) trainInst.classValue();
             //testInst.setClassMissing();
@@ -157,12 +177,23 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
             evaluator.addResult(testInst, prediction);
             learner.trainOnInstance(trainInst);
             instancesProcessed++;
+            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                        - evaluateStartTime);
+            }
+            boolean lastInstance = stream.hasMoreInstances() == false
+                    || instancesProcessed == maxInstances
+                    || ((maxSeconds >= 0) && (secondsElapsed >= maxSeconds));
+            if (lastInstance) {
+                // the final measurement includes the instances the learner buffered
+                learner.trainOnPendingInstances();
+            }
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                  ||  stream.hasMoreInstances() == false) {
+                    || lastInstance) {
                 long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-                double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                double RAMHoursIncrement = SizeOf.measuredSizeOf(learner) / (1024.0 * 1024.0 * 1024.0); //GBs
                 RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                 RAMHours += RAMHoursIncrement;
                 lastEvaluateStartTime = evaluateTime;
@@ -208,10 +239,8 @@ public class EvaluateInterleavedTestThenTrain extends ClassificationMainTask {
                         : (double) instancesProcessed
                         / (double) (instancesProcessed + estimatedRemainingInstances));
                 if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                    monitor.setLatestResultPreview(learningCurve.snapshot());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
             }
         }
         if (immediateResultStream != null) {
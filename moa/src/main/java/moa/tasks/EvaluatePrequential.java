@@ -29,8 +29,10 @@ import moa.capabilities.Capability;
 import moa.capabilities.ImmutableCapabilities;
 import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
+import moa.core.InstanceExample;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.core.TimingUtils;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.preview.LearningCurve;
@@ -42,9 +44,11 @@ import moa.learners.Learner;
 import moa.options.ClassOption;
 
 import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FlagOption;
 import com.github.javacliparser.FloatOption;
 import com.github.javacliparser.IntOption;
 import moa.streams.ExampleStream;
+import moa.streams.ReusableInstanceStream;
 import com.yahoo.labs.samoa.instances.Instance;
 import moa.core.Utils;
 
@@ -100,6 +104,9 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
     public FileOption outputPredictionFileOption = new FileOption("outputPredictionFile", 'o',
             "File to append output predictions to.", null, "pred", true);
 
+    public FlagOption reuseInstancesOption = new FlagOption("reuseInstances", 'u',
+            "Fill the same instance for the whole stream instead of allocating one per example, if the stream supports it and the learner does not keep instances.");
+
     //New for prequential method DEPRECATED
     public IntOption widthOption = new IntOption("width",
             'w', "Size of Window", 1000);
@@ -190,10 +197,23 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
         long lastEvaluateStartTime = evaluateStartTime;
         double RAMHours = 0.0;
+        ReusableInstanceStream reusableStream = null;
+        Example reusableInst = null;
+        if (this.reuseInstancesOption.isSet() && (stream instanceof ReusableInstanceStream)
+                && !learner.retainsInstances()) {
+            reusableStream = (ReusableInstanceStream) stream;
+            reusableInst = new InstanceExample(reusableStream.newReusableInstance());
+        }
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = stream.nextInstance();
+            Example trainInst;
+            if (reusableStream != null) {
+                reusableStream.fillNextInstance((Instance) reusableInst.getData());
+                trainInst = reusableInst;
+            } else {
+                trainInst = stream.nextInstance();
+            }
             Example testInst = (Example) trainInst; //.copy();
             //testInst.setClassMissing();
             double[] prediction = learner.getVotesForInstance(testInst);
@@ -208,12 +228,23 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
             evaluator.addResult(testInst, prediction);
             learner.trainOnInstance(trainInst);
             instancesProcessed++;
+            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                        - evaluateStartTime);
+            }
+            boolean lastInstance = stream.hasMoreInstances() == false
+                    || instancesProcessed == maxInstances
+                    || ((maxSeconds >= 0) && (secondsElapsed >= maxSeconds));
+            if (lastInstance) {
+                // the final measurement includes the instances the learner buffered
+                learner.trainOnPendingInstances();
+            }
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
+                    || lastInstance) {
                 long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-                double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                double RAMHoursIncrement = SizeOf.measuredSizeOf(learner) / (1024.0 * 1024.0 * 1024.0); //GBs
                 RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                 RAMHours += RAMHoursIncrement;
                 lastEvaluateStartTime = evaluateTime;
@@ -258,10 +289,8 @@ public class EvaluatePrequential extends ClassificationMainTask implements Capab
                         : (double) instancesProcessed
                         / (double) (instancesProcessed + estimatedRemainingInstances));
                 if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                    monitor.setLatestResultPreview(learningCurve.snapshot());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
             }
         }
         if (immediateResultStream != null) {
@@ -25,7 +25,9 @@ import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.classifiers.meta.EnsembleExecutor;
 import moa.core.*;
+import moa.core.SizeOf;
 import moa.evaluation.*;
 import moa.evaluation.preview.LearningCurve;
 import moa.learners.Learner;
@@ -47,6 +49,11 @@ import java.util.Random;
  * <p>Albert Bifet, Gianmarco De Francisci Morales, Jesse Read, Geoff Holmes, Bernhard Pfahringer: Efficient Online
  * Evaluation of Big Data Stream Classifiers. KDD 2015: 59-68</p>
  *
+ * <p>With more than one job, the instances are read ahead in batches and every fold tests and trains its learner on
+ * the batch concurrently with the other folds. The batches end at every sample of the learning curve, and the
+ * weights of the bootstrap are drawn in the same order as in a single thread, so the results do not depend on the
+ * number of jobs. The evaluation time is then the CPU time of all the threads.</p>
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @version $Revision: 7 $
@@ -108,6 +115,11 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
     public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
             "Seed for random behaviour of the task.", 1);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
+    /** Maximum number of instances read ahead for the folds running concurrently. */
+    protected static final int INSTANCES_PER_BATCH = 1000;
 
     @Override
     public Class<?> getTaskResultType() {
@@ -120,11 +132,11 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
         Random random = new Random(this.randomSeedOption.getValue());
         ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
 
-        Learner[] learners = new Learner[this.numFoldsOption.getValue()];
+        final Learner[] learners = new Learner[this.numFoldsOption.getValue()];
         Learner baseLearner = (Learner) getPreparedClassOption(this.learnerOption);
         baseLearner.resetLearning();
 
-        LearningPerformanceEvaluator[] evaluators = new LearningPerformanceEvaluator[this.numFoldsOption.getValue()];
+        final LearningPerformanceEvaluator[] evaluators = new LearningPerformanceEvaluator[this.numFoldsOption.getValue()];
         LearningPerformanceEvaluator baseEvaluator = (LearningPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
         for (int i = 0; i < learners.length; i++) {
             learners[i] = (Learner) baseLearner.copy();
@@ -157,6 +169,12 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
             }
         }
 
+        EnsembleExecutor executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        final Example[] batch = new Example[executor.getNumberOfThreads() == 1 ? 1 : INSTANCES_PER_BATCH];
+        final int[][] batchWeights = new int[batch.length][learners.length];
+        final long[] foldCPUTimes = new long[learners.length];
+        final Thread taskThread = Thread.currentThread();
+
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
@@ -165,43 +183,75 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
         while (stream.hasMoreInstances()
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
-            Example trainInst = stream.nextInstance();
-            Example testInst = (Example) trainInst; //.copy();
-            //testInst.setClassMissing();
+            int batchCount = 0;
+            do {
+                long instanceIndex = instancesProcessed + batchCount;
+                for (int i = 0; i < learners.length; i++) {
+                    int k = 1;
+                    switch (this.validationMethodologyOption.getChosenIndex()) {
+                        case 0: //Cross-Validation;
+                            k = instanceIndex % learners.length == i ? 0: 1; //Test all except one
+                            break;
+                        case 1: //Bootstrap;
+                            k = MiscUtils.poisson(1, random);
+                            break;
+                        case 2: //Split-Validation;
+                            k = instanceIndex % learners.length == i ? 1: 0; //Test only one
+                            break;
+                    }
+                    batchWeights[batchCount][i] = k;
+                }
+                batch[batchCount++] = stream.nextInstance();
+            } while (batchCount < batch.length && stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed + batchCount < maxInstances))
+                    && (instancesProcessed + batchCount) % this.sampleFrequencyOption.getValue() != 0);
+
+            final int numInstances = batchCount;
+            executor.forEachMember(learners.length, new EnsembleExecutor.MemberTask() {
+                @Override
+                public void run(int i) {
+                    long startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    for (int j = 0; j < numInstances; j++) {
+                        Example trainInst = batch[j];
+                        Example testInst = (Example) trainInst; //.copy();
+                        //testInst.setClassMissing();
+                        evaluators[i].addResult(testInst, learners[i].getVotesForInstance(testInst));
+                        int k = batchWeights[j][i];
+                        if (k > 0) {
+                            Example weightedInst = (Example) trainInst.copy();
+                            weightedInst.setWeight(trainInst.weight() * k);
+                            learners[i].trainOnInstance(weightedInst);
+                        }
+                    }
+                    if (Thread.currentThread() != taskThread) {
+                        foldCPUTimes[i] += TimingUtils.getNanoCPUTimeOfCurrentThread() - startTime;
+                    }
+                }
+            });
 
-            for (int i = 0; i < learners.length; i++) {
-                evaluators[i].addResult(testInst, learners[i].getVotesForInstance(testInst));
+            instancesProcessed += batchCount;
+            if ((instancesProcessed - batchCount) / INSTANCES_BETWEEN_MONITOR_UPDATES
+                    != instancesProcessed / INSTANCES_BETWEEN_MONITOR_UPDATES) {
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(getNanoCPUTime(preciseCPUTiming, foldCPUTimes)
+                        - evaluateStartTime);
             }
-
-            for (int i = 0; i < learners.length; i++) {
-                int k = 1;
-                switch (this.validationMethodologyOption.getChosenIndex()) {
-                    case 0: //Cross-Validation;
-                        k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
-                        break;
-                    case 1: //Bootstrap;
-                        k = MiscUtils.poisson(1, random);
-                        break;
-                    case 2: //Split-Validation;
-                        k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
-                        break;
-                }
-                if (k > 0) {
-                    Example weightedInst = (Example) trainInst.copy();
-                    weightedInst.setWeight(trainInst.weight() * k);
-                    learners[i].trainOnInstance(weightedInst);
+            boolean lastInstance = stream.hasMoreInstances() == false
+                    || instancesProcessed == maxInstances
+                    || ((maxSeconds >= 0) && (secondsElapsed >= maxSeconds));
+            if (lastInstance) {
+                // the final measurement includes the instances the learners buffered
+                for (int i = 0; i < learners.length; i++) {
+                    learners[i].trainOnPendingInstances();
                 }
             }
-
-            instancesProcessed++;
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    || lastInstance) {
+                long evaluateTime = getNanoCPUTime(preciseCPUTiming, foldCPUTimes);
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
 
                 for (int i = 0; i < learners.length; i++) {
-                    double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                    double RAMHoursIncrement = SizeOf.measuredSizeOf(learners[i]) / (1024.0 * 1024.0 * 1024.0); //GBs
                     RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                     RAMHours += RAMHoursIncrement;
                 }
@@ -232,7 +282,8 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
                     immediateResultStream.flush();
                 }
             }
-            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+            if ((instancesProcessed - batchCount) / INSTANCES_BETWEEN_MONITOR_UPDATES
+                    != instancesProcessed / INSTANCES_BETWEEN_MONITOR_UPDATES) {
                 if (monitor.taskShouldAbort()) {
                     return null;
                 }
@@ -248,10 +299,8 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
                         : (double) instancesProcessed
                         / (double) (instancesProcessed + estimatedRemainingInstances));
                 if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                    monitor.setLatestResultPreview(learningCurve.snapshot());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
             }
         }
         if (immediateResultStream != null) {
@@ -260,6 +309,19 @@ public class EvaluatePrequentialCV extends ClassificationMainTask {
         return learningCurve;
     }
 
+    /**
+     * Gets the CPU time of this thread, and with precise timing of the folds run by other threads.
+     */
+    protected static long getNanoCPUTime(boolean preciseCPUTiming, long[] foldCPUTimes) {
+        long time = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        if (preciseCPUTiming) {
+            for (long foldCPUTime : foldCPUTimes) {
+                time += foldCPUTime;
+            }
+        }
+        return time;
+    }
+
 
     public Measurement[] getEvaluationMeasurements(Measurement[] modelMeasurements, LearningPerformanceEvaluator[] subEvaluators) {
         List<Measurement> measurementList = new LinkedList<Measurement>();
@@ -30,6 +30,7 @@ import moa.classifiers.MultiClassClassifier;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.core.TimingUtils;
 import moa.evaluation.WindowClassificationPerformanceEvaluator;
 import moa.evaluation.preview.LearningCurve;
@@ -274,7 +275,7 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                     long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
                     double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                     double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
-                    double RAMHoursIncrement = learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                    double RAMHoursIncrement = SizeOf.measuredSizeOf(learner) / (1024.0 * 1024.0 * 1024.0); //GBs
                     RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                     RAMHours += RAMHoursIncrement;
                     lastEvaluateStartTime = evaluateTime;
@@ -318,7 +319,7 @@ public class EvaluatePrequentialDelayed extends ClassificationMainTask {
                             : (double) instancesProcessed
                             / (double) (instancesProcessed + estimatedRemainingInstances));
                     if (monitor.resultPreviewRequested()) {
-                        monitor.setLatestResultPreview(learningCurve.copy());
+                        monitor.setLatestResultPreview(learningCurve.snapshot());
                     }
                     secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
                             - evaluateStartTime);
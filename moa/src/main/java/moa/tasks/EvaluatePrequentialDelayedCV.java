@@ -26,7 +26,9 @@ import com.github.javacliparser.IntOption;
 import com.github.javacliparser.MultiChoiceOption;
 import moa.classifiers.Classifier;
 import moa.classifiers.MultiClassClassifier;
+import moa.classifiers.meta.EnsembleExecutor;
 import moa.core.*;
+import moa.core.SizeOf;
 import moa.evaluation.*;
 import moa.evaluation.preview.LearningCurve;
 import moa.learners.Learner;
@@ -54,6 +56,9 @@ import java.util.Random;
  * Albert Bifet, Gianmarco De Francisci Morales, Jesse Read, Geoff Holmes, Bernhard Pfahringer: Efficient Online
  * Evaluation of Big Data Stream Classifiers. KDD 2015: 59-68</p>
  *
+ * <p>With more than one job, the folds process batches of instances concurrently, as in
+ * {@link EvaluatePrequentialCV}, each fold delaying the training on its own instances.</p>
+ *
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @author Albert Bifet (abifet at cs dot waikato dot ac dot nz)
  * @author Heitor Murilo Gomes (heitor dot gomes at telecom-paristech dot fr)
@@ -120,6 +125,9 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
     public IntOption randomSeedOption = new IntOption("randomSeed", 'r',
             "Seed for random behaviour of the task.", 1);
 
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", 1, -1, Integer.MAX_VALUE);
+
     // Buffer of instances to use for training. 
     // Note: It is a list of lists because it stores instances per learner, e.g.
     // CV of 10, would be 10 lists of buffered instances for delayed training. 
@@ -136,11 +144,11 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
         Random random = new Random(this.randomSeedOption.getValue());
         ExampleStream stream = (ExampleStream) getPreparedClassOption(this.streamOption);
 
-        Learner[] learners = new Learner[this.numFoldsOption.getValue()];
+        final Learner[] learners = new Learner[this.numFoldsOption.getValue()];
         Learner baseLearner = (Learner) getPreparedClassOption(this.learnerOption);
         baseLearner.resetLearning();
 
-        LearningPerformanceEvaluator[] evaluators = new LearningPerformanceEvaluator[this.numFoldsOption.getValue()];
+        final LearningPerformanceEvaluator[] evaluators = new LearningPerformanceEvaluator[this.numFoldsOption.getValue()];
         LearningPerformanceEvaluator baseEvaluator = (LearningPerformanceEvaluator) getPreparedClassOption(this.evaluatorOption);
         for (int i = 0; i < learners.length; i++) {
             learners[i] = (Learner) baseLearner.copy();
@@ -178,6 +186,16 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
             }
         }
 
+        EnsembleExecutor executor = new EnsembleExecutor(this.numberOfJobsOption.getValue());
+        // learners may change the examples they train on, e.g. their weights,
+        // so concurrent folds each train on their own copies
+        final boolean copyTrainInstances = executor.getNumberOfThreads() > 1;
+        final Example[] batch = new Example[executor.getNumberOfThreads() == 1
+                ? 1 : EvaluatePrequentialCV.INSTANCES_PER_BATCH];
+        final int[][] batchWeights = new int[batch.length][learners.length];
+        final long[] foldCPUTimes = new long[learners.length];
+        final Thread taskThread = Thread.currentThread();
+
         boolean firstDump = true;
         boolean preciseCPUTiming = TimingUtils.enablePreciseTiming();
         long evaluateStartTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
@@ -188,45 +206,79 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
                 && ((maxInstances < 0) || (instancesProcessed < maxInstances))
                 && ((maxSeconds < 0) || (secondsElapsed < maxSeconds))) {
             
-            
-            Example trainInst = stream.nextInstance();
-            Example testInst = (Example) trainInst;
-            
-            instancesProcessed++;
-            for (int i = 0; i < learners.length; i++) {
-                
-                double[] prediction = learners[i].getVotesForInstance(testInst);
-                evaluators[i].addResult(testInst, prediction);
-                
-                int k = 1;
-                switch (this.validationMethodologyOption.getChosenIndex()) {
-                    case 0: //Cross-Validation;
-                        k = instancesProcessed % learners.length == i ? 0: 1; //Test all except one
-                        break;
-                    case 1: //Bootstrap;
-                        k = MiscUtils.poisson(1, random);
-                        break;
-                    case 2: //Split-Validation;
-                        k = instancesProcessed % learners.length == i ? 1: 0; //Test only one
-                        break;
+            int batchCount = 0;
+            do {
+                long instanceIndex = instancesProcessed + batchCount + 1;
+                for (int i = 0; i < learners.length; i++) {
+                    int k = 1;
+                    switch (this.validationMethodologyOption.getChosenIndex()) {
+                        case 0: //Cross-Validation;
+                            k = instanceIndex % learners.length == i ? 0: 1; //Test all except one
+                            break;
+                        case 1: //Bootstrap;
+                            k = MiscUtils.poisson(1, random);
+                            break;
+                        case 2: //Split-Validation;
+                            k = instanceIndex % learners.length == i ? 1: 0; //Test only one
+                            break;
+                    }
+                    batchWeights[batchCount][i] = k;
                 }
-                if (k > 0) {
-                    this.trainInstances.get(i).addLast(trainInst);
+                batch[batchCount++] = stream.nextInstance();
+            } while (batchCount < batch.length && stream.hasMoreInstances()
+                    && ((maxInstances < 0) || (instancesProcessed + batchCount < maxInstances))
+                    && (instancesProcessed + batchCount) % this.sampleFrequencyOption.getValue() != 0);
+
+            final int numInstances = batchCount;
+            executor.forEachMember(learners.length, new EnsembleExecutor.MemberTask() {
+                @Override
+                public void run(int i) {
+                    long startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    LinkedList<Example> trainInstancesI = trainInstances.get(i);
+                    for (int j = 0; j < numInstances; j++) {
+                        Example trainInst = batch[j];
+                        Example testInst = (Example) trainInst;
+
+                        double[] prediction = learners[i].getVotesForInstance(testInst);
+                        evaluators[i].addResult(testInst, prediction);
+
+                        if (batchWeights[j][i] > 0) {
+                            trainInstancesI.addLast(copyTrainInstances ? (Example) trainInst.copy() : trainInst);
+                        }
+                        if (delayLengthOption.getValue() < trainInstancesI.size()) {
+                            Example trainInstI = trainInstancesI.removeFirst();
+                            learners[i].trainOnInstance(trainInstI);
+                        }
+                    }
+                    if (Thread.currentThread() != taskThread) {
+                        foldCPUTimes[i] += TimingUtils.getNanoCPUTimeOfCurrentThread() - startTime;
+                    }
                 }
-                if(this.delayLengthOption.getValue() < this.trainInstances.get(i).size()) {
-                    Example trainInstI = this.trainInstances.get(i).removeFirst();
-                    learners[i].trainOnInstance(trainInstI);
+            });
+
+            instancesProcessed += batchCount;
+            if ((instancesProcessed - batchCount) / INSTANCES_BETWEEN_MONITOR_UPDATES
+                    != instancesProcessed / INSTANCES_BETWEEN_MONITOR_UPDATES) {
+                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(
+                        EvaluatePrequentialCV.getNanoCPUTime(preciseCPUTiming, foldCPUTimes) - evaluateStartTime);
+            }
+            boolean lastInstance = stream.hasMoreInstances() == false
+                    || instancesProcessed == maxInstances
+                    || ((maxSeconds >= 0) && (secondsElapsed >= maxSeconds));
+            if (lastInstance) {
+                // the final measurement includes the instances the learners buffered
+                for (int i = 0; i < learners.length; i++) {
+                    learners[i].trainOnPendingInstances();
                 }
             }
-            
             if (instancesProcessed % this.sampleFrequencyOption.getValue() == 0
-                    || stream.hasMoreInstances() == false) {
-                long evaluateTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+                    || lastInstance) {
+                long evaluateTime = EvaluatePrequentialCV.getNanoCPUTime(preciseCPUTiming, foldCPUTimes);
                 double time = TimingUtils.nanoTimeToSeconds(evaluateTime - evaluateStartTime);
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(evaluateTime - lastEvaluateStartTime);
 
                 for (int i = 0; i < learners.length; i++) {
-                    double RAMHoursIncrement = learners[i].measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                    double RAMHoursIncrement = SizeOf.measuredSizeOf(learners[i]) / (1024.0 * 1024.0 * 1024.0); //GBs
                     RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                     RAMHours += RAMHoursIncrement;
                 }
@@ -257,7 +309,8 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
                     immediateResultStream.flush();
                 }
             }
-            if (instancesProcessed % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+            if ((instancesProcessed - batchCount) / INSTANCES_BETWEEN_MONITOR_UPDATES
+                    != instancesProcessed / INSTANCES_BETWEEN_MONITOR_UPDATES) {
                 if (monitor.taskShouldAbort()) {
                     return null;
                 }
@@ -273,10 +326,8 @@ public class EvaluatePrequentialDelayedCV extends ClassificationMainTask {
                         : (double) instancesProcessed
                         / (double) (instancesProcessed + estimatedRemainingInstances));
                 if (monitor.resultPreviewRequested()) {
-                    monitor.setLatestResultPreview(learningCurve.copy());
+                    monitor.setLatestResultPreview(learningCurve.snapshot());
                 }
-                secondsElapsed = (int) TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
-                        - evaluateStartTime);
             }
         }
         if (immediateResultStream != null) {
@@ -122,6 +122,7 @@ public class LearnModel extends ClassificationMainTask implements CapabilitiesHa
                 }
             }
         }
+        learner.trainOnPendingInstances();
         learner.setModelContext(stream.getHeader());
         return learner;
     }
@@ -0,0 +1,127 @@
+/*
+ *    MeasureBinaryFileStreamSpeed.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.File;
+
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.core.TimingUtils;
+import moa.evaluation.LearningEvaluation;
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.IntOption;
+import moa.streams.ArffFileStream;
+import moa.streams.InstanceStream;
+import moa.streams.MappedBinaryFileStream;
+
+/**
+ * Task for comparing the speed of reading the same data from an ARFF file
+ * with {@link ArffFileStream} and from its binary conversion with
+ * {@link MappedBinaryFileStream}. The binary file is created with
+ * {@link WriteStreamToBinaryFile} if it does not exist yet.
+ *
+ * @version $Revision: 7 $
+ */
+public class MeasureBinaryFileStreamSpeed extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Compares the speed of ARFF and binary file streams on the same data.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public FileOption arffFileOption = new FileOption("arffFile", 'f',
+            "ARFF file to load.", null, "arff", false);
+
+    public IntOption classIndexOption = new IntOption(
+            "classIndex",
+            'c',
+            "Class index of data. 0 for none or -1 for last attribute in file.",
+            -1, -1, Integer.MAX_VALUE);
+
+    public FileOption binaryFileOption = new FileOption("binaryFile", 'b',
+            "Binary instance file to compare with, created from the ARFF file if missing.",
+            null, MappedBinaryFileStream.FILE_EXTENSION, true);
+
+    public IntOption maxInstancesOption = new IntOption("maxInstances", 'm',
+            "Maximum number of instances to read.", 10000000, 0,
+            Integer.MAX_VALUE);
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        TimingUtils.enablePreciseTiming();
+        File binaryFile = this.binaryFileOption.getFile();
+        if (binaryFile == null) {
+            throw new IllegalArgumentException("No binary file to compare with.");
+        }
+        if (!binaryFile.exists()) {
+            monitor.setCurrentActivityDescription("Converting ARFF file");
+            WriteStreamToBinaryFile convert = new WriteStreamToBinaryFile();
+            ArffFileStream source = new ArffFileStream();
+            source.arffFileOption.setValue(this.arffFileOption.getValue());
+            source.classIndexOption.setValue(this.classIndexOption.getValue());
+            convert.streamOption.setCurrentObject(source);
+            convert.binaryFileOption.setValue(binaryFile.getPath());
+            convert.maxInstancesOption.setValue(this.maxInstancesOption.getValue());
+            convert.prepareForUse();
+            convert.doTask(monitor, repository);
+        }
+        monitor.setCurrentActivityDescription("Reading ARFF file");
+        InstanceStream arffStream = new ArffFileStream(
+                this.arffFileOption.getFile().getPath(),
+                this.classIndexOption.getValue());
+        double[] arff = measure(arffStream);
+        monitor.setCurrentActivityDescription("Reading binary file");
+        InstanceStream binaryStream = new MappedBinaryFileStream(binaryFile.getPath());
+        double[] binary = measure(binaryStream);
+        return new LearningEvaluation(
+                new Measurement[]{
+                    new Measurement("Number of instances read", arff[0]),
+                    new Measurement("ARFF time elapsed", arff[1]),
+                    new Measurement("ARFF instances per second", arff[0] / arff[1]),
+                    new Measurement("Binary time elapsed", binary[1]),
+                    new Measurement("Binary instances per second", binary[0] / binary[1]),
+                    new Measurement("Speedup", arff[1] / binary[1])});
+    }
+
+    /**
+     * Reads the stream up to the maximum number of instances.
+     *
+     * @param stream the stream to read
+     * @return the number of instances read and the CPU time in seconds
+     */
+    protected double[] measure(InstanceStream stream) {
+        int numInstances = 0;
+        long startTime = TimingUtils.getNanoCPUTimeOfCurrentThread();
+        while ((numInstances < this.maxInstancesOption.getValue())
+                && stream.hasMoreInstances()) {
+            stream.nextInstance();
+            numInstances++;
+        }
+        double time = TimingUtils.nanoTimeToSeconds(TimingUtils.getNanoCPUTimeOfCurrentThread()
+                - startTime);
+        return new double[]{numInstances, time};
+    }
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningEvaluation.class;
+    }
+}
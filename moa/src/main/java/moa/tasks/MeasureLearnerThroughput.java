@@ -0,0 +1,153 @@
+/*
+ *    MeasureLearnerThroughput.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import moa.classifiers.Classifier;
+import moa.core.Example;
+import moa.core.Measurement;
+import moa.core.ObjectRepository;
+import moa.evaluation.LearningEvaluation;
+import moa.evaluation.preview.LearningCurve;
+import moa.options.ClassOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.streams.InstanceStream;
+
+/**
+ * Task for measuring the throughput of a classifier for several values of
+ * one of its parameters, e.g. the number of threads or the batch size of an
+ * ensemble. The instances are read from the stream once, before measuring,
+ * and every run tests then trains a fresh copy of the classifier on them.
+ * Wall-clock time is used so that work done by other threads is accounted.
+ * Values that are not numbers, e.g. class names, are reported by their index
+ * in the list, and the size of every trained model is reported as well.
+ *
+ * @version $Revision: 7 $
+ */
+public class MeasureLearnerThroughput extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Measures the throughput of a classifier for several values of a parameter.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption learnerOption = new ClassOption("learner", 'l',
+            "Learner to measure.", Classifier.class,
+            "meta.AdaptiveRandomForest -s 100");
+
+    public ClassOption streamOption = new ClassOption("stream", 's',
+            "Stream to learn from.", InstanceStream.class,
+            "generators.RandomTreeGenerator");
+
+    public IntOption instanceLimitOption = new IntOption("instanceLimit", 'i',
+            "Number of instances to test then train on.", 10000, 1,
+            Integer.MAX_VALUE);
+
+    public IntOption warmupInstancesOption = new IntOption("warmupInstances", 'w',
+            "Number of instances processed before measuring.", 1000, 0,
+            Integer.MAX_VALUE);
+
+    public StringOption classifierParameterOption = new StringOption("classifierParameter", 'p',
+            "Classifier parameter to vary.", "j");
+
+    public StringOption valuesOption = new StringOption("values", 'v',
+            "Comma-separated values of the parameter.", "1,2,4,8");
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return LearningCurve.class;
+    }
+
+    @Override
+    protected Object doMainTask(TaskMonitor monitor, ObjectRepository repository) {
+        InstanceStream stream = (InstanceStream) getPreparedClassOption(this.streamOption);
+        int warmup = this.warmupInstancesOption.getValue();
+        int numInstances = this.instanceLimitOption.getValue();
+        monitor.setCurrentActivityDescription("Reading instances");
+        List<Example<Instance>> instances = new ArrayList<Example<Instance>>();
+        while ((instances.size() < warmup + numInstances) && stream.hasMoreInstances()) {
+            instances.add(stream.nextInstance());
+        }
+
+        String learnerString = this.learnerOption.getValueAsCLIString();
+        String[] values = this.valuesOption.getValue().split(",");
+        LearningCurve learningCurve = new LearningCurve("parameter value");
+        for (int v = 0; v < values.length; v++) {
+            if (monitor.taskShouldAbort()) {
+                return null;
+            }
+            String value = values[v].trim();
+            monitor.setCurrentActivity("Measuring -" + this.classifierParameterOption.getValue()
+                    + " " + value, (double) v / values.length);
+            ClassOption option = (ClassOption) this.learnerOption.copy();
+            option.setValueViaCLIString(learnerString + " -"
+                    + this.classifierParameterOption.getValue() + " " + value);
+            Classifier learner = (Classifier) option.materializeObject(monitor, repository);
+            learner.prepareForUse();
+            learner.setModelContext(stream.getHeader());
+
+            long testTime = 0;
+            long trainTime = 0;
+            int measured = 0;
+            for (int i = 0; i < instances.size(); i++) {
+                Example<Instance> example = instances.get(i);
+                long start = System.nanoTime();
+                learner.getVotesForInstance(example);
+                long tested = System.nanoTime();
+                learner.trainOnInstance(example);
+                long trained = System.nanoTime();
+                if (i >= warmup) {
+                    testTime += tested - start;
+                    trainTime += trained - tested;
+                    measured++;
+                }
+            }
+            learningCurve.insertEntry(new LearningEvaluation(
+                    new Measurement[]{
+                        new Measurement("parameter value", parameterValue(value, v)),
+                        new Measurement("instances", measured),
+                        new Measurement("test instances per second",
+                        measured / (testTime / 1.0e9)),
+                        new Measurement("train instances per second",
+                        measured / (trainTime / 1.0e9)),
+                        new Measurement("instances per second",
+                        measured / ((testTime + trainTime) / 1.0e9)),
+                        new Measurement("model serialized size (bytes)",
+                        learner.measureByteSize())}));
+            if (monitor.resultPreviewRequested()) {
+                monitor.setLatestResultPreview(learningCurve.snapshot());
+            }
+        }
+        return learningCurve;
+    }
+
+    protected static double parameterValue(String value, int index) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return index;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ *    RunConcurrentTasks.java
+ *    Copyright (C) 2019 University of Waikato, Hamilton, New Zealand
+ *
+ *    This program is free software; you can redistribute it and/or modify
+ *    it under the terms of the GNU General Public License as published by
+ *    the Free Software Foundation; either version 3 of the License, or
+ *    (at your option) any later version.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU General Public License for more details.
+ *
+ *    You should have received a copy of the GNU General Public License
+ *    along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package moa.tasks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.github.javacliparser.FileOption;
+import com.github.javacliparser.FloatOption;
+import com.github.javacliparser.IntOption;
+import com.github.javacliparser.StringOption;
+import com.yahoo.labs.samoa.instances.Instances;
+import moa.MOAObject;
+import moa.core.ObjectRepository;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.CachedInstancesStream;
+import moa.streams.InstanceStream;
+
+/**
+ * Task for running several experiments modifying values of parameters,
+ * concurrently and on the same stream.
+ *
+ * <p>The stream of the task is read once and cached in memory, up to the
+ * instance limit of the task, which therefore has to fit in the cache unless
+ * the stream is shorter. Every run reads its own copies of the cached
+ * instances, so learners changing their input, e.g. its weight, do not
+ * affect each other. Each run writes its
+ * learning curve to its own dump file, named after the dump file of the task
+ * and the value of the parameter. Supports EvaluatePrequential and
+ * EvaluateInterleavedTestThenTrain.</p>
+ *
+ * @version $Revision: 7 $
+ */
+public class RunConcurrentTasks extends AuxiliarMainTask {
+
+    @Override
+    public String getPurposeString() {
+        return "Runs several experiments modifying values of parameters concurrently, on a stream cached in memory.";
+    }
+
+    private static final long serialVersionUID = 1L;
+
+    public ClassOption taskOption = new ClassOption("task", 't',
+            "Task to do.", Task.class, "EvaluatePrequential -l trees.HoeffdingTree -i 1000000 -d temp.csv");
+
+    public StringOption classifierParameterOption = new StringOption("classifierParameter", 'p',
+            "Classifier parameter to vary.", "g");
+
+    public FloatOption firstValueOption = new FloatOption("firstValue",
+            'f', "First value", 100.0);
+
+    public FloatOption lastValueOption = new FloatOption("lastValue",
+            'l', "Last value", 500.0);
+
+    public FloatOption incrementValueOption = new FloatOption("incrementValue",
+            'i', "Increment value", 100.0);
+
+    public IntOption numberOfJobsOption = new IntOption("numberOfJobs", 'j',
+            "Total number of concurrent jobs used for processing (-1 = as much as possible, 0 = do not use multithreading)", -1, -1, Integer.MAX_VALUE);
+
+    public IntOption maximumCacheSizeOption = new IntOption("maximumCacheSize",
+            'm', "Maximum number of instances to cache, at least the instance limit of the task unless the stream is shorter.", 1000000, 1,
+            Integer.MAX_VALUE);
+
+    @Override
+    public Class<?> getTaskResultType() {
+        return this.task.getTaskResultType();
+    }
+
+    protected Task task;
+
+    @Override
+    protected Object doMainTask(final TaskMonitor monitor, final ObjectRepository repository) {
+        Task taskBase = (Task) getPreparedClassOption(this.taskOption);
+        if (!(taskBase instanceof EvaluatePrequential) && !(taskBase instanceof EvaluateInterleavedTestThenTrain)) {
+            throw new IllegalArgumentException("Only EvaluatePrequential and EvaluateInterleavedTestThenTrain "
+                    + "can be run concurrently: " + taskBase.getClass().getName());
+        }
+        this.task = taskBase;
+
+        // Read the stream once
+        ClassOption streamOption = getStreamOption(taskBase);
+        Object streamObject = streamOption.materializeObject(monitor, repository);
+        if (streamObject instanceof OptionHandler) {
+            ((OptionHandler) streamObject).prepareForUse(monitor, repository);
+        }
+        if (!(streamObject instanceof InstanceStream)) {
+            throw new IllegalArgumentException("Only instance streams can be cached: "
+                    + streamOption.getValueAsCLIString());
+        }
+        InstanceStream stream = (InstanceStream) streamObject;
+        long maxInstances = this.maximumCacheSizeOption.getValue();
+        int instanceLimit = getInstanceLimitOption(taskBase).getValue();
+        if (instanceLimit >= 0 && instanceLimit < maxInstances) {
+            maxInstances = instanceLimit;
+        }
+        final Instances cache = new Instances(stream.getHeader(), 0);
+        monitor.setCurrentActivity("Caching instances...", -1.0);
+        while (cache.numInstances() < maxInstances && stream.hasMoreInstances()) {
+            cache.add(stream.nextInstance().getData());
+            if (cache.numInstances() % INSTANCES_BETWEEN_MONITOR_UPDATES == 0) {
+                if (monitor.taskShouldAbort()) {
+                    return null;
+                }
+                long estimatedRemainingInstances = stream.estimatedRemainingInstances();
+                long maxRemaining = maxInstances - cache.numInstances();
+                if ((estimatedRemainingInstances < 0)
+                        || (maxRemaining < estimatedRemainingInstances)) {
+                    estimatedRemainingInstances = maxRemaining;
+                }
+                monitor.setCurrentActivityFractionComplete((double) cache.numInstances()
+                        / (double) (cache.numInstances() + estimatedRemainingInstances));
+            }
+        }
+        // the runs would stop early at the end of the cache
+        if ((instanceLimit < 0 || instanceLimit > maxInstances) && stream.hasMoreInstances()) {
+            throw new IllegalArgumentException("The task reads "
+                    + (instanceLimit < 0 ? "all the" : "up to " + instanceLimit)
+                    + " instances of the stream, but only " + maxInstances
+                    + " can be cached: raise maximumCacheSize (-m) or lower the instance limit of the task.");
+        }
+
+        // One task for each possible value of the parameter
+        String dumpFileName = getDumpFileOption(taskBase).getValue();
+        List<Task> tasks = new ArrayList<Task>();
+        for (int i = 0; this.firstValueOption.getValue() + i * this.incrementValueOption.getValue()
+                <= this.lastValueOption.getValue(); i++) {
+            String valueParameter = parameterValueToString(
+                    this.firstValueOption.getValue() + i * this.incrementValueOption.getValue());
+            Task run = (Task) ((MOAObject) taskBase).copy();
+            ClassOption learnerOption = getLearnerOption(run);
+            learnerOption.setValueViaCLIString(learnerOption.getValueAsCLIString()
+                    + " -" + this.classifierParameterOption.getValue() + " " + valueParameter);
+            getStreamOption(run).setCurrentObject(new CachedInstancesStream(cache, true));
+            if (dumpFileName != null && dumpFileName.length() > 0) {
+                getDumpFileOption(run).setValue(getDumpFileName(dumpFileName,
+                        this.classifierParameterOption.getValue() + valueParameter));
+            }
+            tasks.add(run);
+            if (this.incrementValueOption.getValue() <= 0.0) {
+                break;
+            }
+        }
+
+        // Run the tasks, aborting them all when this task is aborted
+        int numberOfJobs = this.numberOfJobsOption.getValue() == -1
+                ? Runtime.getRuntime().availableProcessors() : Math.max(1, this.numberOfJobsOption.getValue());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfJobs, Math.max(1, tasks.size())),
+                new ThreadFactory() {
+                    private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = this.defaultFactory.newThread(r);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        final TaskMonitor runMonitor = new NullMonitor() {
+            @Override
+            public boolean taskShouldAbort() {
+                return monitor.taskShouldAbort();
+            }
+        };
+        List<Future<Object>> results = new ArrayList<Future<Object>>();
+        for (final Task run : tasks) {
+            results.add(executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return run.doTask(runMonitor, repository);
+                }
+            }));
+        }
+        monitor.setCurrentActivity("Running " + tasks.size() + " tasks...", 0.0);
+        Object result = null;
+        try {
+            for (int i = 0; i < results.size(); i++) {
+                result = results.get(i).get();
+                monitor.setCurrentActivityFractionComplete((double) (i + 1) / results.size());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running the tasks", ex);
+        } catch (ExecutionException ex) {
+            throw new RuntimeException("Problem running a task", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        if (monitor.taskShouldAbort()) {
+            return null;
+        }
+        return result;
+    }
+
+    protected static ClassOption getLearnerOption(Task task) {
+        if (task instanceof EvaluatePrequential) {
+            return ((EvaluatePrequential) task).learnerOption;
+        }
+        return ((EvaluateInterleavedTestThenTrain) task).learnerOption;
+    }
+
+    protected static ClassOption getStreamOption(Task task) {
+        if (task instanceof EvaluatePrequential) {
+            return ((EvaluatePrequential) task).streamOption;
+        }
+        return ((EvaluateInterleavedTestThenTrain) task).streamOption;
+    }
+
+    protected static IntOption getInstanceLimitOption(Task task) {
+        if (task instanceof EvaluatePrequential) {
+            return ((EvaluatePrequential) task).instanceLimitOption;
+        }
+        return ((EvaluateInterleavedTestThenTrain) task).instanceLimitOption;
+    }
+
+    protected static FileOption getDumpFileOption(Task task) {
+        if (task instanceof EvaluatePrequential) {
+            return ((EvaluatePrequential) task).dumpFileOption;
+        }
+        return ((EvaluateInterleavedTestThenTrain) task).dumpFileOption;
+    }
+
+    /**
+     * Formats a value of the parameter, without decimals when it is an
+     * integer so that it can be given to integer options.
+     */
+    protected static String parameterValueToString(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < Long.MAX_VALUE) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Inserts the suffix in the name of the dump file, before its extension.
+     */
+    protected static String getDumpFileName(String dumpFileName, String suffix) {
+        File dumpFile = new File(dumpFileName);
+        String name = dumpFile.getName();
+        int extension = name.lastIndexOf('.');
+        name = extension > 0 ? name.substring(0, extension) + "-" + suffix + name.substring(extension)
+                : name + "-" + suffix;
+        return new File(dumpFile.getParentFile(), name).getPath();
+    }
+}
@@ -34,6 +34,7 @@ import moa.classifiers.active.ALClassifier;
 import moa.core.Example;
 import moa.core.Measurement;
 import moa.core.ObjectRepository;
+import moa.core.SizeOf;
 import moa.core.TimingUtils;
 import moa.evaluation.ALClassificationPerformanceEvaluator;
 import moa.evaluation.LearningEvaluation;
@@ -196,7 +197,7 @@ public class ALPrequentialEvaluationTask extends ALMainTask {
                 double timeIncrement = TimingUtils.nanoTimeToSeconds(
                 		evaluateTime - lastEvaluateStartTime);
                 double RAMHoursIncrement = 
-                		learner.measureByteSize() / (1024.0 * 1024.0 * 1024.0); //GBs
+                		SizeOf.measuredSizeOf(learner) / (1024.0 * 1024.0 * 1024.0); //GBs
                 RAMHoursIncrement *= (timeIncrement / 3600.0); //Hours
                 RAMHours += RAMHoursIncrement;
                 lastEvaluateStartTime = evaluateTime;
@@ -257,7 +258,7 @@ public class ALPrequentialEvaluationTask extends ALMainTask {
         		// TODO currently the preview is sent after each instance
         		// 		should be changed later on
         		if (monitor.resultPreviewRequested() || isSubtask()) {
-        			monitor.setLatestResultPreview(new PreviewCollectionLearningCurveWrapper((LearningCurve)learningCurve.copy(), this.getClass()));
+        			monitor.setLatestResultPreview(new PreviewCollectionLearningCurveWrapper(learningCurve.snapshot(), this.getClass()));
                 }
         		
         		// update time measurement
@@ -0,0 +1,84 @@
+package moa.classifiers;
+
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.SparseInstance;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.classifiers.functions.Perceptron;
+import moa.classifiers.functions.SGD;
+import moa.streams.generators.RandomRBFGenerator;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests that the learners iterating the values of sparse instances learn the
+ * same models from sparse instances as from dense ones.
+ */
+public class SparseInstanceLearningTest {
+
+    private static final int NUM_INSTANCES = 5000;
+
+    private static final double DENSITY = 0.2;
+
+    /**
+     * Trains both learners, the first on dense instances with the given value
+     * for the zeros, the second on the same instances stored sparsely.
+     */
+    private static void assertSameVotes(Classifier dense, Classifier sparse, double zero) {
+        RandomRBFGenerator stream = new RandomRBFGenerator();
+        stream.numAttsOption.setValue(50);
+        stream.prepareForUse();
+        dense.prepareForUse();
+        sparse.prepareForUse();
+        dense.setModelContext(stream.getHeader());
+        sparse.setModelContext(stream.getHeader());
+        Random random = new Random(1);
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            Instance inst = stream.nextInstance().getData();
+            double[] denseValues = new double[inst.numAttributes()];
+            double[] sparseValues = new double[inst.numAttributes()];
+            int[] indices = new int[inst.numAttributes()];
+            int numValues = 0;
+            for (int j = 0; j < inst.numAttributes(); j++) {
+                if (j == inst.classIndex() || random.nextDouble() < DENSITY) {
+                    denseValues[j] = inst.value(j);
+                    sparseValues[numValues] = inst.value(j);
+                    indices[numValues++] = j;
+                } else {
+                    denseValues[j] = zero;
+                }
+            }
+            Instance denseInst = new DenseInstance(1.0, denseValues);
+            denseInst.setDataset(stream.getHeader());
+            Instance sparseInst = new SparseInstance(1.0, Arrays.copyOf(sparseValues, numValues),
+                    Arrays.copyOf(indices, numValues), inst.numAttributes());
+            sparseInst.setDataset(stream.getHeader());
+            assertArrayEquals(dense.getVotesForInstance(denseInst),
+                    sparse.getVotesForInstance(sparseInst), 0.0);
+            dense.trainOnInstance(denseInst);
+            sparse.trainOnInstance(sparseInst);
+        }
+    }
+
+    @Test
+    public void testSGD() {
+        assertSameVotes(new SGD(), new SGD(), 0.0);
+    }
+
+    @Test
+    public void testPerceptron() {
+        assertSameVotes(new Perceptron(), new Perceptron(), 0.0);
+    }
+
+    @Test
+    public void testNaiveBayesSkippingZeros() {
+        NaiveBayes sparse = new NaiveBayes();
+        sparse.skipSparseZerosOption.setValue(true);
+        // the zeros not stored are not observed, as missing values
+        assertSameVotes(new NaiveBayes(), sparse, Double.NaN);
+    }
+}
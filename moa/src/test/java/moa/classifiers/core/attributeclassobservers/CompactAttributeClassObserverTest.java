@@ -0,0 +1,102 @@
+package moa.classifiers.core.attributeclassobservers;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.splitcriteria.InfoGainSplitCriterion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.core.DoubleVector;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that the compact observers suggest the same splits and estimate the
+ * same probabilities as the observers they replace.
+ */
+public class CompactAttributeClassObserverTest {
+
+    private static final int NUM_STEPS = 2000;
+
+    private static final int NUM_CLASSES = 4;
+
+    private static void assertSameSuggestion(AttributeClassObserver expected,
+            AttributeClassObserver actual, double[] preSplitDist, boolean binaryOnly) {
+        SplitCriterion criterion = new InfoGainSplitCriterion();
+        AttributeSplitSuggestion expectedSuggestion = expected.getBestEvaluatedSplitSuggestion(
+                criterion, preSplitDist, 0, binaryOnly);
+        AttributeSplitSuggestion actualSuggestion = actual.getBestEvaluatedSplitSuggestion(
+                criterion, preSplitDist, 0, binaryOnly);
+        if (expectedSuggestion == null) {
+            assertNull(actualSuggestion);
+            return;
+        }
+        assertEquals(expectedSuggestion.merit, actualSuggestion.merit, 0.0);
+        assertEquals(expectedSuggestion.splitTest.getClass(), actualSuggestion.splitTest.getClass());
+        StringBuilder expectedTest = new StringBuilder();
+        StringBuilder actualTest = new StringBuilder();
+        expectedSuggestion.splitTest.getDescription(expectedTest, 0);
+        actualSuggestion.splitTest.getDescription(actualTest, 0);
+        assertEquals(expectedTest.toString(), actualTest.toString());
+        assertEquals(expectedSuggestion.numSplits(), actualSuggestion.numSplits());
+        for (int i = 0; i < expectedSuggestion.numSplits(); i++) {
+            assertArrayEquals(expectedSuggestion.resultingClassDistributionFromSplit(i),
+                    actualSuggestion.resultingClassDistributionFromSplit(i), 0.0);
+        }
+    }
+
+    private static void assertSameObservations(AttributeClassObserver expected,
+            AttributeClassObserver actual, boolean nominal) {
+        Random random = new Random(1);
+        DoubleVector classDist = new DoubleVector();
+        for (int step = 0; step < NUM_STEPS; step++) {
+            int classVal = random.nextInt(NUM_CLASSES);
+            double attVal;
+            if (random.nextDouble() < 0.05) {
+                attVal = Double.NaN;
+            } else if (nominal) {
+                attVal = random.nextInt(3 + classVal);
+            } else {
+                attVal = Math.round((random.nextGaussian() + classVal) * 100.0) / 100.0;
+            }
+            double weight = random.nextInt(3);
+            expected.observeAttributeClass(attVal, classVal, weight);
+            actual.observeAttributeClass(attVal, classVal, weight);
+            classDist.addToValue(classVal, weight);
+            if (step % 100 == 0) {
+                for (int i = 0; i <= NUM_CLASSES; i++) {
+                    double value = nominal ? random.nextInt(6) : random.nextGaussian() + i;
+                    assertEquals(expected.probabilityOfAttributeValueGivenClass(value, i),
+                            actual.probabilityOfAttributeValueGivenClass(value, i), 0.0);
+                }
+                assertSameSuggestion(expected, actual, classDist.getArrayCopy(), false);
+                assertSameSuggestion(expected, actual, classDist.getArrayCopy(), true);
+                // copies continue from the same statistics
+                actual = (AttributeClassObserver) actual.copy();
+            }
+        }
+    }
+
+    @Test
+    public void testNominal() {
+        assertSameObservations(new NominalAttributeClassObserver(),
+                new CompactNominalAttributeClassObserver(), true);
+    }
+
+    @Test
+    public void testGaussian() {
+        GaussianNumericAttributeClassObserver expected = new GaussianNumericAttributeClassObserver();
+        expected.prepareForUse();
+        CompactGaussianNumericAttributeClassObserver actual = new CompactGaussianNumericAttributeClassObserver();
+        actual.prepareForUse();
+        assertSameObservations(expected, actual, false);
+    }
+
+    @Test
+    public void testBinaryTree() {
+        assertSameObservations(new BinaryTreeNumericAttributeClassObserver(),
+                new CompactBinaryTreeNumericAttributeClassObserver(), false);
+    }
+}
@@ -0,0 +1,170 @@
+package moa.classifiers.core.attributeclassobservers;
+
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.conditionaltests.NumericAttributeBinaryTest;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.classifiers.core.splitcriteria.VarianceReductionSplitCriterion;
+import moa.classifiers.trees.FIMTDD;
+import moa.core.Measurement;
+import moa.streams.ArffFileStream;
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the compact FIMTDD observer suggests the splits of the E-BST,
+ * and that binning, merging and pruning keep close to them.
+ */
+public class CompactFIMTDDNumericAttributeClassObserverTest {
+
+    private static final int NUM_STEPS = 5000;
+
+    private static double[] observe(Random random, int numSteps, boolean integerTargets,
+            FIMTDDNumericAttributeClassObserver... observers) {
+        double[] preSplitDist = new double[3];
+        for (int step = 0; step < numSteps; step++) {
+            double attVal = random.nextDouble() < 0.05 ? Double.NaN
+                    : Math.round(random.nextGaussian() * 100.0) / 10.0;
+            double noise = integerTargets ? random.nextInt(5) : random.nextGaussian();
+            double target = (Double.isNaN(attVal) || (attVal < 2) ? 10 : 20) + noise;
+            for (FIMTDDNumericAttributeClassObserver observer : observers) {
+                observer.observeAttributeClass(attVal, target, 1);
+            }
+            preSplitDist[0] += 1;
+            preSplitDist[1] += target;
+            preSplitDist[2] += target * target;
+        }
+        return preSplitDist;
+    }
+
+    private static void assertSameSuggestion(AttributeSplitSuggestion expected,
+            AttributeSplitSuggestion actual) {
+        assertEquals(expected.merit, actual.merit, 0.0);
+        assertEquals(((NumericAttributeBinaryTest) expected.splitTest).getSplitValue(),
+                ((NumericAttributeBinaryTest) actual.splitTest).getSplitValue(), 0.0);
+        for (int i = 0; i < expected.numSplits(); i++) {
+            assertArrayEquals(expected.resultingClassDistributionFromSplit(i),
+                    actual.resultingClassDistributionFromSplit(i), 0.0);
+        }
+    }
+
+    @Test
+    public void testExactSplits() {
+        Random random = new Random(1);
+        SplitCriterion criterion = new VarianceReductionSplitCriterion();
+        FIMTDDNumericAttributeClassObserver expected = new FIMTDDNumericAttributeClassObserver();
+        CompactFIMTDDNumericAttributeClassObserver actual = new CompactFIMTDDNumericAttributeClassObserver();
+        double[] preSplitDist = new double[3];
+        for (int i = 0; i < 20; i++) {
+            double[] dist = observe(random, NUM_STEPS / 20, true, expected, actual);
+            for (int j = 0; j < dist.length; j++) {
+                preSplitDist[j] += dist[j];
+            }
+            // integer targets have exact sums, so the merits are the same
+            assertSameSuggestion(expected.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true),
+                    actual.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true));
+            // copies continue from the same statistics
+            actual = (CompactFIMTDDNumericAttributeClassObserver) actual.copy();
+        }
+    }
+
+    @Test
+    public void testBinnedSplits() {
+        Random random = new Random(2);
+        SplitCriterion criterion = new VarianceReductionSplitCriterion();
+        FIMTDDNumericAttributeClassObserver expected = new FIMTDDNumericAttributeClassObserver();
+        CompactFIMTDDNumericAttributeClassObserver observer = new CompactFIMTDDNumericAttributeClassObserver();
+        observer.maxBinsOption.setValue(32);
+        observer.compareToEBSTOption.set();
+        double[] preSplitDist = new double[3];
+        double maxMeritDifference = 0;
+        for (int i = 0; i < 10; i++) {
+            double[] dist = observe(random, NUM_STEPS / 10, false, expected, observer);
+            for (int j = 0; j < dist.length; j++) {
+                preSplitDist[j] += dist[j];
+            }
+            AttributeSplitSuggestion expectedSuggestion = expected.getBestEvaluatedSplitSuggestion(
+                    criterion, preSplitDist, 0, true);
+            AttributeSplitSuggestion suggestion = observer.getBestEvaluatedSplitSuggestion(
+                    criterion, preSplitDist, 0, true);
+            // the cut points are among those of the E-BST, with exact statistics
+            assertTrue(suggestion.merit <= expectedSuggestion.merit + 1e-9);
+            assertTrue(suggestion.merit > 0.9 * expectedSuggestion.merit);
+            maxMeritDifference = Math.max(maxMeritDifference, expectedSuggestion.merit - suggestion.merit);
+            assertTrue(observer.numBins() <= 32);
+        }
+        Measurement[] measurements = observer.getExactnessMeasurements();
+        assertEquals(10, Measurement.getMeasurementNamed("split searches compared", measurements).getValue(), 0.0);
+        assertTrue(Measurement.getMeasurementNamed("E-BST nodes", measurements).getValue() > 32);
+        assertEquals(maxMeritDifference, Measurement.getMeasurementNamed("max merit difference to E-BST",
+                measurements).getValue(), 1e-9);
+        StringBuilder description = new StringBuilder();
+        observer.getDescription(description, 0);
+        assertTrue(description.toString().contains("same split as E-BST"));
+    }
+
+    @Test
+    public void testMerge() {
+        Random random = new Random(3);
+        SplitCriterion criterion = new VarianceReductionSplitCriterion();
+        FIMTDDNumericAttributeClassObserver expected = new FIMTDDNumericAttributeClassObserver();
+        CompactFIMTDDNumericAttributeClassObserver first = new CompactFIMTDDNumericAttributeClassObserver();
+        CompactFIMTDDNumericAttributeClassObserver second = new CompactFIMTDDNumericAttributeClassObserver();
+        double[] preSplitDist = observe(random, NUM_STEPS / 2, true, expected, first);
+        double[] dist = observe(random, NUM_STEPS / 2, true, expected, second);
+        for (int j = 0; j < dist.length; j++) {
+            preSplitDist[j] += dist[j];
+        }
+        first.merge(second);
+        assertSameSuggestion(expected.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true),
+                first.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true));
+    }
+
+    @Test
+    public void testRemoveBadSplits() {
+        Random random = new Random(4);
+        SplitCriterion criterion = new VarianceReductionSplitCriterion();
+        CompactFIMTDDNumericAttributeClassObserver observer = new CompactFIMTDDNumericAttributeClassObserver();
+        double[] preSplitDist = observe(random, NUM_STEPS, true, observer);
+        AttributeSplitSuggestion best = observer.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true);
+        int numBins = observer.numBins();
+        observer.removeBadSplits(criterion, 0.9, best.merit, 0.0);
+        assertEquals(numBins, observer.numBins());
+        observer.pruneBadSplitsOption.set();
+        observer.removeBadSplits(criterion, 0.9, best.merit, 0.0);
+        assertTrue(observer.numBins() < numBins);
+        assertSameSuggestion(best, observer.getBestEvaluatedSplitSuggestion(criterion, preSplitDist, 0, true));
+    }
+
+    @Test
+    public void testFIMTDD() throws Exception {
+        String path = new File(getClass().getClassLoader().getResource(
+                "moa/classifiers/data/regression.arff").toURI()).getPath();
+        ArffFileStream stream = new ArffFileStream(path, -1);
+        stream.prepareForUse();
+        FIMTDD expected = new FIMTDD();
+        FIMTDD actual = new FIMTDD();
+        actual.numericObserverOption.setValueViaCLIString("CompactFIMTDDNumericAttributeClassObserver");
+        for (FIMTDD tree : new FIMTDD[]{expected, actual}) {
+            tree.gracePeriodOption.setValue(50);
+            tree.setModelContext(stream.getHeader());
+            tree.prepareForUse();
+        }
+        while (stream.hasMoreInstances()) {
+            Instance instance = stream.nextInstance().getData();
+            assertArrayEquals(expected.getVotesForInstance(instance), actual.getVotesForInstance(instance), 0.0);
+            expected.trainOnInstance(instance);
+            actual.trainOnInstance(instance);
+        }
+        assertEquals(Measurement.getMeasurementNamed("tree size (leaves)", expected.getModelMeasurements()).getValue(),
+                Measurement.getMeasurementNamed("tree size (leaves)", actual.getModelMeasurements()).getValue(), 0.0);
+    }
+}
@@ -0,0 +1,113 @@
+package moa.classifiers.core.driftdetection;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.classifiers.bayes.NaiveBayes;
+import moa.core.Utils;
+import moa.options.ClassOption;
+import moa.streams.ConceptDriftStream;
+import moa.streams.InstanceStream;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that ADWIN detects the same changes, with the same estimates, as the
+ * linked list implementation it replaced.
+ */
+public class ADWINTest {
+
+    private static final int NUM_INPUTS = 100000;
+
+    /**
+     * Records whether NaiveBayes misclassifies the instances of a stream with
+     * a concept drift.
+     */
+    private static double[] recordErrors(String streamCLI) throws Exception {
+        InstanceStream stream = (InstanceStream) ClassOption.cliStringToObject(
+                streamCLI, InstanceStream.class, null);
+        ((ConceptDriftStream) stream).prepareForUse();
+        Classifier classifier = new NaiveBayes();
+        classifier.prepareForUse();
+        classifier.setModelContext(stream.getHeader());
+        double[] errors = new double[NUM_INPUTS];
+        for (int i = 0; i < errors.length; i++) {
+            Instance inst = stream.nextInstance().getData();
+            errors[i] = Utils.maxIndex(classifier.getVotesForInstance(inst)) == (int) inst.classValue() ? 0 : 1;
+            classifier.trainOnInstance(inst);
+        }
+        return errors;
+    }
+
+    private static double[] bernoulli(double[] rates, int period) {
+        Random random = new Random(1);
+        double[] inputs = new double[NUM_INPUTS];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextDouble() < rates[(i / period) % rates.length] ? 1 : 0;
+        }
+        return inputs;
+    }
+
+    private static double[] gaussian(double[] means, int period) {
+        Random random = new Random(2);
+        double[] inputs = new double[NUM_INPUTS];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = means[(i / period) % means.length] + random.nextGaussian();
+        }
+        return inputs;
+    }
+
+    private static void assertSameDetections(double[] inputs, LinkedListADWIN expected, ADWIN actual) {
+        int numChanges = 0;
+        for (int i = 0; i < inputs.length; i++) {
+            boolean change = expected.setInput(inputs[i]);
+            assertEquals("input " + i, change, actual.setInput(inputs[i]));
+            if (change) {
+                numChanges++;
+            }
+            assertEquals(expected.getWidth(), actual.getWidth());
+            assertEquals(expected.getTotal(), actual.getTotal(), 0.0);
+            assertEquals(expected.getVariance(), actual.getVariance(), 0.0);
+            assertEquals(expected.getEstimation(), actual.getEstimation(), 0.0);
+            assertEquals(expected.getChange(), actual.getChange());
+            assertEquals(expected.getDetect(), actual.getDetect());
+            if (i == inputs.length / 2) {
+                // copies continue from the same window
+                actual = (ADWIN) actual.copy();
+            }
+        }
+        assertEquals(expected.getNumberDetections(), actual.getNumberDetections());
+        assertEquals(expected.getBucketsUsed(), actual.getBucketsUsed());
+        assertEquals(expected.getWidthT(), actual.getWidthT(), 0.0);
+        assertTrue(numChanges > 0);
+    }
+
+    @Test
+    public void testAbruptBernoulli() {
+        assertSameDetections(bernoulli(new double[]{0.2, 0.5, 0.1}, 10000),
+                new LinkedListADWIN(), new ADWIN());
+    }
+
+    @Test
+    public void testGaussian() {
+        assertSameDetections(gaussian(new double[]{0.0, 0.5, -1.0, 10.0}, 7000),
+                new LinkedListADWIN(0.1), new ADWIN(0.1));
+    }
+
+    @Test
+    public void testClock() {
+        assertSameDetections(bernoulli(new double[]{0.3, 0.35}, 5000),
+                new LinkedListADWIN(1), new ADWIN(1));
+    }
+
+    @Test
+    public void testRecordedErrors() throws Exception {
+        double[] errors = recordErrors("ConceptDriftStream -s (generators.SEAGenerator -f 1) "
+                + "-d (ConceptDriftStream -s (generators.SEAGenerator -f 3) "
+                + "-d (generators.SEAGenerator -f 2) -p 30000 -w 5000) -p 30000 -w 1");
+        assertSameDetections(errors, new LinkedListADWIN(), new ADWIN());
+    }
+}
@@ -0,0 +1,100 @@
+package moa.classifiers.lazy.neighboursearch;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import moa.streams.InstanceStream;
+import moa.streams.generators.AgrawalGenerator;
+import moa.streams.generators.RandomRBFGenerator;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the sliding window returns the same neighbours as a linear
+ * search over the same instances.
+ */
+public class SlidingWindowNNSearchTest {
+
+    private static final int NUM_STEPS = 3000;
+
+    private static final int MAX_SIZE = 300;
+
+    private static void assertSameNeighbours(InstanceStream stream, boolean useTree) throws Exception {
+        Random random = new Random(1);
+        Instances window = new Instances(stream.getHeader(), 0);
+        SlidingWindowNNSearch search = new SlidingWindowNNSearch(stream.getHeader());
+        search.setUseTree(useTree);
+        for (int step = 0; step < NUM_STEPS; step++) {
+            Instance inst = stream.nextInstance().getData();
+            if (random.nextDouble() < 0.05) {
+                inst.setMissing(random.nextInt(inst.numAttributes() - 1));
+            }
+            if (window.numInstances() > 0) {
+                int k = 1 + random.nextInt(10);
+                LinearNNSearch linear = new LinearNNSearch(window);
+                linear.kNearestNeighbours(inst, Math.min(k, window.numInstances()));
+                double[] expected = linear.getDistances();
+                int[] neighbours = search.kNearestNeighbours(inst, k);
+                double[] actual = new double[neighbours.length];
+                for (int i = 0; i < neighbours.length; i++) {
+                    actual[i] = search.distance(inst, neighbours[i]);
+                }
+                Arrays.sort(expected);
+                Arrays.sort(actual);
+                assertArrayEquals(expected, actual, 0.0);
+            }
+            search.add(inst);
+            window.add(inst);
+            if (window.numInstances() > MAX_SIZE) {
+                search.removeOldest();
+                window.delete(0);
+            }
+            if (random.nextDouble() < 0.3) {
+                int position = random.nextInt(window.numInstances());
+                search.removeAt(position);
+                window.delete(position);
+            }
+            assertEquals(window.numInstances(), search.size());
+        }
+        for (int i = 0; i < window.numInstances(); i++) {
+            assertEquals(window.instance(i).classValue(), search.classValue(search.idAt(i)), 0.0);
+        }
+    }
+
+    private static InstanceStream rbf() {
+        RandomRBFGenerator stream = new RandomRBFGenerator();
+        stream.numAttsOption.setValue(4);
+        stream.prepareForUse();
+        return stream;
+    }
+
+    private static InstanceStream agrawal() {
+        AgrawalGenerator stream = new AgrawalGenerator();
+        stream.prepareForUse();
+        return stream;
+    }
+
+    @Test
+    public void testLinearNumeric() throws Exception {
+        assertSameNeighbours(rbf(), false);
+    }
+
+    @Test
+    public void testTreeNumeric() throws Exception {
+        assertSameNeighbours(rbf(), true);
+    }
+
+    @Test
+    public void testLinearMixed() throws Exception {
+        assertSameNeighbours(agrawal(), false);
+    }
+
+    @Test
+    public void testTreeMixed() throws Exception {
+        assertSameNeighbours(agrawal(), true);
+    }
+}
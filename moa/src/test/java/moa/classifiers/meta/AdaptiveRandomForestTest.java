@@ -24,6 +24,9 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 import moa.classifiers.AbstractMultipleClassifierTestCase;
 import moa.classifiers.Classifier;
+import moa.streams.generators.RandomRBFGenerator;
+import com.yahoo.labs.samoa.instances.Instance;
+import java.util.Arrays;
 import static moa.test.MoaTestCase.runTest;
 
 /**
@@ -57,6 +60,46 @@ public class AdaptiveRandomForestTest
     };
   }
   
+  /**
+   * Returns a forest trained on the first instances of a RandomRBF stream.
+   *
+   * @param options	the options of the forest
+   * @param numInstances	the number of instances to train on
+   * @return		the forest
+   */
+  protected AdaptiveRandomForest trainForest(String options, int numInstances) {
+    RandomRBFGenerator stream = new RandomRBFGenerator();
+    stream.prepareForUse();
+    AdaptiveRandomForest forest = new AdaptiveRandomForest();
+    forest.getOptions().setViaCLIString(options);
+    forest.setModelContext(stream.getHeader());
+    forest.prepareForUse();
+    for (int i = 0; i < numInstances; i++)
+      forest.trainOnInstance(stream.nextInstance().getData());
+    return forest;
+  }
+
+  /**
+   * Tests that an incomplete batch is trained on when the stream ends and
+   * when the forest is copied.
+   */
+  public void testPendingBatch() {
+    AdaptiveRandomForest unbatched = trainForest("-s 5", 503);
+    AdaptiveRandomForest batched = trainForest("-s 5 -b 10", 503);
+    AdaptiveRandomForest copy = (AdaptiveRandomForest) batched.copy();
+    batched.trainOnPendingInstances();
+
+    RandomRBFGenerator stream = new RandomRBFGenerator();
+    stream.instanceRandomSeedOption.setValue(2);
+    stream.prepareForUse();
+    for (int i = 0; i < 50; i++) {
+      Instance inst = stream.nextInstance().getData();
+      double[] expected = unbatched.getVotesForInstance(inst);
+      assertTrue(Arrays.equals(expected, batched.getVotesForInstance(inst)));
+      assertTrue(Arrays.equals(expected, copy.getVotesForInstance(inst)));
+    }
+  }
+
   /**
    * Returns a test suite.
    *
@@ -0,0 +1,132 @@
+package moa.classifiers.meta;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.Classifier;
+import moa.options.ClassOption;
+import moa.options.OptionHandler;
+import moa.streams.InstanceStream;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the ensembles predict the same whatever the number of jobs
+ * training and querying their models.
+ */
+public class EnsembleExecutorTest {
+
+    private static final int NUM_INSTANCES = 3000;
+
+    private static final String STREAM = "ConceptDriftStream -s (generators.RandomRBFGeneratorDrift -c 4 -s 0.001) "
+            + "-d (generators.RandomRBFGeneratorDrift -c 4 -r 2 -i 2) -p 1500 -w 1";
+
+    /**
+     * Trains the learner with one and with four jobs on the same stream,
+     * checking that both copies predict the same.
+     */
+    private static void assertSameVotes(String learner) throws Exception {
+        InstanceStream stream = (InstanceStream) ClassOption.cliStringToObject(STREAM, InstanceStream.class, null);
+        ((OptionHandler) stream).prepareForUse();
+        Classifier serial = (Classifier) ClassOption.cliStringToObject(learner + " -j 1", Classifier.class, null);
+        Classifier parallel = (Classifier) ClassOption.cliStringToObject(learner + " -j 4", Classifier.class, null);
+        serial.prepareForUse();
+        parallel.prepareForUse();
+        serial.setModelContext(stream.getHeader());
+        parallel.setModelContext(stream.getHeader());
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            Instance inst = stream.nextInstance().getData();
+            assertArrayEquals("instance " + i, serial.getVotesForInstance(inst),
+                    parallel.getVotesForInstance(inst), 0.0);
+            serial.trainOnInstance(inst);
+            parallel.trainOnInstance(inst);
+        }
+    }
+
+    @Test
+    public void testOzaBag() throws Exception {
+        assertSameVotes("meta.OzaBag");
+    }
+
+    @Test
+    public void testOzaBagAdwin() throws Exception {
+        assertSameVotes("meta.OzaBagAdwin");
+    }
+
+    @Test
+    public void testLeveragingBag() throws Exception {
+        assertSameVotes("meta.LeveragingBag");
+    }
+
+    @Test
+    public void testLeveragingBagME() throws Exception {
+        assertSameVotes("meta.LeveragingBag -m 1");
+    }
+
+    @Test
+    public void testLeveragingBagOutputCodes() throws Exception {
+        assertSameVotes("meta.LeveragingBag -m 1 -o");
+    }
+
+    @Test
+    public void testOzaBoost() throws Exception {
+        assertSameVotes("meta.OzaBoost");
+    }
+
+    @Test
+    public void testADOB() throws Exception {
+        assertSameVotes("meta.ADOB");
+    }
+
+    @Test
+    public void testBOLE() throws Exception {
+        assertSameVotes("meta.BOLE -b");
+    }
+
+    @Test
+    public void testDACC() throws Exception {
+        assertSameVotes("meta.DACC");
+    }
+
+    @Test
+    public void testADACC() throws Exception {
+        assertSameVotes("meta.ADACC");
+    }
+
+    @Test
+    public void testHeterogeneousEnsembleBlast() throws Exception {
+        assertSameVotes("meta.HeterogeneousEnsembleBlast -k 3 -p");
+    }
+
+    @Test
+    public void testHeterogeneousEnsembleBlastFadingFactors() throws Exception {
+        assertSameVotes("meta.HeterogeneousEnsembleBlastFadingFactors -k 3");
+    }
+
+    @Test
+    public void testAdaptiveRandomForest() throws Exception {
+        assertSameVotes("meta.AdaptiveRandomForest -s 10");
+    }
+
+    @Test
+    public void testAdaptiveRandomForestBatches() throws Exception {
+        assertSameVotes("meta.AdaptiveRandomForest -s 10 -b 7");
+    }
+
+    @Test
+    public void testForEachMember() {
+        EnsembleExecutor executor = new EnsembleExecutor(3);
+        final AtomicIntegerArray runs = new AtomicIntegerArray(37);
+        executor.forEachMember(runs.length(), new EnsembleExecutor.MemberTask() {
+            @Override
+            public void run(int index) {
+                runs.incrementAndGet(index);
+            }
+        });
+        for (int i = 0; i < runs.length(); i++) {
+            assertEquals(1, runs.get(i));
+        }
+    }
+}
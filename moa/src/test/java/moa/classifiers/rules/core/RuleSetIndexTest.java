@@ -0,0 +1,258 @@
+package moa.classifiers.rules.core;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import com.yahoo.labs.samoa.instances.InstancesHeader;
+import com.yahoo.labs.samoa.instances.MultiLabelInstance;
+import moa.classifiers.rules.AMRulesRegressor;
+import moa.classifiers.rules.AMRulesRegressorOld;
+import moa.classifiers.rules.core.conditionaltests.NumericAttributeBinaryRulePredicate;
+import moa.classifiers.rules.multilabel.core.MultiLabelRule;
+import moa.core.SerializeUtils;
+import moa.streams.ArffFileStream;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the rule set index finds the same covering rules as evaluating
+ * all the rules.
+ */
+public class RuleSetIndexTest {
+
+    private static final int NUM_ATTRIBUTES = 4;
+
+    /** AMRules that checks its index against its rule set. */
+    public static class InspectableAMRulesOld extends AMRulesRegressorOld {
+
+        private static final long serialVersionUID = 1L;
+
+        public int checkIndex(Instance instance) {
+            assertEquals(this.ruleSet.size(), this.ruleSetIndex.size());
+            List<Rule> covering = new ArrayList<Rule>();
+            for (Rule rule : this.ruleSet) {
+                if (rule.isCovering(instance)) {
+                    covering.add(rule);
+                }
+            }
+            List<Rule> indexed = new ArrayList<Rule>();
+            for (Rule rule : this.ruleSetIndex.getCandidates(instance)) {
+                if (rule.isCovering(instance)) {
+                    indexed.add(rule);
+                }
+            }
+            assertEquals(covering, indexed);
+            return this.ruleSet.size();
+        }
+    }
+
+    /** AMRules that checks its index against its rule set. */
+    public static class InspectableAMRules extends AMRulesRegressor {
+
+        private static final long serialVersionUID = 1L;
+
+        public int checkIndex(MultiLabelInstance instance) {
+            assertEquals(this.ruleSet.size(), this.ruleSetIndex.size());
+            List<MultiLabelRule> covering = new ArrayList<MultiLabelRule>();
+            for (MultiLabelRule rule : this.ruleSet) {
+                if (rule.isCovering(instance)) {
+                    covering.add(rule);
+                }
+            }
+            List<MultiLabelRule> indexed = new ArrayList<MultiLabelRule>();
+            for (MultiLabelRule rule : this.ruleSetIndex.getCandidates(instance)) {
+                if (rule.isCovering(instance)) {
+                    indexed.add(rule);
+                }
+            }
+            assertEquals(covering, indexed);
+            return this.ruleSet.size();
+        }
+    }
+
+    private static String resource(String name) throws Exception {
+        return new File(RuleSetIndexTest.class.getClassLoader().getResource(name).toURI()).getPath();
+    }
+
+    private static InstancesHeader header() {
+        List<Attribute> attributes = new ArrayList<Attribute>();
+        for (int i = 0; i <= NUM_ATTRIBUTES; i++) {
+            attributes.add(new Attribute("a" + i));
+        }
+        Instances instances = new Instances("test", attributes, 0);
+        instances.setClassIndex(NUM_ATTRIBUTES);
+        return new InstancesHeader(instances);
+    }
+
+    private static NumericAttributeBinaryRulePredicate randomPredicate(Random random) {
+        NumericAttributeBinaryRulePredicate predicate = new NumericAttributeBinaryRulePredicate(
+                random.nextInt(NUM_ATTRIBUTES), random.nextInt(10), 1 + random.nextInt(2));
+        if (random.nextInt(10) == 0) {
+            predicate.negateCondition();
+        }
+        return predicate;
+    }
+
+    private static List<Predicate> randomPredicates(Random random) {
+        List<Predicate> predicates = new ArrayList<Predicate>();
+        int numPredicates = random.nextInt(4);
+        for (int i = 0; i < numPredicates; i++) {
+            predicates.add(randomPredicate(random));
+        }
+        return predicates;
+    }
+
+    private static boolean isCovering(List<Predicate> predicates, Instance instance) {
+        for (Predicate predicate : predicates) {
+            if (!predicate.evaluate(instance)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testRandomRules() {
+        Random random = new Random(1);
+        InstancesHeader header = header();
+        RuleSetIndex<List<Predicate>> index = new RuleSetIndex<List<Predicate>>();
+        List<List<Predicate>> rules = new ArrayList<List<Predicate>>();
+        for (int step = 0; step < 2000; step++) {
+            int action = random.nextInt(10);
+            if ((action < 4) || rules.isEmpty()) {
+                List<Predicate> rule = randomPredicates(random);
+                if ((action == 0) && !rules.isEmpty()) {
+                    int previous = random.nextInt(rules.size());
+                    index.addAfter(rules.get(previous), rule, rule);
+                    rules.add(previous + 1, rule);
+                } else {
+                    index.add(rule, rule);
+                    rules.add(rule);
+                }
+            } else if (action < 6) {
+                index.remove(rules.remove(random.nextInt(rules.size())));
+            } else {
+                List<Predicate> rule = rules.get(random.nextInt(rules.size()));
+                rule.add(randomPredicate(random));
+                index.update(rule, rule);
+            }
+            assertEquals(rules.size(), index.size());
+            checkCandidates(index, rules, random, header, 5);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOrderAndCopy() throws Exception {
+        Random random = new Random(2);
+        InstancesHeader header = header();
+        RuleSetIndex<List<Predicate>> index = new RuleSetIndex<List<Predicate>>();
+        List<List<Predicate>> rules = new ArrayList<List<Predicate>>();
+        for (int i = 0; i < 10; i++) {
+            List<Predicate> rule = randomPredicates(random);
+            index.add(rule, rule);
+            rules.add(rule);
+        }
+        // more rules between the same two than the order keys have room for
+        for (int i = 0; i < 200; i++) {
+            List<Predicate> rule = randomPredicates(random);
+            index.addAfter(rules.get(4), rule, rule);
+            rules.add(5, rule);
+        }
+        checkCandidates(index, rules, random, header, 200);
+        Object[] copy = (Object[]) SerializeUtils.copyObject(new Object[]{rules, index});
+        List<List<Predicate>> copiedRules = (List<List<Predicate>>) copy[0];
+        RuleSetIndex<List<Predicate>> copiedIndex = (RuleSetIndex<List<Predicate>>) copy[1];
+        assertEquals(rules.size(), copiedIndex.size());
+        checkCandidates(copiedIndex, copiedRules, random, header, 200);
+        List<Predicate> rule = randomPredicates(random);
+        copiedIndex.addAfter(copiedRules.get(0), rule, rule);
+        copiedRules.add(1, rule);
+        copiedIndex.remove(copiedRules.remove(copiedRules.size() - 1));
+        checkCandidates(copiedIndex, copiedRules, random, header, 200);
+    }
+
+    private static void checkCandidates(RuleSetIndex<List<Predicate>> index, List<List<Predicate>> rules,
+            Random random, InstancesHeader header, int numInstances) {
+        for (int i = 0; i < numInstances; i++) {
+            double[] values = new double[NUM_ATTRIBUTES + 1];
+            for (int j = 0; j < values.length; j++) {
+                values[j] = random.nextInt(12) - 1;
+            }
+            Instance instance = new DenseInstance(1, values);
+            instance.setDataset(header);
+            if (random.nextInt(5) == 0) {
+                instance.setMissing(random.nextInt(NUM_ATTRIBUTES));
+            }
+            List<List<Predicate>> covering = new ArrayList<List<Predicate>>();
+            for (List<Predicate> rule : rules) {
+                if (isCovering(rule, instance)) {
+                    covering.add(rule);
+                }
+            }
+            List<List<Predicate>> candidates = index.getCandidates(instance);
+            List<List<Predicate>> indexed = new ArrayList<List<Predicate>>();
+            for (List<Predicate> rule : candidates) {
+                if (isCovering(rule, instance)) {
+                    indexed.add(rule);
+                }
+            }
+            assertEquals(covering.size(), indexed.size());
+            for (int j = 0; j < covering.size(); j++) {
+                assertTrue(covering.get(j) == indexed.get(j));
+            }
+        }
+    }
+
+    private static ArffFileStream regressionStream() throws Exception {
+        ArffFileStream stream = new ArffFileStream(resource("moa/classifiers/data/regression.arff"), -1);
+        stream.prepareForUse();
+        return stream;
+    }
+
+    @Test
+    public void testAMRules() throws Exception {
+        ArffFileStream stream = regressionStream();
+        InspectableAMRules learner = new InspectableAMRules();
+        learner.unorderedRulesOption.set();
+        learner.gracePeriodOption.setValue(50);
+        learner.splitConfidenceOption.setValue(0.1);
+        learner.setModelContext(stream.getHeader());
+        learner.prepareForUse();
+        int numRules = 0;
+        for (int pass = 0; pass < 5; pass++) {
+            stream.restart();
+            while (stream.hasMoreInstances()) {
+                Instance instance = stream.nextInstance().getData();
+                numRules = Math.max(numRules, learner.checkIndex((MultiLabelInstance) instance));
+                learner.trainOnInstance(instance);
+            }
+        }
+        assertTrue(numRules > 5);
+    }
+
+    @Test
+    public void testAbstractAMRules() throws Exception {
+        ArffFileStream stream = regressionStream();
+        InspectableAMRulesOld learner = new InspectableAMRulesOld();
+        learner.unorderedRulesOption.set();
+        learner.gracePeriodOption.setValue(50);
+        learner.setModelContext(stream.getHeader());
+        learner.prepareForUse();
+        int numRules = 0;
+        while (stream.hasMoreInstances()) {
+            Instance instance = stream.nextInstance().getData();
+            numRules = Math.max(numRules, learner.checkIndex(instance));
+            learner.trainOnInstance(instance);
+        }
+        assertTrue(numRules > 10);
+    }
+}
@@ -0,0 +1,62 @@
+package moa.classifiers.rules.core.attributeclassobservers;
+
+import moa.classifiers.Classifier;
+import moa.classifiers.core.AttributeSplitSuggestion;
+import moa.classifiers.core.splitcriteria.SplitCriterion;
+import moa.classifiers.core.splitcriteria.VarianceReductionSplitCriterion;
+import moa.classifiers.rules.AMRulesRegressorOld;
+import moa.options.ClassOption;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the AMRules learners select the limited observers by their
+ * short names, and that the compact one keeps to its limit.
+ */
+public class CompactFIMTDDNumericAttributeClassLimitObserverTest {
+
+    @Test
+    public void testShortNames() throws Exception {
+        for (Class<?> observerClass : new Class<?>[]{FIMTDDNumericAttributeClassLimitObserver.class,
+            CompactFIMTDDNumericAttributeClassLimitObserver.class}) {
+            AMRulesRegressorOld learner = (AMRulesRegressorOld) ClassOption.cliStringToObject(
+                    "rules.AMRulesRegressorOld -z (" + observerClass.getSimpleName() + " -z 10)",
+                    Classifier.class, null);
+            Object observer = learner.numericObserverOption.getPreMaterializedObject();
+            assertEquals(observerClass, observer.getClass());
+            assertEquals(10, ((FIMTDDNumericAttributeClassLimitObserver) observer).maxNodesOption.getValue());
+        }
+    }
+
+    @Test
+    public void testLimit() {
+        Random random = new Random(1);
+        SplitCriterion criterion = new VarianceReductionSplitCriterion();
+        CompactFIMTDDNumericAttributeClassLimitObserver observer = new CompactFIMTDDNumericAttributeClassLimitObserver();
+        observer.maxNodesOption.setValue(10);
+        assertNull(observer.getBestEvaluatedSplitSuggestion(criterion, new double[3], 0, true));
+        double[] preSplitDist = new double[3];
+        for (int i = 0; i < 5000; i++) {
+            double attVal = random.nextGaussian();
+            double target = (attVal < 0.5 ? 10 : 20) + random.nextGaussian();
+            observer.observeAttributeClass(attVal, target, 1);
+            preSplitDist[0] += 1;
+            preSplitDist[1] += target;
+            preSplitDist[2] += target * target;
+        }
+        assertTrue(observer.numBins() <= 11);
+        AttributeSplitSuggestion suggestion = observer.getBestEvaluatedSplitSuggestion(
+                criterion, preSplitDist, 0, true);
+        assertTrue(suggestion.merit > 0);
+        // copies continue from the same bins
+        CompactFIMTDDNumericAttributeClassLimitObserver copy =
+                (CompactFIMTDDNumericAttributeClassLimitObserver) observer.copy();
+        assertEquals(suggestion.merit, copy.getBestEvaluatedSplitSuggestion(
+                criterion, preSplitDist, 0, true).merit, 0.0);
+    }
+}
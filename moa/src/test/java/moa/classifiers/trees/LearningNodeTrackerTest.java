@@ -0,0 +1,118 @@
+package moa.classifiers.trees;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.core.Measurement;
+import moa.streams.InstanceStream;
+import moa.streams.generators.RandomTreeGenerator;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that tracking the learning nodes of a Hoeffding tree manages its
+ * memory as scanning the tree does.
+ */
+public class LearningNodeTrackerTest {
+
+    private static final int NUM_INSTANCES = 50000;
+
+    /** Tree finding its learning nodes by scanning. */
+    public static class ScanningHoeffdingTree extends HoeffdingTree {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean tracksLearningNodes() {
+            return false;
+        }
+    }
+
+    private static void assertSameTrees(HoeffdingTree expected, HoeffdingTree actual) {
+        for (HoeffdingTree tree : new HoeffdingTree[]{expected, actual}) {
+            tree.maxByteSizeOption.setValue(100000);
+            tree.memoryEstimatePeriodOption.setValue(Integer.MAX_VALUE);
+            tree.gracePeriodOption.setValue(50);
+            tree.splitConfidenceOption.setValue(0.01);
+            tree.prepareForUse();
+            // fixed estimates, the sizes are not measured without the agent
+            tree.activeLeafByteSizeEstimate = 5000.0;
+            tree.inactiveLeafByteSizeEstimate = 100.0;
+        }
+        RandomTreeGenerator stream = new RandomTreeGenerator();
+        stream.prepareForUse();
+        expected.setModelContext(stream.getHeader());
+        actual.setModelContext(stream.getHeader());
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            Instance inst = stream.nextInstance().getData();
+            assertArrayEquals(expected.getVotesForInstance(inst), actual.getVotesForInstance(inst), 0.0);
+            expected.trainOnInstance(inst);
+            actual.trainOnInstance(inst);
+        }
+        Measurement[] expectedMeasurements = expected.getModelMeasurements();
+        Measurement[] actualMeasurements = actual.getModelMeasurements();
+        for (int i = 0; i < expectedMeasurements.length; i++) {
+            double expectedValue = expectedMeasurements[i].getValue();
+            if (expectedMeasurements[i].getName().equals("model serialized size (bytes)")) {
+                // the tracker accounts for its own memory
+                expectedValue += actual.getLearningNodeTracker().estimatedTrackingByteSize();
+            }
+            assertEquals(expectedMeasurements[i].getName(), expectedValue,
+                    actualMeasurements[i].getValue(), 0.0);
+        }
+        assertTrue(expected.inactiveLeafNodeCount > 0);
+    }
+
+    @Test
+    public void testSameTree() {
+        assertSameTrees(new ScanningHoeffdingTree(), new HoeffdingTree());
+    }
+
+    @Test
+    public void testSameTreeAfterCopy() {
+        HoeffdingTree expected = new ScanningHoeffdingTree();
+        HoeffdingTree actual = new HoeffdingTree();
+        assertSameTrees(expected, actual);
+        // the copy rebuilds its tracker from the tree
+        HoeffdingTree copy = (HoeffdingTree) actual.copy();
+        InstanceStream stream = new RandomTreeGenerator();
+        ((RandomTreeGenerator) stream).instanceRandomSeedOption.setValue(2);
+        ((RandomTreeGenerator) stream).prepareForUse();
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            Instance inst = stream.nextInstance().getData();
+            assertArrayEquals(expected.getVotesForInstance(inst), copy.getVotesForInstance(inst), 0.0);
+            expected.trainOnInstance(inst);
+            copy.trainOnInstance(inst);
+        }
+        assertEquals(expected.activeLeafNodeCount, copy.activeLeafNodeCount);
+        assertEquals(expected.inactiveLeafNodeCount, copy.inactiveLeafNodeCount);
+    }
+
+    @Test
+    public void testRemovedNodesReleased() {
+        HoeffdingTree tree = new HoeffdingTree();
+        tree.gracePeriodOption.setValue(50);
+        tree.splitConfidenceOption.setValue(0.01);
+        tree.prepareForUse();
+        RandomTreeGenerator stream = new RandomTreeGenerator();
+        stream.prepareForUse();
+        tree.setModelContext(stream.getHeader());
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            tree.trainOnInstance(stream.nextInstance().getData());
+        }
+        assertTrue(tree.decisionNodeCount > 0);
+        // split leaves wait in the outdated lists until the next estimate,
+        // they must not keep their statistics reachable until then
+        HoeffdingTree.LearningNodeTracker tracker = tree.getLearningNodeTracker();
+        int removed = 0;
+        for (HoeffdingTree.LearningNodeTracker.Entry entry : tracker.outdatedByteSizes) {
+            if (entry.removed) {
+                assertNull(entry.node);
+                removed++;
+            }
+        }
+        assertTrue(removed > 0);
+    }
+}
@@ -0,0 +1,109 @@
+package moa.clusterers.dstream;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the grid store of D-Stream against a HashMap, and the grids it returns
+ * as due.
+ */
+public class GridStoreTest {
+
+    private static CharacteristicVector vector(int time) {
+        return new CharacteristicVector(time, -1, 1.0, -1, false, 0.5, 2.0);
+    }
+
+    private static DensityGrid grid(int... coordinates) {
+        return new DensityGrid(coordinates);
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        Random random = new Random(1);
+        GridStore store = new GridStore();
+        Map<DensityGrid, CharacteristicVector> expected = new HashMap<DensityGrid, CharacteristicVector>();
+        Map<DensityGrid, Integer> removed = new HashMap<DensityGrid, Integer>();
+        for (int time = 0; time < 20000; time++) {
+            DensityGrid dg = grid(random.nextInt(20) - 10, random.nextInt(20), random.nextInt(3));
+            if (expected.containsKey(dg) && random.nextBoolean()) {
+                store.remove(dg, time, Integer.MAX_VALUE);
+                expected.remove(dg);
+                removed.put(dg, time);
+            } else if (!expected.containsKey(dg)) {
+                assertEquals(removed.containsKey(dg) ? removed.remove(dg) : -1, store.getRemoveTime(dg));
+                CharacteristicVector cv = vector(time);
+                store.put(dg, cv);
+                expected.put(dg, cv);
+            }
+            assertEquals(expected.size(), store.size());
+            DensityGrid probe = grid(random.nextInt(20) - 10, random.nextInt(20), random.nextInt(3));
+            assertEquals(expected.containsKey(probe), store.containsKey(probe));
+            assertSame(expected.get(probe), store.get(probe));
+        }
+        for (int i = 0; i < store.size(); i++) {
+            assertSame(expected.get(store.getGrid(i)), store.getVector(i));
+        }
+        assertEquals(expected.keySet(), new HashSet<DensityGrid>(store.getGrids()));
+    }
+
+    @Test
+    public void testPollDue() {
+        GridStore store = new GridStore();
+        store.setResolution(10);
+        for (int i = 0; i < 100; i++) {
+            store.put(grid(i, -i), vector(0));
+        }
+        assertEquals(100, store.pollDue(0).size());
+        assertTrue(store.pollDue(10).isEmpty());
+
+        // Schedule grid i at time 10 * i + 5, beyond one turn of the wheel for some grids
+        for (int i = 0; i < 100; i++) {
+            store.schedule(grid(i, -i), 10 * i + 5 + (i % 2) * 2560 * 10);
+        }
+        store.setDirty(grid(7, -7));
+        Set<DensityGrid> due = new HashSet<DensityGrid>(store.pollDue(20));
+        assertEquals(new HashSet<DensityGrid>(Arrays.asList(grid(0, 0), grid(7, -7))), due);
+        for (int time = 30; time <= 1000; time += 10) {
+            List<DensityGrid> polled = store.pollDue(time);
+            int i = (time - 5) / 10;
+            if (i % 2 == 0 && i != 0) {
+                assertEquals(1, polled.size());
+                assertEquals(grid(i, -i), polled.get(0));
+            } else {
+                assertTrue(polled.isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testForgetRemovedGrids() {
+        GridStore store = new GridStore();
+        store.setResolution(5);
+        DensityGrid dg = grid(1, 2, 3);
+        store.put(dg, vector(0));
+        store.remove(dg, 10, 13);
+        assertFalse(store.containsKey(dg));
+        assertNull(store.get(dg));
+        assertEquals(10, store.getRemoveTime(dg));
+        store.pollDue(10);
+        assertEquals(10, store.getRemoveTime(dg));
+        assertTrue(store.pollDue(15).isEmpty());
+        assertEquals(-1, store.getRemoveTime(dg));
+        store.put(dg, vector(20));
+        assertTrue(store.containsKey(dg));
+        assertEquals(1, store.size());
+    }
+}
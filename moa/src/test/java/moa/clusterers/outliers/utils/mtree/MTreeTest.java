@@ -0,0 +1,166 @@
+package moa.clusterers.outliers.utils.mtree;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the queries on the M-Tree find the same neighbors as a linear
+ * scan, after adding and removing data objects one by one and in batches.
+ */
+public class MTreeTest {
+
+    private static class TestMTree extends MTree<List<Double>> {
+        TestMTree(int minNodeCapacity) {
+            super(minNodeCapacity, DistanceFunctions.EUCLIDEAN_DOUBLE_LIST, null);
+        }
+
+        void check() {
+            _check();
+        }
+    }
+
+    private final Random random = new Random(1);
+
+    private List<Double> randomPoint() {
+        return Arrays.asList(random.nextDouble(), random.nextDouble(), random.nextDouble());
+    }
+
+    private static void assertSameNeighbors(TestMTree mtree, List<List<Double>> data, List<Double> query,
+            double range, int limit) {
+        List<Double> expected = new ArrayList<Double>();
+        for (List<Double> d : data) {
+            double distance = DistanceFunctions.EUCLIDEAN_DOUBLE_LIST.calculate(query, d);
+            if (distance <= range) {
+                expected.add(distance);
+            }
+        }
+        Collections.sort(expected);
+        if (expected.size() > limit) {
+            expected = expected.subList(0, limit);
+        }
+        List<Double> found = new ArrayList<Double>();
+        for (MTree<List<Double>>.ResultItem item : mtree.getNearest(query, range, limit)) {
+            assertEquals(item.distance, DistanceFunctions.EUCLIDEAN_DOUBLE_LIST.calculate(query, item.data), 0.0);
+            found.add(item.distance);
+        }
+        assertEquals(expected, found);
+    }
+
+    private void assertSameQueries(TestMTree mtree, List<List<Double>> data) {
+        mtree.check();
+        assertEquals(data.size(), mtree.size());
+        for (int i = 0; i < 20; i++) {
+            List<Double> query = randomPoint();
+            assertSameNeighbors(mtree, data, query, 0.2, Integer.MAX_VALUE);
+            assertSameNeighbors(mtree, data, query, Double.POSITIVE_INFINITY, 7);
+        }
+    }
+
+    private void testAddRemove(int minNodeCapacity) {
+        TestMTree mtree = new TestMTree(minNodeCapacity);
+        List<List<Double>> data = new ArrayList<List<Double>>();
+        for (int i = 0; i < 3000; i++) {
+            if (data.isEmpty() || random.nextDouble() < 0.6) {
+                List<Double> point = randomPoint();
+                mtree.add(point);
+                data.add(point);
+            } else {
+                List<Double> point = data.remove(random.nextInt(data.size()));
+                assertTrue(mtree.remove(point));
+                assertFalse(mtree.remove(point));
+            }
+            if (i % 250 == 0) {
+                assertSameQueries(mtree, data);
+            }
+        }
+        assertSameQueries(mtree, data);
+        for (List<Double> point : data) {
+            assertTrue(mtree.remove(point));
+        }
+        assertEquals(0, mtree.size());
+        assertFalse(mtree.getNearest(randomPoint()).iterator().hasNext());
+    }
+
+    @Test
+    public void testAddRemove() {
+        testAddRemove(2);
+        testAddRemove(5);
+        testAddRemove(MTree.DEFAULT_MIN_NODE_CAPACITY);
+    }
+
+    @Test
+    public void testSlidingWindow() {
+        TestMTree mtree = new TestMTree(3);
+        List<List<Double>> window = new ArrayList<List<Double>>();
+        for (int slide = 0; slide < 20; slide++) {
+            List<List<Double>> added = new ArrayList<List<Double>>();
+            for (int i = 0; i < 100; i++) {
+                added.add(randomPoint());
+            }
+            mtree.addAll(added);
+            window.addAll(added);
+            if (window.size() > 500) {
+                List<List<Double>> expired = new ArrayList<List<Double>>(window.subList(0, 100));
+                window.subList(0, 100).clear();
+                assertEquals(expired.size(), mtree.removeAll(expired));
+            }
+            assertSameQueries(mtree, window);
+        }
+    }
+
+    private void testRemoveAll(int minNodeCapacity) {
+        TestMTree mtree = new TestMTree(minNodeCapacity);
+        List<List<Double>> data = new ArrayList<List<Double>>();
+        for (int batchSize : new int[] {1, 3, 20, 150, 600}) {
+            while (data.size() < 1500) {
+                List<Double> point = randomPoint();
+                mtree.add(point);
+                data.add(point);
+            }
+            Collections.shuffle(data, random);
+            List<List<Double>> removed = new ArrayList<List<Double>>(data.subList(0, batchSize));
+            data.subList(0, batchSize).clear();
+            // data objects which are not indexed are ignored
+            removed.add(randomPoint());
+            assertEquals(batchSize, mtree.removeAll(removed));
+            assertSameQueries(mtree, data);
+            assertEquals(0, mtree.removeAll(removed));
+        }
+        assertEquals(data.size(), mtree.removeAll(data));
+        assertEquals(0, mtree.size());
+        assertFalse(mtree.getNearest(randomPoint()).iterator().hasNext());
+    }
+
+    @Test
+    public void testRemoveAll() {
+        testRemoveAll(2);
+        testRemoveAll(5);
+        testRemoveAll(MTree.DEFAULT_MIN_NODE_CAPACITY);
+    }
+
+    @Test
+    public void testBulkLoad() {
+        for (int n : new int[] {1, 2, 5, 6, 37, 1000}) {
+            TestMTree mtree = new TestMTree(3);
+            List<List<Double>> data = new ArrayList<List<Double>>();
+            for (int i = 0; i < n; i++) {
+                data.add(randomPoint());
+            }
+            mtree.addAll(data);
+            assertSameQueries(mtree, data);
+            List<Double> point = randomPoint();
+            mtree.add(point);
+            data.add(point);
+            assertSameQueries(mtree, data);
+        }
+    }
+}
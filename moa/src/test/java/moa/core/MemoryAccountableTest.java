@@ -0,0 +1,160 @@
+package moa.core;
+
+import java.util.ArrayList;
+import moa.classifiers.Classifier;
+import moa.classifiers.meta.OzaBag;
+import moa.classifiers.trees.HoeffdingTree;
+import moa.options.ClassOption;
+import moa.streams.generators.RandomRBFGenerator;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the memory size estimates, that the running estimates of the
+ * Hoeffding tree match estimates computed from scratch, and that the
+ * estimates of growing models are close to the sizes measured by the agent.
+ */
+public class MemoryAccountableTest {
+
+    public static class Fields {
+
+        protected int i;
+
+        protected double d;
+
+        protected Object o;
+    }
+
+    /** Tree that estimates its size from scratch on request. */
+    public static class InspectableTree extends HoeffdingTree {
+
+        private static final long serialVersionUID = 1L;
+
+        public long estimateFromScratch() {
+            return estimateWithoutTracker() + getLearningNodeTracker().estimatedTrackingByteSize();
+        }
+
+        public long estimateWithoutTracker() {
+            return SizeOf.shallowSizeOfInstance(getClass()) + estimatedOptionsByteSize()
+                    + this.treeRoot.estimateByteSizeIncludingSubtree();
+        }
+    }
+
+    /** Bag that exposes the estimated size of its options. */
+    public static class InspectableBag extends OzaBag {
+
+        private static final long serialVersionUID = 1L;
+
+        public long optionsByteSize() {
+            return estimatedOptionsByteSize();
+        }
+    }
+
+    @Test
+    public void testSizes() {
+        assertEquals(96, SizeOf.sizeOfArray(new double[10]));
+        assertEquals(32, SizeOf.sizeOfArray(new int[3]));
+        assertEquals(16, SizeOf.sizeOfArray(new Object[0]));
+        assertEquals(0, SizeOf.sizeOfArray((double[]) null));
+        assertEquals(32, SizeOf.shallowSizeOfInstance(Fields.class));
+        assertEquals(24, SizeOf.alignObjectSize(17));
+
+        DoubleVector vector = new DoubleVector();
+        long empty = vector.estimatedByteSize();
+        vector.setValue(9, 1.0);
+        assertEquals(80, vector.estimatedByteSize() - empty);
+    }
+
+    @Test
+    public void testRunningTreeEstimate() {
+        RandomRBFGenerator stream = new RandomRBFGenerator();
+        stream.prepareForUse();
+        InspectableTree tree = new InspectableTree();
+        tree.gracePeriodOption.setValue(50);
+        tree.setModelContext(stream.getHeader());
+        tree.prepareForUse();
+        long estimate = 0;
+        for (int i = 0; i < 4; i++) {
+            for (int j = 0; j < 5000; j++) {
+                tree.trainOnInstance(stream.nextInstance());
+            }
+            estimate = tree.estimatedByteSize();
+            assertEquals(tree.estimateFromScratch(), estimate);
+            assertEquals(estimate, tree.measureByteSize());
+        }
+        assertTrue(estimate > SizeOf.shallowSizeOfInstance(InspectableTree.class));
+        // the copy tracks its nodes again, without the removed ones
+        assertEquals(tree.estimateWithoutTracker(), ((InspectableTree) tree.copy()).estimateWithoutTracker());
+
+        // Deactivating and activating leaves keeps the estimate up to date
+        tree.maxByteSizeOption.setValue((int) (estimate / 2));
+        tree.memoryEstimatePeriodOption.setValue(1000);
+        for (int j = 0; j < 5000; j++) {
+            tree.trainOnInstance(stream.nextInstance());
+        }
+        Measurement[] measurements = tree.getModelMeasurements();
+        assertTrue(Measurement.getMeasurementNamed("active leaf byte size estimate",
+                measurements).getValue() > 0);
+        assertTrue(Measurement.getMeasurementNamed("active learning leaves", measurements).getValue()
+                < Measurement.getMeasurementNamed("tree size (leaves)", measurements).getValue());
+        assertEquals(tree.estimateFromScratch(), tree.estimatedByteSize());
+    }
+
+    @Test
+    public void testEnsembleEstimate() {
+        RandomRBFGenerator stream = new RandomRBFGenerator();
+        stream.prepareForUse();
+        InspectableBag bag = new InspectableBag();
+        bag.ensembleSizeOption.setValue(3);
+        bag.setModelContext(stream.getHeader());
+        bag.prepareForUse();
+        for (int i = 0; i < 2000; i++) {
+            bag.trainOnInstance(stream.nextInstance());
+        }
+        long members = 0;
+        for (Classifier member : bag.getSubClassifiers()) {
+            members += ((MemoryAccountable) member).estimatedByteSize();
+        }
+        long estimate = SizeOf.measuredSizeOf(bag);
+        assertEquals(SizeOf.shallowSizeOfInstance(InspectableBag.class) + bag.optionsByteSize()
+                + SizeOf.sizeOfArray(3, SizeOf.REFERENCE_BYTES) + members, estimate);
+        assertEquals(estimate, bag.measureByteSize());
+
+        SizeOf.setVerifying(true);
+        try {
+            assertEquals(SizeOf.fullSizeOf(bag), SizeOf.measuredSizeOf(bag));
+        } finally {
+            SizeOf.setVerifying(false);
+        }
+    }
+
+    /**
+     * Compares the estimates with the sizes measured by the agent, which
+     * needs -javaagent:sizeofag.jar and, to measure the collections,
+     * --add-opens java.base/java.util=ALL-UNNAMED. The estimates must be
+     * within 10% of the measured sizes.
+     */
+    @Test
+    public void testEstimatesAgainstAgent() throws Exception {
+        // the agent is present and measures the array of a list
+        ArrayList<Object> list = new ArrayList<Object>(10);
+        Assume.assumeTrue(SizeOf.fullSizeOf(list) > SizeOf.sizeOf(list));
+        String[] learners = {"trees.HoeffdingTree", "trees.HoeffdingAdaptiveTree",
+            "meta.OzaBag -s 3", "meta.AdaptiveRandomForest -s 3"};
+        for (String learner : learners) {
+            RandomRBFGenerator stream = new RandomRBFGenerator();
+            stream.prepareForUse();
+            Classifier classifier = (Classifier) ClassOption.cliStringToObject(learner, Classifier.class, null);
+            classifier.setModelContext(stream.getHeader());
+            classifier.prepareForUse();
+            for (int i = 0; i < 20000; i++) {
+                classifier.trainOnInstance(stream.nextInstance());
+            }
+            long measured = SizeOf.fullSizeOf(classifier);
+            assertEquals(learner, measured, SizeOf.measuredSizeOf(classifier), 0.1 * measured);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package moa.core;
+
+import moa.classifiers.core.driftdetection.ADWINChangeDetector;
+import moa.classifiers.meta.OzaBag;
+import moa.classifiers.trees.HoeffdingTree;
+import moa.evaluation.BasicClassificationPerformanceEvaluator;
+import moa.streams.generators.RandomRBFGenerator;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that structural copies are the same as those of serialization round
+ * trips.
+ */
+public class StructuralCopierTest {
+
+    private static byte[] serialize(Object obj) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(obj);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void assertSameAsSerialization(Serializable obj) throws Exception {
+        Object copy = StructuralCopier.copyObject(obj);
+        assertNotSame(obj, copy);
+        assertArrayEquals(serialize(SerializeUtils.copyObject(obj)), serialize(copy));
+    }
+
+    @Test
+    public void testLearnersDetectorsEvaluators() throws Exception {
+        RandomRBFGenerator stream = new RandomRBFGenerator();
+        stream.prepareForUse();
+        HoeffdingTree tree = new HoeffdingTree();
+        tree.gracePeriodOption.setValue(50);
+        tree.setModelContext(stream.getHeader());
+        tree.prepareForUse();
+        OzaBag bag = new OzaBag();
+        bag.setModelContext(stream.getHeader());
+        bag.prepareForUse();
+        ADWINChangeDetector detector = new ADWINChangeDetector();
+        detector.prepareForUse();
+        BasicClassificationPerformanceEvaluator evaluator = new BasicClassificationPerformanceEvaluator();
+        evaluator.prepareForUse();
+        for (int i = 0; i < 5000; i++) {
+            InstanceExample example = stream.nextInstance();
+            double[] votes = tree.getVotesForInstance(example.getData());
+            evaluator.addResult(example, votes);
+            detector.input(Utils.maxIndex(votes) == example.getData().classValue() ? 0 : 1);
+            tree.trainOnInstance(example.getData());
+            bag.trainOnInstance(example.getData());
+        }
+        assertSameAsSerialization(tree);
+        assertSameAsSerialization(bag);
+        assertSameAsSerialization(detector);
+        assertSameAsSerialization(evaluator);
+
+        // The copy learns on its own
+        HoeffdingTree copy = (HoeffdingTree) tree.copy();
+        byte[] before = serialize(tree);
+        for (int i = 0; i < 1000; i++) {
+            copy.trainOnInstance(stream.nextInstance().getData());
+        }
+        assertArrayEquals(before, serialize(tree));
+    }
+
+    /** Non-serializable superclass, whose constructor is run by serialization. */
+    public static class Base {
+
+        protected int baseValue = 7;
+
+        public Base() {
+        }
+    }
+
+    public static class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected int[] parts;
+
+        public Key(int... parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(this.parts);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof Key) && Arrays.equals(this.parts, ((Key) obj).parts);
+        }
+    }
+
+    public static class Node extends Base implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        protected final String name;
+
+        protected Node next;
+
+        protected double[] values = {1, 2};
+
+        protected transient List<String> cache = new ArrayList<String>();
+
+        protected Object other;
+
+        protected List<Object> list = new ArrayList<Object>();
+
+        protected Map<Key, Node> map = new HashMap<Key, Node>();
+
+        protected Random random = new Random(3);
+
+        public Node(String name) {
+            this.name = name;
+        }
+    }
+
+    @Test
+    public void testSerializationSemantics() throws Exception {
+        Node a = new Node("a");
+        Node b = new Node("b");
+        a.baseValue = 1;
+        a.next = b;
+        b.next = a;
+        a.other = a.values;
+        b.values = a.values;
+        a.list.add(b);
+        a.list.add(new LinkedList<Object>(Arrays.asList(a, "x", 2)));
+        a.map.put(new Key(1, 2), b);
+        b.map.put(new Key(3), a);
+        a.random.nextGaussian();
+        assertSameAsSerialization(a);
+
+        Node copy = (Node) StructuralCopier.copyObject(a);
+        Node copyB = copy.next;
+        assertEquals("a", copy.name);
+        assertSame(copy, copyB.next);
+        assertNotSame(a.values, copy.values);
+        assertSame(copy.values, copy.other);
+        assertSame(copy.values, copyB.values);
+        assertSame(copyB, copy.list.get(0));
+        assertSame(copy, ((List<?>) copy.list.get(1)).get(0));
+        assertSame(copyB, copy.map.get(new Key(1, 2)));
+        assertSame(copy, copyB.map.get(new Key(3)));
+        assertEquals(a.random.nextGaussian(), copy.random.nextGaussian(), 0);
+
+        // Transient fields are left at their default values, and the fields of
+        // the non-serializable superclass are set by its constructor
+        assertNull(copy.cache);
+        assertEquals(7, copy.baseValue);
+
+        // Lists containing themselves are copied by serialization
+        a.list.add(a.list);
+        assertSameAsSerialization(a);
+        copy = (Node) StructuralCopier.copyObject(a);
+        assertSame(copy.list, copy.list.get(2));
+
+        // Objects that cannot be serialized cannot be copied
+        a.other = new Object();
+        try {
+            StructuralCopier.copyObject(a);
+            fail("Copied an object that cannot be serialized");
+        } catch (NotSerializableException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testListSubclasses() throws Exception {
+        AutoExpandVector<Object> vector = new AutoExpandVector<Object>();
+        vector.set(3, "x");
+        vector.set(1, new DoubleVector(new double[]{1, 2}));
+        FastVector<Object> fastVector = new FastVector<Object>();
+        fastVector.addElement(vector);
+        fastVector.addElement(vector.get(1));
+        assertSameAsSerialization(fastVector);
+
+        FastVector<?> copy = (FastVector<?>) StructuralCopier.copyObject(fastVector);
+        AutoExpandVector<?> vectorCopy = (AutoExpandVector<?>) copy.get(0);
+        assertEquals(4, vectorCopy.size());
+        assertNull(vectorCopy.get(0));
+        assertSame(vectorCopy.get(1), copy.get(1));
+        assertEquals(2, ((DoubleVector) copy.get(1)).getValue(1), 0);
+    }
+}
@@ -0,0 +1,109 @@
+package moa.evaluation;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import moa.cluster.Cluster;
+import moa.cluster.Clustering;
+import moa.cluster.SphereCluster;
+import moa.gui.visualization.DataPoint;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the silhouette coefficient against its definition, and its sampled
+ * approximation against the exact coefficient.
+ */
+public class SilhouetteCoefficientTest {
+
+    private static final double[][] CENTERS = {{0, 0}, {10, 0}, {5, 5}};
+
+    private static ArrayList<DataPoint> points(int numPoints) {
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+        attributes.add(new Attribute("x"));
+        attributes.add(new Attribute("y"));
+        attributes.add(new Attribute("class", new ArrayList<String>(Arrays.asList("0", "1", "2"))));
+        Instances header = new Instances("test", attributes, 0);
+        header.setClassIndex(2);
+        Random random = new Random(1);
+        ArrayList<DataPoint> points = new ArrayList<DataPoint>();
+        for (int i = 0; i < numPoints; i++) {
+            int c = random.nextInt(CENTERS.length);
+            double angle = 2 * Math.PI * random.nextDouble();
+            double radius = 2 * random.nextDouble();
+            Instance inst = new DenseInstance(1.0, new double[]{CENTERS[c][0] + radius * Math.cos(angle),
+                    CENTERS[c][1] + radius * Math.sin(angle), c});
+            inst.setDataset(header);
+            points.add(new DataPoint(inst, i));
+        }
+        return points;
+    }
+
+    private static Clustering clustering() {
+        Cluster[] clusters = new Cluster[CENTERS.length];
+        for (int c = 0; c < CENTERS.length; c++) {
+            clusters[c] = new SphereCluster(CENTERS[c], 2.0);
+        }
+        return new Clustering(clusters);
+    }
+
+    /** Average over the points of the normalized silhouette, each point being in the cluster of its class. */
+    private static double definition(ArrayList<DataPoint> points) {
+        double sum = 0;
+        for (DataPoint p : points) {
+            double[] distances = new double[CENTERS.length];
+            int[] counts = new int[CENTERS.length];
+            for (DataPoint q : points) {
+                if (q != p) {
+                    double d = 0;
+                    for (int i = 0; i < p.numAttributes(); i++) {
+                        d += (p.value(i) - q.value(i)) * (p.value(i) - q.value(i));
+                    }
+                    distances[(int) q.classValue()] += Math.sqrt(d);
+                    counts[(int) q.classValue()]++;
+                }
+            }
+            int own = (int) p.classValue();
+            double a = distances[own] / counts[own];
+            double b = Double.MAX_VALUE;
+            for (int c = 0; c < CENTERS.length; c++) {
+                if (c != own) {
+                    b = Math.min(b, distances[c] / counts[c]);
+                }
+            }
+            sum += (b - a) / Math.max(a, b);
+        }
+        return (sum / points.size() + 1) / 2;
+    }
+
+    @Test
+    public void testExact() {
+        ArrayList<DataPoint> points = points(500);
+        SilhouetteCoefficient silhouette = new SilhouetteCoefficient();
+        silhouette.evaluateClustering(clustering(), null, points);
+        assertEquals(definition(points), silhouette.getLastValue(0), 1e-12);
+        assertEquals(0.0, silhouette.getErrorBound(), 0.0);
+        assertEquals(0.0, silhouette.getLastValue(1), 0.0);
+    }
+
+    @Test
+    public void testSampled() {
+        ArrayList<DataPoint> points = points(3000);
+        SilhouetteCoefficient exact = new SilhouetteCoefficient();
+        exact.evaluateClustering(clustering(), null, points);
+        SilhouetteCoefficient sampled = new SilhouetteCoefficient();
+        sampled.maxSampleSize = 300;
+        sampled.evaluateClustering(clustering(), null, points);
+        assertTrue(sampled.getErrorBound() > 0);
+        assertEquals("SilhCoeffBound", sampled.getName(1));
+        assertEquals(sampled.getErrorBound(), sampled.getLastValue(1), 0.0);
+        assertEquals(exact.getLastValue(0), sampled.getLastValue(0), sampled.getErrorBound());
+    }
+}
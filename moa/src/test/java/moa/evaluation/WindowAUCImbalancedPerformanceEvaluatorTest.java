@@ -0,0 +1,118 @@
+package moa.evaluation;
+
+import com.yahoo.labs.samoa.instances.Attribute;
+import com.yahoo.labs.samoa.instances.DenseInstance;
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+import moa.core.InstanceExample;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that the windowed AUC and scored AUC updated on every example equal
+ * the ones computed from all the pairs of examples of the window.
+ */
+public class WindowAUCImbalancedPerformanceEvaluatorTest {
+
+    private static final int WIDTH = 100;
+
+    /** Fraction of the pairs of positive and negative examples ranked correctly, ties counting half. */
+    private static double pairwiseAUC(double[] scores, boolean[] positive, int from, int to) {
+        double pairs = 0;
+        double correct = 0;
+        for (int i = from; i < to; i++) {
+            for (int j = from; j < to; j++) {
+                if (positive[i] && !positive[j]) {
+                    pairs++;
+                    if (scores[i] > scores[j]) {
+                        correct++;
+                    } else if (scores[i] == scores[j]) {
+                        correct += 0.5;
+                    }
+                }
+            }
+        }
+        return pairs == 0 ? 1 : correct / pairs;
+    }
+
+    /**
+     * Scored AUC from all the pairs of positive and negative examples: the
+     * mean over the pairs of the positive score when it ranks above the
+     * negative one, minus the mean of the negative score when it does not
+     * rank above the positive one. As in the former TreeSet implementation,
+     * ties count half for the positive score and fully for the negative one.
+     */
+    private static double pairwiseScoredAUC(double[] scores, boolean[] positive, int from, int to) {
+        double pairs = 0;
+        double rPlus = 0;
+        double rMinus = 0;
+        for (int i = from; i < to; i++) {
+            for (int j = from; j < to; j++) {
+                if (positive[i] && !positive[j]) {
+                    pairs++;
+                    if (scores[i] > scores[j]) {
+                        rPlus += scores[i];
+                    } else if (scores[i] == scores[j]) {
+                        rPlus += scores[i] / 2;
+                    }
+                    if (scores[j] <= scores[i]) {
+                        rMinus += scores[j];
+                    }
+                }
+            }
+        }
+        return pairs == 0 ? 1 : (rPlus - rMinus) / pairs;
+    }
+
+    private static void assertPairwiseAUC(int levels) {
+        ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+        attributes.add(new Attribute("x"));
+        attributes.add(new Attribute("class", Arrays.asList("neg", "pos")));
+        Instances header = new Instances("test", attributes, 0);
+        header.setClassIndex(1);
+        WindowAUCImbalancedPerformanceEvaluator evaluator = new WindowAUCImbalancedPerformanceEvaluator();
+        evaluator.widthOption.setValue(WIDTH);
+        evaluator.prepareForUse();
+
+        Random random = new Random(7);
+        int numInstances = 20 * WIDTH;
+        double[] scores = new double[numInstances];
+        boolean[] positive = new boolean[numInstances];
+        for (int i = 0; i < numInstances; i++) {
+            // the positive class gets rarer and then more frequent
+            positive[i] = random.nextDouble() < (i < numInstances / 2 ? 0.05 : 0.5);
+            double score = Math.min(1, 0.3 * (positive[i] ? 1 : 0) + 0.7 * random.nextDouble());
+            scores[i] = levels > 0 ? Math.round(score * levels) / (double) levels : score;
+            Instance inst = new DenseInstance(1.0, new double[]{0, positive[i] ? 1 : 0});
+            inst.setDataset(header);
+            evaluator.addResult(new InstanceExample(inst), new double[]{1 - scores[i], scores[i]});
+
+            int from = Math.max(0, i + 1 - WIDTH);
+            assertEquals("AUC at instance " + i, pairwiseAUC(scores, positive, from, i + 1),
+                    evaluator.getAucEstimator().getAUC(), 1e-12);
+            assertEquals("scored AUC at instance " + i, pairwiseScoredAUC(scores, positive, from, i + 1),
+                    evaluator.getAucEstimator().getScoredAUC(), 1e-9);
+            if (i >= WIDTH) {
+                // the holdout AUC is the AUC of the last full window
+                int holdout = i / WIDTH * WIDTH;
+                assertEquals("holdout AUC at instance " + i, pairwiseAUC(scores, positive, holdout - WIDTH, holdout),
+                        evaluator.getAucEstimator().getHoldoutAUC(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testDistinctScores() {
+        assertPairwiseAUC(0);
+    }
+
+    @Test
+    public void testTiedScores() {
+        assertPairwiseAUC(5);
+    }
+}
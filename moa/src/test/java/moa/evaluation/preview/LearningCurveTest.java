@@ -0,0 +1,96 @@
+package moa.evaluation.preview;
+
+import moa.core.Measurement;
+import moa.core.StringUtils;
+import moa.evaluation.LearningEvaluation;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that snapshots of learning curves keep the entries they were taken
+ * with, and that readers are told which entries they already read.
+ */
+public class LearningCurveTest {
+
+    private static LearningEvaluation evaluation(double instances, double accuracy) {
+        return new LearningEvaluation(new Measurement[]{
+                new Measurement("instances", instances),
+                new Measurement("accuracy", accuracy)});
+    }
+
+    @Test
+    public void testSnapshots() {
+        LearningCurve curve = new LearningCurve("instances");
+        LearningCurve empty = curve.snapshot();
+        for (int i = 1; i <= 100; i++) {
+            curve.insertEntry(evaluation(i, i / 100.0));
+        }
+        LearningCurve snapshot = curve.snapshot();
+        String description = snapshot.toString();
+        for (int i = 101; i <= 1000; i++) {
+            curve.insertEntry(evaluation(i, i / 1000.0));
+        }
+        assertEquals(0, empty.numEntries());
+        assertEquals(1, empty.getMeasurementNameCount());
+        assertEquals(100, snapshot.numEntries());
+        assertEquals(description, snapshot.toString());
+        assertEquals(1000, curve.numEntries());
+        assertEquals("instances,accuracy", curve.headerToString());
+        assertEquals("1000.0,1.0", curve.entryToString(999));
+        assertEquals(100, curve.numEntriesUnchangedSince(snapshot));
+        assertEquals(100, curve.snapshot().numEntriesUnchangedSince(snapshot));
+        assertEquals(0, curve.numEntriesUnchangedSince(new LearningCurve("instances")));
+
+        // Adding to a snapshot leaves the curve unchanged
+        snapshot.insertEntry(evaluation(101, -1));
+        assertEquals(101, snapshot.numEntries());
+        assertEquals(-1, snapshot.getMeasurement(100, 1), 0);
+        assertEquals(0.101, curve.getMeasurement(100, 1), 0);
+        assertEquals(1000, curve.numEntries());
+    }
+
+    @Test
+    public void testInsertions() {
+        LearningCurve curve = new LearningCurve("instances");
+        curve.insertEntry(evaluation(1, 0.1));
+        curve.insertEntry(evaluation(3, 0.3));
+        LearningCurve snapshot = curve.snapshot();
+        curve.insertEntry(evaluation(2, 0.2));
+        curve.insertEntry(evaluation(3, 0.4));
+        assertEquals(4, curve.numEntries());
+        assertArrayEquals(new double[]{1, 2, 3, 3},
+                new double[]{curve.getMeasurement(0, 0), curve.getMeasurement(1, 0),
+                        curve.getMeasurement(2, 0), curve.getMeasurement(3, 0)}, 0);
+        assertEquals(0.4, curve.getMeasurement(2, 1), 0);
+        assertEquals(0.3, curve.getMeasurement(3, 1), 0);
+        assertEquals("instances,accuracy" + StringUtils.newline + "1.0,0.1"
+                + StringUtils.newline + "3.0,0.3", snapshot.toString());
+
+        // Entries inserted before others change the entries read before
+        assertEquals(0, curve.numEntriesUnchangedSince(snapshot));
+
+        // A new measurement is only added to the curve
+        curve.insertEntry(new LearningEvaluation(new Measurement[]{
+                new Measurement("instances", 4), new Measurement("kappa", 0.5)}));
+        assertEquals(3, curve.getMeasurementNameCount());
+        assertEquals(2, snapshot.getMeasurementNameCount());
+        assertEquals("4.0,0.0,0.5", curve.entryToString(4));
+        assertArrayEquals(new double[]{1, 0.1, Double.NaN}, curve.getEntryData(0), 0);
+    }
+
+    @Test
+    public void testCopy() {
+        LearningCurve curve = new LearningCurve("instances");
+        for (int i = 1; i <= 20; i++) {
+            curve.insertEntry(evaluation(i, 0));
+        }
+        LearningCurve copy = (LearningCurve) curve.snapshot().copy();
+        copy.insertEntry(evaluation(21, 0));
+        curve.insertEntry(evaluation(21, 1));
+        assertEquals(21, copy.numEntries());
+        assertEquals(0, copy.getMeasurement(20, 1), 0);
+        assertEquals(1, curve.getMeasurement(20, 1), 0);
+    }
+}
@@ -0,0 +1,189 @@
+package moa.recommender.rc.data.impl;
+
+import moa.recommender.rc.predictor.impl.BRISMFPredictor;
+import moa.recommender.rc.utils.Rating;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the array-backed recommender data against maps of ratings, and the
+ * BRISMF predictor trained on it.
+ */
+public class MemRecommenderDataTest {
+
+    private static long key(int userID, int itemID) {
+        return ((long) userID << 32) | (itemID & 0xffffffffL);
+    }
+
+    @Test
+    public void testRatingsMatchMaps() {
+        Random random = new Random(1);
+        MemRecommenderData data = new MemRecommenderData();
+        Map<Long, Double> expected = new HashMap<Long, Double>();
+        for (int i = 0; i < 20000; i++) {
+            int userID = random.nextInt(300) - 50;
+            int itemID = random.nextInt(100) * 7;
+            if (random.nextInt(4) == 0) {
+                data.removeRating(userID, itemID);
+                expected.remove(key(userID, itemID));
+            } else {
+                double rating = 1 + random.nextInt(5);
+                data.setRating(userID, itemID, rating);
+                expected.put(key(userID, itemID), rating);
+            }
+        }
+        data.removeUser(-3);
+        data.removeItem(14);
+        Iterator<Long> keys = expected.keySet().iterator();
+        while (keys.hasNext()) {
+            long key = keys.next();
+            if ((int) (key >> 32) == -3 || (int) key == 14) {
+                keys.remove();
+            }
+        }
+        assertFalse(data.userExists(-3));
+        assertFalse(data.itemExists(14));
+
+        assertEquals(expected.size(), data.getNumRatings());
+        Map<Integer, double[]> userStats = new HashMap<Integer, double[]>();
+        Map<Integer, double[]> itemStats = new HashMap<Integer, double[]>();
+        double sum = 0;
+        for (Map.Entry<Long, Double> e : expected.entrySet()) {
+            int userID = (int) (e.getKey() >> 32);
+            int itemID = (int) (long) e.getKey();
+            assertEquals(e.getValue(), data.getRating(userID, itemID), 0);
+            add(userStats, userID, e.getValue());
+            add(itemStats, itemID, e.getValue());
+            sum += e.getValue();
+        }
+        assertEquals(sum / expected.size(), data.getGlobalMean(), 1e-9);
+        for (Map.Entry<Integer, double[]> e : userStats.entrySet()) {
+            int n = (int) e.getValue()[1];
+            assertEquals(n, data.countRatingsUser(e.getKey()));
+            assertEquals((25 * data.getGlobalMean() + e.getValue()[0]) / (25 + n), data.getAvgRatingUser(e.getKey()), 1e-9);
+            int[] itemIDs = new int[n];
+            double[] ratings = new double[n];
+            assertEquals(n, data.getRatingsUser(e.getKey(), itemIDs, ratings));
+            for (int k = 0; k < n; k++) {
+                assertEquals(expected.get(key(e.getKey(), itemIDs[k])), ratings[k], 0);
+            }
+            assertEquals(n, data.getRatingsUser(e.getKey()).size());
+        }
+        for (Map.Entry<Integer, double[]> e : itemStats.entrySet()) {
+            int n = (int) e.getValue()[1];
+            assertEquals(n, data.countRatingsItem(e.getKey()));
+            int[] userIDs = new int[n];
+            double[] ratings = new double[n];
+            assertEquals(n, data.getRatingsItem(e.getKey(), userIDs, ratings));
+            for (int k = 0; k < n; k++) {
+                assertEquals(expected.get(key(userIDs[k], e.getKey())), ratings[k], 0);
+            }
+        }
+        assertTrue(data.getUsers().containsAll(userStats.keySet()));
+        assertTrue(data.getItems().containsAll(itemStats.keySet()));
+
+        int count = 0;
+        Iterator<Rating> it = data.ratingIterator();
+        while (it.hasNext()) {
+            Rating rating = it.next();
+            assertEquals(expected.get(key(rating.userID, rating.itemID)), rating.rating, 0);
+            count++;
+        }
+        assertEquals(expected.size(), count);
+
+        data.clear();
+        assertEquals(0, data.getNumRatings());
+        assertEquals(0, data.getNumUsers());
+        assertFalse(data.ratingIterator().hasNext());
+    }
+
+    private static void add(Map<Integer, double[]> stats, int id, double rating) {
+        double[] s = stats.get(id);
+        if (s == null) {
+            s = new double[2];
+            stats.put(id, s);
+        }
+        s[0] += rating;
+        s[1]++;
+    }
+
+    private static MemRecommenderData ratings(int numRatings) {
+        Random random = new Random(2);
+        MemRecommenderData data = new MemRecommenderData();
+        data.disableUpdates(true);
+        for (int i = 0; i < numRatings; i++) {
+            int userID = random.nextInt(500);
+            int itemID = random.nextInt(200);
+            double rating = Math.min(5, Math.max(1, Math.round(3 + (userID % 3 - 1) + (itemID % 5 - 2) * 0.5 + random.nextGaussian() * 0.5)));
+            data.setRating(userID, itemID, rating);
+        }
+        data.disableUpdates(false);
+        return data;
+    }
+
+    private static double rmse(BRISMFPredictor predictor, MemRecommenderData data) {
+        double sum = 0;
+        Iterator<Rating> it = data.ratingIterator();
+        while (it.hasNext()) {
+            Rating rating = it.next();
+            double error = predictor.predictRating(rating.userID, rating.itemID) - rating.rating;
+            sum += error * error;
+        }
+        return Math.sqrt(sum / data.getNumRatings());
+    }
+
+    @Test
+    public void testBatchTraining() {
+        MemRecommenderData data = ratings(30000);
+        double baseline = 0;
+        Iterator<Rating> it = data.ratingIterator();
+        while (it.hasNext()) {
+            double error = data.getGlobalMean() - it.next().rating;
+            baseline += error * error;
+        }
+        baseline = Math.sqrt(baseline / data.getNumRatings());
+
+        BRISMFPredictor serial = new BRISMFPredictor(5, data, 0.01, 0.01, false);
+        serial.train();
+        BRISMFPredictor again = new BRISMFPredictor(5, data, 0.01, 0.01, false);
+        again.train();
+        assertEquals(rmse(serial, data), rmse(again, data), 0);
+        assertTrue(rmse(serial, data) < 0.8 * baseline);
+
+        BRISMFPredictor parallel = new BRISMFPredictor(5, data, 0.01, 0.01, false);
+        parallel.setNumberOfJobs(4);
+        parallel.train();
+        assertTrue(rmse(parallel, data) < 0.8 * baseline);
+
+        assertNotNull(parallel.getUserFeatures(0));
+        assertNull(parallel.getUserFeatures(-1));
+        assertEquals(5, parallel.getItemFeatures(0).length);
+    }
+
+    @Test
+    public void testOnlineUpdates() {
+        MemRecommenderData data = new MemRecommenderData();
+        BRISMFPredictor predictor = new BRISMFPredictor(5, data, 0.01, 0.01, false);
+        Random random = new Random(3);
+        for (int i = 0; i < 3000; i++) {
+            int userID = random.nextInt(50);
+            int itemID = random.nextInt(30);
+            data.setRating(userID, itemID, userID % 2 == 0 ? 5 : 1);
+        }
+        assertEquals(5, predictor.predictRating(10, 3), 0.5);
+        assertEquals(1, predictor.predictRating(11, 3), 0.5);
+        data.removeUser(10);
+        assertNull(predictor.getUserFeatures(10));
+        assertEquals(data.getGlobalMean(), predictor.predictRating(10, 3), 0);
+    }
+}
@@ -0,0 +1,75 @@
+package moa.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import moa.tasks.WriteStreamToBinaryFile;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+
+/**
+ * Test MappedBinaryFileStream against the ArffFileStream it was converted from.
+ */
+public class MappedBinaryFileStreamTest {
+	private static String arffFile;
+	private static File binaryFile;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		arffFile = ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath();
+		binaryFile = File.createTempFile("small_classification", ".moab");
+		WriteStreamToBinaryFile task = new WriteStreamToBinaryFile();
+		task.streamOption.setValueViaCLIString("ArffFileStream -f " + arffFile + " -c 3");
+		task.binaryFileOption.setValue(binaryFile.getPath());
+		task.prepareForUse();
+		task.doTask();
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() {
+		binaryFile.delete();
+	}
+
+	@Test
+	public void testSameInstances() {
+		ArffFileStream arff = new ArffFileStream(arffFile, 3);
+		MappedBinaryFileStream binary = new MappedBinaryFileStream(binaryFile.getPath());
+		assertEquals(arff.getHeader().numAttributes(), binary.getHeader().numAttributes());
+		assertEquals(2, binary.getHeader().classIndex());
+		assertEquals("val1", binary.getHeader().attribute(2).value(0));
+		int count = 0;
+		while (arff.hasMoreInstances()) {
+			assertTrue(binary.hasMoreInstances());
+			Instance expected = arff.nextInstance().getData();
+			Instance actual = binary.nextInstance().getData();
+			assertEquals(expected.weight(), actual.weight(), 0.0);
+			assertEquals(expected.classValue(), actual.classValue(), 0.0);
+			for (int i = 0; i < expected.numAttributes(); i++) {
+				assertEquals(expected.value(i), actual.value(i), 0.0);
+			}
+			count++;
+		}
+		assertFalse(binary.hasMoreInstances());
+		assertEquals(0, binary.estimatedRemainingInstances());
+		assertTrue(count > 0);
+	}
+
+	@Test
+	public void testRestart() {
+		MappedBinaryFileStream binary = new MappedBinaryFileStream(binaryFile.getPath());
+		double first = binary.nextInstance().getData().value(3);
+		while (binary.hasMoreInstances()) {
+			binary.nextInstance();
+		}
+		binary.restart();
+		assertTrue(binary.hasMoreInstances());
+		assertEquals(first, binary.nextInstance().getData().value(3), 0.0);
+	}
+}
@@ -0,0 +1,90 @@
+package moa.streams;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import moa.streams.generators.AgrawalGenerator;
+import moa.streams.generators.RandomRBFGenerator;
+import moa.streams.generators.RandomRBFGeneratorDrift;
+
+import org.junit.Test;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import com.yahoo.labs.samoa.instances.Instances;
+
+/**
+ * Test that filling a reused instance produces the same instances as
+ * nextInstance().
+ */
+public class ReusableInstanceStreamTest {
+
+	private static final int NUM_INSTANCES = 500;
+
+	private static String arffFile() {
+		return ClassLoader.getSystemResource("moa/classifiers/data/small_classification.arff").getPath();
+	}
+
+	private static void assertSameInstances(ReusableInstanceStream expected, ReusableInstanceStream actual) {
+		Instance reused = actual.newReusableInstance();
+		int count = 0;
+		while (expected.hasMoreInstances() && count < NUM_INSTANCES) {
+			assertTrue(actual.hasMoreInstances());
+			Instance inst = expected.nextInstance().getData();
+			actual.fillNextInstance(reused);
+			assertEquals(inst.weight(), reused.weight(), 0.0);
+			for (int i = 0; i < inst.numAttributes(); i++) {
+				assertEquals(inst.value(i), reused.value(i), 0.0);
+			}
+			assertEquals(inst.classValue(), reused.classValue(), 0.0);
+			count++;
+		}
+		assertEquals(expected.hasMoreInstances(), actual.hasMoreInstances());
+	}
+
+	@Test
+	public void testRandomRBFGenerator() {
+		RandomRBFGenerator expected = new RandomRBFGenerator();
+		expected.prepareForUse();
+		RandomRBFGenerator actual = new RandomRBFGenerator();
+		actual.prepareForUse();
+		assertSameInstances(expected, actual);
+	}
+
+	@Test
+	public void testRandomRBFGeneratorDrift() {
+		RandomRBFGeneratorDrift expected = new RandomRBFGeneratorDrift();
+		expected.prepareForUse();
+		RandomRBFGeneratorDrift actual = new RandomRBFGeneratorDrift();
+		actual.prepareForUse();
+		assertSameInstances(expected, actual);
+	}
+
+	@Test
+	public void testAgrawalGenerator() {
+		AgrawalGenerator expected = new AgrawalGenerator();
+		expected.balanceClassesOption.set();
+		expected.prepareForUse();
+		AgrawalGenerator actual = new AgrawalGenerator();
+		actual.balanceClassesOption.set();
+		actual.prepareForUse();
+		assertSameInstances(expected, actual);
+	}
+
+	@Test
+	public void testArffFileStream() {
+		assertSameInstances(new ArffFileStream(arffFile(), -1), new ArffFileStream(arffFile(), -1));
+	}
+
+	@Test
+	public void testCachedInstancesStream() {
+		ArffFileStream source = new ArffFileStream(arffFile(), -1);
+		Instances cache = new Instances(source.getHeader(), 0);
+		while (source.hasMoreInstances()) {
+			cache.add(source.nextInstance().getData());
+		}
+		CachedInstancesStream actual = new CachedInstancesStream(cache);
+		assertSameInstances(new ArffFileStream(arffFile(), -1), actual);
+		actual.restart();
+		assertEquals(1.1, actual.nextInstance().getData().value(5), 0.0);
+	}
+}
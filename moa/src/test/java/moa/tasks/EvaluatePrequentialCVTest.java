@@ -0,0 +1,106 @@
+package moa.tasks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.functions.NoChange;
+import moa.evaluation.preview.LearningCurve;
+import moa.options.ClassOption;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the prequential cross-validation tasks get the same learning
+ * curves when their folds run concurrently.
+ */
+public class EvaluatePrequentialCVTest {
+
+    private static final String SETUP = " -l trees.HoeffdingTree"
+            + " -s (generators.RandomRBFGeneratorDrift -s 0.001) -i 12345 -f 1000 -w 5";
+
+    private static LearningCurve run(String cli) throws Exception {
+        Task task = (Task) ClassOption.cliStringToObject(cli, Task.class, null);
+        return (LearningCurve) task.doTask();
+    }
+
+    private static void assertSameCurves(String cli) throws Exception {
+        assertSameCurves(run(cli + " -j 1"), run(cli + " -j 3"));
+    }
+
+    private static void assertSameCurves(LearningCurve serial, LearningCurve concurrent) {
+        // one entry every 1000 instances, and a last one at the instance limit
+        assertEquals(13, serial.numEntries());
+        assertEquals(12345, serial.getMeasurement(12, 0), 0.0);
+        assertEquals(serial.numEntries(), concurrent.numEntries());
+        for (int m = 0; m < serial.getMeasurementNameCount(); m++) {
+            String name = serial.getMeasurementName(m);
+            if (name.contains("time") || name.contains("RAM-Hours")) {
+                continue;
+            }
+            for (int e = 0; e < serial.numEntries(); e++) {
+                assertEquals(name + " at entry " + e, serial.getMeasurement(e, m),
+                        concurrent.getMeasurement(e, m), 0.0);
+            }
+        }
+    }
+
+    @Test
+    public void testCrossValidation() throws Exception {
+        assertSameCurves("EvaluatePrequentialCV -a 0" + SETUP);
+    }
+
+    @Test
+    public void testBootstrapValidation() throws Exception {
+        assertSameCurves("EvaluatePrequentialCV -a 1" + SETUP);
+    }
+
+    @Test
+    public void testSplitValidation() throws Exception {
+        assertSameCurves("EvaluatePrequentialCV -a 2" + SETUP);
+    }
+
+    @Test
+    public void testDelayedBootstrapValidation() throws Exception {
+        assertSameCurves("EvaluatePrequentialDelayedCV -k 100 -a 1" + SETUP);
+    }
+
+    /** Learner that records whether it trains on an instance another fold trained on. */
+    public static class SharingLearner extends NoChange {
+
+        private static final long serialVersionUID = 1L;
+
+        static final Set<Instance> TRAINED = Collections.synchronizedSet(
+                Collections.newSetFromMap(new IdentityHashMap<Instance, Boolean>()));
+
+        static volatile boolean shared;
+
+        @Override
+        public void trainOnInstanceImpl(Instance inst) {
+            if (!TRAINED.add(inst)) {
+                shared = true;
+            }
+            super.trainOnInstanceImpl(inst);
+        }
+    }
+
+    /**
+     * Learners such as LearnNSE change the weights of the examples they train
+     * on, so concurrent folds have to train on their own copies.
+     */
+    @Test
+    public void testConcurrentDelayedFoldsTrainOnCopies() throws Exception {
+        EvaluatePrequentialDelayedCV task = new EvaluatePrequentialDelayedCV();
+        task.getOptions().setViaCLIString("-k 100 -s (generators.RandomRBFGenerator) -i 2000 -f 1000 -w 5 -j 3");
+        task.learnerOption.setCurrentObject(new SharingLearner());
+        SharingLearner.TRAINED.clear();
+        SharingLearner.shared = false;
+        task.doTask();
+        assertTrue(SharingLearner.TRAINED.size() > 0);
+        assertFalse(SharingLearner.shared);
+    }
+}
@@ -0,0 +1,92 @@
+package moa.tasks;
+
+import com.yahoo.labs.samoa.instances.Instance;
+import moa.classifiers.trees.HoeffdingTree;
+import moa.evaluation.preview.LearningCurve;
+import moa.options.ClassOption;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the runs on the cached stream learn as the task run alone on
+ * the stream.
+ */
+public class RunConcurrentTasksTest {
+
+    private static final String EVALUATION = "EvaluatePrequential -s (generators.RandomRBFGeneratorDrift -s 0.001)"
+            + " -i 5000 -f 1000";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static LearningCurve run(String cli) throws Exception {
+        Task task = (Task) ClassOption.cliStringToObject(cli, Task.class, null);
+        return (LearningCurve) task.doTask();
+    }
+
+    private static void assertSameCurves(LearningCurve expected, LearningCurve last) {
+        assertEquals(expected.numEntries(), last.numEntries());
+        for (int m = 0; m < expected.getMeasurementNameCount(); m++) {
+            String name = expected.getMeasurementName(m);
+            if (name.contains("time") || name.contains("RAM-Hours")) {
+                continue;
+            }
+            for (int e = 0; e < expected.numEntries(); e++) {
+                assertEquals(expected.getEntryMeasurementCount(e), last.getEntryMeasurementCount(e));
+                if (m < expected.getEntryMeasurementCount(e)) {
+                    assertEquals(name + " at entry " + e, expected.getMeasurement(e, m), last.getMeasurement(e, m), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        String dumpFile = new File(this.folder.getRoot(), "run.csv").getPath();
+        LearningCurve last = run("RunConcurrentTasks -t (" + EVALUATION + " -l trees.HoeffdingTree -d " + dumpFile
+                + ") -p g -f 100 -l 300 -i 100 -j 2");
+        LearningCurve expected = run(EVALUATION + " -l (trees.HoeffdingTree -g 300)");
+        assertSameCurves(expected, last);
+        for (String value : new String[]{"100", "200", "300"}) {
+            assertTrue(new File(this.folder.getRoot(), "run-g" + value + ".csv").exists());
+        }
+    }
+
+    @Test
+    public void testCacheTooSmall() throws Exception {
+        try {
+            run("RunConcurrentTasks -t (" + EVALUATION + " -l trees.HoeffdingTree) -p g -f 100 -l 300 -i 100 -m 4000");
+            fail("the runs would have stopped at the end of the cache");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("up to 5000"));
+        }
+    }
+
+    /** Tree changing the weight of the instances it is trained on. */
+    public static class WeightChangingTree extends HoeffdingTree {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void trainOnInstanceImpl(Instance inst) {
+            inst.setWeight(inst.weight() * 2);
+            super.trainOnInstanceImpl(inst);
+        }
+    }
+
+    @Test
+    public void testLearnerChangingInstances() throws Exception {
+        String learner = WeightChangingTree.class.getName();
+        LearningCurve last = run("RunConcurrentTasks -t (" + EVALUATION + " -l " + learner
+                + ") -p g -f 100 -l 300 -i 100 -j 3");
+        LearningCurve expected = run(EVALUATION + " -l (" + learner + " -g 300)");
+        assertSameCurves(expected, last);
+    }
+}